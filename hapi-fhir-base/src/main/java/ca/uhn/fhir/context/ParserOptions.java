@@ -42,6 +42,7 @@ public class ParserOptions {
 	private boolean myStripVersionsFromReferences = true;
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
+	private boolean myParseJsonUsingTokenStream = false;
 	
 	/**
 	 * If supplied value(s), any resource references at the specified paths will have their
@@ -174,4 +175,32 @@ public class ParserOptions {
 		myOverrideResourceIdWithBundleEntryFullUrl = theOverrideResourceIdWithBundleEntryFullUrl;
 		return this;
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build its
+	 * internal representation of the document directly from the JSON token stream instead of first
+	 * building a Gson document tree. This uses considerably less memory when parsing large
+	 * documents such as big transaction Bundles.
+	 *
+	 * @see ca.uhn.fhir.parser.json.JsonReaderStructure
+	 * @since 3.5.0
+	 */
+	public boolean isParseJsonUsingTokenStream() {
+		return myParseJsonUsingTokenStream;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will build its
+	 * internal representation of the document directly from the JSON token stream instead of first
+	 * building a Gson document tree. This uses considerably less memory when parsing large
+	 * documents such as big transaction Bundles.
+	 *
+	 * @return Returns a reference to <code>this</code> parser so that method calls can be chained together
+	 * @see ca.uhn.fhir.parser.json.JsonReaderStructure
+	 * @since 3.5.0
+	 */
+	public ParserOptions setParseJsonUsingTokenStream(boolean theParseJsonUsingTokenStream) {
+		myParseJsonUsingTokenStream = theParseJsonUsingTokenStream;
+		return this;
+	}
 }
@@ -0,0 +1,281 @@
+package ca.uhn.fhir.parser.json;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.parser.DataFormatException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * A {@link JsonLikeStructure} which is built by pulling tokens directly from a
+ * Gson {@link JsonReader}, instead of first building a Gson DOM and then
+ * wrapping each element of it as {@link GsonStructure} does.
+ * <p>
+ * Each node in the resulting structure is itself the {@link JsonLikeValue} that the
+ * parser navigates, so there is only one object per JSON node instead of a Gson element plus a
+ * lazily created wrapper. Object keys are also de-duplicated while loading, which saves a
+ * good amount of memory for large documents (e.g. big transaction Bundles) where the same
+ * element names occur many times.
+ * </p>
+ * <p>
+ * This structure is read-only, writing is delegated to {@link GsonWriter}.
+ * </p>
+ */
+public class JsonReaderStructure implements JsonLikeStructure {
+
+	private JsonLikeValue myRoot;
+	private GsonWriter myJsonLikeWriter;
+	private Map<String, String> myKeyCache;
+
+	@Override
+	public JsonLikeStructure getInstance() {
+		return new JsonReaderStructure();
+	}
+
+	@Override
+	public void load(Reader theReader) throws DataFormatException {
+		load(theReader, false);
+	}
+
+	@Override
+	public void load(Reader theReader, boolean allowArray) throws DataFormatException {
+		PushbackReader pbr = new PushbackReader(theReader);
+		try {
+			while (true) {
+				int nextInt = pbr.read();
+				if (nextInt == -1) {
+					throw new DataFormatException("Did not find any content to parse");
+				}
+				if (Character.isWhitespace(nextInt)) {
+					continue;
+				}
+				if (nextInt == '{' || (allowArray && nextInt == '[')) {
+					pbr.unread(nextInt);
+					break;
+				}
+				String expected = allowArray ? "'{' or '['" : "'{'";
+				throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char) nextInt + "' (must be " + expected + ")");
+			}
+
+			JsonReader reader = new JsonReader(pbr);
+			reader.setLenient(true);
+			myKeyCache = new HashMap<>();
+			myRoot = readValue(reader);
+		} catch (MalformedJsonException e) {
+			if (e.getMessage() != null && e.getMessage().startsWith("Unexpected char 39")) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
+			}
+			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		} catch (DataFormatException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DataFormatException("Failed to parse JSON content, error was: " + e.getMessage(), e);
+		} finally {
+			myKeyCache = null;
+		}
+	}
+
+	private JsonLikeValue readValue(JsonReader theReader) throws IOException {
+		JsonToken token = theReader.peek();
+		switch (token) {
+			case BEGIN_OBJECT: {
+				ReaderObject retVal = new ReaderObject();
+				theReader.beginObject();
+				while (theReader.hasNext()) {
+					String name = theReader.nextName();
+					String cachedName = myKeyCache.putIfAbsent(name, name);
+					if (cachedName != null) {
+						name = cachedName;
+					}
+					retVal.myChildren.put(name, readValue(theReader));
+				}
+				theReader.endObject();
+				return retVal;
+			}
+			case BEGIN_ARRAY: {
+				ReaderArray retVal = new ReaderArray();
+				theReader.beginArray();
+				while (theReader.hasNext()) {
+					retVal.myChildren.add(readValue(theReader));
+				}
+				theReader.endArray();
+				retVal.myChildren.trimToSize();
+				return retVal;
+			}
+			case STRING:
+				return new ReaderScalar(theReader.nextString(), ScalarType.STRING);
+			case NUMBER:
+				// nextString() gives us the number exactly as it appeared in the document
+				return new ReaderScalar(theReader.nextString(), ScalarType.NUMBER);
+			case BOOLEAN:
+				return theReader.nextBoolean() ? ReaderScalar.TRUE_VALUE : ReaderScalar.FALSE_VALUE;
+			case NULL:
+				theReader.nextNull();
+				return JsonLikeValue.NULL;
+			default:
+				throw new DataFormatException("Unexpected JSON token: " + token);
+		}
+	}
+
+	@Override
+	public JsonLikeObject getRootObject() throws DataFormatException {
+		if (myRoot != null && myRoot.isObject()) {
+			return myRoot.getAsObject();
+		}
+		throw new DataFormatException("Content must be a valid JSON Object. It must start with '{'.");
+	}
+
+	@Override
+	public JsonLikeArray getRootArray() throws DataFormatException {
+		if (myRoot != null && myRoot.isArray()) {
+			return myRoot.getAsArray();
+		}
+		throw new DataFormatException("Content must be a valid JSON Array. It must start with '['.");
+	}
+
+	@Override
+	public JsonLikeWriter getJsonLikeWriter() {
+		if (myJsonLikeWriter == null) {
+			myJsonLikeWriter = new GsonWriter();
+		}
+		return myJsonLikeWriter;
+	}
+
+	@Override
+	public JsonLikeWriter getJsonLikeWriter(Writer theWriter) {
+		if (myJsonLikeWriter == null) {
+			myJsonLikeWriter = new GsonWriter(theWriter);
+		}
+		return myJsonLikeWriter;
+	}
+
+	private static class ReaderObject extends JsonLikeObject {
+		private final LinkedHashMap<String, JsonLikeValue> myChildren = new LinkedHashMap<>();
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return myChildren.keySet();
+		}
+
+		@Override
+		public JsonLikeValue get(String key) {
+			return myChildren.get(key);
+		}
+	}
+
+	private static class ReaderArray extends JsonLikeArray {
+		private final ArrayList<JsonLikeValue> myChildren = new ArrayList<>();
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public int size() {
+			return myChildren.size();
+		}
+
+		@Override
+		public JsonLikeValue get(int index) {
+			return myChildren.get(index);
+		}
+	}
+
+	private static class ReaderScalar extends JsonLikeValue {
+		static final ReaderScalar TRUE_VALUE = new ReaderScalar("true", ScalarType.BOOLEAN);
+		static final ReaderScalar FALSE_VALUE = new ReaderScalar("false", ScalarType.BOOLEAN);
+
+		private final String myText;
+		private final ScalarType myDataType;
+
+		ReaderScalar(String theText, ScalarType theDataType) {
+			myText = theText;
+			myDataType = theDataType;
+		}
+
+		@Override
+		public ValueType getJsonType() {
+			return ValueType.SCALAR;
+		}
+
+		@Override
+		public ScalarType getDataType() {
+			return myDataType;
+		}
+
+		@Override
+		public Object getValue() {
+			if (myDataType == ScalarType.NUMBER) {
+				return getAsNumber();
+			}
+			if (myDataType == ScalarType.BOOLEAN) {
+				return Boolean.valueOf(myText);
+			}
+			return myText;
+		}
+
+		@Override
+		public boolean getAsBoolean() {
+			if (myDataType == ScalarType.BOOLEAN) {
+				return Boolean.parseBoolean(myText);
+			}
+			return super.getAsBoolean();
+		}
+
+		@Override
+		public String getAsString() {
+			return myText;
+		}
+
+		@Override
+		public Number getAsNumber() {
+			if (myDataType == ScalarType.NUMBER) {
+				return new BigDecimal(myText);
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return myText;
+		}
+	}
+
+}
@@ -179,6 +179,7 @@ public class Constants {
 	public static final int STATUS_HTTP_410_GONE = 410;
 	public static final int STATUS_HTTP_412_PRECONDITION_FAILED = 412;
 	public static final int STATUS_HTTP_422_UNPROCESSABLE_ENTITY = 422;
+	public static final int STATUS_HTTP_429_TOO_MANY_REQUESTS = 429;
 	public static final int STATUS_HTTP_500_INTERNAL_ERROR = 500;
 	public static final int STATUS_HTTP_501_NOT_IMPLEMENTED = 501;
 	public static final String TAG_SUBSETTED_CODE = "SUBSETTED";
@@ -23,6 +23,8 @@ package ca.uhn.fhir.rest.client.api;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Http Request. Allows addition of headers and execution of the request.
@@ -42,6 +44,27 @@ public interface IHttpRequest {
 	 */
 	IHttpResponse execute() throws IOException;
 
+	/**
+	 * Execute the request without blocking the calling thread. The default implementation
+	 * simply invokes {@link #execute()} using the given executor. Implementations backed
+	 * by a non-blocking HTTP transport should override this method.
+	 *
+	 * @param theExecutor The executor to use if the underlying transport is blocking
+	 * @return A future which completes with the response
+	 * @since 3.5.0
+	 */
+	default CompletableFuture<IHttpResponse> executeAsync(Executor theExecutor) {
+		CompletableFuture<IHttpResponse> retVal = new CompletableFuture<>();
+		theExecutor.execute(() -> {
+			try {
+				retVal.complete(execute());
+			} catch (Throwable t) {
+				retVal.completeExceptionally(t);
+			}
+		});
+		return retVal;
+	}
+
 	/**
 	 * @return all request headers in lower case. Note that this method
 	 * returns an <b>immutable</b> Map
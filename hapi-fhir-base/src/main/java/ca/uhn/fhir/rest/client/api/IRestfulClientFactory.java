@@ -57,6 +57,11 @@ public interface IRestfulClientFactory {
 	 * Default value for {@link #getPoolMaxPerRoute() }
 	 */
 	public static final int DEFAULT_POOL_MAX_PER_ROUTE = DEFAULT_POOL_MAX;
+
+	/**
+	 * Default value for {@link #getMaxConcurrentAsyncRequestsPerServer()}
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_ASYNC_REQUESTS_PER_SERVER = DEFAULT_POOL_MAX_PER_ROUTE;
 	
 	/**
 	 * Gets the connection request timeout, in milliseconds. This is the amount of time that the HTTPClient connection
@@ -134,6 +139,18 @@ public interface IRestfulClientFactory {
 	 * </p>
 	 */
 	int getPoolMaxPerRoute();
+
+	/**
+	 * Gets the maximum number of requests made using <code>executeAsync()</code> which may be
+	 * in progress against a single server base URL at any given time. Additional requests are
+	 * queued (without holding a thread) until an earlier one completes.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_MAX_CONCURRENT_ASYNC_REQUESTS_PER_SERVER}
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	int getMaxConcurrentAsyncRequestsPerServer();
 	
 	/**
 	 * Instantiates a new client instance
@@ -248,6 +265,18 @@ public interface IRestfulClientFactory {
 	 * </p>
 	 */
 	void setPoolMaxPerRoute(int thePoolMaxPerRoute);
+
+	/**
+	 * Sets the maximum number of requests made using <code>executeAsync()</code> which may be
+	 * in progress against a single server base URL at any given time. Additional requests are
+	 * queued (without holding a thread) until an earlier one completes.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_MAX_CONCURRENT_ASYNC_REQUESTS_PER_SERVER}
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	void setMaxConcurrentAsyncRequestsPerServer(int theMaxConcurrentAsyncRequestsPerServer);
 	
 	void validateServerBase(String theServerBase, IHttpClient theHttpClient, IRestfulClient theClient);
 
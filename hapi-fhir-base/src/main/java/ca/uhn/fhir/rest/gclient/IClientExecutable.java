@@ -6,6 +6,7 @@ import ca.uhn.fhir.rest.api.SummaryEnum;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * #%L
@@ -63,6 +64,31 @@ public interface IClientExecutable<T extends IClientExecutable<?,Y>, Y> {
 	 */
 	Y execute();
 
+	/**
+	 * Execute the client operation without blocking the calling thread. The returned
+	 * future completes with the same value that {@link #execute()} would have returned,
+	 * or completes exceptionally with the exception it would have thrown.
+	 * <p>
+	 * The number of asynchronous requests in progress against a single server is limited
+	 * by {@link ca.uhn.fhir.rest.client.api.IRestfulClientFactory#setMaxConcurrentAsyncRequestsPerServer(int)}.
+	 * </p>
+	 * <p>
+	 * The default implementation calls {@link #execute()} on the calling thread and returns a
+	 * future which has already completed. The HAPI FHIR generic client overrides it.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	default CompletableFuture<Y> executeAsync() {
+		CompletableFuture<Y> retVal = new CompletableFuture<>();
+		try {
+			retVal.complete(execute());
+		} catch (RuntimeException e) {
+			retVal.completeExceptionally(e);
+		}
+		return retVal;
+	}
+
 	/**
 	 * Explicitly specify a custom structure type to attempt to use when parsing the response. This
 	 * is useful for invocations where the response is a Bundle/Parameters containing nested resources,
@@ -0,0 +1,101 @@
+package ca.uhn.fhir.parser.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ca.uhn.fhir.parser.DataFormatException;
+
+public class JsonReaderStructureTest {
+
+	private static final String TEST_JSONTYPES_DATA =
+			"{" +
+			"    \"scalar-string\":\"A scalar string\"," +
+			"    \"scalar-number\":11111," +
+			"    \"scalar-decimal\":1.50," +
+			"    \"scalar-boolean\":false," +
+			"    \"null-value\":null," +
+			"    \"object-value\":{" +
+			"        \"lastUpdated\":\"3900-09-20T10:10:10.000-07:00\"," +
+			"        \"deleted\":\"3909-09-20T10:10:10.000-07:00\"" +
+			"    }," +
+			"    \"array-value\":[" +
+			"        12345," +
+			"        {" +
+			"            \"value\":\"15250\"" +
+			"        }" +
+			"    ]" +
+			"}";
+
+	@Test
+	public void testJsonAndDataTypes() {
+		JsonLikeStructure jsonStructure = new JsonReaderStructure();
+		jsonStructure.load(new StringReader(TEST_JSONTYPES_DATA));
+
+		JsonLikeObject rootObject = jsonStructure.getRootObject();
+		assertNotNull(rootObject);
+		assertEquals(Arrays.asList("scalar-string", "scalar-number", "scalar-decimal", "scalar-boolean", "null-value", "object-value", "array-value"), new ArrayList<>(rootObject.keySet()));
+
+		JsonLikeObject obj = rootObject.get("object-value").getAsObject();
+		assertNotNull(obj);
+		assertEquals("3909-09-20T10:10:10.000-07:00", obj.getString("deleted"));
+
+		JsonLikeArray array = rootObject.get("array-value").getAsArray();
+		assertEquals(2, array.size());
+		assertEquals(JsonLikeValue.ScalarType.NUMBER, array.get(0).getDataType());
+		assertEquals("15250", array.get(1).getAsObject().getString("value"));
+
+		JsonLikeValue value = rootObject.get("null-value");
+		assertEquals(true, value.isNull());
+
+		value = rootObject.get("scalar-string");
+		assertEquals(JsonLikeValue.ScalarType.STRING, value.getDataType());
+		assertEquals("A scalar string", value.getAsString());
+
+		value = rootObject.get("scalar-number");
+		assertEquals(JsonLikeValue.ScalarType.NUMBER, value.getDataType());
+		assertEquals("11111", value.getAsString());
+
+		// Decimals must keep their original precision
+		value = rootObject.get("scalar-decimal");
+		assertEquals("1.50", value.getAsString());
+		assertEquals(new BigDecimal("1.50"), value.getAsNumber());
+
+		value = rootObject.get("scalar-boolean");
+		assertEquals(JsonLikeValue.ScalarType.BOOLEAN, value.getDataType());
+		assertEquals("false", value.getAsString());
+		assertEquals(false, value.getAsBoolean());
+	}
+
+	@Test
+	public void testRootArray() {
+		JsonLikeStructure jsonStructure = new JsonReaderStructure();
+		jsonStructure.load(new StringReader("  [ {\"a\":\"b\"} ]"), true);
+		assertEquals("b", jsonStructure.getRootArray().get(0).getAsObject().getString("a"));
+	}
+
+	@Test
+	public void testInvalidContent() {
+		try {
+			new JsonReaderStructure().load(new StringReader("  [ {\"a\":\"b\"} ]"));
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Content does not appear to be FHIR JSON, first non-whitespace character was: '[' (must be '{')", e.getMessage());
+		}
+
+		try {
+			new JsonReaderStructure().load(new StringReader("{\"a\":\"b\""));
+			fail();
+		} catch (DataFormatException e) {
+			// good
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.r4.model.*;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Sample content shared by the benchmarks. Content is generated rather than
+ * loaded from files so that the size of the large bundle can be tuned.
+ */
+public class BenchmarkData {
+
+	private BenchmarkData() {
+		// nothing
+	}
+
+	public static Patient createPatient(int theIndex) {
+		Patient patient = new Patient();
+		patient.setId("Patient/P" + theIndex);
+		patient.getMeta().addProfile("http://example.com/StructureDefinition/patient");
+		patient.addIdentifier().setSystem("http://example.com/mrn").setValue("MRN" + theIndex);
+		patient.addName().setFamily("Family" + theIndex).addGiven("Given" + theIndex).addGiven("Middle");
+		patient.setGender(theIndex % 2 == 0 ? Enumerations.AdministrativeGender.MALE : Enumerations.AdministrativeGender.FEMALE);
+		patient.setBirthDateElement(new DateType("1970-01-" + String.format("%02d", (theIndex % 28) + 1)));
+		patient.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("555-" + theIndex);
+		patient.addAddress().addLine("123 Main Street").setCity("Toronto").setState("ON").setPostalCode("M5V 1A1");
+		patient.addExtension().setUrl("http://example.com/StructureDefinition/eye-colour").setValue(new StringType("blue"));
+		return patient;
+	}
+
+	public static Observation createObservation(int theIndex, String thePatientId) {
+		Observation obs = new Observation();
+		obs.setId("Observation/O" + theIndex);
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs");
+		obs.getCode().addCoding().setSystem("http://loinc.org").setCode("29463-7").setDisplay("Body Weight");
+		obs.setSubject(new Reference(thePatientId));
+		obs.setEffective(new DateTimeType(new Date()));
+		obs.setValue(new Quantity().setValue(new BigDecimal("70." + (theIndex % 10))).setUnit("kg").setSystem("http://unitsofmeasure.org").setCode("kg"));
+		obs.addComponent().setValue(new StringType("Component " + theIndex)).getCode().setText("comp");
+		return obs;
+	}
+
+	/**
+	 * Creates a transaction bundle containing one patient and the given number of
+	 * observations referring to that patient
+	 */
+	public static Bundle createTransactionBundle(int theObservationCount) {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+
+		Patient patient = createPatient(0);
+		bundle.addEntry()
+			.setFullUrl(patient.getId())
+			.setResource(patient)
+			.getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl(patient.getId());
+
+		for (int i = 0; i < theObservationCount; i++) {
+			Observation obs = createObservation(i, patient.getId());
+			bundle.addEntry()
+				.setFullUrl(obs.getId())
+				.setResource(obs)
+				.getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl(obs.getId());
+		}
+
+		return bundle;
+	}
+
+}
@@ -0,0 +1,95 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.config.BaseJavaConfigR4;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.search.LuceneSearchMappingFactory;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.hibernate.query.criteria.LiteralHandlingMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * R4 JPA server configuration backed by an in-memory Derby database, used
+ * by the JPA benchmarks
+ */
+@Configuration
+@EnableTransactionManagement()
+public class BenchmarkR4Config extends BaseJavaConfigR4 {
+
+	@Bean()
+	public DaoConfig daoConfig() {
+		DaoConfig retVal = new DaoConfig();
+		retVal.setSchedulingDisabled(true);
+		return retVal;
+	}
+
+	@Bean(destroyMethod = "close")
+	public DataSource dataSource() {
+		BasicDataSource retVal = new BasicDataSource();
+		retVal.setDriver(new org.apache.derby.jdbc.EmbeddedDriver());
+		retVal.setUrl("jdbc:derby:memory:hapi_benchmarks;create=true");
+		retVal.setUsername("");
+		retVal.setPassword("");
+		retVal.setMaxTotal(10);
+		return retVal;
+	}
+
+	@Override
+	@Bean()
+	public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+		LocalContainerEntityManagerFactoryBean retVal = super.entityManagerFactory();
+		retVal.setPersistenceUnitName("PU_HapiFhirJpaR4");
+		retVal.setDataSource(dataSource());
+		retVal.setJpaProperties(jpaProperties());
+		return retVal;
+	}
+
+	private Properties jpaProperties() {
+		Properties extraProperties = new Properties();
+		extraProperties.put("hibernate.format_sql", "false");
+		extraProperties.put("hibernate.show_sql", "false");
+		extraProperties.put("hibernate.hbm2ddl.auto", "update");
+		extraProperties.put("hibernate.dialect", "ca.uhn.fhir.jpa.util.DerbyTenSevenHapiFhirDialect");
+		extraProperties.put("hibernate.search.model_mapping", LuceneSearchMappingFactory.class.getName());
+		extraProperties.put("hibernate.search.default.directory_provider", "ram");
+		extraProperties.put("hibernate.search.lucene_version", "LUCENE_CURRENT");
+		extraProperties.put("hibernate.search.autoregister_listeners", "true");
+		extraProperties.put("hibernate.criteria.literal_handling_mode", LiteralHandlingMode.BIND);
+		return extraProperties;
+	}
+
+	@Bean()
+	public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+		JpaTransactionManager retVal = new JpaTransactionManager();
+		retVal.setEntityManagerFactory(entityManagerFactory);
+		return retVal;
+	}
+
+}
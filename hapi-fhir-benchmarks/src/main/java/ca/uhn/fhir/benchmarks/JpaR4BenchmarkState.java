@@ -0,0 +1,58 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Starts an R4 JPA server (see {@link BenchmarkR4Config}) once per benchmark
+ * trial. Benchmarks which need the JPA server take this state as a parameter.
+ */
+@State(Scope.Benchmark)
+public class JpaR4BenchmarkState {
+
+	private AnnotationConfigApplicationContext myAppCtx;
+
+	@Setup(Level.Trial)
+	public void start() {
+		myAppCtx = new AnnotationConfigApplicationContext(BenchmarkR4Config.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		myAppCtx.close();
+	}
+
+	public <T> T getBean(Class<T> theType) {
+		return myAppCtx.getBean(theType);
+	}
+
+	public IFhirResourceDao<?> getDao(String theBeanName) {
+		return myAppCtx.getBean(theBeanName, IFhirResourceDao.class);
+	}
+
+}
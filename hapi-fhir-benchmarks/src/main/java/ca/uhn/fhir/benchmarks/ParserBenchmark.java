@@ -0,0 +1,84 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and parsing of a small resource and a large transaction
+ * Bundle using the JSON and XML parsers. The <code>JSON_TOKEN_STREAM</code>
+ * mode parses JSON using {@link ca.uhn.fhir.context.ParserOptions#setParseJsonUsingTokenStream(boolean)}.
+ * <p>
+ * Run with <code>-prof gc</code> to compare the allocation rate of the
+ * different parse modes.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({"JSON", "JSON_TOKEN_STREAM", "XML"})
+	public String myMode;
+
+	@Param({"1", "1000"})
+	public int myBundleSize;
+
+	private IBaseResource myResource;
+	private String myEncoded;
+	private FhirContext myCtx;
+
+	@Setup
+	public void setup() {
+		myCtx = FhirContext.forR4();
+		myCtx.getParserOptions().setParseJsonUsingTokenStream("JSON_TOKEN_STREAM".equals(myMode));
+
+		if (myBundleSize == 1) {
+			myResource = BenchmarkData.createPatient(1);
+		} else {
+			myResource = BenchmarkData.createTransactionBundle(myBundleSize);
+		}
+		myEncoded = newParser().encodeResourceToString(myResource);
+	}
+
+	private IParser newParser() {
+		return "XML".equals(myMode) ? myCtx.newXmlParser() : myCtx.newJsonParser();
+	}
+
+	@Benchmark
+	public String encode() {
+		return newParser().encodeResourceToString(myResource);
+	}
+
+	@Benchmark
+	public IBaseResource parse() {
+		return newParser().parseResource(myEncoded);
+	}
+
+}
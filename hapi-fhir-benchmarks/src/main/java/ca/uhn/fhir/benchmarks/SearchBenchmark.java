@@ -0,0 +1,92 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures synchronous searches (query generation, execution and resource
+ * loading) against an in-memory Derby database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+	private static final int PATIENT_COUNT = 100;
+	private static final int OBSERVATIONS_PER_PATIENT = 20;
+
+	private IFhirResourceDao<Patient> myPatientDao;
+	private IFhirResourceDao<Observation> myObservationDao;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setup(JpaR4BenchmarkState theJpa) {
+		myPatientDao = (IFhirResourceDao<Patient>) theJpa.getDao("myPatientDaoR4");
+		myObservationDao = (IFhirResourceDao<Observation>) theJpa.getDao("myObservationDaoR4");
+
+		int obsIndex = 0;
+		for (int i = 0; i < PATIENT_COUNT; i++) {
+			Patient patient = BenchmarkData.createPatient(i);
+			myPatientDao.update(patient);
+			for (int j = 0; j < OBSERVATIONS_PER_PATIENT; j++) {
+				myObservationDao.update(BenchmarkData.createObservation(obsIndex++, patient.getIdElement().toUnqualifiedVersionless().getValue()));
+			}
+		}
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchPatientByFamily() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Patient.SP_FAMILY, new StringParam("Family5"));
+		return load(myPatientDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchObservationBySubjectAndCode() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient/P5"));
+		map.add(Observation.SP_CODE, new TokenParam("http://loinc.org", "29463-7"));
+		return load(myObservationDao.search(map));
+	}
+
+	private static List<IBaseResource> load(IBundleProvider theResults) {
+		return theResults.getResources(0, 50);
+	}
+
+}
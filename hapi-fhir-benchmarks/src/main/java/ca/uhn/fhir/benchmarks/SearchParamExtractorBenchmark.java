@@ -0,0 +1,78 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.r4.SearchParamExtractorR4;
+import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures search parameter extraction, which happens for every resource
+ * version stored by the JPA server
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchParamExtractorBenchmark {
+
+	private SearchParamExtractorR4 myExtractor;
+	private Patient myPatient;
+	private Observation myObservation;
+
+	@Setup
+	public void setup(JpaR4BenchmarkState theJpa) {
+		myExtractor = theJpa.getBean(SearchParamExtractorR4.class);
+		myPatient = BenchmarkData.createPatient(1);
+		myObservation = BenchmarkData.createObservation(1, "Patient/P1");
+	}
+
+	@Benchmark
+	public Set<ResourceIndexedSearchParamString> extractPatientStrings() {
+		return myExtractor.extractSearchParamStrings(new ResourceTable(), myPatient);
+	}
+
+	@Benchmark
+	public Set<BaseResourceIndexedSearchParam> extractPatientTokens() {
+		return myExtractor.extractSearchParamTokens(new ResourceTable(), myPatient);
+	}
+
+	@Benchmark
+	public Set<ResourceIndexedSearchParamDate> extractObservationDates() {
+		return myExtractor.extractSearchParamDates(new ResourceTable(), myObservation);
+	}
+
+	@Benchmark
+	public Set<BaseResourceIndexedSearchParam> extractObservationTokens() {
+		return myExtractor.extractSearchParamTokens(new ResourceTable(), myObservation);
+	}
+
+}
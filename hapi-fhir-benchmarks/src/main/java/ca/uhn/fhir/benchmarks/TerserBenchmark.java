@@ -0,0 +1,68 @@
+package ca.uhn.fhir.benchmarks;
+
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FhirTerser#getAllPopulatedChildElementsOfType(org.hl7.fhir.instance.model.api.IBaseResource, Class)},
+ * which the JPA server calls for every resource it stores (e.g. to find references and extensions)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerserBenchmark {
+
+	@Param({"1", "1000"})
+	public int myBundleSize;
+
+	private FhirTerser myTerser;
+	private Bundle myBundle;
+
+	@Setup
+	public void setup() {
+		myTerser = FhirContext.forR4().newTerser();
+		myBundle = BenchmarkData.createTransactionBundle(myBundleSize);
+	}
+
+	@Benchmark
+	public List<IBaseReference> getAllReferences() {
+		return myTerser.getAllPopulatedChildElementsOfType(myBundle, IBaseReference.class);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Benchmark
+	public List<IPrimitiveType> getAllPrimitives() {
+		return myTerser.getAllPopulatedChildElementsOfType(myBundle, IPrimitiveType.class);
+	}
+
+}
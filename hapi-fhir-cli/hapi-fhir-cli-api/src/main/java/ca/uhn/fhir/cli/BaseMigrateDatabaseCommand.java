@@ -13,6 +13,8 @@ import java.util.stream.Collectors;
 
 public abstract class BaseMigrateDatabaseCommand<T extends Enum> extends BaseCommand {
 
+	private int myThreadCount = 1;
+
 	private static final String MIGRATE_DATABASE = "migrate-database";
 
 	@Override
@@ -20,6 +22,13 @@ public abstract class BaseMigrateDatabaseCommand<T extends Enum> extends BaseCom
 		return "This command migrates a HAPI FHIR JPA database from one version of HAPI FHIR to a newer version";
 	}
 
+	/**
+	 * Returns the number of threads requested for long running data migrations
+	 */
+	protected int getThreadCount() {
+		return myThreadCount;
+	}
+
 	protected abstract List<T> provideAllowedVersions();
 
 	protected abstract Class<T> provideVersionEnumType();
@@ -48,6 +57,7 @@ public abstract class BaseMigrateDatabaseCommand<T extends Enum> extends BaseCom
 		addRequiredOption(retVal, "f", "from", "Version", "The database schema version to migrate FROM");
 		addRequiredOption(retVal, "t", "to", "Version", "The database schema version to migrate TO");
 		addRequiredOption(retVal, "d", "driver", "Driver", "The database driver to use (Options are " + driverOptions() + ")");
+		addOptionalOption(retVal, "x", "threads", "Count", "The number of threads (and database connections) to use for long running data migrations such as calculating hashes (default is 1)");
 
 		return retVal;
 	}
@@ -77,6 +87,11 @@ public abstract class BaseMigrateDatabaseCommand<T extends Enum> extends BaseCom
 
 		boolean dryRun = theCommandLine.hasOption("r");
 
+		Integer threadCount = getAndParsePositiveIntegerParam(theCommandLine, "x");
+		if (threadCount != null) {
+			myThreadCount = threadCount;
+		}
+
 		Migrator migrator = new Migrator();
 		migrator.setConnectionUrl(url);
 		migrator.setDriverType(driverType);
@@ -2,6 +2,7 @@ package ca.uhn.fhir.cli;
 
 import ca.uhn.fhir.jpa.migrate.Migrator;
 import ca.uhn.fhir.jpa.migrate.taskdef.BaseTask;
+import ca.uhn.fhir.jpa.migrate.taskdef.CalculateHashesTask;
 import ca.uhn.fhir.jpa.migrate.tasks.HapiFhirJpaMigrationTasks;
 import ca.uhn.fhir.util.VersionEnum;
 
@@ -23,6 +24,11 @@ public class HapiMigrateDatabaseCommand extends BaseMigrateDatabaseCommand<Versi
 	@Override
 	protected void addTasks(Migrator theMigrator, VersionEnum theFrom, VersionEnum theTo) {
 		List<BaseTask<?>> tasks = new HapiFhirJpaMigrationTasks().getTasks(theFrom, theTo);
-		tasks.forEach(theMigrator::addTask);
+		for (BaseTask<?> next : tasks) {
+			if (next instanceof CalculateHashesTask) {
+				((CalculateHashesTask) next).setThreadCount(getThreadCount());
+			}
+			theMigrator.addTask(next);
+		}
 	}
 }
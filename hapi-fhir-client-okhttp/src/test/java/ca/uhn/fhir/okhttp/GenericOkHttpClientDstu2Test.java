@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -1119,6 +1121,57 @@ public class GenericOkHttpClientDstu2Test {
 		assertEquals("http://localhost:" + ourPort + "/fhir/prev", ourRequestUri);
 	}
 
+	@Test
+	public void testReadAsync() throws Exception {
+		Patient patient = new Patient();
+		patient.addName().addFamily("FAM");
+
+		ourResponseContentType = Constants.CT_FHIR_XML + "; charset=UTF-8";
+		ourResponseBody = ourCtx.newXmlParser().encodeResourceToString(patient);
+
+		ourCtx.getRestfulClientFactory().setMaxConcurrentAsyncRequestsPerServer(1);
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/fhir");
+
+		List<CompletableFuture<Patient>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(client.read().resource(Patient.class).withId("123").executeAsync());
+		}
+
+		for (CompletableFuture<Patient> next : futures) {
+			assertEquals("FAM", next.get(10, TimeUnit.SECONDS).getName().get(0).getFamily().get(0).getValue());
+		}
+		assertEquals(3, ourRequestUriAll.size());
+		assertEquals("http://localhost:" + ourPort + "/fhir/Patient/123", ourRequestUriAll.get(0));
+	}
+
+	@Test
+	public void testReadAsyncWithServerValidationOnce() throws Exception {
+		final IParser p = ourCtx.newXmlParser();
+
+		final Conformance conf = new Conformance();
+		conf.setCopyright("COPY");
+
+		final Patient patient = new Patient();
+		patient.addName().addFamily("FAMILY");
+
+		ourResponseContentType = Constants.CT_FHIR_XML + "; charset=UTF-8";
+		ourResponseBodies = new String[] { p.encodeResourceToString(conf), p.encodeResourceToString(patient), p.encodeResourceToString(patient) };
+
+		ourCtx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.ONCE);
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/fhir");
+
+		Patient resp = client.read().resource(Patient.class).withId("123").executeAsync().get(10, TimeUnit.SECONDS);
+		assertEquals("FAMILY", resp.getName().get(0).getFamily().get(0).getValue());
+		assertEquals("http://localhost:" + ourPort + "/fhir/metadata", ourRequestUriAll.get(0));
+		assertEquals("http://localhost:" + ourPort + "/fhir/Patient/123", ourRequestUriAll.get(1));
+
+		// The server base has been validated, so it is not checked again
+		resp = client.read().resource(Patient.class).withId("123").executeAsync().get(10, TimeUnit.SECONDS);
+		assertEquals("FAMILY", resp.getName().get(0).getFamily().get(0).getValue());
+		assertEquals(3, ourRequestUriAll.size());
+		assertEquals("http://localhost:" + ourPort + "/fhir/Patient/123", ourRequestUriAll.get(2));
+	}
+
 	@Test
 	public void testReadByUri() throws Exception {
 		Patient patient = new Patient();
@@ -0,0 +1,118 @@
+package ca.uhn.fhir.rest.client.impl;
+
+/*
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous requests in progress against a single server. Requests
+ * beyond the limit are queued, without blocking the submitting thread, and are started as
+ * earlier requests complete.
+ */
+class AsyncRequestLimiter {
+
+	private final Queue<Runnable> myQueue = new ArrayDeque<>();
+	private int myActiveCount;
+	private boolean myStartingQueuedRequests;
+	private volatile int myMaxConcurrent;
+
+	AsyncRequestLimiter(int theMaxConcurrent) {
+		myMaxConcurrent = theMaxConcurrent;
+	}
+
+	synchronized int getActiveCount() {
+		return myActiveCount;
+	}
+
+	synchronized int getQueuedCount() {
+		return myQueue.size();
+	}
+
+	void setMaxConcurrent(int theMaxConcurrent) {
+		myMaxConcurrent = theMaxConcurrent;
+		startQueuedRequests();
+	}
+
+	/**
+	 * Starts the given request now if there is capacity, or when capacity becomes available
+	 */
+	<T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> theRequest) {
+		CompletableFuture<T> retVal = new CompletableFuture<>();
+		Runnable start = () -> {
+			CompletableFuture<T> request;
+			try {
+				request = theRequest.get();
+			} catch (Throwable t) {
+				request = new CompletableFuture<>();
+				request.completeExceptionally(t);
+			}
+			request.whenComplete((theResult, theFailure) -> {
+				synchronized (AsyncRequestLimiter.this) {
+					myActiveCount--;
+				}
+				startQueuedRequests();
+				if (theFailure != null) {
+					retVal.completeExceptionally(theFailure);
+				} else {
+					retVal.complete(theResult);
+				}
+			});
+		};
+
+		synchronized (this) {
+			myQueue.add(start);
+		}
+		startQueuedRequests();
+		return retVal;
+	}
+
+	/**
+	 * Starts queued requests for as long as there is capacity. Only one thread does this at a
+	 * time: a request which completes while queued requests are being started (including one
+	 * which completes immediately, on the same thread) leaves it to the loop already running
+	 * instead of starting the next request from within its own completion.
+	 */
+	private void startQueuedRequests() {
+		synchronized (this) {
+			if (myStartingQueuedRequests) {
+				return;
+			}
+			myStartingQueuedRequests = true;
+		}
+
+		while (true) {
+			Runnable next;
+			synchronized (this) {
+				if (myActiveCount >= myMaxConcurrent || myQueue.isEmpty()) {
+					myStartingQueuedRequests = false;
+					return;
+				}
+				next = myQueue.poll();
+				myActiveCount++;
+			}
+			next.run();
+		}
+	}
+
+}
@@ -33,6 +33,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import ca.uhn.fhir.rest.api.CacheControlDirective;
 import ca.uhn.fhir.util.XmlDetectionUtil;
@@ -206,178 +208,242 @@ public abstract class BaseClient implements IRestfulClient {
 	<T> T invokeClient(FhirContext theContext, IClientResponseHandler<T> binding, BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint,
 							 boolean theLogRequestAndResponse, SummaryEnum theSummaryMode, Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective) {
 
-		if (!myDontValidateConformance) {
-			myFactory.validateServerBaseIfConfiguredToDoSo(myUrlBase, myClient, this);
-		}
+		validateServerBaseIfConfiguredToDoSo();
 
 		// TODO: handle non 2xx status codes by throwing the correct exception,
 		// and ensure it's passed upwards
 		IHttpRequest httpRequest = null;
 		IHttpResponse response = null;
 		try {
-			Map<String, List<String>> params = createExtraParams();
-
-			if (clientInvocation instanceof HttpGetClientInvocation) {
-				if (theEncoding == EncodingEnum.XML) {
-					params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
-				} else if (theEncoding == EncodingEnum.JSON) {
-					params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
-				}
-			}
+			httpRequest = createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective);
 
-			if (theSummaryMode != null) {
-				params.put(Constants.PARAM_SUMMARY, Collections.singletonList(theSummaryMode.getCode()));
-			} else if (mySummary != null) {
-				params.put(Constants.PARAM_SUMMARY, Collections.singletonList(mySummary.getCode()));
-			}
+			response = httpRequest.execute();
 
-			if (thePrettyPrint == Boolean.TRUE) {
-				params.put(Constants.PARAM_PRETTY, Collections.singletonList(Constants.PARAM_PRETTY_VALUE_TRUE));
+			return handleResponse(theContext, binding, response, theLogRequestAndResponse);
+		} catch (Exception e) {
+			throw translateClientException(httpRequest, e);
+		} finally {
+			if (response != null) {
+				response.close();
 			}
+		}
+	}
 
-			if (theSubsetElements != null && theSubsetElements.isEmpty() == false) {
-				params.put(Constants.PARAM_ELEMENTS, Collections.singletonList(StringUtils.join(theSubsetElements, ',')));
-			}
+	/**
+	 * Performs the same work as {@link #invokeClient(FhirContext, IClientResponseHandler, BaseHttpClientInvocation, EncodingEnum, Boolean, boolean, SummaryEnum, Set, CacheControlDirective)}
+	 * but the HTTP exchange itself does not block the calling thread. The request is built (and any
+	 * conformance check is made) on the calling thread, and the response is handled on the thread
+	 * which completes the HTTP exchange.
+	 */
+	<T> CompletableFuture<T> invokeClientAsync(FhirContext theContext, IClientResponseHandler<T> binding, BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint,
+																		boolean theLogRequestAndResponse, SummaryEnum theSummaryMode, Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective) {
 
-			EncodingEnum encoding = getEncoding();
-			if (theEncoding != null) {
-				encoding = theEncoding;
-			}
+		validateServerBaseIfConfiguredToDoSo();
 
-			httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding, thePrettyPrint);
+		IHttpRequest httpRequest;
+		try {
+			httpRequest = createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective);
+		} catch (Exception e) {
+			throw translateClientException(null, e);
+		}
 
-			if (theCacheControlDirective != null) {
-				StringBuilder b = new StringBuilder();
-				addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_CACHE, theCacheControlDirective.isNoCache());
-				addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_STORE, theCacheControlDirective.isNoStore());
-				if (theCacheControlDirective.getMaxResults() != null) {
-					addToCacheControlHeader(b, Constants.CACHE_CONTROL_MAX_RESULTS+"="+ Integer.toString(theCacheControlDirective.getMaxResults().intValue()), true);
+		AsyncRequestLimiter limiter = myFactory.getAsyncRequestLimiter(myUrlBase);
+		CompletableFuture<IHttpResponse> responseFuture = limiter.submit(() -> httpRequest.executeAsync(myFactory.getAsyncExecutor()));
+		return responseFuture.handle((response, failure) -> {
+			try {
+				if (failure != null) {
+					Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw (Exception) cause;
 				}
-				if (b.length() > 0) {
-					httpRequest.addHeader(Constants.HEADER_CACHE_CONTROL, b.toString());
+				return handleResponse(theContext, binding, response, theLogRequestAndResponse);
+			} catch (Exception e) {
+				throw translateClientException(httpRequest, e);
+			} finally {
+				if (response != null) {
+					response.close();
 				}
 			}
+		});
+	}
 
-			if (theLogRequestAndResponse) {
-				ourLog.info("Client invoking: {}", httpRequest);
-				String body = httpRequest.getRequestBodyFromStream();
-				if (body != null) {
-					ourLog.info("Client request body: {}", body);
-				}
-			}
+	private void validateServerBaseIfConfiguredToDoSo() {
+		if (!myDontValidateConformance) {
+			myFactory.validateServerBaseIfConfiguredToDoSo(myUrlBase, myClient, this);
+		}
+	}
+
+	private IHttpRequest createHttpRequest(BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint, boolean theLogRequestAndResponse, SummaryEnum theSummaryMode,
+													  Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective) throws IOException {
+		Map<String, List<String>> params = createExtraParams();
 
-			for (IClientInterceptor nextInterceptor : myInterceptors) {
-				nextInterceptor.interceptRequest(httpRequest);
+		if (clientInvocation instanceof HttpGetClientInvocation) {
+			if (theEncoding == EncodingEnum.XML) {
+				params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
+			} else if (theEncoding == EncodingEnum.JSON) {
+				params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
 			}
+		}
 
-			response = httpRequest.execute();
+		if (theSummaryMode != null) {
+			params.put(Constants.PARAM_SUMMARY, Collections.singletonList(theSummaryMode.getCode()));
+		} else if (mySummary != null) {
+			params.put(Constants.PARAM_SUMMARY, Collections.singletonList(mySummary.getCode()));
+		}
 
-			for (IClientInterceptor nextInterceptor : myInterceptors) {
-				nextInterceptor.interceptResponse(response);
-			}
+		if (thePrettyPrint == Boolean.TRUE) {
+			params.put(Constants.PARAM_PRETTY, Collections.singletonList(Constants.PARAM_PRETTY_VALUE_TRUE));
+		}
 
-			String mimeType;
-			if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatus()) {
-				mimeType = null;
-			} else {
-				mimeType = response.getMimeType();
+		if (theSubsetElements != null && theSubsetElements.isEmpty() == false) {
+			params.put(Constants.PARAM_ELEMENTS, Collections.singletonList(StringUtils.join(theSubsetElements, ',')));
+		}
+
+		EncodingEnum encoding = getEncoding();
+		if (theEncoding != null) {
+			encoding = theEncoding;
+		}
+
+		IHttpRequest httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding, thePrettyPrint);
+
+		if (theCacheControlDirective != null) {
+			StringBuilder b = new StringBuilder();
+			addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_CACHE, theCacheControlDirective.isNoCache());
+			addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_STORE, theCacheControlDirective.isNoStore());
+			if (theCacheControlDirective.getMaxResults() != null) {
+				addToCacheControlHeader(b, Constants.CACHE_CONTROL_MAX_RESULTS+"="+ Integer.toString(theCacheControlDirective.getMaxResults().intValue()), true);
+			}
+			if (b.length() > 0) {
+				httpRequest.addHeader(Constants.HEADER_CACHE_CONTROL, b.toString());
 			}
+		}
 
-			Map<String, List<String>> headers = response.getAllHeaders();
+		if (theLogRequestAndResponse) {
+			ourLog.info("Client invoking: {}", httpRequest);
+			String body = httpRequest.getRequestBodyFromStream();
+			if (body != null) {
+				ourLog.info("Client request body: {}", body);
+			}
+		}
 
-			if (response.getStatus() < 200 || response.getStatus() > 299) {
-				String body = null;
-				Reader reader = null;
-				try {
-					reader = response.createReader();
-					body = IOUtils.toString(reader);
-				} catch (Exception e) {
-					ourLog.debug("Failed to read input stream", e);
-				} finally {
-					IOUtils.closeQuietly(reader);
-				}
+		for (IClientInterceptor nextInterceptor : myInterceptors) {
+			nextInterceptor.interceptRequest(httpRequest);
+		}
 
-				String message = "HTTP " + response.getStatus() + " " + response.getStatusInfo();
-				IBaseOperationOutcome oo = null;
-				if (Constants.CT_TEXT.equals(mimeType)) {
-					message = message + ": " + body;
-				} else {
-					EncodingEnum enc = EncodingEnum.forContentType(mimeType);
-					if (enc != null) {
-						IParser p = enc.newParser(theContext);
-						try {
-							// TODO: handle if something other than OO comes back
-							oo = (IBaseOperationOutcome) p.parseResource(body);
-							String details = OperationOutcomeUtil.getFirstIssueDetails(getFhirContext(), oo);
-							if (isNotBlank(details)) {
-								message = message + ": " + details;
-							}
-						} catch (Exception e) {
-							ourLog.debug("Failed to process OperationOutcome response");
-						}
-					}
-				}
+		return httpRequest;
+	}
 
-				keepResponseAndLogIt(theLogRequestAndResponse, response, body);
+	@SuppressWarnings("unchecked")
+	private <T> T handleResponse(FhirContext theContext, IClientResponseHandler<T> binding, IHttpResponse response, boolean theLogRequestAndResponse) throws IOException {
+		for (IClientInterceptor nextInterceptor : myInterceptors) {
+			nextInterceptor.interceptResponse(response);
+		}
 
-				BaseServerResponseException exception = BaseServerResponseException.newInstance(response.getStatus(), message);
-				exception.setOperationOutcome(oo);
+		String mimeType;
+		if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatus()) {
+			mimeType = null;
+		} else {
+			mimeType = response.getMimeType();
+		}
 
-				if (body != null) {
-					exception.setResponseBody(body);
-				}
+		Map<String, List<String>> headers = response.getAllHeaders();
 
-				throw exception;
+		if (response.getStatus() < 200 || response.getStatus() > 299) {
+			String body = null;
+			Reader reader = null;
+			try {
+				reader = response.createReader();
+				body = IOUtils.toString(reader);
+			} catch (Exception e) {
+				ourLog.debug("Failed to read input stream", e);
+			} finally {
+				IOUtils.closeQuietly(reader);
 			}
-			if (binding instanceof IClientResponseHandlerHandlesBinary) {
-				IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
-				if (handlesBinary.isBinary()) {
-					InputStream reader = response.readEntity();
+
+			String message = "HTTP " + response.getStatus() + " " + response.getStatusInfo();
+			IBaseOperationOutcome oo = null;
+			if (Constants.CT_TEXT.equals(mimeType)) {
+				message = message + ": " + body;
+			} else {
+				EncodingEnum enc = EncodingEnum.forContentType(mimeType);
+				if (enc != null) {
+					IParser p = enc.newParser(theContext);
 					try {
-						return handlesBinary.invokeClient(mimeType, reader, response.getStatus(), headers);
-					} finally {
-						IOUtils.closeQuietly(reader);
+						// TODO: handle if something other than OO comes back
+						oo = (IBaseOperationOutcome) p.parseResource(body);
+						String details = OperationOutcomeUtil.getFirstIssueDetails(getFhirContext(), oo);
+						if (isNotBlank(details)) {
+							message = message + ": " + details;
+						}
+					} catch (Exception e) {
+						ourLog.debug("Failed to process OperationOutcome response");
 					}
 				}
 			}
 
-			Reader reader = response.createReader();
+			keepResponseAndLogIt(theLogRequestAndResponse, response, body);
+
+			BaseServerResponseException exception = BaseServerResponseException.newInstance(response.getStatus(), message);
+			exception.setOperationOutcome(oo);
 
-			if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
-				String responseString = IOUtils.toString(reader);
-				keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
-				reader = new StringReader(responseString);
+			if (body != null) {
+				exception.setResponseBody(body);
 			}
 
-			try {
-				return binding.invokeClient(mimeType, reader, response.getStatus(), headers);
-			} finally {
-				IOUtils.closeQuietly(reader);
+			throw exception;
+		}
+		if (binding instanceof IClientResponseHandlerHandlesBinary) {
+			IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
+			if (handlesBinary.isBinary()) {
+				InputStream reader = response.readEntity();
+				try {
+					return handlesBinary.invokeClient(mimeType, reader, response.getStatus(), headers);
+				} finally {
+					IOUtils.closeQuietly(reader);
+				}
 			}
+		}
+
+		Reader reader = response.createReader();
+
+		if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
+			String responseString = IOUtils.toString(reader);
+			keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
+			reader = new StringReader(responseString);
+		}
+
+		try {
+			return binding.invokeClient(mimeType, reader, response.getStatus(), headers);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
 
-		} catch (DataFormatException e) {
+	private RuntimeException translateClientException(IHttpRequest httpRequest, Exception e) {
+		if (e instanceof DataFormatException) {
 			String msg;
 			if (httpRequest != null) {
 				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
 			} else {
 				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", e.toString());
 			}
-			throw new FhirClientConnectionException(msg, e);
-		} catch (IllegalStateException e) {
-			throw new FhirClientConnectionException(e);
-		} catch (IOException e) {
+			return new FhirClientConnectionException(msg, e);
+		} else if (e instanceof IllegalStateException) {
+			return new FhirClientConnectionException(e);
+		} else if (e instanceof IOException) {
 			String msg;
-			msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
-			throw new FhirClientConnectionException(msg, e);
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			throw new FhirClientConnectionException(e);
-		} finally {
-			if (response != null) {
-				response.close();
+			if (httpRequest != null) {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
+			} else {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", e.toString());
 			}
+			return new FhirClientConnectionException(msg, e);
+		} else if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
 		}
+		return new FhirClientConnectionException(e);
 	}
 
 	private void addToCacheControlHeader(StringBuilder theBuilder, String theDirective, boolean theActive) {
@@ -55,6 +55,10 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -98,6 +102,11 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 	private <T extends IBaseResource> T doReadOrVRead(final Class<T> theType, IIdType theId, boolean theVRead, ICallable<T> theNotModifiedHandler, String theIfVersionMatches, Boolean thePrettyPrint,
 																	  SummaryEnum theSummary, EncodingEnum theEncoding, Set<String> theSubsetElements) {
+		return createReadOrVReadRequest(theType, theId, theVRead, theNotModifiedHandler, theIfVersionMatches, thePrettyPrint, theSummary, theEncoding, theSubsetElements).execute();
+	}
+
+	private <T extends IBaseResource> ClientRequest<T> createReadOrVReadRequest(final Class<T> theType, IIdType theId, boolean theVRead, ICallable<T> theNotModifiedHandler, String theIfVersionMatches, Boolean thePrettyPrint,
+																							  SummaryEnum theSummary, EncodingEnum theEncoding, Set<String> theSubsetElements) {
 		String resName = toResourceName(theType);
 		IIdType id = theId;
 		if (!id.hasBaseUrl()) {
@@ -129,15 +138,37 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		boolean allowHtmlResponse = (theSummary == SummaryEnum.TEXT) || (theSummary == null && getSummary() == SummaryEnum.TEXT);
 		ResourceResponseHandler<T> binding = new ResourceResponseHandler<T>(theType, (Class<? extends IBaseResource>) null, id, allowHtmlResponse);
 
-		if (theNotModifiedHandler == null) {
-			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null);
-		}
-		try {
-			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null);
-		} catch (NotModifiedException e) {
-			return theNotModifiedHandler.call();
+		ClientRequest<T> retVal = new ClientRequest<>(
+			() -> invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null),
+			() -> invokeClientAsync(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null));
+		if (theNotModifiedHandler != null) {
+			retVal = retVal.onNotModified(theNotModifiedHandler);
 		}
+		return retVal;
+
+	}
 
+	/**
+	 * If a representation of the resource was requested but the server did not return one, it is
+	 * fetched with a second request, chained onto the first so that neither blocks when the
+	 * operation is executed asynchronously
+	 */
+	private ClientRequest<MethodOutcome> fetchRepresentationIfMissing(ClientRequest<MethodOutcome> theRequest, PreferReturnEnum thePrefer) {
+		if (thePrefer != PreferReturnEnum.REPRESENTATION) {
+			return theRequest;
+		}
+		return theRequest.thenCompose(theOutcome -> {
+			IIdType id = theOutcome.getId();
+			if (theOutcome.getResource() != null || id == null || isBlank(id.getValue()) || !id.hasBaseUrl()) {
+				return ClientRequest.completed(theOutcome);
+			}
+			ourLog.info("Server did not return resource for Prefer-representation, going to fetch: {}", id.getValue());
+			Class<? extends IBaseResource> type = myContext.getResourceDefinition(id.getResourceType()).getImplementingClass();
+			return createReadOrVReadRequest(type, id, id.hasVersionIdPart(), null, null, null, null, null, null).thenApply(theResource -> {
+				theOutcome.setResource(theResource);
+				return theOutcome;
+			});
+		});
 	}
 
 	@Override
@@ -419,6 +450,27 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return (T) this;
 		}
 
+		/**
+		 * Builds the request made by this operation, including any processing of its response
+		 */
+		protected abstract ClientRequest<Y> buildRequest();
+
+		@Override
+		public Y execute() {
+			return buildRequest().execute();
+		}
+
+		@Override
+		public CompletableFuture<Y> executeAsync() {
+			try {
+				return buildRequest().executeAsync();
+			} catch (RuntimeException e) {
+				CompletableFuture<Y> retVal = new CompletableFuture<>();
+				retVal.completeExceptionally(e);
+				return retVal;
+			}
+		}
+
 		protected EncodingEnum getParamEncoding() {
 			return myParamEncoding;
 		}
@@ -438,13 +490,15 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return mySubsetElements;
 		}
 
-		protected <Z> Z invoke(Map<String, List<String>> theParams, IClientResponseHandler<Z> theHandler, BaseHttpClientInvocation theInvocation) {
+		protected <Z> ClientRequest<Z> newRequest(Map<String, List<String>> theParams, IClientResponseHandler<Z> theHandler, BaseHttpClientInvocation theInvocation) {
 			if (isKeepResponses()) {
 				myLastRequest = theInvocation.asHttpRequest(getServerBase(), theParams, getEncoding(), myPrettyPrint);
 			}
 
-			Z resp = invokeClient(myContext, theHandler, theInvocation, myParamEncoding, myPrettyPrint, myQueryLogRequestAndResponse || myLogRequestAndResponse, mySummaryMode, mySubsetElements, myCacheControlDirective);
-			return resp;
+			boolean logRequestAndResponse = myQueryLogRequestAndResponse || myLogRequestAndResponse;
+			return new ClientRequest<>(
+				() -> invokeClient(myContext, theHandler, theInvocation, myParamEncoding, myPrettyPrint, logRequestAndResponse, mySummaryMode, mySubsetElements, myCacheControlDirective),
+				() -> invokeClientAsync(myContext, theHandler, theInvocation, myParamEncoding, myPrettyPrint, logRequestAndResponse, mySummaryMode, mySubsetElements, myCacheControlDirective));
 		}
 
 		protected IBaseResource parseResourceBody(String theResourceBody) {
@@ -545,6 +599,68 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 	}
 
+	/**
+	 * A request built by one of the fluent operations, which can be executed either synchronously
+	 * or asynchronously. Processing of the response, including any further request which depends
+	 * on it, is chained onto the request so that it happens the same way in both cases.
+	 */
+	private static final class ClientRequest<Z> {
+
+		private final Supplier<Z> myExecute;
+		private final Supplier<CompletableFuture<Z>> myExecuteAsync;
+
+		ClientRequest(Supplier<Z> theExecute, Supplier<CompletableFuture<Z>> theExecuteAsync) {
+			myExecute = theExecute;
+			myExecuteAsync = theExecuteAsync;
+		}
+
+		Z execute() {
+			return myExecute.get();
+		}
+
+		CompletableFuture<Z> executeAsync() {
+			return myExecuteAsync.get();
+		}
+
+		<R> ClientRequest<R> thenApply(Function<? super Z, ? extends R> theFunction) {
+			return new ClientRequest<>(() -> theFunction.apply(execute()), () -> executeAsync().thenApply(theFunction));
+		}
+
+		<R> ClientRequest<R> thenCompose(Function<? super Z, ClientRequest<R>> theFunction) {
+			return new ClientRequest<>(() -> theFunction.apply(execute()).execute(), () -> executeAsync().thenCompose(t -> theFunction.apply(t).executeAsync()));
+		}
+
+		/**
+		 * Returns the value supplied by the given handler instead of failing if the server responds
+		 * with an HTTP 304 Not Modified
+		 */
+		ClientRequest<Z> onNotModified(ICallable<Z> theHandler) {
+			Supplier<Z> execute = () -> {
+				try {
+					return execute();
+				} catch (NotModifiedException e) {
+					return theHandler.call();
+				}
+			};
+			Supplier<CompletableFuture<Z>> executeAsync = () -> executeAsync().handle((theResult, theFailure) -> {
+				if (theFailure == null) {
+					return theResult;
+				}
+				Throwable cause = theFailure instanceof CompletionException && theFailure.getCause() != null ? theFailure.getCause() : theFailure;
+				if (cause instanceof NotModifiedException) {
+					return theHandler.call();
+				}
+				throw theFailure instanceof CompletionException ? (CompletionException) theFailure : new CompletionException(theFailure);
+			});
+			return new ClientRequest<>(execute, executeAsync);
+		}
+
+		static <T> ClientRequest<T> completed(T theValue) {
+			return new ClientRequest<>(() -> theValue, () -> CompletableFuture.completedFuture(theValue));
+		}
+
+	}
+
 	private class CreateInternal extends BaseSearch<ICreateTyped, ICreateWithQueryTyped, MethodOutcome> implements ICreate, ICreateTyped, ICreateWithQuery, ICreateWithQueryTyped {
 
 		private boolean myConditional;
@@ -566,7 +682,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 
 		@Override
-		public MethodOutcome execute() {
+		protected ClientRequest<MethodOutcome> buildRequest() {
 			if (myResource == null) {
 				myResource = parseResourceBody(myResourceBody);
 			}
@@ -587,10 +703,10 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 			addPreferHeader(myPrefer, invocation);
 
-			OutcomeResponseHandler binding = new OutcomeResponseHandler(myPrefer);
+			OutcomeResponseHandler binding = new OutcomeResponseHandler();
 
 			Map<String, List<String>> params = new HashMap<String, List<String>>();
-			return invoke(params, binding, invocation);
+			return fetchRepresentationIfMissing(newRequest(params, binding, invocation), myPrefer);
 
 		}
 
@@ -624,7 +740,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		private String mySearchUrl;
 
 		@Override
-		public IBaseOperationOutcome execute() {
+		protected ClientRequest<IBaseOperationOutcome> buildRequest() {
 			HttpDeleteClientInvocation invocation;
 			if (myId != null) {
 				invocation = DeleteMethodBinding.createDeleteInvocation(getFhirContext(), myId);
@@ -635,7 +751,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			}
 			OperationOutcomeResponseHandler binding = new OperationOutcomeResponseHandler();
 			Map<String, List<String>> params = new HashMap<String, List<String>>();
-			return invoke(params, binding, invocation);
+			return newRequest(params, binding, invocation);
 		}
 
 		@Override
@@ -706,11 +822,11 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		private RuntimeResourceDefinition myType;
 
 		@Override
-		public Object execute() {
+		protected ClientRequest buildRequest() {
 			ResourceResponseHandler binding = new ResourceResponseHandler(myType.getImplementingClass());
 			FhirContext fhirContext = getFhirContext();
 			HttpGetClientInvocation invocation = MethodUtil.createConformanceInvocation(fhirContext);
-			return super.invoke(null, binding, invocation);
+			return newRequest(null, binding, invocation);
 		}
 
 		@Override
@@ -737,13 +853,13 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 
 		@Override
-		public Object execute() {
+		protected ClientRequest buildRequest() {
 			IClientResponseHandler binding;
 			binding = new ResourceResponseHandler(myBundleType, getPreferResponseTypes());
 			HttpSimpleGetClientInvocation invocation = new HttpSimpleGetClientInvocation(myContext, myUrl);
 
 			Map<String, List<String>> params = null;
-			return invoke(params, binding, invocation);
+			return newRequest(params, binding, invocation);
 		}
 
 	}
@@ -780,7 +896,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 		@SuppressWarnings("unchecked")
 		@Override
-		public Object execute() {
+		protected ClientRequest buildRequest() {
 			String resourceName;
 			String id;
 			if (myType != null) {
@@ -799,7 +915,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			IClientResponseHandler handler;
 			handler = new ResourceResponseHandler(myReturnType, getPreferResponseTypes(myType));
 
-			return invoke(null, handler, invocation);
+			return newRequest(null, handler, invocation);
 		}
 
 		@Override
@@ -925,7 +1041,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 		@SuppressWarnings("unchecked")
 		@Override
-		public Object execute() {
+		protected ClientRequest buildRequest() {
 
 			BaseHttpClientInvocation invocation = null;
 
@@ -957,7 +1073,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 			IClientResponseHandler handler;
 			handler = new MetaParametersResponseHandler(myMetaType);
-			return invoke(null, handler, invocation);
+			return newRequest(null, handler, invocation);
 		}
 
 		@Override
@@ -1122,7 +1238,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 		@SuppressWarnings("unchecked")
 		@Override
-		public Object execute() {
+		protected ClientRequest buildRequest() {
 			if (myOperationName != null && myOperationName.equals(Constants.EXTOP_PROCESS_MESSAGE) && myMsgBundle != null) {
 				Map<String, List<String>> urlParams = new LinkedHashMap<String, List<String>>();
 				// Set Url parameter Async and Response-Url
@@ -1139,8 +1255,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 				ResourceResponseHandler handler = new ResourceResponseHandler();
 				handler.setPreferResponseTypes(getPreferResponseTypes(myType));
 
-				Object retVal = invoke(null, handler, invocation);
-				return retVal;
+				return newRequest(null, handler, invocation);
 			}
 
 			String resourceName;
@@ -1165,29 +1280,30 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			if (myReturnResourceType != null) {
 				ResourceResponseHandler handler;
 				handler = new ResourceResponseHandler(myReturnResourceType);
-				Object retVal = invoke(null, handler, invocation);
-				return retVal;
+				return newRequest(null, handler, invocation);
 			}
 			ResourceResponseHandler handler;
 			handler = new ResourceResponseHandler();
 			handler.setPreferResponseTypes(getPreferResponseTypes(myType));
 
-			Object retVal = invoke(null, handler, invocation);
-			if (myContext.getResourceDefinition((IBaseResource) retVal).getName().equals("Parameters")) {
-				return retVal;
-			}
-			RuntimeResourceDefinition def = myContext.getResourceDefinition("Parameters");
-			IBaseResource parameters = def.newInstance();
+			ClientRequest<IBaseResource> request = newRequest(null, handler, invocation);
+			return request.thenApply(retVal -> {
+				if (myContext.getResourceDefinition(retVal).getName().equals("Parameters")) {
+					return retVal;
+				}
+				RuntimeResourceDefinition def = myContext.getResourceDefinition("Parameters");
+				IBaseResource parameters = def.newInstance();
 
-			BaseRuntimeChildDefinition paramChild = def.getChildByName("parameter");
-			BaseRuntimeElementCompositeDefinition<?> paramChildElem = (BaseRuntimeElementCompositeDefinition<?>) paramChild.getChildByName("parameter");
-			IBase parameter = paramChildElem.newInstance();
-			paramChild.getMutator().addValue(parameters, parameter);
+				BaseRuntimeChildDefinition paramChild = def.getChildByName("parameter");
+				BaseRuntimeElementCompositeDefinition<?> paramChildElem = (BaseRuntimeElementCompositeDefinition<?>) paramChild.getChildByName("parameter");
+				IBase parameter = paramChildElem.newInstance();
+				paramChild.getMutator().addValue(parameters, parameter);
 
-			BaseRuntimeChildDefinition resourceElem = paramChildElem.getChildByName("resource");
-			resourceElem.getMutator().addValue(parameter, (IBase) retVal);
+				BaseRuntimeChildDefinition resourceElem = paramChildElem.getChildByName("resource");
+				resourceElem.getMutator().addValue(parameter, retVal);
 
-			return parameters;
+				return parameters;
+			});
 		}
 
 		@Override
@@ -1353,16 +1469,6 @@ public class GenericClient extends BaseClient implements IGenericClient {
 	}
 
 	private final class OutcomeResponseHandler implements IClientResponseHandler<MethodOutcome> {
-		private PreferReturnEnum myPrefer;
-
-		private OutcomeResponseHandler() {
-			super();
-		}
-
-		private OutcomeResponseHandler(PreferReturnEnum thePrefer) {
-			this();
-			myPrefer = thePrefer;
-		}
 
 		@Override
 		public MethodOutcome invokeClient(String theResponseMimeType, Reader theResponseReader, int theResponseStatusCode, Map<String, List<String>> theHeaders) throws BaseServerResponseException {
@@ -1370,17 +1476,6 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			if (theResponseStatusCode == Constants.STATUS_HTTP_201_CREATED) {
 				response.setCreated(true);
 			}
-
-			if (myPrefer == PreferReturnEnum.REPRESENTATION) {
-				if (response.getResource() == null) {
-					if (response.getId() != null && isNotBlank(response.getId().getValue()) && response.getId().hasBaseUrl()) {
-						ourLog.info("Server did not return resource for Prefer-representation, going to fetch: {}", response.getId().getValue());
-						IBaseResource resource = read().resource(response.getId().getResourceType()).withUrl(response.getId()).execute();
-						response.setResource(resource);
-					}
-				}
-			}
-
 			return response;
 		}
 	}
@@ -1418,7 +1513,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 
 		@Override
-		public MethodOutcome execute() {
+		protected ClientRequest<MethodOutcome> buildRequest() {
 
 			if (myPatchType == null) {
 				throw new InvalidRequestException("No patch type supplied, cannot invoke server");
@@ -1441,10 +1536,10 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 			addPreferHeader(myPrefer, invocation);
 
-			OutcomeResponseHandler binding = new OutcomeResponseHandler(myPrefer);
+			OutcomeResponseHandler binding = new OutcomeResponseHandler();
 
 			Map<String, List<String>> params = new HashMap<String, List<String>>();
-			return invoke(params, binding, invocation);
+			return fetchRepresentationIfMissing(newRequest(params, binding, invocation), myPrefer);
 
 		}
 
@@ -1506,11 +1601,11 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		private RuntimeResourceDefinition myType;
 
 		@Override
-		public Object execute() {// AAA
+		protected ClientRequest buildRequest() {
 			if (myId.hasVersionIdPart()) {
-				return doReadOrVRead(myType.getImplementingClass(), myId, true, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements());
+				return createReadOrVReadRequest(myType.getImplementingClass(), myId, true, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements());
 			}
-			return doReadOrVRead(myType.getImplementingClass(), myId, false, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements());
+			return createReadOrVReadRequest(myType.getImplementingClass(), myId, false, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements());
 		}
 
 		@Override
@@ -1708,7 +1803,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 
 		@Override
-		public OUTPUT execute() {
+		protected ClientRequest<OUTPUT> buildRequest() {
 
 			Map<String, List<String>> params = getParamMap();
 
@@ -1795,7 +1890,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 				invocation = SearchMethodBinding.createSearchInvocation(myContext, myResourceName, params, resourceId, myCompartmentName, mySearchStyle);
 			}
 
-			return (OUTPUT) invoke(params, binding, invocation);
+			return (ClientRequest) newRequest(params, binding, invocation);
 
 		}
 
@@ -1954,16 +2049,16 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 		@SuppressWarnings({"unchecked", "rawtypes"})
 		@Override
-		public T execute() {
+		protected ClientRequest<T> buildRequest() {
 			Map<String, List<String>> params = new HashMap<String, List<String>>();
 			if (myResources != null) {
 				ResourceListResponseHandler binding = new ResourceListResponseHandler();
 				BaseHttpClientInvocation invocation = TransactionMethodBinding.createTransactionInvocation(myResources, myContext);
-				return (T) invoke(params, binding, invocation);
+				return (ClientRequest) newRequest(params, binding, invocation);
 			} else if (myBaseBundle != null) {
 				ResourceResponseHandler binding = new ResourceResponseHandler(myBaseBundle.getClass(), getPreferResponseTypes());
 				BaseHttpClientInvocation invocation = TransactionMethodBinding.createTransactionInvocation(myBaseBundle, myContext);
-				return (T) invoke(params, binding, invocation);
+				return (ClientRequest) newRequest(params, binding, invocation);
 				// } else if (myRawBundle != null) {
 			} else {
 				StringResponseHandler binding = new StringResponseHandler();
@@ -1977,7 +2072,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 					}
 				}
 				BaseHttpClientInvocation invocation = TransactionMethodBinding.createTransactionInvocation(myRawBundle, myContext);
-				return (T) invoke(params, binding, invocation);
+				return (ClientRequest) newRequest(params, binding, invocation);
 			}
 		}
 
@@ -2028,7 +2123,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 
 		@Override
-		public MethodOutcome execute() {
+		protected ClientRequest<MethodOutcome> buildRequest() {
 			if (myResource == null) {
 				myResource = parseResourceBody(myResourceBody);
 			}
@@ -2056,10 +2151,10 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 			addPreferHeader(myPrefer, invocation);
 
-			OutcomeResponseHandler binding = new OutcomeResponseHandler(myPrefer);
+			OutcomeResponseHandler binding = new OutcomeResponseHandler();
 
 			Map<String, List<String>> params = new HashMap<String, List<String>>();
-			return invoke(params, binding, invocation);
+			return fetchRepresentationIfMissing(newRequest(params, binding, invocation), myPrefer);
 
 		}
 
@@ -2113,13 +2208,14 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		private IBaseResource myResource;
 
 		@Override
-		public MethodOutcome execute() {
+		protected ClientRequest<MethodOutcome> buildRequest() {
 			BaseHttpClientInvocation invocation = ValidateMethodBindingDstu2Plus.createValidateInvocation(myContext, myResource);
 			ResourceResponseHandler<BaseOperationOutcome> handler = new ResourceResponseHandler<BaseOperationOutcome>(null, null);
-			IBaseOperationOutcome outcome = invoke(null, handler, invocation);
-			MethodOutcome retVal = new MethodOutcome();
-			retVal.setOperationOutcome(outcome);
-			return retVal;
+			return newRequest(null, handler, invocation).thenApply(outcome -> {
+				MethodOutcome retVal = new MethodOutcome();
+				retVal.setOperationOutcome(outcome);
+				return retVal;
+			});
 		}
 
 		@Override
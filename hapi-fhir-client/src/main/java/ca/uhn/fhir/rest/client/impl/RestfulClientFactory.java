@@ -21,9 +21,14 @@ package ca.uhn.fhir.rest.client.impl;
  */
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
@@ -53,6 +58,10 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 	private String myProxyPassword;
 	private int myPoolMaxTotal = DEFAULT_POOL_MAX;
 	private int myPoolMaxPerRoute = DEFAULT_POOL_MAX_PER_ROUTE;
+	private int myMaxConcurrentAsyncRequestsPerServer = DEFAULT_MAX_CONCURRENT_ASYNC_REQUESTS_PER_SERVER;
+	private final ConcurrentHashMap<String, AsyncRequestLimiter> myServerBaseToAsyncRequestLimiter = new ConcurrentHashMap<>();
+	private Executor myAsyncExecutor;
+	private ExecutorService myDefaultAsyncExecutor;
 
 	/**
 	 * Constructor
@@ -120,6 +129,56 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 		return myPoolMaxPerRoute;
 	}
 
+	@Override
+	public int getMaxConcurrentAsyncRequestsPerServer() {
+		return myMaxConcurrentAsyncRequestsPerServer;
+	}
+
+	@Override
+	public void setMaxConcurrentAsyncRequestsPerServer(int theMaxConcurrentAsyncRequestsPerServer) {
+		Validate.isTrue(theMaxConcurrentAsyncRequestsPerServer > 0, "theMaxConcurrentAsyncRequestsPerServer must be greater than 0");
+		myMaxConcurrentAsyncRequestsPerServer = theMaxConcurrentAsyncRequestsPerServer;
+		for (AsyncRequestLimiter next : myServerBaseToAsyncRequestLimiter.values()) {
+			next.setMaxConcurrent(theMaxConcurrentAsyncRequestsPerServer);
+		}
+	}
+
+	AsyncRequestLimiter getAsyncRequestLimiter(String theServerBase) {
+		return myServerBaseToAsyncRequestLimiter.computeIfAbsent(theServerBase, t -> new AsyncRequestLimiter(myMaxConcurrentAsyncRequestsPerServer));
+	}
+
+	/**
+	 * Returns the executor used to run asynchronous requests when the HTTP transport
+	 * does not support non-blocking requests. Unless one has been provided using
+	 * {@link #setAsyncExecutor(Executor)}, a pool of daemon threads is created on first use.
+	 */
+	public synchronized Executor getAsyncExecutor() {
+		if (myAsyncExecutor == null) {
+			BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern("hapi-fhir-client-async-%d")
+				.daemon(true)
+				.build();
+			myDefaultAsyncExecutor = Executors.newCachedThreadPool(threadFactory);
+			myAsyncExecutor = myDefaultAsyncExecutor;
+		}
+		return myAsyncExecutor;
+	}
+
+	/**
+	 * Sets the executor used to run asynchronous requests when the HTTP transport
+	 * does not support non-blocking requests. Note that the number of requests running
+	 * at once against any single server is already limited by
+	 * {@link #setMaxConcurrentAsyncRequestsPerServer(int)}.
+	 */
+	public synchronized void setAsyncExecutor(Executor theAsyncExecutor) {
+		Validate.notNull(theAsyncExecutor, "theAsyncExecutor must not be null");
+		if (myDefaultAsyncExecutor != null) {
+			myDefaultAsyncExecutor.shutdown();
+			myDefaultAsyncExecutor = null;
+		}
+		myAsyncExecutor = theAsyncExecutor;
+	}
+
 	@SuppressWarnings("unchecked")
 	private <T extends IRestfulClient> T instantiateProxy(Class<T> theClientType, InvocationHandler theInvocationHandler) {
 		return (T) Proxy.newProxyInstance(theClientType.getClassLoader(), new Class[] { theClientType }, theInvocationHandler);
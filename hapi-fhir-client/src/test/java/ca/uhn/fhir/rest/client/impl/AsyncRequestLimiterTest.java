@@ -0,0 +1,86 @@
+package ca.uhn.fhir.rest.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncRequestLimiterTest {
+
+	@Test
+	public void testRequestsOverLimitAreQueued() {
+		AsyncRequestLimiter limiter = new AsyncRequestLimiter(2);
+
+		List<CompletableFuture<String>> requests = new ArrayList<>();
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			CompletableFuture<String> request = new CompletableFuture<>();
+			requests.add(request);
+			results.add(limiter.submit(() -> request));
+		}
+
+		assertEquals(2, limiter.getActiveCount());
+		assertEquals(1, limiter.getQueuedCount());
+
+		requests.get(0).complete("A");
+		assertEquals("A", results.get(0).join());
+		assertEquals(2, limiter.getActiveCount());
+		assertEquals(0, limiter.getQueuedCount());
+
+		requests.get(1).completeExceptionally(new IllegalStateException("B"));
+		assertTrue(results.get(1).isCompletedExceptionally());
+		assertEquals(1, limiter.getActiveCount());
+
+		assertFalse(results.get(2).isDone());
+		requests.get(2).complete("C");
+		assertEquals("C", results.get(2).join());
+		assertEquals(0, limiter.getActiveCount());
+	}
+
+	@Test
+	public void testIncreasingLimitStartsQueuedRequests() {
+		AsyncRequestLimiter limiter = new AsyncRequestLimiter(1);
+
+		limiter.submit(() -> new CompletableFuture<String>());
+		limiter.submit(() -> new CompletableFuture<String>());
+		assertEquals(1, limiter.getActiveCount());
+		assertEquals(1, limiter.getQueuedCount());
+
+		limiter.setMaxConcurrent(2);
+		assertEquals(2, limiter.getActiveCount());
+		assertEquals(0, limiter.getQueuedCount());
+	}
+
+	/**
+	 * Queued requests which complete immediately must not each start the next one from
+	 * within their own completion, or a long queue would overflow the stack
+	 */
+	@Test
+	public void testLongQueueOfImmediatelyCompletingRequests() {
+		AsyncRequestLimiter limiter = new AsyncRequestLimiter(1);
+
+		CompletableFuture<String> first = new CompletableFuture<>();
+		limiter.submit(() -> first);
+
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			String value = Integer.toString(i);
+			results.add(limiter.submit(() -> CompletableFuture.completedFuture(value)));
+		}
+		assertEquals(100000, limiter.getQueuedCount());
+
+		first.complete("first");
+
+		assertEquals(0, limiter.getQueuedCount());
+		assertEquals(0, limiter.getActiveCount());
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(Integer.toString(i), results.get(i).join());
+		}
+	}
+
+}
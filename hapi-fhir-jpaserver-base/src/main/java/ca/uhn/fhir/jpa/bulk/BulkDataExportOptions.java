@@ -0,0 +1,112 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+public class BulkDataExportOptions {
+
+	private ExportStyleEnum myExportStyle = ExportStyleEnum.SYSTEM;
+	private IIdType myGroupId;
+	private Set<String> myResourceTypes = new HashSet<>();
+	private Date mySince;
+
+	public ExportStyleEnum getExportStyle() {
+		return myExportStyle;
+	}
+
+	public BulkDataExportOptions setExportStyle(ExportStyleEnum theExportStyle) {
+		myExportStyle = theExportStyle;
+		return this;
+	}
+
+	/**
+	 * The Group whose members should be exported, when the export style
+	 * is {@link ExportStyleEnum#GROUP}
+	 */
+	public IIdType getGroupId() {
+		return myGroupId;
+	}
+
+	/**
+	 * The Group whose members should be exported, when the export style
+	 * is {@link ExportStyleEnum#GROUP}
+	 */
+	public BulkDataExportOptions setGroupId(IIdType theGroupId) {
+		myGroupId = theGroupId;
+		return this;
+	}
+
+	/**
+	 * The resource types to export. If empty, all resource types are exported.
+	 */
+	public Set<String> getResourceTypes() {
+		return myResourceTypes;
+	}
+
+	/**
+	 * The resource types to export. If empty, all resource types are exported.
+	 */
+	public BulkDataExportOptions setResourceTypes(Set<String> theResourceTypes) {
+		myResourceTypes = theResourceTypes;
+		return this;
+	}
+
+	/**
+	 * If set, only resources which have been updated at or after this time are exported
+	 */
+	public Date getSince() {
+		return mySince;
+	}
+
+	/**
+	 * If set, only resources which have been updated at or after this time are exported
+	 */
+	public BulkDataExportOptions setSince(Date theSince) {
+		mySince = theSince;
+		return this;
+	}
+
+	public enum ExportStyleEnum {
+
+		/**
+		 * All resources on the server
+		 */
+		SYSTEM,
+
+		/**
+		 * All Patient resources, and all resources which reference a Patient
+		 */
+		PATIENT,
+
+		/**
+		 * The Patient resources which are members of a Group, and all
+		 * resources which reference one of those Patients
+		 */
+		GROUP
+
+	}
+
+}
@@ -0,0 +1,489 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IForcedIdSvc;
+import ca.uhn.fhir.jpa.dao.data.IResourceLinkDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.NotImplementedOperationException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.StopWatch;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+
+/**
+ * Exports resources by scanning ranges of resource PIDs directly, instead of
+ * paging through search results. Each resource type is split into
+ * {@link DaoConfig#getBulkExportThreadCount()} ranges which are scanned
+ * concurrently, and the resources are written as NDJSON to an
+ * {@link IBulkDataExportSink}.
+ * <p>
+ * Jobs are held in memory, so the status of a job can only be polled on the
+ * server which started it, and is lost if the server is restarted. The output
+ * of a job is deleted from the sink when the job is discarded, including when
+ * the server is shut down.
+ * </p>
+ */
+public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
+
+	/**
+	 * The number of resources read from the database (and written to the output) at a time
+	 */
+	static final int EXPORT_BATCH_SIZE = 1000;
+	/**
+	 * Finished jobs (and their status and output) are discarded after this many hours
+	 * without being polled or downloaded
+	 */
+	private static final long JOB_RETENTION_HOURS = 24;
+	private static final String GROUP_MEMBER_PATH = "Group.member.entity";
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkDataExportSvcImpl.class);
+	/**
+	 * Group members are matched using this many PIDs per query, to keep the
+	 * number of bind parameters manageable for all databases
+	 */
+	private static final int PIDS_PER_QUERY = 500;
+	private static final String PATIENT = "Patient";
+	private final ThreadFactory myPartitionThreadFactory = new CustomizableThreadFactory("bulk_export_partition_");
+	@Autowired
+	private FhirContext myContext;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+	@Autowired
+	private IForcedIdSvc myForcedIdSvc;
+	private ThreadPoolExecutor myJobExecutor;
+	private Cache<String, BulkExportJob> myJobs;
+	@Autowired
+	private List<IFhirResourceDao<?>> myResourceDaos;
+	@Autowired
+	private IResourceLinkDao myResourceLinkDao;
+	@Autowired
+	private IResourceTableDao myResourceTableDao;
+	private Map<String, IFhirResourceDao<?>> myResourceTypeToDao;
+	@Autowired(required = false)
+	private IBulkDataExportSink mySink;
+	private volatile boolean myStopping;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	private TransactionTemplate myTxTemplate;
+
+	private List<String> determineResourceTypes(BulkDataExportOptions theOptions) {
+		Set<String> retVal = new TreeSet<>();
+		if (theOptions.getResourceTypes() == null || theOptions.getResourceTypes().isEmpty()) {
+			retVal.addAll(myResourceTypeToDao.keySet());
+		} else {
+			for (String next : theOptions.getResourceTypes()) {
+				if (!myResourceTypeToDao.containsKey(next)) {
+					throw new InvalidRequestException("Unknown or unsupported resource type for export: " + next);
+				}
+				retVal.add(next);
+			}
+		}
+		return new ArrayList<>(retVal);
+	}
+
+	private int exportBatch(String theResourceType, List<Long> thePids, OutputWriter theOutput) throws IOException {
+		if (thePids.isEmpty()) {
+			return 0;
+		}
+
+		IFhirResourceDao<?> dao = myResourceTypeToDao.get(theResourceType);
+		List<IBaseResource> resources = new ArrayList<>();
+		myTxTemplate.execute(t -> {
+			dao.newSearchBuilder().loadResourcesByPid(thePids, resources, new HashSet<>(), false, myEntityManager, myContext, dao);
+			return null;
+		});
+
+		IParser parser = myContext.newJsonParser();
+		StringBuilder b = new StringBuilder();
+		int retVal = 0;
+		for (IBaseResource next : resources) {
+			// Resources deleted since their PID was fetched are skipped
+			if (next != null) {
+				b.append(parser.encodeResourceToString(next));
+				b.append('\n');
+				retVal++;
+			}
+		}
+
+		theOutput.write(b.toString(), retVal);
+		return retVal;
+	}
+
+	private int exportResourceType(BulkExportJob theJob, String theResourceType, List<Long> theGroupMemberPids, ExecutorService theExecutor) throws Exception {
+		BulkDataExportOptions.ExportStyleEnum style = theJob.getOptions().getExportStyle();
+		Date since = defaultIfNull(theJob.getOptions().getSince(), new Date(0));
+		OutputWriter output = new OutputWriter(theJob, theResourceType);
+
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		if (theGroupMemberPids != null && PATIENT.equals(theResourceType)) {
+			for (List<Long> nextChunk : Lists.partition(theGroupMemberPids, PIDS_PER_QUERY)) {
+				tasks.add(() -> {
+					List<Long> pids = myTxTemplate.execute(t -> myResourceTableDao.findIdsInListForExport(nextChunk, since));
+					return exportBatch(theResourceType, pids, output);
+				});
+			}
+		} else {
+			Long low = myTxTemplate.execute(t -> myResourceTableDao.findLowestIdOfType(theResourceType));
+			Long high = myTxTemplate.execute(t -> myResourceTableDao.findHighestIdOfType(theResourceType));
+			if (low != null && high != null) {
+				int partitionCount = myDaoConfig.getBulkExportThreadCount();
+				long partitionSize = Math.max(1, (high - low) / partitionCount + 1);
+				for (long nextLow = low; nextLow <= high; nextLow += partitionSize) {
+					long nextHigh = Math.min(nextLow + partitionSize - 1, high);
+					tasks.add(new PartitionExportTask(theResourceType, style, since, theGroupMemberPids, nextLow, nextHigh, output));
+				}
+			}
+		}
+
+		int retVal = 0;
+		try {
+			for (Future<Integer> next : theExecutor.invokeAll(tasks)) {
+				try {
+					retVal += next.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw new InternalErrorException(e.getCause());
+				}
+			}
+		} finally {
+			output.close();
+		}
+
+		ourLog.debug("Bulk export job {} exported {} resources of type {}", theJob.getJobId(), retVal, theResourceType);
+		return retVal;
+	}
+
+	@Override
+	public BulkExportJob getJob(String theJobId) {
+		BulkExportJob retVal = myJobs.getIfPresent(theJobId);
+		if (retVal == null) {
+			throw new ResourceNotFoundException("Unknown bulk export job: " + theJobId);
+		}
+		return retVal;
+	}
+
+	private Long resolveGroupPid(IIdType theGroupId) {
+		if (theGroupId == null || !theGroupId.hasIdPart()) {
+			throw new InvalidRequestException("A Group ID must be supplied for a Group level export");
+		}
+
+		return myTxTemplate.execute(t -> {
+			Long pid = myForcedIdSvc.translateForcedIdToPid("Group", theGroupId.getIdPart());
+			Optional<ResourceTable> entity = myResourceTableDao.findById(pid);
+			if (!entity.isPresent() || !"Group".equals(entity.get().getResourceType()) || entity.get().getDeleted() != null) {
+				throw new ResourceNotFoundException(theGroupId);
+			}
+			return pid;
+		});
+	}
+
+	private void runJob(BulkExportJob theJob, List<String> theResourceTypes, Long theGroupPid) {
+		StopWatch sw = new StopWatch();
+		theJob.setTransactionTime(new Date());
+		theJob.setStatus(BulkExportJob.StatusEnum.BUILDING);
+		ourLog.info("Starting bulk export job {} for {} resource types", theJob.getJobId(), theResourceTypes.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(myDaoConfig.getBulkExportThreadCount(), myPartitionThreadFactory);
+		try {
+			List<Long> groupMemberPids = null;
+			if (theGroupPid != null) {
+				List<Long> members = myTxTemplate.execute(t -> myResourceLinkDao.findTargetPidsBySourcePidAndPath(theGroupPid, GROUP_MEMBER_PATH, PATIENT));
+				groupMemberPids = new ArrayList<>(new TreeSet<>(members));
+			}
+
+			int count = 0;
+			for (String nextResourceType : theResourceTypes) {
+				if (myStopping) {
+					throw new InternalErrorException("Server is shutting down");
+				}
+				count += exportResourceType(theJob, nextResourceType, groupMemberPids, executor);
+			}
+
+			theJob.setStatus(BulkExportJob.StatusEnum.COMPLETE);
+			ourLog.info("Bulk export job {} exported {} resources in {} ({} resources/sec)", theJob.getJobId(), count, sw, sw.formatThroughput(count, TimeUnit.SECONDS));
+		} catch (Exception e) {
+			ourLog.error("Bulk export job " + theJob.getJobId() + " failed", e);
+			theJob.setErrorMessage(e.getMessage());
+			theJob.setStatus(BulkExportJob.StatusEnum.ERROR);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// The job may have expired while it was running, in which case nothing will ever remove its output
+		if (!myJobs.asMap().containsKey(theJob.getJobId())) {
+			deleteOutput(theJob.getJobId());
+		}
+	}
+
+	private void deleteOutput(String theJobId) {
+		try {
+			mySink.deleteOutput(theJobId);
+			ourLog.info("Deleted the output of bulk export job {}", theJobId);
+		} catch (IOException e) {
+			ourLog.error("Failed to delete the output of bulk export job " + theJobId, e);
+		}
+	}
+
+	private void onJobRemoved(String theJobId, BulkExportJob theJob, RemovalCause theCause) {
+		// Jobs which are still running delete their own output when they finish
+		if (theJob != null && theJob.getStatus() != BulkExportJob.StatusEnum.SUBMITTED && theJob.getStatus() != BulkExportJob.StatusEnum.BUILDING) {
+			ourLog.debug("Bulk export job {} removed ({})", theJobId, theCause);
+			deleteOutput(theJobId);
+		}
+	}
+
+	@Override
+	public InputStream openOutput(String theJobId, String theResourceType) {
+		BulkExportJob job = getJob(theJobId);
+		if (job.getStatus() != BulkExportJob.StatusEnum.COMPLETE) {
+			throw new InvalidRequestException("Bulk export job " + theJobId + " is not complete");
+		}
+		if (job.getOutput(theResourceType) == null) {
+			throw new ResourceNotFoundException("Bulk export job " + theJobId + " has no output for resource type: " + theResourceType);
+		}
+
+		try {
+			return mySink.openInputStream(theJobId, theResourceType);
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to read the output of bulk export job " + theJobId, e);
+		}
+	}
+
+	/**
+	 * Expired jobs are only removed from the cache when it is next used, so this
+	 * makes sure that their output is deleted even if no further jobs are started
+	 */
+	@Scheduled(fixedDelay = DateUtils.MILLIS_PER_HOUR)
+	public void purgeExpiredJobs() {
+		myJobs.cleanUp();
+	}
+
+	/**
+	 * Sets the sink which job output is written to. This must be set (or an
+	 * {@link IBulkDataExportSink} bean must be available) in order for jobs to be
+	 * submitted. Exported output contains every matching resource on the server,
+	 * so it should be stored somewhere which only the server can read.
+	 */
+	public void setSink(IBulkDataExportSink theSink) {
+		Validate.notNull(theSink, "theSink must not be null");
+		mySink = theSink;
+	}
+
+	@PostConstruct
+	public void start() {
+		myStopping = false;
+		myTxTemplate = new TransactionTemplate(myTxManager);
+		myTxTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		myTxTemplate.setReadOnly(true);
+
+		myResourceTypeToDao = new HashMap<>();
+		for (IFhirResourceDao<?> next : myResourceDaos) {
+			myResourceTypeToDao.put(myContext.getResourceDefinition(next.getResourceType()).getName(), next);
+		}
+
+		myJobs = Caffeine
+			.newBuilder()
+			.expireAfterAccess(JOB_RETENTION_HOURS, TimeUnit.HOURS)
+			.executor(Runnable::run)
+			.removalListener(this::onJobRemoved)
+			.build();
+
+		myJobExecutor = new ThreadPoolExecutor(
+			1,
+			1,
+			60L,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new CustomizableThreadFactory("bulk_export_job_"));
+		myJobExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myStopping = true;
+		myJobExecutor.shutdownNow();
+
+		// Jobs can't be polled after a restart, so their output would never be removed
+		myJobs.invalidateAll();
+	}
+
+	@Override
+	public BulkExportJob submitJob(BulkDataExportOptions theOptions) {
+		Validate.notNull(theOptions, "theOptions must not be null");
+		Validate.notNull(theOptions.getExportStyle(), "theOptions.getExportStyle() must not be null");
+		if (mySink == null) {
+			throw new NotImplementedOperationException("Bulk data export is not enabled on this server");
+		}
+
+		List<String> resourceTypes = determineResourceTypes(theOptions);
+		Long groupPid = null;
+		if (theOptions.getExportStyle() == BulkDataExportOptions.ExportStyleEnum.GROUP) {
+			groupPid = resolveGroupPid(theOptions.getGroupId());
+		}
+
+		BulkExportJob retVal = new BulkExportJob(UUID.randomUUID().toString(), theOptions);
+		myJobs.put(retVal.getJobId(), retVal);
+
+		Long groupPidFinal = groupPid;
+		myJobExecutor.submit(() -> runJob(retVal, resourceTypes, groupPidFinal));
+
+		ourLog.info("Submitted {} bulk export job {}", theOptions.getExportStyle(), retVal.getJobId());
+		return retVal;
+	}
+
+	/**
+	 * Creates the output for a resource type when the first resources are written,
+	 * so that no output is produced for resource types with no matching resources
+	 */
+	private class OutputWriter implements Closeable {
+		private final BulkExportJob myJob;
+		private final String myResourceType;
+		private BulkExportJob.Output myOutput;
+		private Writer myWriter;
+
+		OutputWriter(BulkExportJob theJob, String theResourceType) {
+			myJob = theJob;
+			myResourceType = theResourceType;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (myWriter != null) {
+				myWriter.close();
+			}
+		}
+
+		synchronized void write(String theLines, int theCount) throws IOException {
+			if (theCount == 0) {
+				return;
+			}
+			if (myWriter == null) {
+				myWriter = mySink.createWriter(myJob.getJobId(), myResourceType);
+				myOutput = myJob.addOutput(myResourceType);
+			}
+			myWriter.write(theLines);
+			myOutput.incrementCount(theCount);
+		}
+	}
+
+	/**
+	 * Exports the matching resources of one type within a single range of PIDs,
+	 * in batches of {@link #EXPORT_BATCH_SIZE}
+	 */
+	private class PartitionExportTask implements Callable<Integer> {
+		private final List<Long> myGroupMemberPids;
+		private final long myHigh;
+		private final OutputWriter myOutput;
+		private final String myResourceType;
+		private final Date mySince;
+		private final BulkDataExportOptions.ExportStyleEnum myStyle;
+		private long myNextLow;
+
+		PartitionExportTask(String theResourceType, BulkDataExportOptions.ExportStyleEnum theStyle, Date theSince, List<Long> theGroupMemberPids, long theLow, long theHigh, OutputWriter theOutput) {
+			myResourceType = theResourceType;
+			myStyle = theStyle;
+			mySince = theSince;
+			myGroupMemberPids = theGroupMemberPids;
+			myNextLow = theLow;
+			myHigh = theHigh;
+			myOutput = theOutput;
+		}
+
+		@Override
+		public Integer call() throws IOException {
+			int retVal = 0;
+			while (!myStopping) {
+				List<Long> pids = myTxTemplate.execute(t -> fetchNextBatch());
+				retVal += exportBatch(myResourceType, pids, myOutput);
+				if (pids.size() < EXPORT_BATCH_SIZE) {
+					break;
+				}
+				myNextLow = pids.get(pids.size() - 1) + 1;
+			}
+			return retVal;
+		}
+
+		private List<Long> fetchNextBatch() {
+			PageRequest page = new PageRequest(0, EXPORT_BATCH_SIZE);
+			if (myStyle == BulkDataExportOptions.ExportStyleEnum.SYSTEM || PATIENT.equals(myResourceType)) {
+				return myResourceTableDao.findIdsOfTypeInRangeForExport(page, myResourceType, myNextLow, myHigh, mySince).getContent();
+			}
+			if (myStyle == BulkDataExportOptions.ExportStyleEnum.PATIENT) {
+				return myResourceTableDao.findIdsOfTypeInRangeLinkedToTypeForExport(page, myResourceType, myNextLow, myHigh, mySince, PATIENT).getContent();
+			}
+
+			/*
+			 * Each query returns the lowest matching PIDs for one chunk of the group
+			 * members, so the lowest PIDs across all of the chunks form the next batch
+			 */
+			TreeSet<Long> retVal = new TreeSet<>();
+			for (List<Long> nextChunk : Lists.partition(myGroupMemberPids, PIDS_PER_QUERY)) {
+				retVal.addAll(myResourceTableDao.findIdsOfTypeInRangeLinkedToPidsForExport(page, myResourceType, myNextLow, myHigh, mySince, nextChunk).getContent());
+			}
+			return retVal
+				.stream()
+				.limit(EXPORT_BATCH_SIZE)
+				.collect(Collectors.toList());
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The status of a bulk data export job, and the files it has produced so far
+ */
+public class BulkExportJob {
+
+	private final String myJobId;
+	private final BulkDataExportOptions myOptions;
+	private final Map<String, Output> myOutputs = Collections.synchronizedMap(new LinkedHashMap<>());
+	private final Date myRequestTime;
+	private volatile String myErrorMessage;
+	private volatile StatusEnum myStatus = StatusEnum.SUBMITTED;
+	private volatile Date myTransactionTime;
+
+	BulkExportJob(String theJobId, BulkDataExportOptions theOptions) {
+		myJobId = theJobId;
+		myOptions = theOptions;
+		myRequestTime = new Date();
+	}
+
+	Output addOutput(String theResourceType) {
+		Output retVal = new Output(theResourceType);
+		myOutputs.put(theResourceType, retVal);
+		return retVal;
+	}
+
+	public String getErrorMessage() {
+		return myErrorMessage;
+	}
+
+	void setErrorMessage(String theErrorMessage) {
+		myErrorMessage = theErrorMessage;
+	}
+
+	public String getJobId() {
+		return myJobId;
+	}
+
+	public BulkDataExportOptions getOptions() {
+		return myOptions;
+	}
+
+	/**
+	 * Returns the file produced by this job for the given resource type, or <code>null</code>
+	 * if no resources of that type have been exported
+	 */
+	public Output getOutput(String theResourceType) {
+		return myOutputs.get(theResourceType);
+	}
+
+	/**
+	 * Returns the files produced by this job, one per resource type. Files which
+	 * are still being written are included.
+	 */
+	public List<Output> getOutputs() {
+		synchronized (myOutputs) {
+			return new ArrayList<>(myOutputs.values());
+		}
+	}
+
+	public Date getRequestTime() {
+		return myRequestTime;
+	}
+
+	public StatusEnum getStatus() {
+		return myStatus;
+	}
+
+	void setStatus(StatusEnum theStatus) {
+		myStatus = theStatus;
+	}
+
+	/**
+	 * The time at which the job started reading resources from the database
+	 */
+	public Date getTransactionTime() {
+		return myTransactionTime;
+	}
+
+	void setTransactionTime(Date theTransactionTime) {
+		myTransactionTime = theTransactionTime;
+	}
+
+	public enum StatusEnum {
+		SUBMITTED,
+		BUILDING,
+		COMPLETE,
+		ERROR
+	}
+
+	public static class Output {
+		private final AtomicLong myCount = new AtomicLong();
+		private final String myResourceType;
+
+		Output(String theResourceType) {
+			myResourceType = theResourceType;
+		}
+
+		/**
+		 * The number of resources written to this file so far
+		 */
+		public long getCount() {
+			return myCount.get();
+		}
+
+		public String getResourceType() {
+			return myResourceType;
+		}
+
+		void incrementCount(int theDelta) {
+			myCount.addAndGet(theDelta);
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes bulk data export output to <code>[base directory]/[job ID]/[resource type].ndjson</code>.
+ * Exported files contain every matching resource on the server, so the base directory
+ * should only be readable by the account the server runs as.
+ */
+public class FileSystemBulkDataExportSink implements IBulkDataExportSink {
+
+	private final File myBaseDirectory;
+
+	public FileSystemBulkDataExportSink(File theBaseDirectory) {
+		Validate.notNull(theBaseDirectory, "theBaseDirectory must not be null");
+		myBaseDirectory = theBaseDirectory;
+	}
+
+	@Override
+	public Writer createWriter(String theJobId, String theResourceType) throws IOException {
+		File file = getFile(theJobId, theResourceType);
+		File directory = file.getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory: " + directory.getAbsolutePath());
+		}
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void deleteOutput(String theJobId) throws IOException {
+		FileUtils.deleteDirectory(new File(myBaseDirectory, theJobId));
+	}
+
+	public File getBaseDirectory() {
+		return myBaseDirectory;
+	}
+
+	private File getFile(String theJobId, String theResourceType) {
+		return new File(new File(myBaseDirectory, theJobId), theResourceType + ".ndjson");
+	}
+
+	@Override
+	public InputStream openInputStream(String theJobId, String theResourceType) throws IOException {
+		return new BufferedInputStream(new FileInputStream(getFile(theJobId, theResourceType)));
+	}
+
+}
@@ -0,0 +1,58 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * Stores the NDJSON output of bulk data export jobs. A single file (or other
+ * destination) is created for each resource type exported by a job. Clients
+ * retrieve the output through the <code>$export-download</code> operation, which
+ * reads it back using {@link #openInputStream(String, String)}.
+ * <p>
+ * No sink is configured by default. {@link FileSystemBulkDataExportSink} writes
+ * output to a directory on the local file system.
+ * </p>
+ */
+public interface IBulkDataExportSink {
+
+	/**
+	 * Creates the destination for the resources of the given type exported by the
+	 * given job. Each line written to the returned writer is a single resource.
+	 * Writes are serialized by the caller, and the writer is closed once the
+	 * resource type has been fully exported.
+	 */
+	Writer createWriter(String theJobId, String theResourceType) throws IOException;
+
+	/**
+	 * Deletes all of the output of the given job. This is called when a job is
+	 * discarded, and must do nothing if the job has no output.
+	 */
+	void deleteOutput(String theJobId) throws IOException;
+
+	/**
+	 * Opens the output written for the given job and resource type, encoded as UTF-8
+	 */
+	InputStream openInputStream(String theJobId, String theResourceType) throws IOException;
+
+}
@@ -0,0 +1,56 @@
+package ca.uhn.fhir.jpa.bulk;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+
+import java.io.InputStream;
+
+/**
+ * Runs bulk data export (<code>$export</code>) jobs, which write every matching
+ * resource to NDJSON output without paging through search results
+ */
+public interface IBulkDataExportSvc {
+
+	/**
+	 * Returns the job with the given ID
+	 *
+	 * @throws ResourceNotFoundException If no job exists with the given ID
+	 */
+	BulkExportJob getJob(String theJobId);
+
+	/**
+	 * Opens the NDJSON output of a completed job for the given resource type
+	 *
+	 * @throws ResourceNotFoundException If no job exists with the given ID, or it has no output for the given resource type
+	 * @throws InvalidRequestException   If the job has not completed
+	 */
+	InputStream openOutput(String theJobId, String theResourceType);
+
+	/**
+	 * Starts a new export job in the background, and returns immediately
+	 *
+	 * @throws InvalidRequestException If the options are invalid
+	 */
+	BulkExportJob submitJob(BulkDataExportOptions theOptions);
+
+}
@@ -22,6 +22,12 @@ package ca.uhn.fhir.jpa.config;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.HapiLocalizer;
+import ca.uhn.fhir.jpa.dao.DecodedResourceCacheSvcImpl;
+import ca.uhn.fhir.jpa.dao.ForcedIdSvcImpl;
+import ca.uhn.fhir.jpa.dao.IDecodedResourceCacheSvc;
+import ca.uhn.fhir.jpa.dao.IForcedIdSvc;
+import ca.uhn.fhir.jpa.dao.IMatchUrlResolverSvc;
+import ca.uhn.fhir.jpa.dao.MatchUrlResolverSvcImpl;
 import ca.uhn.fhir.jpa.search.*;
 import ca.uhn.fhir.jpa.sp.ISearchParamPresenceSvc;
 import ca.uhn.fhir.jpa.sp.SearchParamPresenceSvcImpl;
@@ -83,8 +89,18 @@ public abstract class BaseConfig implements SchedulingConfigurer {
 		return retVal;
 	}
 
+	@Bean
+	public IDecodedResourceCacheSvc decodedResourceCacheSvc() {
+		return new DecodedResourceCacheSvcImpl();
+	}
+
 	public abstract FhirContext fhirContext();
 
+	@Bean
+	public IForcedIdSvc forcedIdSvc() {
+		return new ForcedIdSvcImpl();
+	}
+
 	@Bean
 	public HibernateExceptionTranslator hibernateExceptionTranslator() {
 		return new HibernateExceptionTranslator();
@@ -95,6 +111,11 @@ public abstract class BaseConfig implements SchedulingConfigurer {
 		return new HibernateJpaDialect();
 	}
 
+	@Bean
+	public IMatchUrlResolverSvc matchUrlResolverSvc() {
+		return new MatchUrlResolverSvcImpl();
+	}
+
 	@Bean
 	public IReindexController reindexController() {
 		return new ReindexController();
@@ -113,6 +134,16 @@ public abstract class BaseConfig implements SchedulingConfigurer {
 		return new SearchCoordinatorSvcImpl();
 	}
 
+	@Bean
+	public SearchIncludeLoaderSvc searchIncludeLoaderSvc() {
+		return new SearchIncludeLoaderSvc();
+	}
+
+	@Bean
+	public SearchResourceDecoderSvc searchResourceDecoderSvc() {
+		return new SearchResourceDecoderSvc();
+	}
+
 	@Bean
 	public ISearchParamPresenceSvc searchParamPresenceSvc() {
 		return new SearchParamPresenceSvcImpl();
@@ -2,12 +2,15 @@ package ca.uhn.fhir.jpa.config.r4;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.ParserOptions;
+import ca.uhn.fhir.jpa.bulk.BulkDataExportSvcImpl;
+import ca.uhn.fhir.jpa.bulk.IBulkDataExportSvc;
 import ca.uhn.fhir.jpa.config.BaseConfig;
 import ca.uhn.fhir.jpa.dao.*;
 import ca.uhn.fhir.jpa.dao.r4.SearchParamExtractorR4;
 import ca.uhn.fhir.jpa.dao.r4.SearchParamRegistryR4;
 import ca.uhn.fhir.jpa.dao.r4.TransactionProcessorVersionAdapterR4;
 import ca.uhn.fhir.jpa.graphql.JpaStorageServices;
+import ca.uhn.fhir.jpa.provider.r4.BulkDataExportProviderR4;
 import ca.uhn.fhir.jpa.provider.r4.TerminologyUploaderProviderR4;
 import ca.uhn.fhir.jpa.term.HapiTerminologySvcR4;
 import ca.uhn.fhir.jpa.term.IHapiTerminologyLoaderSvc;
@@ -161,6 +164,18 @@ public class BaseR4Config extends BaseConfig {
 		return new HapiTerminologySvcR4();
 	}
 
+	@Bean
+	public IBulkDataExportSvc bulkDataExportSvc() {
+		return new BulkDataExportSvcImpl();
+	}
+
+	@Bean(autowire = Autowire.BY_TYPE)
+	public BulkDataExportProviderR4 bulkDataExportProvider() {
+		BulkDataExportProviderR4 retVal = new BulkDataExportProviderR4();
+		retVal.setContext(fhirContextR4());
+		return retVal;
+	}
+
 	@Bean(autowire = Autowire.BY_TYPE)
 	public TerminologyUploaderProviderR4 terminologyUploaderProvider() {
 		TerminologyUploaderProviderR4 retVal = new TerminologyUploaderProviderR4();
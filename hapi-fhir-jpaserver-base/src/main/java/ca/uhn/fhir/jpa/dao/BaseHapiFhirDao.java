@@ -6,6 +6,8 @@ import ca.uhn.fhir.jpa.entity.*;
 import ca.uhn.fhir.jpa.search.ISearchCoordinatorSvc;
 import ca.uhn.fhir.jpa.search.JpaRuntimeSearchParam;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
+import ca.uhn.fhir.jpa.search.SearchIncludeLoaderSvc;
+import ca.uhn.fhir.jpa.search.SearchResourceDecoderSvc;
 import ca.uhn.fhir.jpa.sp.ISearchParamPresenceSvc;
 import ca.uhn.fhir.jpa.term.IHapiTerminologySvc;
 import ca.uhn.fhir.jpa.util.DeleteConflict;
@@ -39,8 +41,12 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Sets;
-import com.google.common.hash.HashFunction;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -73,7 +79,16 @@ import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.text.Normalizer;
 import java.util.*;
 import java.util.Map.Entry;
@@ -152,10 +167,16 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 
 	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
 	protected EntityManager myEntityManager;
+	@Autowired(required = false)
+	protected IDecodedResourceCacheSvc myDecodedResourceCacheSvc;
 	@Autowired
 	protected IForcedIdDao myForcedIdDao;
+	@Autowired
+	protected IForcedIdSvc myForcedIdSvc;
 	@Autowired(required = false)
 	protected IFulltextSearchSvc myFulltextSearchSvc;
+	@Autowired(required = false)
+	protected IMatchUrlResolverSvc myMatchUrlResolverSvc;
 	@Autowired()
 	protected IResourceIndexedSearchParamUriDao myResourceIndexedSearchParamUriDao;
 	@Autowired()
@@ -186,6 +207,10 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	protected IResourceTagDao myResourceTagDao;
 	@Autowired
 	protected IResourceSearchViewDao myResourceViewDao;
+	@Autowired(required = false)
+	private SearchIncludeLoaderSvc mySearchIncludeLoaderSvc;
+	@Autowired(required = false)
+	private SearchResourceDecoderSvc mySearchResourceDecoderSvc;
 	@Autowired(required = true)
 	private DaoConfig myConfig;
 	private FhirContext myContext;
@@ -339,6 +364,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			doExpungeEverythingQuery("DELETE from " + ResourceLink.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + SearchResult.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + SearchInclude.class.getSimpleName() + " d");
+			doExpungeEverythingQuery("DELETE from " + TermConceptClosure.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + TermConceptParentChildLink.class.getSimpleName() + " d");
 			return null;
 		});
@@ -349,6 +375,12 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			doExpungeEverythingQuery("DELETE from " + TermConceptMap.class.getSimpleName() + " d");
 			return null;
 		});
+		txTemplate.execute(t -> {
+			doExpungeEverythingQuery("DELETE from " + TermValueSetExpansionConcept.class.getSimpleName() + " d");
+			doExpungeEverythingQuery("DELETE from " + TermValueSetExpansionDependency.class.getSimpleName() + " d");
+			doExpungeEverythingQuery("DELETE from " + TermValueSetExpansion.class.getSimpleName() + " d");
+			return null;
+		});
 		txTemplate.execute(t -> {
 			doExpungeEverythingQuery("DELETE from " + TermConceptProperty.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + TermConceptDesignation.class.getSimpleName() + " d");
@@ -375,6 +407,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			return null;
 		});
 
+		myForcedIdSvc.clearCache();
+		if (myDecodedResourceCacheSvc != null) {
+			myDecodedResourceCacheSvc.clearCache();
+		}
+
 		ourLog.info("** COMPLETED GLOBAL $expunge **");
 	}
 
@@ -408,6 +445,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			resource.setForcedId(null);
 			myResourceTableDao.saveAndFlush(resource);
 			myForcedIdDao.delete(forcedId);
+			myForcedIdSvc.invalidate(forcedId.getResourceType(), forcedId.getForcedId());
 		}
 
 		myResourceTableDao.delete(resource);
@@ -535,6 +573,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		}
 
 		Map<String, RuntimeSearchParam> searchParams = mySearchParamRegistry.getActiveSearchParams(toResourceName(theResource.getClass()));
+		Map<RuntimeSearchParam, List<PathAndRef>> searchParamToRefs = new LinkedHashMap<>();
+		List<IIdType> allReferencedIds = new ArrayList<>();
 		for (RuntimeSearchParam nextSpDef : searchParams.values()) {
 
 			if (nextSpDef.getParamType() != RestSearchParameterTypeEnum.REFERENCE) {
@@ -546,12 +586,35 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 				continue;
 			}
 
+			List<PathAndRef> refs = mySearchParamExtractor.extractResourceLinks(theResource, nextSpDef);
+			searchParamToRefs.put(nextSpDef, refs);
+			for (PathAndRef nextPathAndRef : refs) {
+				Object nextObject = nextPathAndRef.getRef();
+				if (nextObject instanceof IBaseExtension<?, ?>) {
+					nextObject = ((IBaseExtension<?, ?>) nextObject).getValue();
+				}
+				if (nextObject instanceof IBaseReference) {
+					allReferencedIds.add(((IBaseReference) nextObject).getReferenceElement());
+				}
+			}
+		}
+
+		/*
+		 * Resolve any client assigned IDs in one pass so that the lookups below
+		 * don't each need their own database round trip
+		 */
+		preFetchForcedIds(allReferencedIds);
+
+		for (Map.Entry<RuntimeSearchParam, List<PathAndRef>> nextSpDefAndRefs : searchParamToRefs.entrySet()) {
+			RuntimeSearchParam nextSpDef = nextSpDefAndRefs.getKey();
+			String nextPathsUnsplit = nextSpDef.getPath();
+
 			boolean multiType = false;
 			if (nextPathsUnsplit.endsWith("[x]")) {
 				multiType = true;
 			}
 
-			List<PathAndRef> refs = mySearchParamExtractor.extractResourceLinks(theResource, nextSpDef);
+			List<PathAndRef> refs = nextSpDefAndRefs.getValue();
 			for (PathAndRef nextPathAndRef : refs) {
 				Object nextObject = nextPathAndRef.getRef();
 
@@ -1166,7 +1229,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	public SearchBuilder newSearchBuilder() {
 		SearchBuilder builder = new SearchBuilder(
 			getContext(), myEntityManager, myFulltextSearchSvc, this, myResourceIndexedSearchParamUriDao,
-			myForcedIdDao, myTerminologySvc, mySerarchParamRegistry, myResourceTagDao, myResourceViewDao);
+			myForcedIdDao, myTerminologySvc, mySerarchParamRegistry, myResourceTagDao, myResourceViewDao, mySearchIncludeLoaderSvc, mySearchResourceDecoderSvc);
 		return builder;
 	}
 
@@ -1252,13 +1315,20 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			Set<String> excludeElements = EXCLUDE_ELEMENTS_IN_ENCODED;
 			theEntity.setFhirVersion(myContext.getVersion().getVersion());
 
-			bytes = encodeResource(theResource, encoding, excludeElements, myContext);
+			Hasher sha256 = theUpdateHash ? Hashing.sha256().newHasher() : null;
+			bytes = encodeResource(theResource, encoding, excludeElements, myContext, sha256);
 
 			if (theUpdateHash) {
-				HashFunction sha256 = Hashing.sha256();
-				String hashSha256 = sha256.hashBytes(bytes).toString();
-				if (hashSha256.equals(theEntity.getHashSha256()) == false) {
-					changed = true;
+				String hashSha256 = sha256.hash().toString();
+				String previousHashSha256 = theEntity.getHashSha256();
+				if (hashSha256.equals(previousHashSha256) == false) {
+					/*
+					 * Rows written before 3.5.0 hold a hash of the stored bytes, which for JSONC
+					 * are compressed, so check that too before treating the resource as changed
+					 */
+					if (previousHashSha256 == null || Hashing.sha256().hashBytes(bytes).toString().equals(previousHashSha256) == false) {
+						changed = true;
+					}
 				}
 				theEntity.setHashSha256(hashSha256);
 			}
@@ -1494,6 +1564,17 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	public <R extends IBaseResource> Set<Long> processMatchUrl(String theMatchUrl, Class<R> theResourceType) {
 		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(theResourceType);
 
+		/*
+		 * Transactions resolve simple conditional URLs in bulk before processing
+		 * their entries, so use that result if we have one
+		 */
+		if (myMatchUrlResolverSvc != null) {
+			Set<Long> preResolved = myMatchUrlResolverSvc.getPreResolvedMatch(resourceDef.getName(), theMatchUrl);
+			if (preResolved != null) {
+				return preResolved;
+			}
+		}
+
 		SearchParameterMap paramMap = translateMatchUrl(this, myContext, theMatchUrl, resourceDef);
 		paramMap.setLoadSynchronous(true);
 
@@ -1626,13 +1707,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			resourceEncoding = history.getEncoding();
 			myTagList = history.getTags();
 		} else if (theEntity instanceof ResourceTable) {
+			// The resource text is loaded below, unless the resource is cached
 			ResourceTable resource = (ResourceTable) theEntity;
-			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersion(theEntity.getId(), theEntity.getVersion());
-			if (history == null) {
-				return null;
-			}
-			resourceBytes = history.getResource();
-			resourceEncoding = history.getEncoding();
 			myTagList = resource.getTags();
 		} else if (theEntity instanceof ResourceSearchView) {
 			// This is the search View
@@ -1643,15 +1719,18 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 				myTagList = new HashSet<>();
 			else
 				myTagList = theTagList;
+		} else if (theEntity instanceof ResourceSearchViewSnapshot) {
+			// A detached copy of the search View, which carries its own tags
+			ResourceSearchViewSnapshot snapshot = (ResourceSearchViewSnapshot) theEntity;
+			resourceBytes = snapshot.getResource();
+			resourceEncoding = snapshot.getEncoding();
+			myTagList = snapshot.getTags();
 		} else {
 			// something wrong
 			return null;
 		}
 
-		// 2. get The text
-		String resourceText = decodeResource(resourceBytes, resourceEncoding);
-
-		// 3. Use the appropriate custom type if one is specified in the context
+		// 2. Use the appropriate custom type if one is specified in the context
 		Class<R> resourceType = theResourceType;
 		if (myContext.hasDefaultTypeForProfile()) {
 			for (BaseTag nextTag : myTagList) {
@@ -1669,14 +1748,32 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 			}
 		}
 
-		// 4. parse the text to FHIR
-		R retVal;
-		if (resourceEncoding != ResourceEncodingEnum.DEL) {
+		// 3. parse the text to FHIR, decoding it as we go, unless a parsed copy is cached
+		boolean cacheable = myDecodedResourceCacheSvc != null && theEntity.getDeleted() == null && myDecodedResourceCacheSvc.isEnabled(theEntity.getResourceType());
+		R retVal = null;
+		if (cacheable) {
+			retVal = myDecodedResourceCacheSvc.get(theEntity.getResourceId(), theEntity.getVersion(), resourceType);
+		}
+
+		if (retVal == null && theEntity instanceof ResourceTable) {
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersion(theEntity.getId(), theEntity.getVersion());
+			if (history == null) {
+				return null;
+			}
+			resourceBytes = history.getResource();
+			resourceEncoding = history.getEncoding();
+		}
+
+		if (retVal != null) {
+			ourLog.trace("Using cached copy of resource {} version {}", theEntity.getResourceId(), theEntity.getVersion());
+		} else if (resourceEncoding != ResourceEncodingEnum.DEL) {
 			IParser parser = resourceEncoding.newParser(getContext(theEntity.getFhirVersion()));
 			parser.setParserErrorHandler(new LenientErrorHandler(false).setErrorOnInvalidValue(false));
 
-			try {
-				retVal = parser.parseResource(resourceType, resourceText);
+			long decodedLength;
+			try (CountingInputStream decoded = new CountingInputStream(newDecodingStream(resourceBytes, resourceEncoding)); Reader reader = new InputStreamReader(decoded, Charsets.UTF_8)) {
+				retVal = parser.parseResource(resourceType, reader);
+				decodedLength = decoded.getByteCount();
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
@@ -1694,13 +1791,17 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 				throw new DataFormatException(msg, e);
 			}
 
+			if (cacheable) {
+				myDecodedResourceCacheSvc.put(theEntity.getResourceId(), theEntity.getVersion(), retVal, (int) Math.min(decodedLength, Integer.MAX_VALUE));
+			}
+
 		} else {
 
 			retVal = (R) myContext.getResourceDefinition(theEntity.getResourceType()).newInstance();
 
 		}
 
-		// 5. fill MetaData
+		// 4. fill MetaData
 		if (retVal instanceof IResource) {
 			IResource res = (IResource) retVal;
 			retVal = populateResourceMetadataHapi(resourceType, theEntity, myTagList, theForHistoryOperation, res);
@@ -1725,12 +1826,37 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 		return new SliceImpl<>(Collections.singletonList(theVersion.getId()));
 	}
 
+	/**
+	 * Resolves any client assigned IDs found in the given references using one
+	 * query per resource type, so that subsequent lookups of the individual IDs
+	 * within the current transaction are served from the forced ID cache
+	 */
+	void preFetchForcedIds(Collection<IIdType> theIds) {
+		ArrayListMultimap<String, String> resourceTypeToIds = ArrayListMultimap.create();
+		for (IIdType next : theIds) {
+			if (next == null || next.isEmpty() || !next.hasResourceType() || !next.hasIdPart() || next.hasBaseUrl()) {
+				continue;
+			}
+			if (isValidPid(next) || isLogicalReference(next)) {
+				continue;
+			}
+			resourceTypeToIds.put(next.getResourceType(), next.getIdPart());
+		}
+
+		for (String nextResourceType : resourceTypeToIds.keySet()) {
+			List<String> nextIds = resourceTypeToIds.get(nextResourceType);
+			if (nextIds.size() > 1) {
+				myForcedIdSvc.translateForcedIdsToPids(nextResourceType, nextIds);
+			}
+		}
+	}
+
 	Long translateForcedIdToPid(String theResourceName, String theResourceId) {
-		return translateForcedIdToPids(new IdDt(theResourceName, theResourceId), myForcedIdDao).get(0);
+		return myForcedIdSvc.translateForcedIdToPid(theResourceName, theResourceId);
 	}
 
 	protected List<Long> translateForcedIdToPids(IIdType theId) {
-		return translateForcedIdToPids(theId, myForcedIdDao);
+		return myForcedIdSvc.translateForcedIdToPids(theId);
 	}
 
 	private String translatePidIdToForcedId(String theResourceType, Long theId) {
@@ -2364,42 +2490,62 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao,
 	}
 
 	public static String decodeResource(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) {
-		String resourceText = null;
-		switch (theResourceEncoding) {
-			case JSON:
-				resourceText = new String(theResourceBytes, Charsets.UTF_8);
-				break;
-			case JSONC:
-				resourceText = GZipUtil.decompress(theResourceBytes);
-				break;
-			case DEL:
-				break;
+		if (theResourceEncoding == ResourceEncodingEnum.DEL) {
+			return null;
+		}
+		try (Reader reader = newDecodingReader(theResourceBytes, theResourceEncoding)) {
+			return IOUtils.toString(reader);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
 		}
-		return resourceText;
+	}
+
+	private static Reader newDecodingReader(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) throws IOException {
+		return new InputStreamReader(newDecodingStream(theResourceBytes, theResourceEncoding), Charsets.UTF_8);
+	}
+
+	private static InputStream newDecodingStream(byte[] theResourceBytes, ResourceEncodingEnum theResourceEncoding) throws IOException {
+		return theResourceEncoding.getCodec().newDecodingStream(new ByteArrayInputStream(theResourceBytes));
 	}
 
 	public static byte[] encodeResource(IBaseResource theResource, ResourceEncodingEnum theEncoding, Set<String> theExcludeElements, FhirContext theContext) {
-		byte[] bytes;
+		return encodeResource(theResource, theEncoding, theExcludeElements, theContext, null);
+	}
+
+	/**
+	 * @param theHasher If not null, the uncompressed (UTF-8) encoding of the resource is fed into this
+	 *                  hasher as it is written, so that the hash doesn't depend on the codec in use
+	 */
+	static byte[] encodeResource(IBaseResource theResource, ResourceEncodingEnum theEncoding, Set<String> theExcludeElements, FhirContext theContext, Hasher theHasher) {
+		if (theEncoding == ResourceEncodingEnum.DEL) {
+			return new byte[0];
+		}
+
 		IParser parser = theEncoding.newParser(theContext);
 		parser.setDontEncodeElements(theExcludeElements);
-		String encoded = parser.encodeResourceToString(theResource);
 
-
-		switch (theEncoding) {
-			case JSON:
-				bytes = encoded.getBytes(Charsets.UTF_8);
-				break;
-			case JSONC:
-				bytes = GZipUtil.compress(encoded);
-				break;
-			default:
-			case DEL:
-				bytes = new byte[0];
-				break;
+		/*
+		 * The parser writes straight into the codec, so we never hold the
+		 * uncompressed body as a String
+		 */
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(newEncodingStream(theEncoding, bytes, theHasher), Charsets.UTF_8)) {
+			parser.encodeResourceToWriter(theResource, writer);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to encode resource contents", e);
 		}
 
-		ourLog.debug("Encoded {} chars of resource body as {} bytes", encoded.length(), bytes.length);
-		return bytes;
+		byte[] retVal = bytes.toByteArray();
+		ourLog.debug("Encoded resource body as {} bytes using encoding {}", retVal.length, theEncoding);
+		return retVal;
+	}
+
+	private static OutputStream newEncodingStream(ResourceEncodingEnum theEncoding, OutputStream theTarget, Hasher theHasher) throws IOException {
+		OutputStream retVal = theEncoding.getCodec().newEncodingStream(theTarget);
+		if (theHasher != null) {
+			retVal = new TeeOutputStream(Funnels.asOutputStream(theHasher), retVal);
+		}
+		return retVal;
 	}
 
 	/**
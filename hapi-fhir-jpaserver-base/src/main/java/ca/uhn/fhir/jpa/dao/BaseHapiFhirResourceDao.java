@@ -615,6 +615,13 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		if (myDaoConfig.isMarkResourcesForReindexingUponSearchParameterChange()) {
 			if (isNotBlank(theExpression)) {
 				final String resourceType = theExpression.substring(0, theExpression.indexOf('.'));
+				if (myDaoConfig.isReindexUsingPartitionedJob()) {
+					ourLog.debug("Creating partitioned reindexing job for resources of type {} due to updated search parameter with path: {}", resourceType, theExpression);
+					myReindexController.requestPartitionedReindex(resourceType);
+					mySearchParamRegistry.requestRefresh();
+					return;
+				}
+
 				ourLog.debug("Marking all resources of type {} for reindexing due to updated search parameter with path: {}", resourceType, theExpression);
 
 				TransactionTemplate txTemplate = new TransactionTemplate(myPlatformTransactionManager);
@@ -273,6 +273,15 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 		}
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.NEVER)
+	public void reindex(List<Long> theResourcePids) {
+		mySearchParamRegistry.refreshCacheIfNecessary();
+		for (Long next : theResourcePids) {
+			new ResourceReindexingTask(next).run();
+		}
+	}
+
 	private class ResourceReindexingTask implements Runnable {
 		private final Long myNextId;
 
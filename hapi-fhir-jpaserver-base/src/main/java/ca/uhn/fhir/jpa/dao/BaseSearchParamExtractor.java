@@ -36,6 +36,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public abstract class BaseSearchParamExtractor implements ISearchParamExtractor {
@@ -48,6 +50,7 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 	private DaoConfig myDaoConfig;
 	@Autowired
 	private ISearchParamRegistry mySearchParamRegistry;
+	private final ConcurrentHashMap<String, Map<String, RuntimeSearchParam>> myLastSeenActiveSearchParams = new ConcurrentHashMap<>();
 
 	public BaseSearchParamExtractor() {
 		super();
@@ -75,6 +78,14 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		return refs;
 	}
 
+	/**
+	 * Subclasses which cache compiled path expressions should clear them here. This
+	 * is called whenever the search parameter registry is found to have been refreshed.
+	 */
+	protected void clearCompiledPathCache() {
+		// nothing by default
+	}
+
 	protected abstract List<Object> extractValues(String thePaths, IBaseResource theResource);
 
 	protected FhirContext getContext() {
@@ -87,7 +98,18 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 
 	public Collection<RuntimeSearchParam> getSearchParams(IBaseResource theResource) {
 		RuntimeResourceDefinition def = getContext().getResourceDefinition(theResource);
-		Collection<RuntimeSearchParam> retVal = mySearchParamRegistry.getActiveSearchParams(def.getName()).values();
+		Map<String, RuntimeSearchParam> activeSearchParams = mySearchParamRegistry.getActiveSearchParams(def.getName());
+
+		/*
+		 * The registry replaces its maps whenever it refreshes, so if we see a
+		 * different map than last time the search parameters may have changed
+		 */
+		Map<String, RuntimeSearchParam> previousSearchParams = myLastSeenActiveSearchParams.put(def.getName(), activeSearchParams);
+		if (previousSearchParams != null && previousSearchParams != activeSearchParams) {
+			clearCompiledPathCache();
+		}
+
+		Collection<RuntimeSearchParam> retVal = activeSearchParams.values();
 		List<RuntimeSearchParam> defaultList = Collections.emptyList();
 		retVal = ObjectUtils.defaultIfNull(retVal, defaultList);
 		return retVal;
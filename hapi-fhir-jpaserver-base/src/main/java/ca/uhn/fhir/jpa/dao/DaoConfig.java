@@ -102,12 +102,34 @@ public class DaoConfig {
 	 */
 	private boolean myAllowInlineMatchUrlReferences = true;
 	private boolean myAllowMultipleDelete;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myBulkExportThreadCount = 4;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myBatchEntryThreadCount = 1;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private long myDecodedResourceCacheMaximumWeight = 50 * 1024 * 1024;
+	private Set<String> myDecodedResourceCacheResourceTypes = new HashSet<>();
 	private boolean myDefaultSearchParamsCanBeOverridden = false;
 	/**
 	 * update setter javadoc if default changes
 	 */
 	private int myDeferIndexingForCodesystemsOfSize = 2000;
 	private boolean myDeleteStaleSearches = true;
+	private boolean myDeleteStaleSearchesInBulk = false;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myStaleSearchDeleteBatchSize = 1000;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myStaleSearchDeleteThreadCount = 1;
 	private boolean myEnforceReferentialIntegrityOnDelete = true;
 	private boolean myUniqueIndexesEnabled = true;
 	private boolean myUniqueIndexesCheckedBeforeSave = true;
@@ -121,7 +143,19 @@ public class DaoConfig {
 	 * update setter javadoc if default changes
 	 */
 	private Integer myFetchSizeDefaultMaximum = null;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private long myForcedIdCacheExpireAfterWriteInMinutes = 10;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private long myForcedIdCacheMaximumSize = 10000;
 	private int myHardTagListLimit = 1000;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myIncludeLoadingThreadCount = 1;
 	/**
 	 * update setter javadoc if default changes
 	 */
@@ -132,6 +166,10 @@ public class DaoConfig {
 	 */
 	private int myMaximumExpansionSize = 5000;
 	private Integer myMaximumSearchResultCountInTransaction = DEFAULT_MAXIMUM_SEARCH_RESULT_COUNT_IN_TRANSACTION;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int myResourceDecodingThreadCount = 1;
 	private ResourceEncodingEnum myResourceEncoding = ResourceEncodingEnum.JSONC;
 	/**
 	 * update setter javadoc if default changes
@@ -139,6 +177,15 @@ public class DaoConfig {
 	private Integer myResourceMetaCountHardLimit = 1000;
 	private Long myReuseCachedSearchResultsForMillis = DEFAULT_REUSE_CACHED_SEARCH_RESULTS_FOR_MILLIS;
 	private boolean mySchedulingDisabled;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int mySearchCoordinatorThreadCount = 20;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private int mySearchCoordinatorQueueCapacity = 1000;
+	private Integer mySearchCoordinatorMaxConcurrentSearchesPerResourceType = null;
 	private boolean mySuppressUpdatesWithNoChange = true;
 	private Set<String> myTreatBaseUrlsAsLocal = new HashSet<>();
 	private Set<String> myTreatReferencesAsLogical = new HashSet<>(DEFAULT_LOGICAL_BASE_URLS);
@@ -150,6 +197,8 @@ public class DaoConfig {
 	private boolean myMarkResourcesForReindexingUponSearchParameterChange;
 	private boolean myExpungeEnabled;
 	private int myReindexThreadCount;
+	private boolean myReindexUsingPartitionedJob;
+	private boolean myPreExpandValueSets;
 	private Set<String> myBundleTypesAllowedForStorage;
 	private boolean myValidateSearchParameterExpressionsOnSave = true;
 
@@ -211,6 +260,45 @@ public class DaoConfig {
 		myTreatReferencesAsLogical.add(theTreatReferencesAsLogical);
 	}
 
+	/**
+	 * Specifies the number of threads used to process the entries of a
+	 * <code>batch</code> Bundle. If this is greater than 1, the entries of a
+	 * batch are processed concurrently, each in its own database transaction,
+	 * and the response entries are returned in the same order as the request
+	 * entries. Each thread uses its own database connection, and any interceptors
+	 * registered against the server must be thread-safe. Default is 1, meaning
+	 * that batch entries are processed one at a time.
+	 * <p>
+	 * This setting is read when the server starts, so a change made after
+	 * startup only takes effect once the server is restarted.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public int getBatchEntryThreadCount() {
+		return myBatchEntryThreadCount;
+	}
+
+	/**
+	 * Specifies the number of threads used to process the entries of a
+	 * <code>batch</code> Bundle. If this is greater than 1, the entries of a
+	 * batch are processed concurrently, each in its own database transaction,
+	 * and the response entries are returned in the same order as the request
+	 * entries. Each thread uses its own database connection, and any interceptors
+	 * registered against the server must be thread-safe. Default is 1, meaning
+	 * that batch entries are processed one at a time.
+	 * <p>
+	 * This setting is read when the server starts, so a change made after
+	 * startup only takes effect once the server is restarted.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setBatchEntryThreadCount(int theBatchEntryThreadCount) {
+		Validate.isTrue(theBatchEntryThreadCount > 0, "theBatchEntryThreadCount must be positive");
+		myBatchEntryThreadCount = theBatchEntryThreadCount;
+	}
+
 	/**
 	 * This setting specifies the bundle types (<code>Bundle.type</code>) that
 	 * are allowed to be stored as-is on the /Bundle endpoint.
@@ -232,6 +320,33 @@ public class DaoConfig {
 		myBundleTypesAllowedForStorage = theBundleTypesAllowedForStorage;
 	}
 
+	/**
+	 * Specifies the number of threads used by each bulk data export
+	 * (<code>$export</code>) job. Each resource type being exported is split into
+	 * this many ranges of resource PIDs, and the ranges are scanned concurrently.
+	 * Each thread uses its own database connection while it is reading a batch
+	 * of resources. Default is 4.
+	 *
+	 * @since 3.5.0
+	 */
+	public int getBulkExportThreadCount() {
+		return myBulkExportThreadCount;
+	}
+
+	/**
+	 * Specifies the number of threads used by each bulk data export
+	 * (<code>$export</code>) job. Each resource type being exported is split into
+	 * this many ranges of resource PIDs, and the ranges are scanned concurrently.
+	 * Each thread uses its own database connection while it is reading a batch
+	 * of resources. Default is 4.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setBulkExportThreadCount(int theBulkExportThreadCount) {
+		Validate.isTrue(theBulkExportThreadCount > 0, "theBulkExportThreadCount must be positive");
+		myBulkExportThreadCount = theBulkExportThreadCount;
+	}
+
 	/**
 	 * Specifies the highest number that a client is permitted to use in a
 	 * <code>Cache-Control: nostore, max-results=NNN</code>
@@ -302,6 +417,72 @@ public class DaoConfig {
 		myCountSearchResultsUpTo = theCountSearchResultsUpTo;
 	}
 
+	/**
+	 * Specifies the maximum total weight of the parsed resources held in the decoded
+	 * resource cache (see {@link #setDecodedResourceCacheResourceTypes(Set)}). Each
+	 * cached resource is weighed by the size in bytes of its decoded (uncompressed)
+	 * JSON or XML encoding. The parsed resources use several times this much memory,
+	 * so the actual heap used by the cache is correspondingly larger. Changes to this
+	 * setting take effect the next time a resource is added to the cache.
+	 * Defaults to 52428800 (50 MB).
+	 *
+	 * @since 3.5.0
+	 */
+	public long getDecodedResourceCacheMaximumWeight() {
+		return myDecodedResourceCacheMaximumWeight;
+	}
+
+	/**
+	 * Specifies the maximum total weight of the parsed resources held in the decoded
+	 * resource cache (see {@link #setDecodedResourceCacheResourceTypes(Set)}). Each
+	 * cached resource is weighed by the size in bytes of its decoded (uncompressed)
+	 * JSON or XML encoding. The parsed resources use several times this much memory,
+	 * so the actual heap used by the cache is correspondingly larger. Changes to this
+	 * setting take effect the next time a resource is added to the cache.
+	 * Defaults to 52428800 (50 MB).
+	 *
+	 * @since 3.5.0
+	 */
+	public void setDecodedResourceCacheMaximumWeight(long theDecodedResourceCacheMaximumWeight) {
+		Validate.isTrue(theDecodedResourceCacheMaximumWeight > 0, "theDecodedResourceCacheMaximumWeight must be positive");
+		myDecodedResourceCacheMaximumWeight = theDecodedResourceCacheMaximumWeight;
+	}
+
+	/**
+	 * Specifies the resource types (e.g. <code>"Practitioner"</code>) whose parsed
+	 * resources will be kept in an in-memory cache keyed by resource PID and version,
+	 * so that reading the same version again does not require it to be decompressed
+	 * and parsed. This is useful for frequently read resources which rarely change, such
+	 * as Organization, ValueSet or StructureDefinition. Callers always receive their own
+	 * copy of a cached resource, so modifying a returned resource does not affect the cache.
+	 * <p>
+	 * Defaults to an empty set, meaning that no resources are cached.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public Set<String> getDecodedResourceCacheResourceTypes() {
+		return myDecodedResourceCacheResourceTypes;
+	}
+
+	/**
+	 * Specifies the resource types (e.g. <code>"Practitioner"</code>) whose parsed
+	 * resources will be kept in an in-memory cache keyed by resource PID and version,
+	 * so that reading the same version again does not require it to be decompressed
+	 * and parsed. This is useful for frequently read resources which rarely change, such
+	 * as Organization, ValueSet or StructureDefinition. Callers always receive their own
+	 * copy of a cached resource, so modifying a returned resource does not affect the cache.
+	 * <p>
+	 * Defaults to an empty set, meaning that no resources are cached.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setDecodedResourceCacheResourceTypes(Set<String> theDecodedResourceCacheResourceTypes) {
+		Validate.notNull(theDecodedResourceCacheResourceTypes, "theDecodedResourceCacheResourceTypes must not be null");
+		myDecodedResourceCacheResourceTypes = theDecodedResourceCacheResourceTypes;
+	}
+
 	/**
 	 * When a code system is added that contains more than this number of codes,
 	 * the code system will be indexed later in an incremental process in order to
@@ -425,6 +606,61 @@ public class DaoConfig {
 		myFetchSizeDefaultMaximum = theFetchSizeDefaultMaximum;
 	}
 
+	/**
+	 * Specifies the duration in minutes for which a client assigned (forced) resource ID
+	 * to PID mapping will be retained in the forced ID cache after being looked up.
+	 * Defaults to 10.
+	 * <p>
+	 * Note that in a clustered environment, if a resource is expunged and then recreated
+	 * with the same ID on a different node, other nodes may continue to use the old
+	 * mapping for up to this duration.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public long getForcedIdCacheExpireAfterWriteInMinutes() {
+		return myForcedIdCacheExpireAfterWriteInMinutes;
+	}
+
+	/**
+	 * Specifies the duration in minutes for which a client assigned (forced) resource ID
+	 * to PID mapping will be retained in the forced ID cache after being looked up.
+	 * Defaults to 10.
+	 * <p>
+	 * Note that in a clustered environment, if a resource is expunged and then recreated
+	 * with the same ID on a different node, other nodes may continue to use the old
+	 * mapping for up to this duration.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setForcedIdCacheExpireAfterWriteInMinutes(long theForcedIdCacheExpireAfterWriteInMinutes) {
+		myForcedIdCacheExpireAfterWriteInMinutes = theForcedIdCacheExpireAfterWriteInMinutes;
+	}
+
+	/**
+	 * Specifies the maximum number of client assigned (forced) resource ID to PID
+	 * mappings which will be cached in memory. Defaults to 10000. Set to
+	 * <code>0</code> to disable caching of forced IDs.
+	 *
+	 * @since 3.5.0
+	 */
+	public long getForcedIdCacheMaximumSize() {
+		return myForcedIdCacheMaximumSize;
+	}
+
+	/**
+	 * Specifies the maximum number of client assigned (forced) resource ID to PID
+	 * mappings which will be cached in memory. Defaults to 10000. Set to
+	 * <code>0</code> to disable caching of forced IDs.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setForcedIdCacheMaximumSize(long theForcedIdCacheMaximumSize) {
+		Validate.isTrue(theForcedIdCacheMaximumSize >= 0, "theForcedIdCacheMaximumSize must not be negative");
+		myForcedIdCacheMaximumSize = theForcedIdCacheMaximumSize;
+	}
+
 	/**
 	 * Gets the maximum number of results to return in a GetTags query (DSTU1 only)
 	 */
@@ -439,6 +675,45 @@ public class DaoConfig {
 		myHardTagListLimit = theHardTagListLimit;
 	}
 
+	/**
+	 * Specifies the number of threads used to resolve the <code>_include</code> and
+	 * <code>_revinclude</code> parameters of a search. When this is greater than 1, the
+	 * link queries for the individual include specifications in each round of include
+	 * resolution are executed concurrently, each using its own read-only database connection,
+	 * so that pages with many includes take as long as the slowest include rather than the
+	 * sum of all of them. Default is 1, meaning that includes are resolved one at a time
+	 * on the searching thread.
+	 * <p>
+	 * The include queries use database connections in addition to the one held by the
+	 * searching thread, so the connection pool should be sized accordingly.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public int getIncludeLoadingThreadCount() {
+		return myIncludeLoadingThreadCount;
+	}
+
+	/**
+	 * Specifies the number of threads used to resolve the <code>_include</code> and
+	 * <code>_revinclude</code> parameters of a search. When this is greater than 1, the
+	 * link queries for the individual include specifications in each round of include
+	 * resolution are executed concurrently, each using its own read-only database connection,
+	 * so that pages with many includes take as long as the slowest include rather than the
+	 * sum of all of them. Default is 1, meaning that includes are resolved one at a time
+	 * on the searching thread.
+	 * <p>
+	 * The include queries use database connections in addition to the one held by the
+	 * searching thread, so the connection pool should be sized accordingly.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setIncludeLoadingThreadCount(int theIncludeLoadingThreadCount) {
+		Validate.isTrue(theIncludeLoadingThreadCount > 0, "theIncludeLoadingThreadCount must be positive");
+		myIncludeLoadingThreadCount = theIncludeLoadingThreadCount;
+	}
+
 	/**
 	 * If set to {@link IndexEnabledEnum#DISABLED} (default is {@link IndexEnabledEnum#DISABLED})
 	 * the server will not create search indexes for search parameters with no values in resources.
@@ -585,11 +860,62 @@ public class DaoConfig {
 		myReindexThreadCount = Math.max(myReindexThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * Specifies the number of threads used to decompress and parse the stored resources
+	 * returned by a search. When this is greater than 1, the resources on each page are
+	 * decoded concurrently as they are read from the database, which can substantially
+	 * reduce the time taken to return large pages on servers with many cores. The order of
+	 * the results is not affected. Default is 1, meaning that resources are decoded one at
+	 * a time on the searching thread.
+	 *
+	 * @since 3.5.0
+	 */
+	public int getResourceDecodingThreadCount() {
+		return myResourceDecodingThreadCount;
+	}
+
+	/**
+	 * Specifies the number of threads used to decompress and parse the stored resources
+	 * returned by a search. When this is greater than 1, the resources on each page are
+	 * decoded concurrently as they are read from the database, which can substantially
+	 * reduce the time taken to return large pages on servers with many cores. The order of
+	 * the results is not affected. Default is 1, meaning that resources are decoded one at
+	 * a time on the searching thread.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setResourceDecodingThreadCount(int theResourceDecodingThreadCount) {
+		Validate.isTrue(theResourceDecodingThreadCount > 0, "theResourceDecodingThreadCount must be positive");
+		myResourceDecodingThreadCount = theResourceDecodingThreadCount;
+	}
+
+	/**
+	 * Specifies the encoding which will be used to store new resource versions
+	 * in the database. Default is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * The encoding is recorded on each stored version, so changing this setting
+	 * does not affect the ability to read versions which were stored using a
+	 * different encoding. Older versions stay in the encoding they were stored
+	 * with, and each subsequent update is stored using the new encoding.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Specifies the encoding which will be used to store new resource versions
+	 * in the database. Default is {@link ResourceEncodingEnum#JSONC}.
+	 * <p>
+	 * The encoding is recorded on each stored version, so changing this setting
+	 * does not affect the ability to read versions which were stored using a
+	 * different encoding. Older versions stay in the encoding they were stored
+	 * with, and each subsequent update is stored using the new encoding.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
+		Validate.notNull(theResourceEncoding, "theResourceEncoding must not be null");
+		Validate.isTrue(theResourceEncoding != ResourceEncodingEnum.DEL, "theResourceEncoding must not be DEL");
 		myResourceEncoding = theResourceEncoding;
 	}
 
@@ -682,6 +1008,99 @@ public class DaoConfig {
 		myReuseCachedSearchResultsForMillis = theReuseCachedSearchResultsForMillis;
 	}
 
+	/**
+	 * Specifies the maximum number of asynchronous searches which will be
+	 * executed at the same time for any single resource type (e.g. no more than
+	 * 5 concurrent <code>Observation</code> searches). Searches which would exceed
+	 * this limit are rejected with an HTTP 429 (Too Many Requests) response.
+	 * Default is <code>null</code>, meaning that no per-resource-type limit applies.
+	 * <p>
+	 * This setting is read when the search coordinator starts.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public Integer getSearchCoordinatorMaxConcurrentSearchesPerResourceType() {
+		return mySearchCoordinatorMaxConcurrentSearchesPerResourceType;
+	}
+
+	/**
+	 * Specifies the maximum number of asynchronous searches which will be
+	 * executed at the same time for any single resource type (e.g. no more than
+	 * 5 concurrent <code>Observation</code> searches). Searches which would exceed
+	 * this limit are rejected with an HTTP 429 (Too Many Requests) response.
+	 * Default is <code>null</code>, meaning that no per-resource-type limit applies.
+	 * <p>
+	 * This setting is read when the search coordinator starts.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setSearchCoordinatorMaxConcurrentSearchesPerResourceType(Integer theSearchCoordinatorMaxConcurrentSearchesPerResourceType) {
+		Validate.isTrue(theSearchCoordinatorMaxConcurrentSearchesPerResourceType == null || theSearchCoordinatorMaxConcurrentSearchesPerResourceType > 0, "theSearchCoordinatorMaxConcurrentSearchesPerResourceType must be null or positive");
+		mySearchCoordinatorMaxConcurrentSearchesPerResourceType = theSearchCoordinatorMaxConcurrentSearchesPerResourceType;
+	}
+
+	/**
+	 * Specifies the number of searches which may be waiting for a free search thread
+	 * before new searches are rejected with an HTTP 429 (Too Many Requests) response.
+	 * Default is 1000.
+	 * <p>
+	 * This setting is read when the search coordinator starts.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public int getSearchCoordinatorQueueCapacity() {
+		return mySearchCoordinatorQueueCapacity;
+	}
+
+	/**
+	 * Specifies the number of searches which may be waiting for a free search thread
+	 * before new searches are rejected with an HTTP 429 (Too Many Requests) response.
+	 * Default is 1000.
+	 * <p>
+	 * This setting is read when the search coordinator starts.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setSearchCoordinatorQueueCapacity(int theSearchCoordinatorQueueCapacity) {
+		Validate.isTrue(theSearchCoordinatorQueueCapacity > 0, "theSearchCoordinatorQueueCapacity must be positive");
+		mySearchCoordinatorQueueCapacity = theSearchCoordinatorQueueCapacity;
+	}
+
+	/**
+	 * Specifies the maximum number of threads which will be used to execute
+	 * asynchronous searches. Each running search holds a database connection
+	 * while it is loading results, so this value should be kept below the
+	 * size of the connection pool. Default is 20.
+	 * <p>
+	 * This setting is read when the search coordinator starts.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public int getSearchCoordinatorThreadCount() {
+		return mySearchCoordinatorThreadCount;
+	}
+
+	/**
+	 * Specifies the maximum number of threads which will be used to execute
+	 * asynchronous searches. Each running search holds a database connection
+	 * while it is loading results, so this value should be kept below the
+	 * size of the connection pool. Default is 20.
+	 * <p>
+	 * This setting is read when the search coordinator starts.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setSearchCoordinatorThreadCount(int theSearchCoordinatorThreadCount) {
+		Validate.isTrue(theSearchCoordinatorThreadCount > 0, "theSearchCoordinatorThreadCount must be positive");
+		mySearchCoordinatorThreadCount = theSearchCoordinatorThreadCount;
+	}
+
 	/**
 	 * Specifies the duration in minutes for which values will be retained after being
 	 * written to the terminology translation cache. Defaults to 60.
@@ -1086,6 +1505,78 @@ public class DaoConfig {
 		myDeleteStaleSearches = theDeleteStaleSearches;
 	}
 
+	/**
+	 * If this is set to <code>true</code> (default is <code>false</code>) the stale search deletion
+	 * task will delete expired searches in bulk: the results of many searches are deleted together
+	 * in batches of {@link #getStaleSearchDeleteBatchSize()} rows, using
+	 * {@link #getStaleSearchDeleteThreadCount()} threads. This is much faster than deleting
+	 * searches one by one, which can fall behind on a busy server.
+	 *
+	 * @since 3.5.0
+	 */
+	public boolean isDeleteStaleSearchesInBulk() {
+		return myDeleteStaleSearchesInBulk;
+	}
+
+	/**
+	 * If this is set to <code>true</code> (default is <code>false</code>) the stale search deletion
+	 * task will delete expired searches in bulk: the results of many searches are deleted together
+	 * in batches of {@link #getStaleSearchDeleteBatchSize()} rows, using
+	 * {@link #getStaleSearchDeleteThreadCount()} threads. This is much faster than deleting
+	 * searches one by one, which can fall behind on a busy server.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setDeleteStaleSearchesInBulk(boolean theDeleteStaleSearchesInBulk) {
+		myDeleteStaleSearchesInBulk = theDeleteStaleSearchesInBulk;
+	}
+
+	/**
+	 * When deleting stale searches in bulk (see {@link #setDeleteStaleSearchesInBulk(boolean)}),
+	 * specifies the maximum number of search result rows which will be deleted in a single
+	 * database transaction. Default is 1000.
+	 *
+	 * @since 3.5.0
+	 */
+	public int getStaleSearchDeleteBatchSize() {
+		return myStaleSearchDeleteBatchSize;
+	}
+
+	/**
+	 * When deleting stale searches in bulk (see {@link #setDeleteStaleSearchesInBulk(boolean)}),
+	 * specifies the maximum number of search result rows which will be deleted in a single
+	 * database transaction. Default is 1000.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setStaleSearchDeleteBatchSize(int theStaleSearchDeleteBatchSize) {
+		Validate.isTrue(theStaleSearchDeleteBatchSize > 0, "theStaleSearchDeleteBatchSize must be positive");
+		myStaleSearchDeleteBatchSize = theStaleSearchDeleteBatchSize;
+	}
+
+	/**
+	 * When deleting stale searches in bulk (see {@link #setDeleteStaleSearchesInBulk(boolean)}),
+	 * specifies the number of threads which will be used to delete searches in parallel.
+	 * Default is 1. This setting is read when the stale search deletion service starts.
+	 *
+	 * @since 3.5.0
+	 */
+	public int getStaleSearchDeleteThreadCount() {
+		return myStaleSearchDeleteThreadCount;
+	}
+
+	/**
+	 * When deleting stale searches in bulk (see {@link #setDeleteStaleSearchesInBulk(boolean)}),
+	 * specifies the number of threads which will be used to delete searches in parallel.
+	 * Default is 1. This setting is read when the stale search deletion service starts.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setStaleSearchDeleteThreadCount(int theStaleSearchDeleteThreadCount) {
+		Validate.isTrue(theStaleSearchDeleteThreadCount > 0, "theStaleSearchDeleteThreadCount must be positive");
+		myStaleSearchDeleteThreadCount = theStaleSearchDeleteThreadCount;
+	}
+
 	/**
 	 * If set to <code>true</code> (default is <code>false</code>), the $expunge operation
 	 * will be enabled on this server. This operation is potentially dangerous since it allows
@@ -1150,6 +1641,68 @@ public class DaoConfig {
 		myMarkResourcesForReindexingUponSearchParameterChange = theMarkResourcesForReindexingUponSearchParameterChange;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), ValueSets which are
+	 * used in <code>:in</code> searches are expanded in the background and the expansion
+	 * is stored in the database. Subsequent <code>:in</code> searches against the same
+	 * ValueSet then join against the stored expansion instead of expanding the ValueSet
+	 * and including every code in the SQL. A stored expansion is rebuilt whenever the
+	 * ValueSet, or a ValueSet or CodeSystem it draws codes from, changes, and the ValueSet
+	 * is expanded in memory as usual until the rebuilt expansion is available.
+	 *
+	 * @since 3.5.0
+	 */
+	public boolean isPreExpandValueSets() {
+		return myPreExpandValueSets;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), ValueSets which are
+	 * used in <code>:in</code> searches are expanded in the background and the expansion
+	 * is stored in the database. Subsequent <code>:in</code> searches against the same
+	 * ValueSet then join against the stored expansion instead of expanding the ValueSet
+	 * and including every code in the SQL. A stored expansion is rebuilt whenever the
+	 * ValueSet, or a ValueSet or CodeSystem it draws codes from, changes, and the ValueSet
+	 * is expanded in memory as usual until the rebuilt expansion is available.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setPreExpandValueSets(boolean thePreExpandValueSets) {
+		myPreExpandValueSets = thePreExpandValueSets;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), resources affected by a
+	 * SearchParameter change are reindexed using a partitioned reindexing job instead of
+	 * being individually marked as requiring reindexing. The job splits the affected
+	 * resource PIDs into ranges which are processed in parallel by
+	 * {@link #getReindexThreadCount()} threads, and records its progress in the database
+	 * so that it resumes where it left off if the server is restarted. This is much faster
+	 * for large repositories.
+	 *
+	 * @see #setMarkResourcesForReindexingUponSearchParameterChange(boolean)
+	 * @since 3.5.0
+	 */
+	public boolean isReindexUsingPartitionedJob() {
+		return myReindexUsingPartitionedJob;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), resources affected by a
+	 * SearchParameter change are reindexed using a partitioned reindexing job instead of
+	 * being individually marked as requiring reindexing. The job splits the affected
+	 * resource PIDs into ranges which are processed in parallel by
+	 * {@link #getReindexThreadCount()} threads, and records its progress in the database
+	 * so that it resumes where it left off if the server is restarted. This is much faster
+	 * for large repositories.
+	 *
+	 * @see #setMarkResourcesForReindexingUponSearchParameterChange(boolean)
+	 * @since 3.5.0
+	 */
+	public void setReindexUsingPartitionedJob(boolean theReindexUsingPartitionedJob) {
+		myReindexUsingPartitionedJob = theReindexUsingPartitionedJob;
+	}
+
 	public boolean isSchedulingDisabled() {
 		return mySchedulingDisabled;
 	}
@@ -0,0 +1,221 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DecodedResourceCacheSvcImpl implements IDecodedResourceCacheSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(DecodedResourceCacheSvcImpl.class);
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private Cache<Pair<Long, Long>, CachedResource> myCache;
+	private volatile long myMaximumWeight;
+	private final ThreadLocal<Map<Pair<Long, Long>, CachedResource>> myBoundPendingEntries = new ThreadLocal<>();
+
+	@Override
+	public Runnable bindToCurrentTransaction(Runnable theTask) {
+		Map<Pair<Long, Long>, CachedResource> pending = getPendingEntriesIfTransactionActive(true);
+		if (pending == null) {
+			return theTask;
+		}
+		return () -> {
+			myBoundPendingEntries.set(pending);
+			try {
+				theTask.run();
+			} finally {
+				myBoundPendingEntries.remove();
+			}
+		};
+	}
+
+	@Override
+	public void clearCache() {
+		myCache.invalidateAll();
+		Map<Pair<Long, Long>, CachedResource> pending = getPendingEntriesIfTransactionActive(false);
+		if (pending != null) {
+			pending.clear();
+		}
+	}
+
+	@Override
+	public <T extends IBaseResource> T get(Long theResourceId, Long theVersion, Class<T> theResourceType) {
+		Pair<Long, Long> key = Pair.of(theResourceId, theVersion);
+		CachedResource cached = myCache.getIfPresent(key);
+		if (cached == null) {
+			Map<Pair<Long, Long>, CachedResource> pending = getPendingEntriesIfTransactionActive(false);
+			if (pending != null) {
+				cached = pending.get(key);
+			}
+		}
+
+		/*
+		 * A different type is requested if the context has a custom type
+		 * registered for one of the resource's profiles
+		 */
+		if (cached == null || !theResourceType.equals(cached.getResource().getClass())) {
+			return null;
+		}
+		return theResourceType.cast(copy(cached.getResource()));
+	}
+
+	@Override
+	public long getHitCount() {
+		return myCache.stats().hitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return myCache.stats().missCount();
+	}
+
+	/**
+	 * Returns the map of entries which have been added in the current database
+	 * transaction, which are only added to the shared cache once the transaction
+	 * commits. This avoids caching a resource version which was created by a
+	 * transaction which is then rolled back. Worker threads which have been bound to
+	 * a transaction using {@link #bindToCurrentTransaction(Runnable)} share the map
+	 * belonging to that transaction.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Pair<Long, Long>, CachedResource> getPendingEntriesIfTransactionActive(boolean theCreateIfMissing) {
+		Map<Pair<Long, Long>, CachedResource> bound = myBoundPendingEntries.get();
+		if (bound != null) {
+			return bound;
+		}
+
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		Map<Pair<Long, Long>, CachedResource> retVal = (Map<Pair<Long, Long>, CachedResource>) TransactionSynchronizationManager.getResource(this);
+		if (retVal == null && theCreateIfMissing) {
+			final Map<Pair<Long, Long>, CachedResource> pending = new ConcurrentHashMap<>();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					myCache.putAll(pending);
+				}
+
+				@Override
+				public void afterCompletion(int theStatus) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(DecodedResourceCacheSvcImpl.this);
+				}
+			});
+			retVal = pending;
+		}
+		return retVal;
+	}
+
+	@Override
+	public boolean isEnabled(String theResourceType) {
+		return myDaoConfig.getDecodedResourceCacheResourceTypes().contains(theResourceType);
+	}
+
+	@Override
+	public void put(Long theResourceId, Long theVersion, IBaseResource theResource, int theWeight) {
+		/*
+		 * Only structures with a copy() method (i.e. not the DSTU2 HAPI
+		 * structures) can be safely handed out to more than one caller
+		 */
+		if (!(theResource instanceof IAnyResource)) {
+			return;
+		}
+
+		updateMaximumWeight();
+
+		Pair<Long, Long> key = Pair.of(theResourceId, theVersion);
+		CachedResource value = new CachedResource(copy(theResource), theWeight);
+		Map<Pair<Long, Long>, CachedResource> pending = getPendingEntriesIfTransactionActive(true);
+		if (pending != null) {
+			pending.put(key, value);
+		} else {
+			myCache.put(key, value);
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		myMaximumWeight = myDaoConfig.getDecodedResourceCacheMaximumWeight();
+		myCache = Caffeine
+			.newBuilder()
+			.maximumWeight(myMaximumWeight)
+			.weigher((Pair<Long, Long> theKey, CachedResource theValue) -> theValue.getWeight())
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * Applies the current {@link DaoConfig#getDecodedResourceCacheMaximumWeight()} to the
+	 * cache, in case the setting was changed at runtime
+	 */
+	private void updateMaximumWeight() {
+		long maximumWeight = myDaoConfig.getDecodedResourceCacheMaximumWeight();
+		if (maximumWeight != myMaximumWeight) {
+			myMaximumWeight = maximumWeight;
+			myCache.policy().eviction().ifPresent(t -> t.setMaximum(maximumWeight));
+		}
+	}
+
+	private static IBaseResource copy(IBaseResource theResource) {
+		try {
+			return (IBaseResource) theResource.getClass().getMethod("copy").invoke(theResource);
+		} catch (Exception e) {
+			ourLog.error("Failed to copy resource of type " + theResource.getClass().getName(), e);
+			throw new InternalErrorException("Failed to copy resource of type " + theResource.getClass().getName(), e);
+		}
+	}
+
+	private static class CachedResource {
+		private final IBaseResource myResource;
+		private final int myWeight;
+
+		CachedResource(IBaseResource theResource, int theWeight) {
+			myResource = theResource;
+			myWeight = theWeight;
+		}
+
+		IBaseResource getResource() {
+			return myResource;
+		}
+
+		int getWeight() {
+			return myWeight;
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
+import ca.uhn.fhir.jpa.entity.ForcedId;
+import ca.uhn.fhir.model.primitive.IdDt;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+public class ForcedIdSvcImpl implements IForcedIdSvc {
+
+	static final int MAXIMUM_IDS_PER_QUERY = 800;
+
+	@Autowired
+	private IForcedIdDao myForcedIdDao;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private Cache<String, Long> myForcedIdToPidCache;
+
+	@Override
+	public void clearCache() {
+		myForcedIdToPidCache.invalidateAll();
+		Map<String, Long> pending = getPendingEntriesIfTransactionActive(false);
+		if (pending != null) {
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Returns the map of entries which have been resolved in the current
+	 * database transaction, which are only added to the shared cache once the
+	 * transaction commits. This avoids caching a forced ID that was created
+	 * by a transaction which is then rolled back.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Long> getPendingEntriesIfTransactionActive(boolean theCreateIfMissing) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		Map<String, Long> retVal = (Map<String, Long>) TransactionSynchronizationManager.getResource(this);
+		if (retVal == null && theCreateIfMissing) {
+			final Map<String, Long> pending = new HashMap<>();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					myForcedIdToPidCache.putAll(pending);
+				}
+
+				@Override
+				public void afterCompletion(int theStatus) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(ForcedIdSvcImpl.this);
+				}
+			});
+			retVal = pending;
+		}
+		return retVal;
+	}
+
+	private Long getCachedPid(String theKey) {
+		Long retVal = myForcedIdToPidCache.getIfPresent(theKey);
+		if (retVal == null) {
+			Map<String, Long> pending = getPendingEntriesIfTransactionActive(false);
+			if (pending != null) {
+				retVal = pending.get(theKey);
+			}
+		}
+		return retVal;
+	}
+
+	@Override
+	public void invalidate(String theResourceType, String theForcedId) {
+		final String key = toKey(theResourceType, theForcedId);
+		myForcedIdToPidCache.invalidate(key);
+
+		Map<String, Long> pending = getPendingEntriesIfTransactionActive(false);
+		if (pending != null) {
+			pending.remove(key);
+		}
+
+		/*
+		 * Another thread may have cached the old value while our transaction was
+		 * still in progress, so invalidate again once we're done
+		 */
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					myForcedIdToPidCache.invalidate(key);
+				}
+			});
+		}
+	}
+
+	private void putCachedPid(String theKey, Long thePid) {
+		Map<String, Long> pending = getPendingEntriesIfTransactionActive(true);
+		if (pending != null) {
+			pending.put(theKey, thePid);
+		} else {
+			myForcedIdToPidCache.put(theKey, thePid);
+		}
+	}
+
+	@VisibleForTesting
+	void setDaoConfigForUnitTest(DaoConfig theDaoConfig) {
+		myDaoConfig = theDaoConfig;
+	}
+
+	@VisibleForTesting
+	void setForcedIdDaoForUnitTest(IForcedIdDao theForcedIdDao) {
+		myForcedIdDao = theForcedIdDao;
+	}
+
+	@PostConstruct
+	public void start() {
+		myForcedIdToPidCache = Caffeine
+			.newBuilder()
+			.maximumSize(myDaoConfig.getForcedIdCacheMaximumSize())
+			.expireAfterWrite(myDaoConfig.getForcedIdCacheExpireAfterWriteInMinutes(), TimeUnit.MINUTES)
+			.build();
+	}
+
+	@Override
+	public Long translateForcedIdToPid(String theResourceType, String theResourceId) {
+		return translateForcedIdToPids(new IdDt(theResourceType, theResourceId)).get(0);
+	}
+
+	@Override
+	public List<Long> translateForcedIdToPids(IIdType theId) {
+		Validate.isTrue(theId.hasIdPart());
+
+		/*
+		 * Only type-qualified forced IDs are cached, since an unqualified
+		 * ID may resolve to more than one resource
+		 */
+		if (BaseHapiFhirDao.isValidPid(theId) || !theId.hasResourceType()) {
+			return BaseHapiFhirDao.translateForcedIdToPids(theId, myForcedIdDao);
+		}
+
+		String key = toKey(theId.getResourceType(), theId.getIdPart());
+		Long cachedPid = getCachedPid(key);
+		if (cachedPid != null) {
+			return Collections.singletonList(cachedPid);
+		}
+
+		List<Long> retVal = BaseHapiFhirDao.translateForcedIdToPids(theId, myForcedIdDao);
+		if (retVal.size() == 1) {
+			putCachedPid(key, retVal.get(0));
+		}
+		return retVal;
+	}
+
+	@Override
+	public Map<String, Long> translateForcedIdsToPids(String theResourceType, Collection<String> theIds) {
+		Validate.notBlank(theResourceType, "theResourceType must not be blank");
+
+		Map<String, Long> retVal = new HashMap<>();
+		List<String> idsToLoad = new ArrayList<>();
+		for (String next : new LinkedHashSet<>(theIds)) {
+			if (isBlank(next)) {
+				continue;
+			}
+			if (BaseHapiFhirDao.isValidPid(new IdDt(next))) {
+				retVal.put(next, Long.parseLong(next));
+				continue;
+			}
+			Long cachedPid = getCachedPid(toKey(theResourceType, next));
+			if (cachedPid != null) {
+				retVal.put(next, cachedPid);
+			} else {
+				idsToLoad.add(next);
+			}
+		}
+
+		for (List<String> nextChunk : Lists.partition(idsToLoad, MAXIMUM_IDS_PER_QUERY)) {
+			for (ForcedId next : myForcedIdDao.findByTypeAndForcedIds(theResourceType, nextChunk)) {
+				retVal.put(next.getForcedId(), next.getResourcePid());
+				putCachedPid(toKey(theResourceType, next.getForcedId()), next.getResourcePid());
+			}
+		}
+
+		return retVal;
+	}
+
+	private static String toKey(String theResourceType, String theForcedId) {
+		return theResourceType + '/' + theForcedId;
+	}
+
+}
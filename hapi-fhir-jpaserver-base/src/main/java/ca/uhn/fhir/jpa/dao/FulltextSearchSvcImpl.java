@@ -20,7 +20,6 @@ package ca.uhn.fhir.jpa.dao;
  * #L%
  */
 
-import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.rest.api.Constants;
@@ -63,7 +62,7 @@ public class FulltextSearchSvcImpl implements IFulltextSearchSvc {
 	private PlatformTransactionManager myTxManager;
 
 	@Autowired
-	protected IForcedIdDao myForcedIdDao;
+	protected IForcedIdSvc myForcedIdSvc;
 
 	private Boolean ourDisabled;
 
@@ -222,7 +221,7 @@ public class FulltextSearchSvcImpl implements IFulltextSearchSvc {
 				StringParam idParm = (StringParam) idParam;
 				idParamValue = idParm.getValue();
 			}
-			pid = BaseHapiFhirDao.translateForcedIdToPid(theResourceName, idParamValue, myForcedIdDao);
+			pid = myForcedIdSvc.translateForcedIdToPid(theResourceName, idParamValue);
 		}
 
 		Long referencingPid = pid;
@@ -275,7 +274,7 @@ public class FulltextSearchSvcImpl implements IFulltextSearchSvc {
 		if (contextParts.length != 3 || "Patient".equals(contextParts[0]) == false || "$everything".equals(contextParts[2]) == false) {
 			throw new InvalidRequestException("Invalid context: " + theContext);
 		}
-		Long pid = BaseHapiFhirDao.translateForcedIdToPid(contextParts[0], contextParts[1], myForcedIdDao);
+		Long pid = myForcedIdSvc.translateForcedIdToPid(contextParts[0], contextParts[1]);
 
 		FullTextEntityManager em = org.hibernate.search.jpa.Search.getFullTextEntityManager(myEntityManager);
 
@@ -0,0 +1,79 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * Holds parsed resources keyed by resource PID and version, so that frequently read
+ * resources do not need to be decompressed and parsed each time they are loaded. The
+ * resource types which are cached are configured using
+ * {@link DaoConfig#setDecodedResourceCacheResourceTypes(java.util.Set)}.
+ * <p>
+ * Resources are copied as they are added to and retrieved from the cache, so callers
+ * are free to modify the instances they receive.
+ * </p>
+ */
+public interface IDecodedResourceCacheSvc {
+
+	/**
+	 * Remove all cached entries
+	 */
+	void clearCache();
+
+	/**
+	 * Returns a copy of the cached resource for the given resource PID and version, or
+	 * <code>null</code> if no resource of the given type is cached
+	 */
+	<T extends IBaseResource> T get(Long theResourceId, Long theVersion, Class<T> theResourceType);
+
+	/**
+	 * Wraps a task which will be run on another thread so that any entries it reads or adds
+	 * are treated as part of the database transaction which is active on the calling thread,
+	 * exactly as though the task had been run on the calling thread. The task must complete
+	 * before that transaction does.
+	 */
+	Runnable bindToCurrentTransaction(Runnable theTask);
+
+	/**
+	 * Returns the number of lookups which have found a cached resource
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns the number of lookups which have not found a cached resource
+	 */
+	long getMissCount();
+
+	/**
+	 * Should resources of the given type be cached?
+	 */
+	boolean isEnabled(String theResourceType);
+
+	/**
+	 * Adds a copy of the given resource to the cache
+	 *
+	 * @param theWeight The size in bytes of the decoded (uncompressed) encoding of the resource, used
+	 *                  as an estimate of the memory held by the parsed resource
+	 */
+	void put(Long theResourceId, Long theVersion, IBaseResource theResource, int theWeight);
+
+}
@@ -28,6 +28,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import javax.annotation.Nullable;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -69,6 +70,14 @@ public interface IFhirSystemDao<T, MT> extends IDao {
 
 	Integer performReindexingPass(Integer theCount);
 
+	/**
+	 * Reindexes the given resources in the calling thread, each one in its
+	 * own transaction. Resources which fail to reindex are marked as errored.
+	 *
+	 * @param theResourcePids The PIDs of the resources to reindex
+	 */
+	void reindex(List<Long> theResourcePids);
+
 	T transaction(RequestDetails theRequestDetails, T theResources);
 
 }
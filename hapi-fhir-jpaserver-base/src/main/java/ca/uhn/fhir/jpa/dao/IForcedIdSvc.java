@@ -0,0 +1,68 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves client assigned (forced) resource IDs to the PIDs they are stored
+ * under, using a bounded cache to avoid a database round trip for IDs
+ * which have been seen recently.
+ */
+public interface IForcedIdSvc {
+
+	/**
+	 * Remove all cached entries. This should be called whenever forced IDs
+	 * are removed from the database in bulk.
+	 */
+	void clearCache();
+
+	/**
+	 * Remove any cached entry for the given forced ID. This should be called
+	 * whenever an individual forced ID is removed from the database.
+	 */
+	void invalidate(String theResourceType, String theForcedId);
+
+	/**
+	 * @throws ResourceNotFoundException If the ID can not be found
+	 */
+	Long translateForcedIdToPid(String theResourceType, String theResourceId);
+
+	/**
+	 * @throws ResourceNotFoundException If the ID can not be found
+	 */
+	List<Long> translateForcedIdToPids(IIdType theId);
+
+	/**
+	 * Resolves a collection of IDs for a single resource type using as few
+	 * database queries as possible. IDs which are already numeric are returned
+	 * as-is, and IDs which can not be found are simply absent from the returned map.
+	 *
+	 * @return A map of the given ID part to the corresponding resource PID
+	 */
+	Map<String, Long> translateForcedIdsToPids(String theResourceType, Collection<String> theIds);
+
+}
@@ -0,0 +1,65 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves conditional match URLs (e.g. <code>Patient?identifier=http://foo|123</code>)
+ * in bulk, so that a transaction containing many conditional creates or updates
+ * doesn't need to perform a separate search for each one.
+ */
+public interface IMatchUrlResolverSvc {
+
+	/**
+	 * Remove any matches previously supplied to {@link #setPreResolvedMatches(String, Map)}
+	 * in the current database transaction
+	 */
+	void clearPreResolvedMatches();
+
+	/**
+	 * Returns the matches for the given URL which were supplied to
+	 * {@link #setPreResolvedMatches(String, Map)} in the current database transaction
+	 *
+	 * @return Returns {@literal null} if the URL has not been pre-resolved
+	 */
+	Set<Long> getPreResolvedMatch(String theResourceType, String theMatchUrl);
+
+	/**
+	 * Resolves a collection of match URLs for a single resource type using as few
+	 * database queries as possible. Only URLs consisting of a single token parameter
+	 * with both a system and a value are resolved this way. Any other URLs are
+	 * absent from the returned map, and need to be resolved using a regular search.
+	 *
+	 * @return A map of the given match URL to the PIDs of the resources it matches
+	 */
+	Map<String, Set<Long>> resolveMatchUrls(String theResourceType, Collection<String> theMatchUrls);
+
+	/**
+	 * Makes the given matches available to {@link #getPreResolvedMatch(String, String)}
+	 * until the current database transaction completes, or until
+	 * {@link #clearPreResolvedMatches()} is called.
+	 */
+	void setPreResolvedMatches(String theResourceType, Map<String, Set<Long>> theMatches);
+
+}
@@ -0,0 +1,190 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.dao.data.IResourceIndexedSearchParamTokenDao;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.rest.api.QualifiedParamList;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.NameValuePair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+public class MatchUrlResolverSvcImpl implements IMatchUrlResolverSvc {
+
+	static final int MAXIMUM_HASHES_PER_QUERY = 800;
+
+	@Autowired
+	private IResourceIndexedSearchParamTokenDao myResourceIndexedSearchParamTokenDao;
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	@Override
+	public void clearPreResolvedMatches() {
+		Map<String, Set<Long>> pending = getPreResolvedMatchesIfTransactionActive(false);
+		if (pending != null) {
+			pending.clear();
+		}
+	}
+
+	@Override
+	public Set<Long> getPreResolvedMatch(String theResourceType, String theMatchUrl) {
+		Map<String, Set<Long>> pending = getPreResolvedMatchesIfTransactionActive(false);
+		if (pending == null) {
+			return null;
+		}
+		Set<Long> retVal = pending.get(toKey(theResourceType, theMatchUrl));
+		if (retVal == null) {
+			return null;
+		}
+		return new HashSet<>(retVal);
+	}
+
+	/**
+	 * Pre-resolved matches are only valid for the database transaction
+	 * they were resolved in, so we bind them to that transaction
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Set<Long>> getPreResolvedMatchesIfTransactionActive(boolean theCreateIfMissing) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		Map<String, Set<Long>> retVal = (Map<String, Set<Long>>) TransactionSynchronizationManager.getResource(this);
+		if (retVal == null && theCreateIfMissing) {
+			retVal = new HashMap<>();
+			TransactionSynchronizationManager.bindResource(this, retVal);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(MatchUrlResolverSvcImpl.this);
+				}
+			});
+		}
+		return retVal;
+	}
+
+	@Override
+	public Map<String, Set<Long>> resolveMatchUrls(String theResourceType, Collection<String> theMatchUrls) {
+		Validate.notBlank(theResourceType, "theResourceType must not be blank");
+
+		Map<Long, List<String>> hashToMatchUrls = new HashMap<>();
+		Map<String, Set<Long>> retVal = new HashMap<>();
+		for (String next : new LinkedHashSet<>(theMatchUrls)) {
+			Long hash = toHashSystemAndValue(theResourceType, next);
+			if (hash != null) {
+				hashToMatchUrls.computeIfAbsent(hash, t -> new ArrayList<>()).add(next);
+				retVal.put(next, new HashSet<>());
+			}
+		}
+
+		for (List<Long> nextChunk : Lists.partition(new ArrayList<>(hashToMatchUrls.keySet()), MAXIMUM_HASHES_PER_QUERY)) {
+			for (Object[] next : myResourceIndexedSearchParamTokenDao.findResourcePidsByHashSystemAndValue(nextChunk)) {
+				Long hash = (Long) next[0];
+				Long pid = (Long) next[1];
+				for (String nextMatchUrl : hashToMatchUrls.get(hash)) {
+					retVal.get(nextMatchUrl).add(pid);
+				}
+			}
+		}
+
+		return retVal;
+	}
+
+	@Override
+	public void setPreResolvedMatches(String theResourceType, Map<String, Set<Long>> theMatches) {
+		Map<String, Set<Long>> pending = getPreResolvedMatchesIfTransactionActive(true);
+		if (pending != null) {
+			for (Map.Entry<String, Set<Long>> next : theMatches.entrySet()) {
+				pending.put(toKey(theResourceType, next.getKey()), next.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return Returns the hash to search for, or {@literal null} if the URL is anything
+	 * more complicated than a single token parameter with a system and a value
+	 */
+	private Long toHashSystemAndValue(String theResourceType, String theMatchUrl) {
+		if (isBlank(theMatchUrl)) {
+			return null;
+		}
+		int questionMarkIndex = theMatchUrl.indexOf('?');
+		if (questionMarkIndex != -1 && !theMatchUrl.substring(0, questionMarkIndex).equals(theResourceType)) {
+			return null;
+		}
+
+		List<NameValuePair> parameters;
+		try {
+			parameters = BaseHapiFhirDao.translateMatchUrl(theMatchUrl);
+		} catch (InvalidRequestException e) {
+			// Let the regular search report this
+			return null;
+		}
+		if (parameters.size() != 1) {
+			return null;
+		}
+
+		String paramName = parameters.get(0).getName();
+		String paramValue = parameters.get(0).getValue();
+		if (isBlank(paramName) || isBlank(paramValue) || paramName.startsWith("_") || paramName.contains(":") || paramName.contains(".")) {
+			return null;
+		}
+
+		RuntimeSearchParam paramDef = mySearchParamRegistry.getActiveSearchParam(theResourceType, paramName);
+		if (paramDef == null || paramDef.getParamType() != RestSearchParameterTypeEnum.TOKEN) {
+			return null;
+		}
+
+		QualifiedParamList values = QualifiedParamList.splitQueryStringByCommasIgnoreEscape(null, paramValue);
+		if (values.size() != 1) {
+			return null;
+		}
+
+		TokenParam token = new TokenParam();
+		token.setValueAsQueryToken(null, paramName, null, values.get(0));
+		String system = token.getSystem();
+		String value = token.getValue();
+		if (isBlank(system) || isBlank(value)) {
+			return null;
+		}
+		if (system.length() > ResourceIndexedSearchParamToken.MAX_LENGTH || value.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+			return null;
+		}
+
+		return ResourceIndexedSearchParamToken.calculateHashSystemAndValue(theResourceType, paramName, system, value);
+	}
+
+	private static String toKey(String theResourceType, String theMatchUrl) {
+		return theResourceType + '/' + theMatchUrl;
+	}
+
+}
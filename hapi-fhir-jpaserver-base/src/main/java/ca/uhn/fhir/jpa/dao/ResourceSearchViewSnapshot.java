@@ -0,0 +1,161 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.jpa.entity.BaseTag;
+import ca.uhn.fhir.jpa.entity.IBaseResourceEntity;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.entity.ResourceSearchView;
+import ca.uhn.fhir.jpa.entity.TagDefinition;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.model.primitive.InstantDt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A detached copy of a {@link ResourceSearchView} row and its tags, holding only the plain
+ * values needed to decode the resource. The search builder builds these on the thread which
+ * reads the query results, so that the decoder threads never touch a Hibernate managed entity
+ * (and so never trigger lazy loading on a session owned by another thread).
+ */
+final class ResourceSearchViewSnapshot implements IBaseResourceEntity {
+
+	private final Date myDeleted;
+	private final FhirVersionEnum myFhirVersion;
+	private final Long myResourceId;
+	private final String myResourceType;
+	private final String myIdValue;
+	private final long myVersion;
+	private final boolean myHasTags;
+	private final Date myPublished;
+	private final Date myUpdated;
+	private final byte[] myResource;
+	private final ResourceEncodingEnum myEncoding;
+	private final List<BaseTag> myTags;
+
+	/**
+	 * @param theView The view row to copy
+	 * @param theTags The tag definitions attached to the resource. These are copied too.
+	 */
+	ResourceSearchViewSnapshot(ResourceSearchView theView, Collection<TagDefinition> theTags) {
+		myDeleted = copy(theView.getDeleted());
+		myFhirVersion = theView.getFhirVersion();
+		myResourceId = theView.getResourceId();
+		myResourceType = theView.getResourceType();
+		myIdValue = theView.getIdDt().getValue();
+		myVersion = theView.getVersion();
+		myHasTags = theView.isHasTags();
+		InstantDt published = theView.getPublished();
+		myPublished = published != null ? copy(published.getValue()) : null;
+		myUpdated = copy(theView.getUpdatedDate());
+		myResource = theView.getResource();
+		myEncoding = theView.getEncoding();
+
+		List<BaseTag> tags = new ArrayList<>(theTags.size());
+		for (TagDefinition next : theTags) {
+			BaseTag tag = new BaseTag();
+			tag.setTag(new TagDefinition(next.getTagType(), next.getSystem(), next.getCode(), next.getDisplay()));
+			tags.add(tag);
+		}
+		myTags = Collections.unmodifiableList(tags);
+	}
+
+	@Override
+	public Date getDeleted() {
+		return copy(myDeleted);
+	}
+
+	public ResourceEncodingEnum getEncoding() {
+		return myEncoding;
+	}
+
+	@Override
+	public FhirVersionEnum getFhirVersion() {
+		return myFhirVersion;
+	}
+
+	@Override
+	public Long getId() {
+		return myResourceId;
+	}
+
+	@Override
+	public IdDt getIdDt() {
+		return new IdDt(myIdValue);
+	}
+
+	@Override
+	public InstantDt getPublished() {
+		if (myPublished != null) {
+			return new InstantDt(copy(myPublished));
+		} else {
+			return null;
+		}
+	}
+
+	public byte[] getResource() {
+		return myResource;
+	}
+
+	@Override
+	public Long getResourceId() {
+		return myResourceId;
+	}
+
+	@Override
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public List<BaseTag> getTags() {
+		return myTags;
+	}
+
+	@Override
+	public InstantDt getUpdated() {
+		return new InstantDt(copy(myUpdated));
+	}
+
+	@Override
+	public Date getUpdatedDate() {
+		return copy(myUpdated);
+	}
+
+	@Override
+	public long getVersion() {
+		return myVersion;
+	}
+
+	@Override
+	public boolean isHasTags() {
+		return myHasTags;
+	}
+
+	private static Date copy(Date theDate) {
+		return theDate != null ? new Date(theDate.getTime()) : null;
+	}
+
+}
@@ -27,6 +27,8 @@ import ca.uhn.fhir.jpa.dao.data.IResourceSearchViewDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.entity.*;
 import ca.uhn.fhir.jpa.search.JpaRuntimeSearchParam;
+import ca.uhn.fhir.jpa.search.SearchIncludeLoaderSvc;
+import ca.uhn.fhir.jpa.search.SearchResourceDecoderSvc;
 import ca.uhn.fhir.jpa.term.IHapiTerminologySvc;
 import ca.uhn.fhir.jpa.term.VersionIndependentConcept;
 import ca.uhn.fhir.jpa.util.BaseIterator;
@@ -77,6 +79,8 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
@@ -100,6 +104,8 @@ public class SearchBuilder implements ISearchBuilder {
 	private EntityManager myEntityManager;
 	private IForcedIdDao myForcedIdDao;
 	private IFulltextSearchSvc myFulltextSearchSvc;
+	private SearchIncludeLoaderSvc myIncludeLoaderSvc;
+	private SearchResourceDecoderSvc myResourceDecoderSvc;
 	private Map<JoinKey, Join<?, ?>> myIndexJoins = Maps.newHashMap();
 	private SearchParameterMap myParams;
 	private ArrayList<Predicate> myPredicates;
@@ -123,7 +129,8 @@ public class SearchBuilder implements ISearchBuilder {
 			IFulltextSearchSvc theFulltextSearchSvc, BaseHapiFhirDao<?> theDao,
 			IResourceIndexedSearchParamUriDao theResourceIndexedSearchParamUriDao, IForcedIdDao theForcedIdDao,
 			IHapiTerminologySvc theTerminologySvc, ISearchParamRegistry theSearchParamRegistry,
-			IResourceTagDao theResourceTagDao, IResourceSearchViewDao theResourceViewDao) {
+			IResourceTagDao theResourceTagDao, IResourceSearchViewDao theResourceViewDao, SearchIncludeLoaderSvc theIncludeLoaderSvc,
+			SearchResourceDecoderSvc theResourceDecoderSvc) {
 		myContext = theFhirContext;
 		myEntityManager = theEntityManager;
 		myFulltextSearchSvc = theFulltextSearchSvc;
@@ -134,6 +141,8 @@ public class SearchBuilder implements ISearchBuilder {
 		mySearchParamRegistry = theSearchParamRegistry;
 		myResourceTagDao = theResourceTagDao;
 		myResourceSearchViewDao = theResourceViewDao;
+		myIncludeLoaderSvc = theIncludeLoaderSvc;
+		myResourceDecoderSvc = theResourceDecoderSvc;
 	}
 
 	private void addPredicateComposite(String theResourceName, RuntimeSearchParam theParamDef, List<? extends IQueryParameterType> theNextAnd) {
@@ -1206,12 +1215,39 @@ public class SearchBuilder implements ISearchBuilder {
 
 		List<VersionIndependentConcept> codes;
 		if (modifier == TokenParamModifier.IN) {
+
+			/*
+			 * If we have a stored expansion of the ValueSet, join against
+			 * it instead of passing every code in the expansion as a literal
+			 */
+			Long expansionPid = myTerminologySvc.findPreExpandedValueSetPid(code);
+			if (expansionPid != null) {
+				Subquery<Long> subQ = myResourceTableQuery.subquery(Long.class);
+				Root<TermValueSetExpansionConcept> subQfrom = subQ.from(TermValueSetExpansionConcept.class);
+				subQ.select(subQfrom.get("myId").as(Long.class));
+				Predicate expansionPredicate = theBuilder.equal(subQfrom.get("myExpansionPid").as(Long.class), expansionPid);
+				Predicate systemPredicate = theBuilder.equal(subQfrom.get("mySystem"), theFrom.get("mySystem"));
+				Predicate codePredicate = theBuilder.equal(subQfrom.get("myCode"), theFrom.get("myValue"));
+				subQ.where(theBuilder.and(expansionPredicate, systemPredicate, codePredicate));
+
+				Predicate identityPredicate = theBuilder.equal(theFrom.get("myHashIdentity").as(Long.class), BaseResourceIndexedSearchParam.calculateHashIdentity(theResourceName, theParamName));
+				return theBuilder.and(identityPredicate, theBuilder.exists(subQ));
+			}
+
 			codes = myTerminologySvc.expandValueSet(code);
 		} else if (modifier == TokenParamModifier.ABOVE) {
 			system = determineSystemIfMissing(theParamName, code, system);
+			Long conceptPid = myTerminologySvc.findConceptPidWithClosure(system, code);
+			if (conceptPid != null) {
+				return createPredicateTokenUsingConceptClosure(theResourceName, theParamName, theBuilder, theFrom, system, conceptPid, false);
+			}
 			codes = myTerminologySvc.findCodesAbove(system, code);
 		} else if (modifier == TokenParamModifier.BELOW) {
 			system = determineSystemIfMissing(theParamName, code, system);
+			Long conceptPid = myTerminologySvc.findConceptPidWithClosure(system, code);
+			if (conceptPid != null) {
+				return createPredicateTokenUsingConceptClosure(theResourceName, theParamName, theBuilder, theFrom, system, conceptPid, true);
+			}
 			codes = myTerminologySvc.findCodesBelow(system, code);
 		} else {
 			codes = Collections.singletonList(new VersionIndependentConcept(system, code));
@@ -1262,6 +1298,30 @@ public class SearchBuilder implements ISearchBuilder {
 		return predicate;
 	}
 
+	/**
+	 * Matches codes above or below the given concept by joining against the concept closure
+	 * table, instead of loading the hierarchy and passing every code in it as a literal
+	 */
+	private Predicate createPredicateTokenUsingConceptClosure(String theResourceName, String theParamName, CriteriaBuilder theBuilder, From<?, ResourceIndexedSearchParamToken> theFrom,
+																			String theSystem, Long theConceptPid, boolean theDescendants) {
+		Subquery<String> subQ = myResourceTableQuery.subquery(String.class);
+		Root<TermConceptClosure> subQfrom = subQ.from(TermConceptClosure.class);
+		Join<TermConceptClosure, TermConcept> conceptJoin;
+		if (theDescendants) {
+			conceptJoin = subQfrom.join("myDescendant");
+			subQ.where(theBuilder.equal(subQfrom.get("myAncestorPid").as(Long.class), theConceptPid));
+		} else {
+			conceptJoin = subQfrom.join("myAncestor");
+			subQ.where(theBuilder.equal(subQfrom.get("myDescendantPid").as(Long.class), theConceptPid));
+		}
+		subQ.select(conceptJoin.get("myCode").as(String.class));
+
+		Predicate identityPredicate = theBuilder.equal(theFrom.get("myHashIdentity").as(Long.class), BaseResourceIndexedSearchParam.calculateHashIdentity(theResourceName, theParamName));
+		Predicate systemPredicate = theBuilder.equal(theFrom.get("mySystem"), theSystem);
+		Predicate codePredicate = theFrom.get("myValue").in(subQ);
+		return theBuilder.and(identityPredicate, systemPredicate, codePredicate);
+	}
+
 	@Override
 	public Iterator<Long> createQuery(SearchParameterMap theParams, String theSearchUuid) {
 		myParams = theParams;
@@ -1372,7 +1432,7 @@ public class SearchBuilder implements ISearchBuilder {
 
 			if (myParams.get(IAnyResource.SP_RES_ID) != null) {
 				StringParam idParm = (StringParam) myParams.get(IAnyResource.SP_RES_ID).get(0).get(0);
-				Long pid = BaseHapiFhirDao.translateForcedIdToPid(myResourceName, idParm.getValue(), myForcedIdDao);
+				Long pid = myCallingDao.translateForcedIdToPid(myResourceName, idParm.getValue());
 				if (myAlsoIncludePids == null) {
 					myAlsoIncludePids = new ArrayList<>(1);
 				}
@@ -1602,84 +1662,108 @@ public class SearchBuilder implements ISearchBuilder {
 	private void doLoadPids(List<IBaseResource> theResourceListToPopulate, Set<Long> theRevIncludedPids, boolean theForHistoryOperation, EntityManager entityManager, FhirContext context, IDao theDao,
 									Map<Long, Integer> position, Collection<Long> pids) {
 
-		// -- get the resource from the searchView
-		Collection<ResourceSearchView> resourceSearchViewList = myResourceSearchViewDao.findByResourceIds(pids);
-
-		//-- preload all tags with tag definition if any
-		Map<Long, Collection<ResourceTag>> tagMap = getResourceTagMap(resourceSearchViewList);
-
-		Long resourceId = null;
-		for (ResourceSearchView next : resourceSearchViewList) {
+		/*
+		 * Load the resource bodies and their tags using a single query whose results are
+		 * streamed back. A resource with several tags comes back as several rows, and the rows
+		 * are sorted by resource PID so that each resource can be decoded as soon as its
+		 * last row has been read.
+		 */
+		String sql = "SELECT v, t, td FROM ResourceSearchView v " +
+			"LEFT JOIN ResourceTag t ON (t.myResourceId = v.myResourceId) " +
+			"LEFT JOIN TagDefinition td ON (td.myId = t.myTagId) " +
+			"WHERE v.myResourceId IN (:pids) " +
+			"ORDER BY v.myResourceId";
+		TypedQuery<Object[]> query = entityManager.createQuery(sql, Object[].class);
+		query.setParameter("pids", pids);
 
-			Class<? extends IBaseResource> resourceType = context.getResourceDefinition(next.getResourceType()).getImplementingClass();
+		Query<Object[]> hibernateQuery = (Query<Object[]>) query;
+		hibernateQuery.setFetchSize(pids.size());
 
-			resourceId = next.getId();
+		/*
+		 * If parallel decoding is enabled, each resource is handed to the decoder pool as
+		 * soon as it has been read. Every resource is written to its own slot in the result
+		 * list, so the order of the results is unaffected.
+		 */
+		boolean decodeInParallel = myResourceDecoderSvc != null && myResourceDecoderSvc.isEnabled() && pids.size() > 1;
+		List<Future<?>> decodeFutures = new ArrayList<>();
+
+		ScrollableResults scroll = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			ResourceSearchView current = null;
+			List<TagDefinition> currentTags = new ArrayList<>();
+			while (scroll.next()) {
+				ResourceSearchView nextView = (ResourceSearchView) scroll.get(0);
+				TagDefinition nextTag = (TagDefinition) scroll.get(2);
+
+				if (current != null && !current.getId().equals(nextView.getId())) {
+					decodeResource(theResourceListToPopulate, theRevIncludedPids, theForHistoryOperation, context, theDao, position, new ResourceSearchViewSnapshot(current, currentTags), decodeInParallel, decodeFutures);
+					currentTags = new ArrayList<>();
+				}
 
-			IBaseResource resource = theDao.toResource(resourceType, next, tagMap.get(resourceId), theForHistoryOperation);
-			if (resource == null) {
-				ourLog.warn("Unable to find resource {}/{}/_history/{} in database", next.getResourceType(), next.getIdDt().getIdPart(), next.getVersion());
-				continue;
-			}
-			Integer index = position.get(resourceId);
-			if (index == null) {
-				ourLog.warn("Got back unexpected resource PID {}", resourceId);
-				continue;
+				current = nextView;
+				if (nextTag != null) {
+					currentTags.add(nextTag);
+				}
 			}
 
-			if (resource instanceof IResource) {
-				if (theRevIncludedPids.contains(resourceId)) {
-					ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IResource) resource, BundleEntrySearchModeEnum.INCLUDE);
-				} else {
-					ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IResource) resource, BundleEntrySearchModeEnum.MATCH);
-				}
-			} else {
-				if (theRevIncludedPids.contains(resourceId)) {
-					ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IAnyResource) resource, BundleEntrySearchModeEnum.INCLUDE.getCode());
-				} else {
-					ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IAnyResource) resource, BundleEntrySearchModeEnum.MATCH.getCode());
-				}
+			if (current != null) {
+				decodeResource(theResourceListToPopulate, theRevIncludedPids, theForHistoryOperation, context, theDao, position, new ResourceSearchViewSnapshot(current, currentTags), decodeInParallel, decodeFutures);
 			}
+		} finally {
+			scroll.close();
+		}
 
-			theResourceListToPopulate.set(index, resource);
+		if (!decodeFutures.isEmpty()) {
+			myResourceDecoderSvc.awaitAll(decodeFutures);
 		}
 	}
 
-	private Map<Long, Collection<ResourceTag>> getResourceTagMap(Collection<ResourceSearchView> theResourceSearchViewList) {
-
-		List<Long> idList = new ArrayList<Long>(theResourceSearchViewList.size());
-
-		//-- find all resource has tags
-		for (ResourceSearchView resource: theResourceSearchViewList) {
-			if (resource.isHasTags())
-				idList.add(resource.getId());
+	/**
+	 * Decodes a single resource, either inline or on the decoder pool. Only the detached
+	 * snapshot is handed to the pool, never the entities which were read from the session.
+	 */
+	private void decodeResource(List<IBaseResource> theResourceListToPopulate, Set<Long> theRevIncludedPids, boolean theForHistoryOperation, FhirContext context, IDao theDao,
+										 Map<Long, Integer> position, ResourceSearchViewSnapshot theSnapshot, boolean theDecodeInParallel, List<Future<?>> theDecodeFutures) {
+		if (theDecodeInParallel) {
+			theDecodeFutures.add(myResourceDecoderSvc.submit(() -> populateResource(theResourceListToPopulate, theRevIncludedPids, theForHistoryOperation, context, theDao, position, theSnapshot)));
+		} else {
+			populateResource(theResourceListToPopulate, theRevIncludedPids, theForHistoryOperation, context, theDao, position, theSnapshot);
 		}
+	}
 
-		Map<Long, Collection<ResourceTag>> tagMap = new HashMap<>();
+	private void populateResource(List<IBaseResource> theResourceListToPopulate, Set<Long> theRevIncludedPids, boolean theForHistoryOperation, FhirContext context, IDao theDao,
+											Map<Long, Integer> position, ResourceSearchViewSnapshot next) {
 
-		//-- no tags
-		if (idList.size() == 0)
-			return tagMap;
+		Class<? extends IBaseResource> resourceType = context.getResourceDefinition(next.getResourceType()).getImplementingClass();
 
-		//-- get all tags for the idList
-		Collection<ResourceTag> tagList = myResourceTagDao.findByResourceIds(idList);
+		Long resourceId = next.getId();
 
-		//-- build the map, key = resourceId, value = list of ResourceTag
-		Long resourceId;
-		Collection<ResourceTag> tagCol;
-		for (ResourceTag tag : tagList) {
+		IBaseResource resource = theDao.toResource(resourceType, next, null, theForHistoryOperation);
+		if (resource == null) {
+			ourLog.warn("Unable to find resource {}/{}/_history/{} in database", next.getResourceType(), next.getIdDt().getIdPart(), next.getVersion());
+			return;
+		}
+		Integer index = position.get(resourceId);
+		if (index == null) {
+			ourLog.warn("Got back unexpected resource PID {}", resourceId);
+			return;
+		}
 
-			resourceId = tag.getResourceId();
-			tagCol = tagMap.get(resourceId);
-			if (tagCol == null) {
-				tagCol = new ArrayList<>();
-				tagCol.add(tag);
-				tagMap.put(resourceId, tagCol);
+		if (resource instanceof IResource) {
+			if (theRevIncludedPids.contains(resourceId)) {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IResource) resource, BundleEntrySearchModeEnum.INCLUDE);
+			} else {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IResource) resource, BundleEntrySearchModeEnum.MATCH);
+			}
+		} else {
+			if (theRevIncludedPids.contains(resourceId)) {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IAnyResource) resource, BundleEntrySearchModeEnum.INCLUDE.getCode());
 			} else {
-				tagCol.add(tag);
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IAnyResource) resource, BundleEntrySearchModeEnum.MATCH.getCode());
 			}
 		}
 
-		return tagMap;
+		theResourceListToPopulate.set(index, resource);
 	}
 
 	@Override
@@ -1729,8 +1813,6 @@ public class SearchBuilder implements ISearchBuilder {
 		if (theRevIncludes == null || theRevIncludes.isEmpty()) {
 			return new HashSet<>();
 		}
-		String searchFieldName = theReverseMode ? "myTargetResourcePid" : "mySourceResourcePid";
-
 		Collection<Long> nextRoundMatches = theMatches;
 		HashSet<Long> allAdded = new HashSet<>();
 		HashSet<Long> original = new HashSet<>(theMatches);
@@ -1743,89 +1825,22 @@ public class SearchBuilder implements ISearchBuilder {
 		do {
 			roundCounts++;
 
-			HashSet<Long> pidsToInclude = new HashSet<>();
+			List<Include> roundIncludes = new ArrayList<>(includes);
+			includes.removeIf(t -> !t.isRecurse());
 
-			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
-				Include nextInclude = iter.next();
-				if (nextInclude.isRecurse() == false) {
-					iter.remove();
+			HashSet<Long> pidsToInclude = new HashSet<>();
+			Collection<Long> roundMatches = nextRoundMatches;
+			if (roundIncludes.size() > 1 && myIncludeLoaderSvc != null && myIncludeLoaderSvc.isEnabled()) {
+				List<Callable<Set<Long>>> queries = new ArrayList<>();
+				for (Include nextInclude : roundIncludes) {
+					queries.add(() -> loadIncludePids(theCallingDao, theContext, theEntityManager, roundMatches, nextInclude, theReverseMode));
 				}
-
-				boolean matchAll = "*".equals(nextInclude.getValue());
-				if (matchAll) {
-					String sql;
-					sql = "SELECT r FROM ResourceLink r WHERE r." + searchFieldName + " IN (:target_pids) ";
-					TypedQuery<ResourceLink> q = theEntityManager.createQuery(sql, ResourceLink.class);
-					q.setParameter("target_pids", nextRoundMatches);
-					List<ResourceLink> results = q.getResultList();
-					for (ResourceLink resourceLink : results) {
-						if (theReverseMode) {
-							pidsToInclude.add(resourceLink.getSourceResourcePid());
-						} else {
-							pidsToInclude.add(resourceLink.getTargetResourcePid());
-						}
-					}
-				} else {
-
-					List<String> paths;
-					RuntimeSearchParam param;
-					String resType = nextInclude.getParamType();
-					if (isBlank(resType)) {
-						continue;
-					}
-					RuntimeResourceDefinition def = theContext.getResourceDefinition(resType);
-					if (def == null) {
-						ourLog.warn("Unknown resource type in include/revinclude=" + nextInclude.getValue());
-						continue;
-					}
-
-					String paramName = nextInclude.getParamName();
-					if (isNotBlank(paramName)) {
-						param = theCallingDao.getSearchParamByName(def, paramName);
-					} else {
-						param = null;
-					}
-					if (param == null) {
-						ourLog.warn("Unknown param name in include/revinclude=" + nextInclude.getValue());
-						continue;
-					}
-
-					paths = param.getPathsSplit();
-
-					String targetResourceType = defaultString(nextInclude.getParamTargetType(), null);
-					for (String nextPath : paths) {
-						String sql;
-						boolean haveTargetTypesDefinedByParam = param != null && param.getTargets() != null && param.getTargets().isEmpty() == false;
-						if (targetResourceType != null) {
-							sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType = :target_resource_type";
-						} else if (haveTargetTypesDefinedByParam) {
-							sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType in (:target_resource_types)";
-						} else {
-							sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids)";
-						}
-						TypedQuery<ResourceLink> q = theEntityManager.createQuery(sql, ResourceLink.class);
-						q.setParameter("src_path", nextPath);
-						q.setParameter("target_pids", nextRoundMatches);
-						if (targetResourceType != null) {
-							q.setParameter("target_resource_type", targetResourceType);
-						} else if (haveTargetTypesDefinedByParam) {
-							q.setParameter("target_resource_types", param.getTargets());
-						}
-						List<ResourceLink> results = q.getResultList();
-						for (ResourceLink resourceLink : results) {
-							if (theReverseMode) {
-								Long pid = resourceLink.getSourceResourcePid();
-								if (pid != null) {
-									pidsToInclude.add(pid);
-								}
-							} else {
-								Long pid = resourceLink.getTargetResourcePid();
-								if (pid != null) {
-									pidsToInclude.add(pid);
-								}
-							}
-						}
-					}
+				for (Set<Long> nextPids : myIncludeLoaderSvc.invokeAll(queries)) {
+					pidsToInclude.addAll(nextPids);
+				}
+			} else {
+				for (Include nextInclude : roundIncludes) {
+					pidsToInclude.addAll(loadIncludePids(theCallingDao, theContext, theEntityManager, roundMatches, nextInclude, theReverseMode));
 				}
 			}
 
@@ -1849,6 +1864,95 @@ public class SearchBuilder implements ISearchBuilder {
 		return allAdded;
 	}
 
+	/**
+	 * Loads the PIDs linked to (or, in reverse mode, linking to) the given PIDs via a single include specification
+	 */
+	private Set<Long> loadIncludePids(IDao theCallingDao, FhirContext theContext, EntityManager theEntityManager, Collection<Long> theMatches, Include theInclude, boolean theReverseMode) {
+		StopWatch sw = new StopWatch();
+		String searchFieldName = theReverseMode ? "myTargetResourcePid" : "mySourceResourcePid";
+		Set<Long> retVal = new HashSet<>();
+
+		boolean matchAll = "*".equals(theInclude.getValue());
+		if (matchAll) {
+			String sql;
+			sql = "SELECT r FROM ResourceLink r WHERE r." + searchFieldName + " IN (:target_pids) ";
+			TypedQuery<ResourceLink> q = theEntityManager.createQuery(sql, ResourceLink.class);
+			q.setParameter("target_pids", theMatches);
+			List<ResourceLink> results = q.getResultList();
+			for (ResourceLink resourceLink : results) {
+				if (theReverseMode) {
+					retVal.add(resourceLink.getSourceResourcePid());
+				} else {
+					retVal.add(resourceLink.getTargetResourcePid());
+				}
+			}
+		} else {
+
+			List<String> paths;
+			RuntimeSearchParam param;
+			String resType = theInclude.getParamType();
+			if (isBlank(resType)) {
+				return retVal;
+			}
+			RuntimeResourceDefinition def = theContext.getResourceDefinition(resType);
+			if (def == null) {
+				ourLog.warn("Unknown resource type in include/revinclude=" + theInclude.getValue());
+				return retVal;
+			}
+
+			String paramName = theInclude.getParamName();
+			if (isNotBlank(paramName)) {
+				param = theCallingDao.getSearchParamByName(def, paramName);
+			} else {
+				param = null;
+			}
+			if (param == null) {
+				ourLog.warn("Unknown param name in include/revinclude=" + theInclude.getValue());
+				return retVal;
+			}
+
+			paths = param.getPathsSplit();
+
+			String targetResourceType = defaultString(theInclude.getParamTargetType(), null);
+			for (String nextPath : paths) {
+				String sql;
+				boolean haveTargetTypesDefinedByParam = param != null && param.getTargets() != null && param.getTargets().isEmpty() == false;
+				if (targetResourceType != null) {
+					sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType = :target_resource_type";
+				} else if (haveTargetTypesDefinedByParam) {
+					sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType in (:target_resource_types)";
+				} else {
+					sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids)";
+				}
+				TypedQuery<ResourceLink> q = theEntityManager.createQuery(sql, ResourceLink.class);
+				q.setParameter("src_path", nextPath);
+				q.setParameter("target_pids", theMatches);
+				if (targetResourceType != null) {
+					q.setParameter("target_resource_type", targetResourceType);
+				} else if (haveTargetTypesDefinedByParam) {
+					q.setParameter("target_resource_types", param.getTargets());
+				}
+				List<ResourceLink> results = q.getResultList();
+				for (ResourceLink resourceLink : results) {
+					if (theReverseMode) {
+						Long pid = resourceLink.getSourceResourcePid();
+						if (pid != null) {
+							retVal.add(pid);
+						}
+					} else {
+						Long pid = resourceLink.getTargetResourcePid();
+						if (pid != null) {
+							retVal.add(pid);
+						}
+					}
+				}
+			}
+		}
+
+		ourLog.debug("Loaded {} PIDs for {}={} in {}ms", retVal.size(), theReverseMode ? "_revinclude" : "_include", theInclude.getValue(), sw.getMillis());
+		return retVal;
+	}
+
 	private void searchForIdsWithAndOr(@Nonnull SearchParameterMap theParams) {
 		myParams = theParams;
 
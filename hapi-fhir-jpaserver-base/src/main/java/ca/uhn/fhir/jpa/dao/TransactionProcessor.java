@@ -58,15 +58,17 @@ import org.hl7.fhir.instance.model.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionDefinition;
-import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceContextType;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
@@ -83,6 +85,12 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 	private FhirContext myContext;
 	@Autowired
 	private ITransactionProcessorVersionAdapter<BUNDLE, BUNDLEENTRY> myVersionAdapter;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private IMatchUrlResolverSvc myMatchUrlResolverSvc;
+	private ThreadPoolExecutor myBatchExecutor;
+	private int myBatchEntryThreadCount;
 
 	public static boolean isPlaceholder(IIdType theId) {
 		if (theId != null && theId.getValue() != null) {
@@ -167,6 +175,28 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 		myDao = theDao;
 	}
 
+	/**
+	 * The batch entry thread count is read from the {@link DaoConfig} here, so changing it
+	 * takes effect only when this processor is restarted
+	 */
+	@PostConstruct
+	public void start() {
+		myBatchEntryThreadCount = myDaoConfig.getBatchEntryThreadCount();
+		myBatchExecutor = new ThreadPoolExecutor(
+			myBatchEntryThreadCount,
+			myBatchEntryThreadCount,
+			60L,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new CustomizableThreadFactory("batch_entry_"));
+		myBatchExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myBatchExecutor.shutdown();
+	}
+
 	public BUNDLE transaction(RequestDetails theRequestDetails, BUNDLE theRequest) {
 		if (theRequestDetails != null) {
 			IServerInterceptor.ActionRequestDetails requestDetails = new IServerInterceptor.ActionRequestDetails(theRequestDetails, theRequest, "Bundle", null);
@@ -187,66 +217,125 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 	}
 
 	private BUNDLE batch(final RequestDetails theRequestDetails, BUNDLE theRequest) {
-		ourLog.info("Beginning batch with {} resources", myVersionAdapter.getEntries(theRequest).size());
+		List<BUNDLEENTRY> requestEntries = myVersionAdapter.getEntries(theRequest);
+		ourLog.info("Beginning batch with {} resources", requestEntries.size());
 		long start = System.currentTimeMillis();
 
-		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
-		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-
 		BUNDLE resp = myVersionAdapter.createBundle(org.hl7.fhir.r4.model.Bundle.BundleType.BATCHRESPONSE.toCode());
 
 		/*
 		 * For batch, we handle each entry as a mini-transaction in its own database transaction so that if one fails, it doesn't prevent others
 		 */
 
-		for (final BUNDLEENTRY nextRequestEntry : myVersionAdapter.getEntries(theRequest)) {
+		if (myBatchEntryThreadCount > 1 && requestEntries.size() > 1) {
+
+			/*
+			 * The pool threads have no surrounding database transaction, so each
+			 * entry is processed in a new one. Each entry also gets its own copy of
+			 * the request details, since interceptors and the DAOs keep state in the
+			 * user data map, which is not thread-safe. The request is already marked
+			 * as processing a sub-request by our caller, and the copies carry that
+			 * mark over, so the entries don't mark (and unmark) it themselves.
+			 */
+			List<Future<BUNDLE>> futures = new ArrayList<>();
+			for (final BUNDLEENTRY nextRequestEntry : requestEntries) {
+				ServletRequestDetails entryRequestDetails = createBatchEntryRequestDetails((ServletRequestDetails) theRequestDetails);
+				futures.add(myBatchExecutor.submit(() -> {
+					BUNDLE subRequestBundle = createBatchSubRequestBundle(nextRequestEntry);
+					return processTransaction(entryRequestDetails, subRequestBundle, "Batch sub-request");
+				}));
+			}
 
-			BaseServerResponseExceptionHolder caughtEx = new BaseServerResponseExceptionHolder();
+			for (Future<BUNDLE> nextFuture : futures) {
+				BUNDLE nextResponseBundle = null;
+				BaseServerResponseException caughtEx = null;
+				try {
+					nextResponseBundle = nextFuture.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					futures.forEach(t -> t.cancel(true));
+					throw new InternalErrorException(e);
+				} catch (ExecutionException e) {
+					caughtEx = toBatchEntryException(e.getCause());
+				}
+				addBatchResponseEntry(resp, nextResponseBundle, caughtEx);
+			}
 
-			TransactionCallback<BUNDLE> callback = theStatus -> {
-				BUNDLE subRequestBundle = myVersionAdapter.createBundle(org.hl7.fhir.r4.model.Bundle.BundleType.TRANSACTION.toCode());
-				myVersionAdapter.addEntry(subRequestBundle, nextRequestEntry);
+		} else {
 
-				BUNDLE subResponseBundle = processTransactionAsSubRequest((ServletRequestDetails) theRequestDetails, subRequestBundle, "Batch sub-request");
-				return subResponseBundle;
-			};
+			for (final BUNDLEENTRY nextRequestEntry : requestEntries) {
+				BUNDLE nextResponseBundle = null;
+				BaseServerResponseException caughtEx = null;
+				try {
+					BUNDLE subRequestBundle = createBatchSubRequestBundle(nextRequestEntry);
+					nextResponseBundle = processTransactionAsSubRequest((ServletRequestDetails) theRequestDetails, subRequestBundle, "Batch sub-request");
+				} catch (Throwable t) {
+					caughtEx = toBatchEntryException(t);
+				}
+				addBatchResponseEntry(resp, nextResponseBundle, caughtEx);
+			}
 
-			try {
-				// FIXME: this doesn't need to be a callback
-				BUNDLE nextResponseBundle = callback.doInTransaction(null);
+		}
 
-				BUNDLEENTRY subResponseEntry = myVersionAdapter.getEntries(nextResponseBundle).get(0);
-				myVersionAdapter.addEntry(resp, subResponseEntry);
+		long delay = System.currentTimeMillis() - start;
+		ourLog.info("Batch completed in {}ms", new Object[]{delay});
 
-				/*
-				 * If the individual entry didn't have a resource in its response, bring the sub-transaction's OperationOutcome across so the client can see it
-				 */
-				if (myVersionAdapter.getResource(subResponseEntry) == null) {
-					BUNDLEENTRY nextResponseBundleFirstEntry = myVersionAdapter.getEntries(nextResponseBundle).get(0);
-					myVersionAdapter.setResource(subResponseEntry, myVersionAdapter.getResource(nextResponseBundleFirstEntry));
-				}
+		return resp;
+	}
 
-			} catch (BaseServerResponseException e) {
-				caughtEx.setException(e);
-			} catch (Throwable t) {
-				ourLog.error("Failure during BATCH sub transaction processing", t);
-				caughtEx.setException(new InternalErrorException(t));
-			}
+	private ServletRequestDetails createBatchEntryRequestDetails(ServletRequestDetails theRequestDetails) {
+		if (theRequestDetails == null) {
+			return null;
+		}
+		ServletRequestDetails retVal = new ServletRequestDetails();
+		retVal.setServletRequest(theRequestDetails.getServletRequest());
+		retVal.setServletResponse(theRequestDetails.getServletResponse());
+		retVal.setServer(theRequestDetails.getServer());
+		retVal.setFhirServerBase(theRequestDetails.getFhirServerBase());
+		retVal.setCompleteUrl(theRequestDetails.getCompleteUrl());
+		retVal.setTenantId(theRequestDetails.getTenantId());
+		retVal.setRequestType(theRequestDetails.getRequestType());
+		retVal.setRestOperationType(theRequestDetails.getRestOperationType());
+		retVal.setRespondGzip(theRequestDetails.isRespondGzip());
+		retVal.setSubRequest(theRequestDetails.isSubRequest());
+		retVal.getUserData().putAll(theRequestDetails.getUserData());
+		return retVal;
+	}
 
-			if (caughtEx.getException() != null) {
-				BUNDLEENTRY nextEntry = myVersionAdapter.addEntry(resp);
+	private void addBatchResponseEntry(BUNDLE theResponse, BUNDLE theSubResponseBundle, BaseServerResponseException theCaughtEx) {
+		if (theCaughtEx != null) {
+			BUNDLEENTRY nextEntry = myVersionAdapter.addEntry(theResponse);
 
-				populateEntryWithOperationOutcome(caughtEx.getException(), nextEntry);
+			populateEntryWithOperationOutcome(theCaughtEx, nextEntry);
 
-				myVersionAdapter.setResponseStatus(nextEntry, toStatusString(caughtEx.getException().getStatusCode()));
-			}
+			myVersionAdapter.setResponseStatus(nextEntry, toStatusString(theCaughtEx.getStatusCode()));
+			return;
+		}
 
+		BUNDLEENTRY subResponseEntry = myVersionAdapter.getEntries(theSubResponseBundle).get(0);
+		myVersionAdapter.addEntry(theResponse, subResponseEntry);
+
+		/*
+		 * If the individual entry didn't have a resource in its response, bring the sub-transaction's OperationOutcome across so the client can see it
+		 */
+		if (myVersionAdapter.getResource(subResponseEntry) == null) {
+			BUNDLEENTRY nextResponseBundleFirstEntry = myVersionAdapter.getEntries(theSubResponseBundle).get(0);
+			myVersionAdapter.setResource(subResponseEntry, myVersionAdapter.getResource(nextResponseBundleFirstEntry));
 		}
+	}
 
-		long delay = System.currentTimeMillis() - start;
-		ourLog.info("Batch completed in {}ms", new Object[]{delay});
+	private BUNDLE createBatchSubRequestBundle(BUNDLEENTRY theRequestEntry) {
+		BUNDLE retVal = myVersionAdapter.createBundle(org.hl7.fhir.r4.model.Bundle.BundleType.TRANSACTION.toCode());
+		myVersionAdapter.addEntry(retVal, theRequestEntry);
+		return retVal;
+	}
 
-		return resp;
+	private BaseServerResponseException toBatchEntryException(Throwable theThrowable) {
+		if (theThrowable instanceof BaseServerResponseException) {
+			return (BaseServerResponseException) theThrowable;
+		}
+		ourLog.error("Failure during BATCH sub transaction processing", theThrowable);
+		return new InternalErrorException(theThrowable);
 	}
 
 	private BUNDLE processTransaction(final ServletRequestDetails theRequestDetails, final BUNDLE theRequest, final String theActionName) {
@@ -468,6 +557,10 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 		Set<ResourceTable> updatedEntities = new HashSet<>();
 		Map<String, Class<? extends IBaseResource>> conditionalRequestUrls = new HashMap<>();
 
+		theTransactionStopWatch.startTask("Resolve conditional URLs");
+		preResolveConditionalUrls(theEntries);
+		theTransactionStopWatch.endCurrentTask();
+
 		/*
 		 * Loop through the request and process any entries of type
 		 * PUT, POST or DELETE
@@ -629,6 +722,11 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 			theTransactionStopWatch.endCurrentTask();
 		}
 
+		/*
+		 * The pre-resolved matches don't account for anything we're about to
+		 * index, so they mustn't be used beyond this point
+		 */
+		myMatchUrlResolverSvc.clearPreResolvedMatches();
 
 		/*
 		 * Make sure that there are no conflicts from deletions. E.g. we can't delete something
@@ -647,6 +745,7 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 
 		FhirTerser terser = myContext.newTerser();
 		theTransactionStopWatch.startTask("Index " + theIdToPersistedOutcome.size() + " resources");
+		List<IIdType> referencesOutsideBundle = new ArrayList<>();
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 			IBaseResource nextResource = nextOutcome.getResource();
 			if (nextResource == null) {
@@ -668,8 +767,22 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 					throw new InvalidRequestException("Unable to satisfy placeholder ID " + nextId.getValue() + " found in element named '" + nextRef.getName() + "' within resource of type: " + nextResource.getIdElement().getResourceType());
 				} else {
 					ourLog.debug(" * Reference [{}] does not exist in bundle", nextId);
+					referencesOutsideBundle.add(nextId);
 				}
 			}
+		}
+
+		/*
+		 * Resolve the client assigned IDs of any resources referenced from outside
+		 * of the bundle in bulk, instead of one query per reference while indexing
+		 */
+		myDao.preFetchForcedIds(referencesOutsideBundle);
+
+		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
+			IBaseResource nextResource = nextOutcome.getResource();
+			if (nextResource == null) {
+				continue;
+			}
 
 			// URIs
 			Class<? extends IPrimitiveType<?>> uriType = (Class<? extends IPrimitiveType<?>>) myContext.getElementDefinition("uri").getImplementingClass();
@@ -711,12 +824,21 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 		/*
 		 * Double check we didn't allow any duplicates we shouldn't have
 		 */
+		Map<Class<? extends IBaseResource>, List<String>> resTypeToConditionalRequestUrls = new HashMap<>();
 		for (Map.Entry<String, Class<? extends IBaseResource>> nextEntry : conditionalRequestUrls.entrySet()) {
-			String matchUrl = nextEntry.getKey();
-			Class<? extends IBaseResource> resType = nextEntry.getValue();
-			if (isNotBlank(matchUrl)) {
-				IFhirResourceDao<?> resourceDao = myDao.getDao(resType);
-				Set<Long> val = resourceDao.processMatchUrl(matchUrl);
+			if (isNotBlank(nextEntry.getKey())) {
+				resTypeToConditionalRequestUrls.computeIfAbsent(nextEntry.getValue(), t -> new ArrayList<>()).add(nextEntry.getKey());
+			}
+		}
+		for (Map.Entry<Class<? extends IBaseResource>, List<String>> nextEntry : resTypeToConditionalRequestUrls.entrySet()) {
+			Class<? extends IBaseResource> resType = nextEntry.getKey();
+			IFhirResourceDao<?> resourceDao = myDao.getDao(resType);
+			Map<String, Set<Long>> resolvedMatchUrls = myMatchUrlResolverSvc.resolveMatchUrls(myContext.getResourceDefinition(resType).getName(), nextEntry.getValue());
+			for (String matchUrl : nextEntry.getValue()) {
+				Set<Long> val = resolvedMatchUrls.get(matchUrl);
+				if (val == null) {
+					val = resourceDao.processMatchUrl(matchUrl);
+				}
 				if (val.size() > 1) {
 					throw new InvalidRequestException(
 						"Unable to process " + theActionName + " - Request would cause multiple resources to match URL: \"" + matchUrl + "\". Does transaction request contain duplicates?");
@@ -770,6 +892,73 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 		myContext = theContext;
 	}
 
+	/**
+	 * Conditional creates and updates would otherwise each perform their own search
+	 * while the entries are processed, so we resolve the simple ones up front using
+	 * as few queries as possible. Resources written by the transaction aren't indexed
+	 * until after all of the entries have been processed, so the result stays valid
+	 * while they are. The exceptions are deletes, which take effect immediately, so
+	 * we don't pre-resolve anything for a resource type that is being deleted. We also
+	 * skip URLs which refer to a placeholder ID, since these are substituted as the
+	 * entries are processed.
+	 */
+	private void preResolveConditionalUrls(List<BUNDLEENTRY> theEntries) {
+		Set<String> placeholderIds = new HashSet<>();
+		Set<String> deletedResourceTypes = new HashSet<>();
+		Map<String, List<String>> resourceTypeToMatchUrls = new HashMap<>();
+		for (BUNDLEENTRY nextEntry : theEntries) {
+			String fullUrl = myVersionAdapter.getFullUrl(nextEntry);
+			if (isNotBlank(fullUrl) && fullUrl.startsWith(URN_PREFIX)) {
+				placeholderIds.add(fullUrl);
+			}
+
+			String verb = myVersionAdapter.getEntryRequestVerb(nextEntry);
+			IBaseResource res = myVersionAdapter.getResource(nextEntry);
+			String url = myVersionAdapter.getEntryRequestUrl(nextEntry);
+			if ("DELETE".equals(verb) && isNotBlank(url)) {
+				deletedResourceTypes.add(UrlUtil.parseUrl(url).getResourceType());
+			} else if ("POST".equals(verb) && res != null) {
+				String matchUrl = myVersionAdapter.getEntryRequestIfNoneExist(nextEntry);
+				if (isNotBlank(matchUrl)) {
+					resourceTypeToMatchUrls.computeIfAbsent(myContext.getResourceDefinition(res).getName(), t -> new ArrayList<>()).add(matchUrl);
+				}
+			} else if ("PUT".equals(verb) && res != null && isNotBlank(url)) {
+				UrlUtil.UrlParts parts = UrlUtil.parseUrl(url);
+				if (isBlank(parts.getResourceId()) && isNotBlank(parts.getParams())) {
+					String matchUrl = parts.getResourceType() + '?' + parts.getParams();
+					resourceTypeToMatchUrls.computeIfAbsent(myContext.getResourceDefinition(res).getName(), t -> new ArrayList<>()).add(matchUrl);
+				}
+			}
+		}
+
+		for (Map.Entry<String, List<String>> nextEntry : resourceTypeToMatchUrls.entrySet()) {
+			String resourceType = nextEntry.getKey();
+			if (deletedResourceTypes.contains(resourceType)) {
+				continue;
+			}
+
+			List<String> matchUrls = new ArrayList<>();
+			for (String nextMatchUrl : nextEntry.getValue()) {
+				boolean containsPlaceholder = false;
+				for (String nextPlaceholder : placeholderIds) {
+					if (nextMatchUrl.contains(nextPlaceholder) || nextMatchUrl.contains(UrlUtil.escapeUrlParam(nextPlaceholder))) {
+						containsPlaceholder = true;
+						break;
+					}
+				}
+				if (!containsPlaceholder) {
+					matchUrls.add(nextMatchUrl);
+				}
+			}
+
+			if (!matchUrls.isEmpty()) {
+				Map<String, Set<Long>> resolved = myMatchUrlResolverSvc.resolveMatchUrls(resourceType, matchUrls);
+				ourLog.debug("Pre-resolved {} of {} conditional URLs for resource type {}", resolved.size(), matchUrls.size(), resourceType);
+				myMatchUrlResolverSvc.setPreResolvedMatches(resourceType, resolved);
+			}
+		}
+	}
+
 	private String extractTransactionUrlOrThrowException(BUNDLEENTRY nextEntry, String verb) {
 		String url = myVersionAdapter.getEntryRequestUrl(nextEntry);
 		if (isBlank(url)) {
@@ -846,18 +1035,6 @@ public class TransactionProcessor<BUNDLE extends IBaseBundle, BUNDLEENTRY> {
 		void setResponseOutcome(BUNDLEENTRY theEntry, IBaseOperationOutcome theOperationOutcome);
 	}
 
-	private static class BaseServerResponseExceptionHolder {
-		private BaseServerResponseException myException;
-
-		public BaseServerResponseException getException() {
-			return myException;
-		}
-
-		public void setException(BaseServerResponseException myException) {
-			this.myException = myException;
-		}
-	}
-
 	/**
 	 * Transaction Order, per the spec:
 	 * <p>
@@ -0,0 +1,54 @@
+package ca.uhn.fhir.jpa.dao.codec;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A codec is responsible for turning the UTF-8 encoded text of a resource
+ * into the bytes which are stored in the <code>RES_TEXT</code> column of
+ * the resource history table, and back again.
+ * <p>
+ * Codecs work on streams so that the parser can write directly into the
+ * compressor (and read directly from the decompressor) without first
+ * building the whole resource body as a String.
+ * </p>
+ *
+ * @see ca.uhn.fhir.jpa.entity.ResourceEncodingEnum
+ */
+public interface IResourceBodyCodec {
+
+	/**
+	 * Wraps the given stream so that bytes written to the returned stream are
+	 * encoded into the target. Closing the returned stream must flush any
+	 * buffered content into the target.
+	 */
+	OutputStream newEncodingStream(OutputStream theTarget) throws IOException;
+
+	/**
+	 * Wraps the given stream so that reading from the returned stream yields
+	 * the decoded bytes
+	 */
+	InputStream newDecodingStream(InputStream theSource) throws IOException;
+
+}
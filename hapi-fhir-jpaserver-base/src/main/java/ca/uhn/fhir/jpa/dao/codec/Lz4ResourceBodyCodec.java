@@ -0,0 +1,47 @@
+package ca.uhn.fhir.jpa.dao.codec;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses the resource body using the LZ4 frame format. LZ4 gives a
+ * somewhat lower compression ratio than GZip but compresses and (especially)
+ * decompresses much faster, which matters when loading large search results.
+ */
+public class Lz4ResourceBodyCodec implements IResourceBodyCodec {
+
+	@Override
+	public OutputStream newEncodingStream(OutputStream theTarget) throws IOException {
+		return new LZ4FrameOutputStream(theTarget);
+	}
+
+	@Override
+	public InputStream newDecodingStream(InputStream theSource) throws IOException {
+		return new LZ4FrameInputStream(theSource);
+	}
+
+}
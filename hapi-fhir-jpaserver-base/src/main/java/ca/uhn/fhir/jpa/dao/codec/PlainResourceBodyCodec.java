@@ -0,0 +1,41 @@
+package ca.uhn.fhir.jpa.dao.codec;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stores the resource body as-is
+ */
+public class PlainResourceBodyCodec implements IResourceBodyCodec {
+
+	@Override
+	public OutputStream newEncodingStream(OutputStream theTarget) {
+		return theTarget;
+	}
+
+	@Override
+	public InputStream newDecodingStream(InputStream theSource) {
+		return theSource;
+	}
+
+}
@@ -25,9 +25,14 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+
 public interface IResourceIndexedSearchParamTokenDao extends JpaRepository<ResourceIndexedSearchParamToken, Long> {
 
 	@Query("select count(*) from ResourceIndexedSearchParamToken t WHERE t.myResourcePid = :resid")
 	int countForResourceId(@Param("resid") Long theResourcePid);
 
+	@Query("SELECT t.myHashSystemAndValue, t.myResourcePid FROM ResourceIndexedSearchParamToken t WHERE t.myHashSystemAndValue IN (:hashes) AND t.myResource.myDeleted IS NULL")
+	Collection<Object[]> findResourcePidsByHashSystemAndValue(@Param("hashes") Collection<Long> theHashes);
+
 }
@@ -21,9 +21,16 @@ package ca.uhn.fhir.jpa.dao.data;
  */
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import ca.uhn.fhir.jpa.entity.ResourceLink;
 
+import java.util.List;
+
 public interface IResourceLinkDao  extends JpaRepository<ResourceLink, Long> {
-	// nothing
+
+	@Query("SELECT l.myTargetResourcePid FROM ResourceLink l WHERE l.mySourceResourcePid = :srcpid AND l.mySourcePath = :path AND l.myTargetResourceType = :targettype AND l.myTargetResourcePid IS NOT NULL")
+	List<Long> findTargetPidsBySourcePidAndPath(@Param("srcpid") Long theSourcePid, @Param("path") String theSourcePath, @Param("targettype") String theTargetType);
+
 }
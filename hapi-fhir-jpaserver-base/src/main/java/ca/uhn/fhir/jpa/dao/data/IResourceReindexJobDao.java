@@ -0,0 +1,68 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+public interface IResourceReindexJobDao extends JpaRepository<ResourceReindexJobEntity, Long> {
+
+	@Query("SELECT j FROM ResourceReindexJobEntity j WHERE j.myComplete = false ORDER BY j.myLowResourceId ASC")
+	List<ResourceReindexJobEntity> findIncomplete();
+
+	/**
+	 * Takes the lease on a partition, provided that it is not complete and that no other
+	 * owner holds an unexpired lease on it
+	 *
+	 * @return Returns 1 if the lease was taken, or 0 if it was not
+	 */
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myLeaseOwner = :owner, j.myLeaseExpiry = :expiry WHERE j.myId = :id AND j.myComplete = false AND (j.myLeaseOwner IS NULL OR j.myLeaseOwner = :owner OR j.myLeaseExpiry < :now)")
+	int claimLease(@Param("id") Long theId, @Param("owner") String theOwner, @Param("now") Date theNow, @Param("expiry") Date theExpiry);
+
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myLeaseOwner = NULL, j.myLeaseExpiry = NULL WHERE j.myId = :id AND j.myLeaseOwner = :owner")
+	int releaseLease(@Param("id") Long theId, @Param("owner") String theOwner);
+
+	/**
+	 * Saves a checkpoint and renews the lease, provided that the lease is still held by the given owner
+	 *
+	 * @return Returns 1 if the checkpoint was saved, or 0 if the lease has been lost
+	 */
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myCheckpointResourceId = :checkpoint, j.myReindexCount = j.myReindexCount + :count, j.myLeaseExpiry = :expiry WHERE j.myId = :id AND j.myLeaseOwner = :owner")
+	int updateCheckpoint(@Param("id") Long theId, @Param("owner") String theOwner, @Param("checkpoint") Long theCheckpointResourceId, @Param("count") int theReindexedCount, @Param("expiry") Date theExpiry);
+
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myComplete = true, j.myLeaseOwner = NULL, j.myLeaseExpiry = NULL WHERE j.myId = :id AND j.myLeaseOwner = :owner")
+	int markComplete(@Param("id") Long theId, @Param("owner") String theOwner);
+
+	@Modifying
+	@Query("DELETE FROM ResourceReindexJobEntity j WHERE j.myComplete = true")
+	int deleteComplete();
+
+}
@@ -9,6 +9,8 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -46,6 +48,36 @@ public interface IResourceTableDao extends JpaRepository<ResourceTable, Long> {
 	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myIndexStatus IS NULL")
 	Slice<Long> findIdsOfResourcesRequiringReindexing(Pageable thePageable);
 
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myId >= :low AND t.myId <= :high ORDER BY t.myId ASC")
+	Slice<Long> findIdsInRange(Pageable thePageable, @Param("low") Long theLow, @Param("high") Long theHigh);
+
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myId >= :low AND t.myId <= :high ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfTypeInRange(Pageable thePageable, @Param("restype") String theResourceType, @Param("low") Long theLow, @Param("high") Long theHigh);
+
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myId >= :low AND t.myId <= :high AND t.myDeleted IS NULL AND t.myUpdated >= :since ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfTypeInRangeForExport(Pageable thePageable, @Param("restype") String theResourceType, @Param("low") Long theLow, @Param("high") Long theHigh, @Param("since") Date theSince);
+
+	@Query("SELECT DISTINCT t.myId FROM ResourceTable t, ResourceLink l WHERE l.mySourceResourcePid = t.myId AND l.myTargetResourceType = :targettype AND t.myResourceType = :restype AND t.myId >= :low AND t.myId <= :high AND t.myDeleted IS NULL AND t.myUpdated >= :since ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfTypeInRangeLinkedToTypeForExport(Pageable thePageable, @Param("restype") String theResourceType, @Param("low") Long theLow, @Param("high") Long theHigh, @Param("since") Date theSince, @Param("targettype") String theTargetType);
+
+	@Query("SELECT DISTINCT t.myId FROM ResourceTable t, ResourceLink l WHERE l.mySourceResourcePid = t.myId AND l.myTargetResourcePid IN (:targetpids) AND t.myResourceType = :restype AND t.myId >= :low AND t.myId <= :high AND t.myDeleted IS NULL AND t.myUpdated >= :since ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfTypeInRangeLinkedToPidsForExport(Pageable thePageable, @Param("restype") String theResourceType, @Param("low") Long theLow, @Param("high") Long theHigh, @Param("since") Date theSince, @Param("targetpids") Collection<Long> theTargetPids);
+
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myId IN (:pids) AND t.myDeleted IS NULL AND t.myUpdated >= :since ORDER BY t.myId ASC")
+	List<Long> findIdsInListForExport(@Param("pids") Collection<Long> thePids, @Param("since") Date theSince);
+
+	@Query("SELECT MIN(t.myId) FROM ResourceTable t")
+	Long findLowestId();
+
+	@Query("SELECT MAX(t.myId) FROM ResourceTable t")
+	Long findHighestId();
+
+	@Query("SELECT MIN(t.myId) FROM ResourceTable t WHERE t.myResourceType = :restype")
+	Long findLowestIdOfType(@Param("restype") String theResourceType);
+
+	@Query("SELECT MAX(t.myId) FROM ResourceTable t WHERE t.myResourceType = :restype")
+	Long findHighestIdOfType(@Param("restype") String theResourceType);
+
 	@Query("SELECT t.myResourceType as type, COUNT(*) as count FROM ResourceTable t GROUP BY t.myResourceType")
 	List<Map<?, ?>> getResourceCounts();
 
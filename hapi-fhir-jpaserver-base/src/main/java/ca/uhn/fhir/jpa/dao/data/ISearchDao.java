@@ -51,4 +51,8 @@ public interface ISearchDao extends JpaRepository<Search, Long> {
 	@Query("UPDATE Search s SET s.mySearchLastReturned = :last WHERE s.myId = :pid")
 	void updateSearchLastReturned(@Param("pid") long thePid, @Param("last") Date theDate);
 
+	@Modifying
+	@Query("DELETE FROM Search s WHERE s.myId IN :pids")
+	void deleteByPids(@Param("pids") Collection<Long> theSearchPids);
+
 }
@@ -20,6 +20,8 @@ package ca.uhn.fhir.jpa.dao.data;
  * #L%
  */
 
+import java.util.Collection;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -32,4 +34,8 @@ public interface ISearchIncludeDao  extends JpaRepository<SearchInclude, Long> {
 	@Modifying
 	@Query(value="DELETE FROM SearchInclude r WHERE r.mySearchPid = :search")
 	void deleteForSearch(@Param("search") Long theSearchPid);
+
+	@Modifying
+	@Query(value="DELETE FROM SearchInclude r WHERE r.mySearchPid IN :searches")
+	void deleteForSearches(@Param("searches") Collection<Long> theSearchPids);
 }
@@ -4,6 +4,7 @@ import java.util.Collection;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 /*
  * #%L
@@ -44,4 +45,11 @@ public interface ISearchResultDao  extends JpaRepository<SearchResult, Long> {
 	@Modifying
 	@Query(value="DELETE FROM SearchResult r WHERE r.mySearchPid = :search")
 	void deleteForSearch(@Param("search") Long theSearchPid);
+
+	@Query(value="SELECT r.myId FROM SearchResult r WHERE r.mySearchPid IN :searches AND r.myId > :lastId ORDER BY r.myId ASC")
+	Slice<Long> findIdsForSearches(@Param("searches") Collection<Long> theSearchPids, @Param("lastId") Long theLastId, Pageable thePage);
+
+	@Modifying
+	@Query(value="DELETE FROM SearchResult r WHERE r.myId IN :ids")
+	void deleteByIds(@Param("ids") Collection<Long> theIds);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
 import java.util.List;
 
 /*
@@ -41,4 +42,8 @@ public interface ITermCodeSystemVersionDao extends JpaRepository<TermCodeSystemV
 	@Query("SELECT cs FROM TermCodeSystemVersion cs WHERE cs.myCodeSystemHavingThisVersionAsCurrentVersionIfAny.myResource.myId = :resource_id")
 	TermCodeSystemVersion findCurrentVersionForCodeSystemResourcePid(@Param("resource_id") Long theCodeSystemResourcePid);
 
+	@Modifying
+	@Query("UPDATE TermCodeSystemVersion csv SET csv.myClosureCompleted = :completed WHERE csv.myId = :pid")
+	int updateClosureCompleted(@Param("pid") Long theCodeSystemVersionPid, @Param("completed") Date theCompleted);
+
 }
@@ -0,0 +1,58 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.TermConceptClosure;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+public interface ITermConceptClosureDao extends JpaRepository<TermConceptClosure, Long> {
+
+	@Query("SELECT COUNT(t) FROM TermConceptClosure t WHERE t.myCodeSystemVersionPid = :cs_pid")
+	Integer countByCodeSystemVersion(@Param("cs_pid") Long thePid);
+
+	@Query("SELECT t FROM TermConceptClosure t WHERE t.myCodeSystemVersionPid = :cs_pid")
+	Slice<TermConceptClosure> findByCodeSystemVersion(Pageable thePage, @Param("cs_pid") Long thePid);
+
+	@Modifying
+	@Query("DELETE FROM TermConceptClosure t WHERE t.myCodeSystemVersionPid = :cs_pid")
+	int deleteByCodeSystemVersion(@Param("cs_pid") Long thePid);
+
+	@Query("SELECT a.myCode FROM TermConceptClosure t JOIN t.myAncestor a WHERE t.myDescendantPid = :pid")
+	List<String> findAncestorCodes(@Param("pid") Long theConceptPid);
+
+	@Query("SELECT d.myCode FROM TermConceptClosure t JOIN t.myDescendant d WHERE t.myAncestorPid = :pid")
+	List<String> findDescendantCodes(@Param("pid") Long theConceptPid);
+
+	/**
+	 * Returns the PID of the given concept, but only if the closure has been completely built for its code system version
+	 */
+	@Query("SELECT c.myId FROM TermConcept c WHERE c.myCodeSystem.myId = :cs_pid AND c.myCodeSystem.myClosureCompleted IS NOT NULL AND c.myCode = :code")
+	Optional<Long> findConceptPidWithClosure(@Param("cs_pid") Long theCodeSystemVersionPid, @Param("code") String theCode);
+
+}
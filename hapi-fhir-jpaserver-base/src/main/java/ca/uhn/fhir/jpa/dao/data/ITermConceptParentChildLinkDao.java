@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.List;
 
 /*
  * #%L
@@ -40,4 +41,10 @@ public interface ITermConceptParentChildLinkDao extends JpaRepository<TermConcep
 	@Query("SELECT t FROM TermConceptParentChildLink t WHERE t.myCodeSystem.myId = :cs_pid")
 	Slice<TermConceptParentChildLink> findByCodeSystemVersion(Pageable thePage, @Param("cs_pid") Long thePid);
 
+	/**
+	 * Returns pairs of [child PID, parent PID]
+	 */
+	@Query("SELECT t.myChildPid, t.myParentPid FROM TermConceptParentChildLink t WHERE t.myCodeSystem.myId = :cs_pid")
+	List<Object[]> findChildAndParentPidsByCodeSystemVersion(@Param("cs_pid") Long thePid);
+
 }
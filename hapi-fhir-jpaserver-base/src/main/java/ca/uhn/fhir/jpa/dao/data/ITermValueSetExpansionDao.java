@@ -0,0 +1,58 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.TermValueSetExpansion;
+import ca.uhn.fhir.jpa.entity.TermValueSetExpansionDependencyTypeEnum;
+import ca.uhn.fhir.jpa.entity.TermValueSetExpansionStatusEnum;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+public interface ITermValueSetExpansionDao extends JpaRepository<TermValueSetExpansion, Long> {
+
+	@Query("SELECT e FROM TermValueSetExpansion e WHERE e.myValueSetUrl = :url")
+	Optional<TermValueSetExpansion> findByValueSetUrl(@Param("url") String theValueSetUrl);
+
+	@Query("SELECT e.myId FROM TermValueSetExpansion e WHERE e.myValueSetUrl = :url AND e.myStatus = :status")
+	Optional<Long> findPidByValueSetUrlAndStatus(@Param("url") String theValueSetUrl, @Param("status") TermValueSetExpansionStatusEnum theStatus);
+
+	@Query("SELECT e FROM TermValueSetExpansion e WHERE e.myStatus = :status ORDER BY e.myId ASC")
+	Slice<TermValueSetExpansion> findByStatus(Pageable thePage, @Param("status") TermValueSetExpansionStatusEnum theStatus);
+
+	@Modifying
+	@Query("UPDATE TermValueSetExpansion e SET e.myStatus = :status, e.myGeneration = e.myGeneration + 1 WHERE e.myValueSetUrl = :url")
+	int updateStatusAndIncrementGenerationForValueSetUrl(@Param("url") String theValueSetUrl, @Param("status") TermValueSetExpansionStatusEnum theStatus);
+
+	@Modifying
+	@Query("UPDATE TermValueSetExpansion e SET e.myStatus = :status, e.myGeneration = e.myGeneration + 1 WHERE e.myId IN (SELECT d.myExpansionPid FROM TermValueSetExpansionDependency d WHERE d.myType = :type AND d.myUrl = :url)")
+	int updateStatusAndIncrementGenerationForDependency(@Param("type") TermValueSetExpansionDependencyTypeEnum theType, @Param("url") String theUrl, @Param("status") TermValueSetExpansionStatusEnum theStatus);
+
+	@Modifying
+	@Query("UPDATE TermValueSetExpansion e SET e.myStatus = :status, e.myExpandedTime = CURRENT_TIMESTAMP, e.myConceptCount = :count WHERE e.myId = :pid AND e.myGeneration = :generation")
+	int updateStatusIfGenerationUnchanged(@Param("pid") Long thePid, @Param("generation") long theGeneration, @Param("status") TermValueSetExpansionStatusEnum theStatus, @Param("count") int theConceptCount);
+
+}
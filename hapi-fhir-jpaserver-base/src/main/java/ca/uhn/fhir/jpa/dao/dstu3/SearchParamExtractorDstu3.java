@@ -49,6 +49,7 @@ import javax.measure.unit.NonSI;
 import javax.measure.unit.Unit;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
@@ -60,6 +61,8 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	private org.hl7.fhir.dstu3.hapi.ctx.IValidationSupport myValidationSupport;
 
 	private HapiWorkerContext myWorkerContext;
+	private FHIRPathEngine myFhirPathEngine;
+	private final ConcurrentHashMap<String, ExpressionNode> myCompiledPaths = new ConcurrentHashMap<>();
 
 	/**
 	 * Constructor
@@ -710,19 +713,24 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 		}
 	}
 
+	@Override
+	protected void clearCompiledPathCache() {
+		myCompiledPaths.clear();
+	}
+
 	/**
 	 * Override parent because we're using FHIRPath here
 	 */
 	@Override
 	protected List<Object> extractValues(String thePaths, IBaseResource theResource) {
-		FHIRPathEngine fp = new FHIRPathEngine(myWorkerContext);
+		FHIRPathEngine fp = myFhirPathEngine;
 
 		List<Object> values = new ArrayList<>();
 		String[] nextPathsSplit = SPLIT.split(thePaths);
 		for (String nextPath : nextPathsSplit) {
 			List<Base> allValues;
 			try {
-				allValues = fp.evaluate((Base) theResource, trim(nextPath));
+				allValues = fp.evaluate((Base) theResource, getCompiledPath(fp, trim(nextPath)));
 			} catch (FHIRException e) {
 				String msg = getContext().getLocalizer().getMessage(BaseSearchParamExtractor.class, "failedToExtractPaths", nextPath, e.toString());
 				throw new InternalErrorException(msg, e);
@@ -744,6 +752,18 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 		return values;
 	}
 
+	/**
+	 * Returns the parsed form of the given path, parsing it only the first time it is seen
+	 */
+	private ExpressionNode getCompiledPath(FHIRPathEngine theEngine, String thePath) throws FHIRException {
+		ExpressionNode retVal = myCompiledPaths.get(thePath);
+		if (retVal == null) {
+			retVal = theEngine.parse(thePath);
+			myCompiledPaths.put(thePath, retVal);
+		}
+		return retVal;
+	}
+
 	@VisibleForTesting
 	void setValidationSupportForTesting(org.hl7.fhir.dstu3.hapi.ctx.IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
@@ -752,6 +772,7 @@ public class SearchParamExtractorDstu3 extends BaseSearchParamExtractor implemen
 	@PostConstruct
 	public void start() {
 		myWorkerContext = new HapiWorkerContext(getContext(), myValidationSupport);
+		myFhirPathEngine = new FHIRPathEngine(myWorkerContext);
 	}
 
 	private static <T extends Enum<?>> String extractSystem(Enumeration<T> theBoundCode) {
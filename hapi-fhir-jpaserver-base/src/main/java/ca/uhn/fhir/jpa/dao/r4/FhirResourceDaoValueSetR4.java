@@ -24,7 +24,10 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.codec.binary.StringUtils;
 import org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext;
@@ -33,6 +36,7 @@ import org.hl7.fhir.r4.model.*;
 import org.hl7.fhir.r4.model.Enumerations.PublicationStatus;
 import org.hl7.fhir.r4.model.ValueSet.*;
 import org.hl7.fhir.r4.terminologies.ValueSetExpander.ValueSetExpansionOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,6 +45,8 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDaoCodeSystem;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDaoCodeSystem.LookupCodeResult;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDaoValueSet;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamUri;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.util.LogicUtil;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -296,4 +302,32 @@ public class FhirResourceDaoValueSetR4 extends FhirResourceDaoR4<ValueSet> imple
 		// nothing
 	}
 
+	@Override
+	protected ResourceTable updateEntity(RequestDetails theRequest, IBaseResource theResource, ResourceTable theEntity, Date theDeletedTimestampOrNull, boolean thePerformIndexing,
+													 boolean theUpdateVersion, Date theUpdateTime, boolean theForceUpdate, boolean theCreateNewHistoryEntry) {
+		/*
+		 * Only the stored expansions which use this ValueSet need to be rebuilt, under both
+		 * its previous URL (if it has changed) and its new one
+		 */
+		Set<String> valueSetUrls = new HashSet<>();
+		if (theEntity.isParamsUriPopulated()) {
+			for (ResourceIndexedSearchParamUri next : theEntity.getParamsUri()) {
+				if (ValueSet.SP_URL.equals(next.getParamName())) {
+					valueSetUrls.add(next.getUri());
+				}
+			}
+		}
+
+		ResourceTable retVal = super.updateEntity(theRequest, theResource, theEntity, theDeletedTimestampOrNull, thePerformIndexing, theUpdateVersion, theUpdateTime, theForceUpdate, theCreateNewHistoryEntry);
+
+		if (theResource != null && isNotBlank(((ValueSet) theResource).getUrl())) {
+			valueSetUrls.add(((ValueSet) theResource).getUrl());
+		}
+		for (String next : valueSetUrls) {
+			myTerminologySvc.invalidatePreExpandedValueSet(next);
+		}
+
+		return retVal;
+	}
+
 }
@@ -48,6 +48,7 @@ import javax.measure.unit.NonSI;
 import javax.measure.unit.Unit;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -59,6 +60,9 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 	@Autowired
 	private org.hl7.fhir.r4.hapi.ctx.IValidationSupport myValidationSupport;
 
+	private volatile FHIRPathEngine myFhirPathEngine;
+	private final ConcurrentHashMap<String, ExpressionNode> myCompiledPaths = new ConcurrentHashMap<>();
+
 	/**
 	 * Constructor
 	 */
@@ -701,20 +705,24 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 		}
 	}
 
+	@Override
+	protected void clearCompiledPathCache() {
+		myCompiledPaths.clear();
+	}
+
 	/**
 	 * Override parent because we're using FHIRPath here
 	 */
 	@Override
 	protected List<Object> extractValues(String thePaths, IBaseResource theResource) {
-		IWorkerContext worker = new org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext(getContext(), myValidationSupport);
-		FHIRPathEngine fp = new FHIRPathEngine(worker);
+		FHIRPathEngine fp = getFhirPathEngine();
 
 		List<Object> values = new ArrayList<>();
 		String[] nextPathsSplit = SPLIT.split(thePaths);
 		for (String nextPath : nextPathsSplit) {
 			List<Base> allValues;
 			try {
-				allValues = fp.evaluate((Base) theResource, nextPath);
+				allValues = fp.evaluate((Base) theResource, getCompiledPath(fp, nextPath));
 			} catch (FHIRException e) {
 				String msg = getContext().getLocalizer().getMessage(BaseSearchParamExtractor.class, "failedToExtractPaths", nextPath, e.toString());
 				throw new InternalErrorException(msg, e);
@@ -736,9 +744,33 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 		return values;
 	}
 
+	/**
+	 * Parsed expressions are never modified during evaluation, so they
+	 * can be shared across threads and reused for every resource
+	 */
+	private ExpressionNode getCompiledPath(FHIRPathEngine theEngine, String thePath) throws FHIRException {
+		ExpressionNode retVal = myCompiledPaths.get(thePath);
+		if (retVal == null) {
+			retVal = theEngine.parse(thePath);
+			myCompiledPaths.put(thePath, retVal);
+		}
+		return retVal;
+	}
+
+	private FHIRPathEngine getFhirPathEngine() {
+		FHIRPathEngine retVal = myFhirPathEngine;
+		if (retVal == null) {
+			IWorkerContext worker = new org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext(getContext(), myValidationSupport);
+			retVal = new FHIRPathEngine(worker);
+			myFhirPathEngine = retVal;
+		}
+		return retVal;
+	}
+
 	@VisibleForTesting
 	void setValidationSupportForTesting(org.hl7.fhir.r4.hapi.ctx.IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
+		myFhirPathEngine = null;
 	}
 
 	private static <T extends Enum<?>> String extractSystem(Enumeration<T> theBoundCode) {
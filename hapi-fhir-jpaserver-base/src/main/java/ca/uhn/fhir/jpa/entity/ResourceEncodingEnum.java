@@ -21,6 +21,10 @@ package ca.uhn.fhir.jpa.entity;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.codec.GZipResourceBodyCodec;
+import ca.uhn.fhir.jpa.dao.codec.IResourceBodyCodec;
+import ca.uhn.fhir.jpa.dao.codec.Lz4ResourceBodyCodec;
+import ca.uhn.fhir.jpa.dao.codec.PlainResourceBodyCodec;
 import ca.uhn.fhir.parser.IParser;
 
 /**
@@ -32,22 +36,44 @@ public enum ResourceEncodingEnum {
 	 * NB: Constants in this enum must be 5 chars long or less!!!
 	 *
 	 * See ResourceHistoryTable RES_ENCODING column
+	 *
+	 * NB: Never remove or rename a constant here, rows which were stored
+	 * using it would no longer be readable.
 	 */
 
 	/**
 	 * Json
 	 */
-	JSON,
+	JSON(new PlainResourceBodyCodec()),
 
 	/**
 	 * Json Compressed
 	 */
-	JSONC,
+	JSONC(new GZipResourceBodyCodec()),
+
+	/**
+	 * Json Compressed using LZ4
+	 */
+	LZ4(new Lz4ResourceBodyCodec()),
 
 	/**
 	 * Resource was deleted - No contents expected
 	 */
-	DEL;
+	DEL(null);
+
+	private final IResourceBodyCodec myCodec;
+
+	ResourceEncodingEnum(IResourceBodyCodec theCodec) {
+		myCodec = theCodec;
+	}
+
+	/**
+	 * Returns the codec used to store resource bodies using this encoding, or
+	 * <code>null</code> for {@link #DEL}
+	 */
+	public IResourceBodyCodec getCodec() {
+		return myCodec;
+	}
 
 	public IParser newParser(FhirContext theContext) {
 		return theContext.newJsonParser();
@@ -0,0 +1,143 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * One partition (a contiguous range of resource PIDs) of a partitioned
+ * reindexing job. The checkpoint records the highest PID which has been
+ * reindexed so far, so that an interrupted job can pick up where it left off.
+ * <p>
+ * When several servers share a database, each partition is only worked on by the
+ * server which holds its lease. A lease which is not renewed before it expires
+ * (e.g. because its owner has died) may be claimed by another server.
+ * </p>
+ */
+@Entity
+@Table(name = "HFJ_RES_REINDEX_JOB")
+public class ResourceReindexJobEntity implements Serializable {
+
+	public static final int LEASE_OWNER_LENGTH = 100;
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@SequenceGenerator(name = "SEQ_RES_REINDEX_JOB", sequenceName = "SEQ_RES_REINDEX_JOB")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_RES_REINDEX_JOB")
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "RES_TYPE", length = ResourceTable.RESTYPE_LEN, nullable = true)
+	private String myResourceType;
+
+	@Column(name = "LOW_RES_ID", nullable = false)
+	private Long myLowResourceId;
+
+	@Column(name = "HIGH_RES_ID", nullable = false)
+	private Long myHighResourceId;
+
+	@Column(name = "CHECKPOINT_RES_ID", nullable = true)
+	private Long myCheckpointResourceId;
+
+	@Column(name = "REINDEX_COUNT", nullable = false)
+	private int myReindexCount;
+
+	@Column(name = "JOB_COMPLETE", nullable = false)
+	private boolean myComplete;
+
+	@Column(name = "LEASE_OWNER", length = LEASE_OWNER_LENGTH, nullable = true)
+	private String myLeaseOwner;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "LEASE_EXPIRY", nullable = true)
+	private Date myLeaseExpiry;
+
+	/**
+	 * Constructor
+	 */
+	public ResourceReindexJobEntity() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResourceType   The resource type to reindex, or <code>null</code> for all types
+	 * @param theLowResourceId  The lowest resource PID in this partition (inclusive)
+	 * @param theHighResourceId The highest resource PID in this partition (inclusive)
+	 */
+	public ResourceReindexJobEntity(String theResourceType, Long theLowResourceId, Long theHighResourceId) {
+		myResourceType = theResourceType;
+		myLowResourceId = theLowResourceId;
+		myHighResourceId = theHighResourceId;
+	}
+
+	/**
+	 * Returns the highest resource PID which has already been reindexed, or
+	 * <code>null</code> if work on this partition has not yet started
+	 */
+	public Long getCheckpointResourceId() {
+		return myCheckpointResourceId;
+	}
+
+	public Long getHighResourceId() {
+		return myHighResourceId;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	public Long getLowResourceId() {
+		return myLowResourceId;
+	}
+
+	/**
+	 * Returns the time at which the current lease expires, or <code>null</code> if
+	 * the partition is not leased
+	 */
+	public Date getLeaseExpiry() {
+		return myLeaseExpiry;
+	}
+
+	/**
+	 * Returns the ID of the server currently holding the lease on this partition, or
+	 * <code>null</code> if the partition is not leased
+	 */
+	public String getLeaseOwner() {
+		return myLeaseOwner;
+	}
+
+	public int getReindexCount() {
+		return myReindexCount;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public boolean isComplete() {
+		return myComplete;
+	}
+
+}
@@ -26,6 +26,7 @@ import javax.persistence.*;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 
 //@formatter:off
 @Table(name = "TRM_CODESYSTEM_VER"
@@ -61,6 +62,14 @@ public class TermCodeSystemVersion implements Serializable {
 	@SuppressWarnings("unused")
 	@OneToOne(mappedBy = "myCurrentVersion", optional = true)
 	private TermCodeSystem myCodeSystemHavingThisVersionAsCurrentVersionIfAny;
+	/**
+	 * Set once every row of the concept closure (see {@link TermConceptClosure}) for this
+	 * version has been stored. Closure rows for a version without this are left over from
+	 * a build which didn't finish, and are ignored.
+	 */
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CLOSURE_COMPLETED", nullable = true)
+	private Date myClosureCompleted;
 
 	/**
 	 * Constructor
@@ -98,6 +107,14 @@ public class TermCodeSystemVersion implements Serializable {
 		return true;
 	}
 
+	public Date getClosureCompleted() {
+		return myClosureCompleted;
+	}
+
+	public void setClosureCompleted(Date theClosureCompleted) {
+		myClosureCompleted = theClosureCompleted;
+	}
+
 	public TermCodeSystem getCodeSystem() {
 		return myCodeSystem;
 	}
@@ -0,0 +1,100 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * One row of the transitive closure of the ISA hierarchy of a code system
+ * version. Every concept has a row linking it to itself, plus one row
+ * for each of its ancestors.
+ */
+@Entity
+@Table(name = "TRM_CONCEPT_CLOSURE", indexes = {
+	@Index(name = "IDX_CNCPT_CLOSURE_ANC", columnList = "ANCESTOR_PID, DESCENDANT_PID"),
+	@Index(name = "IDX_CNCPT_CLOSURE_DESC", columnList = "DESCENDANT_PID, ANCESTOR_PID"),
+	@Index(name = "IDX_CNCPT_CLOSURE_CS", columnList = "CODESYSTEM_PID")
+})
+public class TermConceptClosure implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id()
+	@SequenceGenerator(name = "SEQ_CONCEPT_CLOSURE_PID", sequenceName = "SEQ_CONCEPT_CLOSURE_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_CONCEPT_CLOSURE_PID")
+	@Column(name = "PID")
+	private Long myId;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "CODESYSTEM_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_CNCPT_CLOSURE_CS"))
+	private TermCodeSystemVersion myCodeSystem;
+
+	@Column(name = "CODESYSTEM_PID", insertable = false, updatable = false)
+	private Long myCodeSystemVersionPid;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "ANCESTOR_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_CNCPT_CLOSURE_ANC"))
+	private TermConcept myAncestor;
+
+	@Column(name = "ANCESTOR_PID", insertable = false, updatable = false)
+	private Long myAncestorPid;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "DESCENDANT_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_CNCPT_CLOSURE_DESC"))
+	private TermConcept myDescendant;
+
+	@Column(name = "DESCENDANT_PID", insertable = false, updatable = false)
+	private Long myDescendantPid;
+
+	/**
+	 * Constructor
+	 */
+	public TermConceptClosure() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public TermConceptClosure(TermCodeSystemVersion theCodeSystem, TermConcept theAncestor, TermConcept theDescendant) {
+		myCodeSystem = theCodeSystem;
+		myAncestor = theAncestor;
+		myDescendant = theDescendant;
+	}
+
+	public Long getAncestorPid() {
+		return myAncestorPid;
+	}
+
+	public Long getCodeSystemVersionPid() {
+		return myCodeSystemVersionPid;
+	}
+
+	public Long getDescendantPid() {
+		return myDescendantPid;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+}
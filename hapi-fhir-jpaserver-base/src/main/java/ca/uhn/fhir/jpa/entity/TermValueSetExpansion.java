@@ -0,0 +1,107 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A stored expansion of a ValueSet, used by <code>:in</code> searches so that
+ * the ValueSet doesn't need to be expanded (and every code in it inlined into
+ * the SQL) each time it is searched for. The generation is incremented whenever
+ * the expansion is invalidated, so that an expansion which was being built at
+ * the time isn't marked as current.
+ */
+@Entity
+@Table(name = "TRM_VALUESET_EXP", uniqueConstraints = {
+	@UniqueConstraint(name = "IDX_VALUESET_EXP_URL", columnNames = {"VALUESET_URL"})
+}, indexes = {
+	@Index(name = "IDX_VALUESET_EXP_STATUS", columnList = "EXPANSION_STATUS")
+})
+public class TermValueSetExpansion implements Serializable {
+
+	public static final int MAX_URL_LENGTH = 200;
+	private static final long serialVersionUID = 1L;
+
+	@Id()
+	@SequenceGenerator(name = "SEQ_VALUESET_EXP_PID", sequenceName = "SEQ_VALUESET_EXP_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_VALUESET_EXP_PID")
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "VALUESET_URL", length = MAX_URL_LENGTH, nullable = false)
+	private String myValueSetUrl;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "EXPANSION_STATUS", length = 20, nullable = false)
+	private TermValueSetExpansionStatusEnum myStatus;
+
+	@Column(name = "EXPANSION_GENERATION", nullable = false)
+	private long myGeneration;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "EXPANDED_TIME", nullable = true)
+	private Date myExpandedTime;
+
+	@Column(name = "CONCEPT_COUNT", nullable = true)
+	private Integer myConceptCount;
+
+	/**
+	 * Constructor
+	 */
+	public TermValueSetExpansion() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public TermValueSetExpansion(String theValueSetUrl) {
+		myValueSetUrl = theValueSetUrl;
+		myStatus = TermValueSetExpansionStatusEnum.NOT_EXPANDED;
+	}
+
+	public Integer getConceptCount() {
+		return myConceptCount;
+	}
+
+	public Date getExpandedTime() {
+		return myExpandedTime;
+	}
+
+	public long getGeneration() {
+		return myGeneration;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	public TermValueSetExpansionStatusEnum getStatus() {
+		return myStatus;
+	}
+
+	public String getValueSetUrl() {
+		return myValueSetUrl;
+	}
+
+}
@@ -0,0 +1,85 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+@Entity
+@Table(name = "TRM_VALUESET_EXP_CONCEPT", indexes = {
+	@Index(name = "IDX_VSEXPCONCEPT_EXP_SYS_CD", columnList = "EXPANSION_PID, SYSTEM_URL, CODE")
+})
+public class TermValueSetExpansionConcept implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id()
+	@SequenceGenerator(name = "SEQ_VALUESET_EXP_CONCEPT_PID", sequenceName = "SEQ_VALUESET_EXP_CONCEPT_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_VALUESET_EXP_CONCEPT_PID")
+	@Column(name = "PID")
+	private Long myId;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "EXPANSION_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_VSEXPCONCEPT_EXP"))
+	private TermValueSetExpansion myExpansion;
+
+	@Column(name = "EXPANSION_PID", insertable = false, updatable = false)
+	private Long myExpansionPid;
+
+	/**
+	 * Stored codes are only ever compared against the token search
+	 * parameter index, so they share its maximum length
+	 */
+	@Column(name = "SYSTEM_URL", length = ResourceIndexedSearchParamToken.MAX_LENGTH, nullable = false)
+	private String mySystem;
+
+	@Column(name = "CODE", length = ResourceIndexedSearchParamToken.MAX_LENGTH, nullable = false)
+	private String myCode;
+
+	/**
+	 * Constructor
+	 */
+	public TermValueSetExpansionConcept() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public TermValueSetExpansionConcept(TermValueSetExpansion theExpansion, String theSystem, String theCode) {
+		myExpansion = theExpansion;
+		mySystem = theSystem;
+		myCode = theCode;
+	}
+
+	public String getCode() {
+		return myCode;
+	}
+
+	public Long getExpansionPid() {
+		return myExpansionPid;
+	}
+
+	public String getSystem() {
+		return mySystem;
+	}
+
+}
@@ -0,0 +1,92 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * A CodeSystem or ValueSet which a stored {@link TermValueSetExpansion} was built from,
+ * directly or through another ValueSet. When one of these changes, only the expansions
+ * which depend on it need to be rebuilt.
+ */
+@Entity
+@Table(name = "TRM_VALUESET_EXP_DEP", indexes = {
+	@Index(name = "IDX_VSEXPDEP_TYPE_URL", columnList = "DEPENDENCY_TYPE, DEPENDENCY_URL")
+})
+public class TermValueSetExpansionDependency implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id()
+	@SequenceGenerator(name = "SEQ_VALUESET_EXP_DEP_PID", sequenceName = "SEQ_VALUESET_EXP_DEP_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_VALUESET_EXP_DEP_PID")
+	@Column(name = "PID")
+	private Long myId;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "EXPANSION_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_VSEXPDEP_EXP"))
+	private TermValueSetExpansion myExpansion;
+
+	@Column(name = "EXPANSION_PID", insertable = false, updatable = false)
+	private Long myExpansionPid;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "DEPENDENCY_TYPE", length = 20, nullable = false)
+	private TermValueSetExpansionDependencyTypeEnum myType;
+
+	/**
+	 * URLs longer than the column are truncated, both here and when looking up the
+	 * expansions which depend on a URL, so a long URL can only ever cause an
+	 * unnecessary rebuild and never a missed one
+	 */
+	@Column(name = "DEPENDENCY_URL", length = TermValueSetExpansion.MAX_URL_LENGTH, nullable = false)
+	private String myUrl;
+
+	/**
+	 * Constructor
+	 */
+	public TermValueSetExpansionDependency() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public TermValueSetExpansionDependency(TermValueSetExpansion theExpansion, TermValueSetExpansionDependencyTypeEnum theType, String theUrl) {
+		myExpansion = theExpansion;
+		myType = theType;
+		myUrl = theUrl;
+	}
+
+	public Long getExpansionPid() {
+		return myExpansionPid;
+	}
+
+	public TermValueSetExpansionDependencyTypeEnum getType() {
+		return myType;
+	}
+
+	public String getUrl() {
+		return myUrl;
+	}
+
+}
@@ -0,0 +1,35 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+public enum TermValueSetExpansionDependencyTypeEnum {
+
+	/**
+	 * The ValueSet includes or excludes codes from the given CodeSystem
+	 */
+	CODE_SYSTEM,
+
+	/**
+	 * The ValueSet includes or excludes the codes in the given ValueSet
+	 */
+	VALUE_SET
+
+}
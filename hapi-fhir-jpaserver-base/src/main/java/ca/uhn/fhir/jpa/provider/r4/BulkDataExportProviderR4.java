@@ -0,0 +1,234 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.bulk.BulkDataExportOptions;
+import ca.uhn.fhir.jpa.bulk.BulkExportJob;
+import ca.uhn.fhir.jpa.bulk.IBulkDataExportSvc;
+import ca.uhn.fhir.jpa.provider.BaseJpaProvider;
+import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.r4.model.*;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Provides the bulk data <code>$export</code> operation at the system, Patient and
+ * Group level, as well as a <code>$export-poll-status</code> operation which reports
+ * the progress and output files of an export job, and a <code>$export-download</code>
+ * operation which returns the NDJSON content of one of those output files.
+ */
+public class BulkDataExportProviderR4 extends BaseJpaProvider {
+
+	private static final Set<String> ALLOWED_OUTPUT_FORMATS = new HashSet<>();
+	private static final String CT_FHIR_NDJSON = "application/fhir+ndjson";
+
+	static {
+		ALLOWED_OUTPUT_FORMATS.add(CT_FHIR_NDJSON);
+		ALLOWED_OUTPUT_FORMATS.add("application/ndjson");
+		ALLOWED_OUTPUT_FORMATS.add("ndjson");
+	}
+
+	@Autowired
+	private IBulkDataExportSvc myBulkDataExportSvc;
+
+	/**
+	 * $export
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT, idempotent = true)
+	public Parameters export(
+		HttpServletRequest theServletRequest,
+		HttpServletResponse theServletResponse,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT, min = 0, max = 1) StringType theOutputFormat,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE, min = 0, max = OperationParam.MAX_UNLIMITED) List<StringType> theType,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_SINCE, min = 0, max = 1) InstantType theSince,
+		RequestDetails theRequestDetails
+	) {
+		BulkDataExportOptions options = new BulkDataExportOptions()
+			.setExportStyle(BulkDataExportOptions.ExportStyleEnum.SYSTEM);
+		return submitJob(theServletRequest, theServletResponse, options, theOutputFormat, theType, theSince, theRequestDetails);
+	}
+
+	/**
+	 * Group/123/$export
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT, type = Group.class, idempotent = true)
+	public Parameters groupExport(
+		HttpServletRequest theServletRequest,
+		HttpServletResponse theServletResponse,
+		@IdParam IdType theId,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT, min = 0, max = 1) StringType theOutputFormat,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE, min = 0, max = OperationParam.MAX_UNLIMITED) List<StringType> theType,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_SINCE, min = 0, max = 1) InstantType theSince,
+		RequestDetails theRequestDetails
+	) {
+		BulkDataExportOptions options = new BulkDataExportOptions()
+			.setExportStyle(BulkDataExportOptions.ExportStyleEnum.GROUP)
+			.setGroupId(theId);
+		return submitJob(theServletRequest, theServletResponse, options, theOutputFormat, theType, theSince, theRequestDetails);
+	}
+
+	/**
+	 * Patient/$export
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT, type = Patient.class, idempotent = true)
+	public Parameters patientExport(
+		HttpServletRequest theServletRequest,
+		HttpServletResponse theServletResponse,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT, min = 0, max = 1) StringType theOutputFormat,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE, min = 0, max = OperationParam.MAX_UNLIMITED) List<StringType> theType,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_SINCE, min = 0, max = 1) InstantType theSince,
+		RequestDetails theRequestDetails
+	) {
+		BulkDataExportOptions options = new BulkDataExportOptions()
+			.setExportStyle(BulkDataExportOptions.ExportStyleEnum.PATIENT);
+		return submitJob(theServletRequest, theServletResponse, options, theOutputFormat, theType, theSince, theRequestDetails);
+	}
+
+	/**
+	 * $export-download
+	 * <p>
+	 * The output is returned as a Binary, so it is sent as raw NDJSON unless the
+	 * client explicitly asks for a FHIR encoding.
+	 * </p>
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT_DOWNLOAD, idempotent = true)
+	public Binary exportDownload(
+		HttpServletRequest theServletRequest,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID, min = 1, max = 1) StringType theJobId,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_DOWNLOAD_TYPE, min = 1, max = 1) StringType theType
+	) {
+		startRequest(theServletRequest);
+		try {
+			if (theJobId == null || isBlank(theJobId.getValue())) {
+				throw new InvalidRequestException("Missing required parameter: " + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID);
+			}
+			if (theType == null || isBlank(theType.getValue())) {
+				throw new InvalidRequestException("Missing required parameter: " + JpaConstants.PARAM_EXPORT_DOWNLOAD_TYPE);
+			}
+
+			Binary retVal = new Binary();
+			retVal.setContentType(CT_FHIR_NDJSON);
+			try (InputStream inputStream = myBulkDataExportSvc.openOutput(theJobId.getValue(), theType.getValue())) {
+				retVal.setContent(IOUtils.toByteArray(inputStream));
+			} catch (IOException e) {
+				throw new InternalErrorException("Failed to read the output of bulk export job " + theJobId.getValue(), e);
+			}
+			return retVal;
+		} finally {
+			endRequest(theServletRequest);
+		}
+	}
+
+	/**
+	 * $export-poll-status
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT_POLL_STATUS, idempotent = true)
+	public Parameters exportPollStatus(
+		HttpServletRequest theServletRequest,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID, min = 1, max = 1) StringType theJobId,
+		RequestDetails theRequestDetails
+	) {
+		startRequest(theServletRequest);
+		try {
+			if (theJobId == null || isBlank(theJobId.getValue())) {
+				throw new InvalidRequestException("Missing required parameter: " + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID);
+			}
+			return toParameters(myBulkDataExportSvc.getJob(theJobId.getValue()), theRequestDetails);
+		} finally {
+			endRequest(theServletRequest);
+		}
+	}
+
+	private Parameters submitJob(HttpServletRequest theServletRequest, HttpServletResponse theServletResponse, BulkDataExportOptions theOptions, StringType theOutputFormat, List<StringType> theType, InstantType theSince, RequestDetails theRequestDetails) {
+		startRequest(theServletRequest);
+		try {
+			if (theOutputFormat != null && isNotBlank(theOutputFormat.getValue()) && !ALLOWED_OUTPUT_FORMATS.contains(theOutputFormat.getValue())) {
+				throw new InvalidRequestException("Unsupported " + JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT + ": " + theOutputFormat.getValue());
+			}
+
+			Set<String> resourceTypes = new HashSet<>();
+			if (theType != null) {
+				for (StringType nextType : theType) {
+					if (nextType.getValue() != null) {
+						for (String next : nextType.getValue().split(",")) {
+							if (isNotBlank(next)) {
+								resourceTypes.add(next.trim());
+							}
+						}
+					}
+				}
+			}
+			theOptions.setResourceTypes(resourceTypes);
+			if (theSince != null) {
+				theOptions.setSince(theSince.getValue());
+			}
+
+			BulkExportJob job = myBulkDataExportSvc.submitJob(theOptions);
+
+			String pollUrl = theRequestDetails.getFhirServerBase() + "/" + JpaConstants.OPERATION_EXPORT_POLL_STATUS + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + job.getJobId();
+			theServletResponse.addHeader(Constants.HEADER_CONTENT_LOCATION, pollUrl);
+
+			return toParameters(job, theRequestDetails);
+		} finally {
+			endRequest(theServletRequest);
+		}
+	}
+
+	private Parameters toParameters(BulkExportJob theJob, RequestDetails theRequestDetails) {
+		Parameters retVal = new Parameters();
+		retVal.addParameter().setName("jobId").setValue(new StringType(theJob.getJobId()));
+		retVal.addParameter().setName("status").setValue(new CodeType(theJob.getStatus().name().toLowerCase()));
+		retVal.addParameter().setName("requestTime").setValue(new InstantType(theJob.getRequestTime()));
+		if (theJob.getTransactionTime() != null) {
+			retVal.addParameter().setName("transactionTime").setValue(new InstantType(theJob.getTransactionTime()));
+		}
+		if (theJob.getErrorMessage() != null) {
+			retVal.addParameter().setName("error").setValue(new StringType(theJob.getErrorMessage()));
+		}
+		for (BulkExportJob.Output next : theJob.getOutputs()) {
+			Parameters.ParametersParameterComponent output = retVal.addParameter().setName("output");
+			output.addPart().setName("type").setValue(new CodeType(next.getResourceType()));
+			String url = theRequestDetails.getFhirServerBase() + "/" + JpaConstants.OPERATION_EXPORT_DOWNLOAD + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + theJob.getJobId() + "&" + JpaConstants.PARAM_EXPORT_DOWNLOAD_TYPE + "=" + next.getResourceType();
+			output.addPart().setName("url").setValue(new UriType(url));
+			output.addPart().setName("count").setValue(new DecimalType(next.getCount()));
+		}
+		return retVal;
+	}
+
+}
@@ -39,6 +39,7 @@ import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
 import ca.uhn.fhir.rest.server.method.PageMethodBinding;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
@@ -62,22 +63,44 @@ import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 	public static final int DEFAULT_SYNC_SIZE = 250;
+	/**
+	 * When waiting for results from a search running on another server, the database is
+	 * polled starting at this interval and backing off to {@link #MAX_REMOTE_POLL_MILLIS}
+	 */
+	private static final long MIN_REMOTE_POLL_MILLIS = 20;
+	private static final long MAX_REMOTE_POLL_MILLIS = 500;
+	/**
+	 * Local waits are woken up as soon as results are synced, this is just a safety net
+	 */
+	private static final long MAX_LOCAL_WAIT_MILLIS = 1000;
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchCoordinatorSvcImpl.class);
 	private final ConcurrentHashMap<String, SearchTask> myIdToSearchTask = new ConcurrentHashMap<String, SearchTask>();
+	private final ConcurrentHashMap<String, SearchTask> myQueryKeyToInFlightSearchTask = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, AtomicInteger> myResourceTypeToActiveSearchCount = new ConcurrentHashMap<>();
+	private final AtomicLong myRejectedSearchCount = new AtomicLong();
+	private final AtomicLong myCoalescedSearchCount = new AtomicLong();
+	private final AtomicLong myFirstPageCount = new AtomicLong();
+	private final AtomicLong myFirstPageTotalMillis = new AtomicLong();
+	private final AtomicLong myFirstPageMaxMillis = new AtomicLong();
 	@Autowired
 	private FhirContext myContext;
 	@Autowired
 	private DaoConfig myDaoConfig;
 	@Autowired
 	private EntityManager myEntityManager;
-	private ExecutorService myExecutor;
+	private ThreadPoolExecutor myExecutor;
+	private Integer myMaxConcurrentSearchesPerResourceType;
 	private Integer myLoadingThrottleForUnitTests = null;
 	private long myMaxMillisToWaitForRemoteResults = DateUtils.MILLIS_PER_MINUTE;
 	private boolean myNeverUseLocalSearchForUnitTests;
@@ -92,12 +115,82 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 	private int mySyncSize = DEFAULT_SYNC_SIZE;
 
+	@PostConstruct
+	public synchronized void start() {
+		Validate.isTrue(myExecutor == null || myExecutor.isShutdown(), "Search coordinator has already been started");
+
+		int threadCount = myDaoConfig.getSearchCoordinatorThreadCount();
+		int queueCapacity = myDaoConfig.getSearchCoordinatorQueueCapacity();
+		myMaxConcurrentSearchesPerResourceType = myDaoConfig.getSearchCoordinatorMaxConcurrentSearchesPerResourceType();
+		ourLog.info("Starting search coordinator with {} threads and a queue capacity of {}", threadCount, queueCapacity);
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("search_coord_");
+		myExecutor = new ThreadPoolExecutor(
+			threadCount,
+			threadCount,
+			60L,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(queueCapacity),
+			threadFactory,
+			new ThreadPoolExecutor.AbortPolicy());
+		myExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null && !myExecutor.isShutdown()) {
+			ourLog.info("Shutting down search coordinator");
+			myExecutor.shutdown();
+		}
+	}
+
 	/**
-	 * Constructor
+	 * Returns the number of searches which are currently executing
 	 */
-	public SearchCoordinatorSvcImpl() {
-		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("search_coord_");
-		myExecutor = Executors.newCachedThreadPool(threadFactory);
+	public int getActiveSearchCount() {
+		return myExecutor.getActiveCount();
+	}
+
+	/**
+	 * Returns the number of searches which have been accepted but are waiting for a free search thread
+	 */
+	public int getQueuedSearchCount() {
+		return myExecutor.getQueue().size();
+	}
+
+	/**
+	 * Returns the number of searches which have been rejected because the server was saturated
+	 */
+	public long getRejectedSearchCount() {
+		return myRejectedSearchCount.get();
+	}
+
+	/**
+	 * Returns the number of searches which were served by attaching to an identical search
+	 * that was already running, instead of starting a new one
+	 */
+	public long getCoalescedSearchCount() {
+		return myCoalescedSearchCount.get();
+	}
+
+	/**
+	 * Returns the average time in milliseconds between a search being submitted and its first page
+	 * of results being available, or <code>0</code> if no searches have completed their first page yet
+	 */
+	public long getAverageMillisToFirstPage() {
+		long count = myFirstPageCount.get();
+		if (count == 0) {
+			return 0;
+		}
+		return myFirstPageTotalMillis.get() / count;
+	}
+
+	/**
+	 * Returns the longest time in milliseconds between a search being submitted and its first page
+	 * of results being available
+	 */
+	public long getMaxMillisToFirstPage() {
+		return myFirstPageMaxMillis.get();
 	}
 
 	@Override
@@ -132,6 +225,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 		Search search;
 		StopWatch sw = new StopWatch();
+		long pollMillis = MIN_REMOTE_POLL_MILLIS;
 		while (true) {
 
 			search = txTemplate.execute(new TransactionCallback<Search>() {
@@ -161,11 +255,23 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 				throw new InternalErrorException("Request timed out after " + sw.getMillis() + "ms");
 			}
 
+			/*
+			 * If the search started running locally in the meantime (e.g. it was
+			 * coalesced with a new request) we can wait on it directly
+			 */
+			if (myNeverUseLocalSearchForUnitTests == false) {
+				SearchTask task = myIdToSearchTask.get(theUuid);
+				if (task != null) {
+					return task.getResourcePids(theFrom, theTo);
+				}
+			}
+
 			try {
-				Thread.sleep(500);
+				Thread.sleep(pollMillis);
 			} catch (InterruptedException e) {
 				// ignore
 			}
+			pollMillis = Math.min(pollMillis * 2, MAX_REMOTE_POLL_MILLIS);
 		}
 
 		final Pageable page = toPage(theFrom, theTo);
@@ -277,9 +383,22 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 			useCache = false;
 		}
 		final String queryString = theParams.toNormalizedQueryString(myContext);
+		String inFlightQueryKey = null;
 		if (theParams.getEverythingMode() == null) {
 			if (myDaoConfig.getReuseCachedSearchResultsForMillis() != null && useCache) {
 
+				/*
+				 * If an identical search is currently running on this server, attach to
+				 * it instead of running the same query again
+				 */
+				inFlightQueryKey = theResourceType + queryString;
+				SearchTask inFlightTask = myQueryKeyToInFlightSearchTask.get(inFlightQueryKey);
+				if (inFlightTask != null) {
+					IBundleProvider retVal = attachToInFlightSearch(inFlightTask, theCallingDao, sb);
+					ourLog.info("Search initial phase completed in {}ms", w.getMillis());
+					return retVal;
+				}
+
 				final Date createdCutoff = new Date(System.currentTimeMillis() - myDaoConfig.getReuseCachedSearchResultsForMillis());
 				final String resourceType = theResourceType;
 
@@ -343,8 +462,17 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		}
 
 		SearchTask task = new SearchTask(search, theCallingDao, theParams, theResourceType, searchUuid);
-		myIdToSearchTask.put(search.getUuid(), task);
-		myExecutor.submit(task);
+		if (inFlightQueryKey != null) {
+			SearchTask existingTask = myQueryKeyToInFlightSearchTask.putIfAbsent(inFlightQueryKey, task);
+			if (existingTask != null) {
+				// Another thread registered the same search while we were checking the cache
+				IBundleProvider retVal = attachToInFlightSearch(existingTask, theCallingDao, sb);
+				ourLog.info("Search initial phase completed in {}ms", w.getMillis());
+				return retVal;
+			}
+			task.setInFlightQueryKey(inFlightQueryKey);
+		}
+		submitSearchTask(task, search.getUuid(), theResourceType);
 
 		PersistedJpaSearchFirstPageBundleProvider retVal = new PersistedJpaSearchFirstPageBundleProvider(search, theCallingDao, task, sb, myManagedTxManager);
 		populateBundleProvider(retVal);
@@ -354,6 +482,50 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 	}
 
+	private IBundleProvider attachToInFlightSearch(SearchTask theTask, IDao theCallingDao, ISearchBuilder theSearchBuilder) {
+		myCoalescedSearchCount.incrementAndGet();
+		ourLog.info("Attaching to in-flight search {}", theTask.getSearch().getUuid());
+
+		PersistedJpaSearchFirstPageBundleProvider retVal = new PersistedJpaSearchFirstPageBundleProvider(theTask.getSearch(), theCallingDao, theTask, theSearchBuilder, myManagedTxManager);
+		populateBundleProvider(retVal);
+		return retVal;
+	}
+
+	/**
+	 * Hands a new search over to the search thread pool, or throws an HTTP 429 if
+	 * the pool (or the per-resource-type allowance) is saturated
+	 */
+	private void submitSearchTask(SearchTask theTask, String theSearchUuid, String theResourceType) {
+		AtomicInteger activeForType = myResourceTypeToActiveSearchCount.computeIfAbsent(theResourceType, t -> new AtomicInteger());
+		int active = activeForType.incrementAndGet();
+		if (myMaxConcurrentSearchesPerResourceType != null && active > myMaxConcurrentSearchesPerResourceType) {
+			activeForType.decrementAndGet();
+			theTask.removeFromInFlightSearches();
+			rejectSearch("Too many concurrent searches for resource type " + theResourceType + ", please try again later");
+		}
+
+		myIdToSearchTask.put(theSearchUuid, theTask);
+		try {
+			myExecutor.submit(theTask);
+		} catch (RejectedExecutionException e) {
+			myIdToSearchTask.remove(theSearchUuid);
+			theTask.removeFromInFlightSearches();
+			activeForType.decrementAndGet();
+			rejectSearch("Server is too busy to accept new searches, please try again later");
+		}
+	}
+
+	private void rejectSearch(String theMessage) {
+		myRejectedSearchCount.incrementAndGet();
+		ourLog.warn("Rejecting search: {} ({} active, {} queued)", theMessage, getActiveSearchCount(), getQueuedSearchCount());
+		throw new UnclassifiedServerFailureException(Constants.STATUS_HTTP_429_TOO_MANY_REQUESTS, theMessage);
+	}
+
+	@VisibleForTesting
+	Map<String, SearchTask> getIdToSearchTaskForUnitTest() {
+		return myIdToSearchTask;
+	}
+
 	@VisibleForTesting
 	void setContextForUnitTest(FhirContext theCtx) {
 		myContext = theCtx;
@@ -466,9 +638,11 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		private final Search mySearch;
 		private final ArrayList<Long> mySyncedPids = new ArrayList<>();
 		private final ArrayList<Long> myUnsyncedPids = new ArrayList<>();
+		private final StopWatch mySubmittedStopWatch = new StopWatch();
 		private boolean myAbortRequested;
 		private int myCountSaved = 0;
 		private String mySearchUuid;
+		private String myInFlightQueryKey;
 
 		/**
 		 * Constructor
@@ -566,10 +740,20 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 			} finally {
 
+				removeFromInFlightSearches();
 				myIdToSearchTask.remove(mySearch.getUuid());
+				AtomicInteger activeForType = myResourceTypeToActiveSearchCount.get(myResourceType);
+				if (activeForType != null) {
+					activeForType.decrementAndGet();
+				}
 				myInitialCollectionLatch.countDown();
 				myCompletionLatch.countDown();
 
+				// Wake up anyone waiting for results that are never going to arrive
+				synchronized (mySyncedPids) {
+					mySyncedPids.notifyAll();
+				}
+
 			}
 			return null;
 		}
@@ -633,23 +817,37 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 			return myCompletionLatch;
 		}
 
+		Search getSearch() {
+			return mySearch;
+		}
+
+		void setInFlightQueryKey(String theInFlightQueryKey) {
+			myInFlightQueryKey = theInFlightQueryKey;
+		}
+
+		/**
+		 * Stop new identical searches from attaching to this one
+		 */
+		void removeFromInFlightSearches() {
+			if (myInFlightQueryKey != null) {
+				myQueryKeyToInFlightSearchTask.remove(myInFlightQueryKey, this);
+			}
+		}
+
 		public List<Long> getResourcePids(int theFromIndex, int theToIndex) {
 			ourLog.info("Requesting search PIDs from {}-{}", theFromIndex, theToIndex);
 
-			boolean keepWaiting;
-			do {
-				synchronized (mySyncedPids) {
-					keepWaiting = mySyncedPids.size() < theToIndex && mySearch.getStatus() == SearchStatusEnum.LOADING;
-				}
-				if (keepWaiting) {
+			synchronized (mySyncedPids) {
+				while (mySyncedPids.size() < theToIndex && mySearch.getStatus() == SearchStatusEnum.LOADING && myCompletionLatch.getCount() > 0) {
 					ourLog.info("Waiting, as we only have {} results", mySyncedPids.size());
 					try {
-						Thread.sleep(500);
+						mySyncedPids.wait(MAX_LOCAL_WAIT_MILLIS);
 					} catch (InterruptedException theE) {
-						// ignore
+						Thread.currentThread().interrupt();
+						throw new InternalErrorException(theE);
 					}
 				}
-			} while (keepWaiting);
+			}
 
 			ourLog.info("Proceeding, as we have {} results", mySyncedPids.size());
 
@@ -719,6 +917,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 							mySearch.setTotalCount(myCountSaved);
 							mySearch.setStatus(SearchStatusEnum.FINISHED);
 						}
+
+						mySyncedPids.notifyAll();
 					}
 
 					mySearch.setNumFound(myCountSaved);
@@ -731,6 +931,12 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 					if (myDaoConfig.getCountSearchResultsUpTo() == null ||
 						myDaoConfig.getCountSearchResultsUpTo() <= 0 ||
 						myDaoConfig.getCountSearchResultsUpTo() <= numSynced) {
+						if (myInitialCollectionLatch.getCount() > 0) {
+							long millisToFirstPage = mySubmittedStopWatch.getMillis();
+							myFirstPageCount.incrementAndGet();
+							myFirstPageTotalMillis.addAndGet(millisToFirstPage);
+							myFirstPageMaxMillis.accumulateAndGet(millisToFirstPage, Math::max);
+						}
 						myInitialCollectionLatch.countDown();
 					}
 
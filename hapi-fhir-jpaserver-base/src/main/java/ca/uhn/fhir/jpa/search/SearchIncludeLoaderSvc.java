@@ -0,0 +1,105 @@
+package ca.uhn.fhir.jpa.search;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.util.ResizableExecutor;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.google.common.annotations.VisibleForTesting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the link queries used to resolve <code>_include</code> and <code>_revinclude</code>
+ * parameters concurrently, each one in its own read-only transaction (and therefore on
+ * its own database connection). This is used by the search builder when
+ * {@link DaoConfig#getIncludeLoadingThreadCount()} is greater than 1.
+ */
+public class SearchIncludeLoaderSvc {
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private ResizableExecutor myExecutor;
+	@Autowired
+	private PlatformTransactionManager myTransactionManager;
+	private final AtomicLong myQueryCount = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		myExecutor = new ResizableExecutor("search_include_", () -> myDaoConfig.getIncludeLoadingThreadCount());
+	}
+
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	/**
+	 * Returns the total number of queries which have been run by this service
+	 */
+	@VisibleForTesting
+	public long getQueryCount() {
+		return myQueryCount.get();
+	}
+
+	/**
+	 * Is parallel include loading currently enabled?
+	 */
+	public boolean isEnabled() {
+		return myDaoConfig.getIncludeLoadingThreadCount() > 1;
+	}
+
+	/**
+	 * Runs the given queries concurrently and returns their results in the same order
+	 * as the queries were supplied. This method blocks until all of the queries have
+	 * completed.
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> theQueries) {
+		TransactionTemplate txTemplate = new TransactionTemplate(myTransactionManager);
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		txTemplate.setReadOnly(true);
+
+		List<Callable<T>> tasks = new ArrayList<>();
+		for (Callable<T> nextQuery : theQueries) {
+			myQueryCount.incrementAndGet();
+			tasks.add(() -> txTemplate.execute(t -> {
+				try {
+					return nextQuery.call();
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new InternalErrorException(e);
+				}
+			}));
+		}
+		return myExecutor.invokeAll(tasks);
+	}
+
+}
@@ -0,0 +1,89 @@
+package ca.uhn.fhir.jpa.search;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.IDecodedResourceCacheSvc;
+import ca.uhn.fhir.jpa.util.ResizableExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses and parses the resources loaded by a search on a pool of worker threads,
+ * so that large pages are not decoded by a single thread. This is used by the search
+ * builder when {@link DaoConfig#getResourceDecodingThreadCount()} is greater than 1.
+ * <p>
+ * Only work which does not need the database may be submitted to this service, since
+ * the worker threads do not participate in the caller's transaction. In particular, no
+ * Hibernate managed entities may be passed to the workers. Tasks are bound to the
+ * caller's transaction only as far as the {@link IDecodedResourceCacheSvc} is concerned,
+ * so that resources they cache are not visible to other callers before it commits.
+ * </p>
+ */
+public class SearchResourceDecoderSvc {
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired(required = false)
+	private IDecodedResourceCacheSvc myDecodedResourceCacheSvc;
+	private ResizableExecutor myExecutor;
+
+	@PostConstruct
+	public void start() {
+		myExecutor = new ResizableExecutor("search_decode_", () -> myDaoConfig.getResourceDecodingThreadCount());
+	}
+
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	/**
+	 * Is parallel resource decoding currently enabled?
+	 */
+	public boolean isEnabled() {
+		return myDaoConfig.getResourceDecodingThreadCount() > 1;
+	}
+
+	/**
+	 * Submits a unit of decoding work. Callers should pass the returned futures to
+	 * {@link #awaitAll(List)} once everything has been submitted.
+	 */
+	public Future<?> submit(Runnable theTask) {
+		Runnable task = theTask;
+		if (myDecodedResourceCacheSvc != null) {
+			task = myDecodedResourceCacheSvc.bindToCurrentTransaction(task);
+		}
+		return myExecutor.submit(task);
+	}
+
+	/**
+	 * Blocks until all of the given work has completed, rethrowing the first failure
+	 */
+	public void awaitAll(List<Future<?>> theFutures) {
+		ResizableExecutor.getAll(theFutures);
+	}
+
+}
@@ -25,13 +25,16 @@ import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchIncludeDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
 import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.dstu3.model.InstantType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
@@ -40,13 +43,30 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Deletes old searches
  */
 public class StaleSearchDeletingSvcImpl implements IStaleSearchDeletingSvc {
 	public static final long DEFAULT_CUTOFF_SLACK = 10 * DateUtils.MILLIS_PER_SECOND;
+	/**
+	 * Maximum number of stale searches which will be deleted in a single pass
+	 */
+	static final int MAX_SEARCHES_PER_PASS = 1000;
+	/**
+	 * When deleting in bulk, the number of searches which are deleted together by one thread
+	 */
+	static final int SEARCHES_PER_BULK_DELETE = 100;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(StaleSearchDeletingSvcImpl.class);
 	private static Long ourNowForUnitTests;
 	/*
@@ -65,6 +85,18 @@ public class StaleSearchDeletingSvcImpl implements IStaleSearchDeletingSvc {
 	private ISearchResultDao mySearchResultDao;
 	@Autowired
 	private PlatformTransactionManager myTransactionManager;
+	private ExecutorService myBulkDeleteExecutor;
+
+	@PostConstruct
+	public void start() {
+		int threadCount = myDaoConfig.getStaleSearchDeleteThreadCount();
+		myBulkDeleteExecutor = Executors.newFixedThreadPool(threadCount, new CustomizableThreadFactory("stale_search_delete_"));
+	}
+
+	@PreDestroy
+	public void stop() {
+		myBulkDeleteExecutor.shutdown();
+	}
 
 	private void deleteSearch(final Long theSearchPid) {
 		mySearchDao.findById(theSearchPid).ifPresent(searchToDelete -> {
@@ -94,11 +126,16 @@ public class StaleSearchDeletingSvcImpl implements IStaleSearchDeletingSvc {
 
 		ourLog.debug("Searching for searches which are before {}", cutoff);
 
+		if (myDaoConfig.isDeleteStaleSearchesInBulk()) {
+			deleteStaleSearchesInBulk(cutoff);
+			return;
+		}
+
 		TransactionTemplate tt = new TransactionTemplate(myTransactionManager);
 		final Slice<Long> toDelete = tt.execute(new TransactionCallback<Slice<Long>>() {
 			@Override
 			public Slice<Long> doInTransaction(TransactionStatus theStatus) {
-				return mySearchDao.findWhereLastReturnedBefore(cutoff, new PageRequest(0, 1000));
+				return mySearchDao.findWhereLastReturnedBefore(cutoff, new PageRequest(0, MAX_SEARCHES_PER_PASS));
 			}
 		});
 
@@ -125,6 +162,76 @@ public class StaleSearchDeletingSvcImpl implements IStaleSearchDeletingSvc {
 
 	}
 
+	private void deleteStaleSearchesInBulk(Date theCutoff) {
+		StopWatch sw = new StopWatch();
+		TransactionTemplate tt = new TransactionTemplate(myTransactionManager);
+		List<Long> toDelete = tt.execute(t -> mySearchDao.findWhereLastReturnedBefore(theCutoff, new PageRequest(0, MAX_SEARCHES_PER_PASS)).getContent());
+		if (toDelete.isEmpty()) {
+			return;
+		}
+
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (List<Long> nextChunk : Lists.partition(toDelete, SEARCHES_PER_BULK_DELETE)) {
+			futures.add(myBulkDeleteExecutor.submit(() -> deleteSearchesInBulk(nextChunk)));
+		}
+
+		int deletedResults = 0;
+		for (Future<Integer> nextFuture : futures) {
+			try {
+				deletedResults += nextFuture.get();
+			} catch (InterruptedException e) {
+				ourLog.warn("Interrupted while waiting for stale searches to be deleted");
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				ourLog.error("Failed to delete stale searches", e.getCause());
+			}
+		}
+
+		ourLog.info("Deleted {} searches with {} results in {} ({} results/sec)", toDelete.size(), deletedResults, sw, sw.formatThroughput(deletedResults, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Deletes the results of a group of searches in batches of at most
+	 * {@link DaoConfig#getStaleSearchDeleteBatchSize()} rows per transaction, and then
+	 * deletes the searches themselves
+	 *
+	 * @return The number of search results deleted
+	 */
+	private int deleteSearchesInBulk(List<Long> theSearchPids) {
+		TransactionTemplate tt = new TransactionTemplate(myTransactionManager);
+		int batchSize = myDaoConfig.getStaleSearchDeleteBatchSize();
+
+		int retVal = 0;
+		long lastId = -1;
+		while (true) {
+			// Each batch starts after the highest ID deleted so far, so no rows are scanned twice
+			long batchLastId = lastId;
+			List<Long> deleted = tt.execute(t -> {
+				List<Long> resultIds = mySearchResultDao.findIdsForSearches(theSearchPids, batchLastId, new PageRequest(0, batchSize)).getContent();
+				if (!resultIds.isEmpty()) {
+					mySearchResultDao.deleteByIds(resultIds);
+				}
+				return resultIds;
+			});
+			retVal += deleted.size();
+			if (deleted.size() < batchSize) {
+				break;
+			}
+			lastId = deleted.get(deleted.size() - 1);
+		}
+
+		tt.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				mySearchIncludeDao.deleteForSearches(theSearchPids);
+				mySearchDao.deleteByPids(theSearchPids);
+			}
+		});
+
+		return retVal;
+	}
+
 	@Scheduled(fixedDelay = DEFAULT_CUTOFF_SLACK)
 	@Transactional(propagation = Propagation.NEVER)
 	@Override
@@ -25,8 +25,11 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
 import ca.uhn.fhir.jpa.config.BaseConfig;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.dao.ISearchParamRegistry;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.jpa.provider.ServletSubRequestDetails;
+import ca.uhn.fhir.jpa.subscription.matcher.SubscriptionMatcherIndex;
 import ca.uhn.fhir.jpa.util.JpaConstants;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -102,6 +105,11 @@ public abstract class BaseSubscriptionInterceptor<S extends IBaseResource> exten
 	@Autowired
 	@Qualifier(BaseConfig.TASK_EXECUTOR_NAME)
 	private AsyncTaskExecutor myAsyncTaskExecutor;
+	@Autowired(required = false)
+	private ISearchParamExtractor mySearchParamExtractor;
+	@Autowired(required = false)
+	private ISearchParamRegistry mySearchParamRegistry;
+	private SubscriptionMatcherIndex mySubscriptionMatcherIndex;
 	private Map<Class<? extends IBaseResource>, IFhirResourceDao<?>> myResourceTypeToDao;
 	private Semaphore myInitSubscriptionsSemaphore = new Semaphore(1);
 
@@ -336,6 +344,14 @@ public abstract class BaseSubscriptionInterceptor<S extends IBaseResource> exten
 		return mySubscriptionDao;
 	}
 
+	/**
+	 * Returns the index used to match modified resources against subscription criteria
+	 * in memory, or <code>null</code> if in-memory matching is not available
+	 */
+	public SubscriptionMatcherIndex getSubscriptionMatcherIndex() {
+		return mySubscriptionMatcherIndex;
+	}
+
 	public List<CanonicalSubscription> getRegisteredSubscriptions() {
 		return new ArrayList<>(myIdToSubscription.values());
 	}
@@ -425,6 +441,9 @@ public abstract class BaseSubscriptionInterceptor<S extends IBaseResource> exten
 
 		mySubscribableChannel.put(subscriptionId, deliveryChannel);
 		myIdToSubscription.put(subscriptionId, canonicalized);
+		if (mySubscriptionMatcherIndex != null) {
+			mySubscriptionMatcherIndex.register(subscriptionId, canonicalized);
+		}
 
 		deliveryHandler.ifPresent(handler -> registerHandler(subscriptionId, handler));
 
@@ -519,6 +538,12 @@ public abstract class BaseSubscriptionInterceptor<S extends IBaseResource> exten
 			Validate.notNull(myEventDefinitionDaoR4);
 		}
 
+		if (mySearchParamExtractor != null && mySearchParamRegistry != null) {
+			mySubscriptionMatcherIndex = new SubscriptionMatcherIndex(myCtx, mySubscriptionDao, mySearchParamExtractor, mySearchParamRegistry);
+		} else {
+			ourLog.info("No search parameter extractor available, subscription criteria will be evaluated using database searches");
+		}
+
 		if (getProcessingChannel() == null) {
 			myProcessingExecutorQueue = new LinkedBlockingQueue<>(1000);
 			RejectedExecutionHandler rejectedExecutionHandler = (theRunnable, theExecutor) -> {
@@ -591,6 +616,14 @@ public abstract class BaseSubscriptionInterceptor<S extends IBaseResource> exten
 			}
 		}
 
+		if (theMessageHandler instanceof DisposableBean) {
+			try {
+				((DisposableBean) theMessageHandler).destroy();
+			} catch (Exception e) {
+				ourLog.error("Failed to destroy delivery handler", e);
+			}
+		}
+
 		mySubscribableChannel.remove(theSubscriptionId);
 	}
 
@@ -606,6 +639,9 @@ public abstract class BaseSubscriptionInterceptor<S extends IBaseResource> exten
 		}
 
 		mySubscribableChannel.remove(subscriptionId);
+		if (mySubscriptionMatcherIndex != null) {
+			mySubscriptionMatcherIndex.unregister(subscriptionId);
+		}
 
 		return myIdToSubscription.remove(subscriptionId);
 	}
@@ -25,6 +25,7 @@ import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.jpa.provider.ServletSubRequestDetails;
+import ca.uhn.fhir.jpa.subscription.matcher.SubscriptionMatcherIndex;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import org.apache.commons.lang3.StringUtils;
@@ -70,63 +71,90 @@ public class SubscriptionCheckingSubscriber extends BaseSubscriptionSubscriber {
 		String resourceType = id.getResourceType();
 		String resourceId = id.getIdPart();
 
+		SubscriptionMatcherIndex matcherIndex = getSubscriptionInterceptor().getSubscriptionMatcherIndex();
+		IBaseResource newPayload = msg.getNewPayload(getContext());
+		if (matcherIndex != null && newPayload != null) {
+			List<SubscriptionMatcherIndex.SubscriptionMatch> matches = matcherIndex.match(resourceType, newPayload);
+			ourLog.trace("Subscription index found {} candidate subscriptions for {}", matches.size(), resourceType);
+			for (SubscriptionMatcherIndex.SubscriptionMatch nextMatch : matches) {
+				CanonicalSubscription nextSubscription = nextMatch.getSubscription();
+				switch (nextMatch.getResult()) {
+					case MATCH:
+						deliverToSubscription(msg, nextSubscription);
+						break;
+					case UNKNOWN:
+						checkSubscriptionUsingSearch(msg, resourceType, resourceId, nextSubscription);
+						break;
+					case NO_MATCH:
+						break;
+				}
+			}
+			return;
+		}
+
 		List<CanonicalSubscription> subscriptions = getSubscriptionInterceptor().getRegisteredSubscriptions();
 
-		ourLog.trace("Testing {} subscriptions for applicability");
+		ourLog.trace("Testing {} subscriptions for applicability", subscriptions.size());
 
 		for (CanonicalSubscription nextSubscription : subscriptions) {
+			checkSubscriptionUsingSearch(msg, resourceType, resourceId, nextSubscription);
+		}
 
-			String nextSubscriptionId = nextSubscription.getIdElement(getContext()).toUnqualifiedVersionless().getValue();
-			String nextCriteriaString = nextSubscription.getCriteriaString();
-
-			if (StringUtils.isBlank(nextCriteriaString)) {
-				continue;
-			}
-
-			// see if the criteria matches the created object
-			ourLog.trace("Checking subscription {} for {} with criteria {}", nextSubscriptionId, resourceType, nextCriteriaString);
-			String criteriaResource = nextCriteriaString;
-			int index = criteriaResource.indexOf("?");
-			if (index != -1) {
-				criteriaResource = criteriaResource.substring(0, criteriaResource.indexOf("?"));
-			}
+	}
 
-			if (resourceType != null && nextCriteriaString != null && !criteriaResource.equals(resourceType)) {
-				ourLog.trace("Skipping subscription search for {} because it does not match the criteria {}", resourceType, nextCriteriaString);
-				continue;
-			}
+	private void checkSubscriptionUsingSearch(ResourceModifiedMessage theMsg, String theResourceType, String theResourceId, CanonicalSubscription theSubscription) {
+		String nextSubscriptionId = theSubscription.getIdElement(getContext()).toUnqualifiedVersionless().getValue();
+		String nextCriteriaString = theSubscription.getCriteriaString();
 
-			// run the subscriptions query and look for matches, add the id as part of the criteria to avoid getting matches of previous resources rather than the recent resource
-			String criteria = nextCriteriaString;
-			criteria += "&_id=" + resourceType + "/" + resourceId;
-			criteria = massageCriteria(criteria);
+		if (StringUtils.isBlank(nextCriteriaString)) {
+			return;
+		}
 
-			IBundleProvider results = performSearch(criteria);
+		// see if the criteria matches the created object
+		ourLog.trace("Checking subscription {} for {} with criteria {}", nextSubscriptionId, theResourceType, nextCriteriaString);
+		String criteriaResource = nextCriteriaString;
+		int index = criteriaResource.indexOf("?");
+		if (index != -1) {
+			criteriaResource = criteriaResource.substring(0, criteriaResource.indexOf("?"));
+		}
 
-			ourLog.debug("Subscription check found {} results for query: {}", results.size(), criteria);
+		if (theResourceType != null && !criteriaResource.equals(theResourceType)) {
+			ourLog.trace("Skipping subscription search for {} because it does not match the criteria {}", theResourceType, nextCriteriaString);
+			return;
+		}
 
-			if (results.size() == 0) {
-				continue;
-			}
+		// run the subscriptions query and look for matches, add the id as part of the criteria to avoid getting matches of previous resources rather than the recent resource
+		String criteria = nextCriteriaString;
+		criteria += "&_id=" + theResourceType + "/" + theResourceId;
+		criteria = massageCriteria(criteria);
 
-			ourLog.debug("Found match: queueing rest-hook notification for resource: {}", id.toUnqualifiedVersionless().getValue());
+		IBundleProvider results = performSearch(criteria);
 
-			ResourceDeliveryMessage deliveryMsg = new ResourceDeliveryMessage();
-			deliveryMsg.setPayload(getContext(), msg.getNewPayload(getContext()));
-			deliveryMsg.setSubscription(nextSubscription);
-			deliveryMsg.setOperationType(msg.getOperationType());
-			deliveryMsg.setPayloadId(msg.getId(getContext()));
+		ourLog.debug("Subscription check found {} results for query: {}", results.size(), criteria);
 
-			ResourceDeliveryJsonMessage wrappedMsg = new ResourceDeliveryJsonMessage(deliveryMsg);
-			MessageChannel deliveryChannel = getSubscriptionInterceptor().getDeliveryChannel(nextSubscription);
-			if (deliveryChannel != null) {
-				deliveryChannel.send(wrappedMsg);
-			} else {
-				ourLog.warn("Do not have deliovery channel for subscription {}", nextSubscription.getIdElement(getContext()));
-			}
+		if (results.size() == 0) {
+			return;
 		}
 
+		deliverToSubscription(theMsg, theSubscription);
+	}
 
+	private void deliverToSubscription(ResourceModifiedMessage theMsg, CanonicalSubscription theSubscription) {
+		ourLog.debug("Found match: queueing rest-hook notification for resource: {}", theMsg.getId(getContext()).toUnqualifiedVersionless().getValue());
+
+		ResourceDeliveryMessage deliveryMsg = new ResourceDeliveryMessage();
+		deliveryMsg.setPayload(getContext(), theMsg.getNewPayload(getContext()));
+		deliveryMsg.setSubscription(theSubscription);
+		deliveryMsg.setOperationType(theMsg.getOperationType());
+		deliveryMsg.setPayloadId(theMsg.getId(getContext()));
+
+		ResourceDeliveryJsonMessage wrappedMsg = new ResourceDeliveryJsonMessage(deliveryMsg);
+		MessageChannel deliveryChannel = getSubscriptionInterceptor().getDeliveryChannel(theSubscription);
+		if (deliveryChannel != null) {
+			deliveryChannel.send(wrappedMsg);
+		} else {
+			ourLog.warn("Do not have deliovery channel for subscription {}", theSubscription.getIdElement(getContext()));
+		}
 	}
 
 	/**
@@ -0,0 +1,526 @@
+package ca.uhn.fhir.jpa.subscription.matcher;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.dao.*;
+import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
+import ca.uhn.fhir.jpa.subscription.CanonicalSubscription;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.lang3.StringUtils.*;
+
+/**
+ * Keeps the criteria of all registered subscriptions in a pre-parsed form, indexed
+ * by resource type and (where possible) by the value of one token or reference
+ * parameter, so that a modified resource can be tested against the subscriptions
+ * in memory instead of by running one database search per subscription.
+ * <p>
+ * Only plain token and reference parameters can be evaluated in memory. Any
+ * subscription whose criteria use other parameters, modifiers, chains, or special
+ * parameters (e.g. <code>_lastUpdated</code>) is reported as
+ * {@link MatchResultEnum#UNKNOWN}, and the caller is expected to fall back to a
+ * database search for it.
+ * </p>
+ * <p>
+ * Criteria are compiled against the search parameters which are active at the time,
+ * so the whole index is recompiled whenever the {@link ISearchParamRegistry} has
+ * been refreshed since it was last compiled.
+ * </p>
+ */
+public class SubscriptionMatcherIndex {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(SubscriptionMatcherIndex.class);
+
+	private final FhirContext myContext;
+	private final IFhirResourceDao<?> mySubscriptionDao;
+	private final ISearchParamExtractor mySearchParamExtractor;
+	private final ISearchParamRegistry mySearchParamRegistry;
+	private final ConcurrentHashMap<String, CompiledCriteria> myIdToCriteria = new ConcurrentHashMap<>();
+	private volatile Map<String, ResourceTypeIndex> myResourceTypeToIndex = Collections.emptyMap();
+	private volatile Map<String, Map<String, RuntimeSearchParam>> myCompiledSearchParams;
+
+	/**
+	 * Constructor
+	 */
+	public SubscriptionMatcherIndex(FhirContext theContext, IFhirResourceDao<?> theSubscriptionDao, ISearchParamExtractor theSearchParamExtractor, ISearchParamRegistry theSearchParamRegistry) {
+		myContext = theContext;
+		mySubscriptionDao = theSubscriptionDao;
+		mySearchParamExtractor = theSearchParamExtractor;
+		mySearchParamRegistry = theSearchParamRegistry;
+	}
+
+	/**
+	 * Adds (or replaces) a subscription in the index
+	 */
+	public synchronized void register(String theSubscriptionId, CanonicalSubscription theSubscription) {
+		CompiledCriteria existing = myIdToCriteria.get(theSubscriptionId);
+		String criteria = theSubscription.getCriteriaString();
+		if (existing != null && Objects.equals(existing.myCriteriaString, criteria)) {
+			existing.mySubscription = theSubscription;
+			return;
+		}
+		myIdToCriteria.put(theSubscriptionId, compile(theSubscription));
+		rebuild();
+	}
+
+	public synchronized void unregister(String theSubscriptionId) {
+		if (myIdToCriteria.remove(theSubscriptionId) != null) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Returns the subscriptions which may match the given resource, along with whether
+	 * they were found to match in memory. Subscriptions which are not returned
+	 * definitely do not match.
+	 */
+	public List<SubscriptionMatch> match(String theResourceType, IBaseResource theResource) {
+		if (mySearchParamRegistry.getActiveSearchParams() != myCompiledSearchParams) {
+			recompile();
+		}
+
+		ResourceTypeIndex index = myResourceTypeToIndex.get(theResourceType);
+		if (index == null) {
+			return Collections.emptyList();
+		}
+
+		ResourceValues values = new ResourceValues(theResourceType, theResource);
+		Set<CompiledCriteria> candidates = index.findCandidates(values);
+
+		List<SubscriptionMatch> retVal = new ArrayList<>();
+		for (CompiledCriteria next : candidates) {
+			MatchResultEnum result = next.evaluate(values);
+			if (result != MatchResultEnum.NO_MATCH) {
+				retVal.add(new SubscriptionMatch(next.mySubscription, result));
+			}
+		}
+
+		ourLog.trace("Tested {} candidate subscriptions for {}, {} may match", candidates.size(), theResourceType, retVal.size());
+		return retVal;
+	}
+
+	/**
+	 * Compiles the criteria of every registered subscription again, against the search
+	 * parameters which are currently active
+	 */
+	private synchronized void recompile() {
+		Map<String, Map<String, RuntimeSearchParam>> searchParams = mySearchParamRegistry.getActiveSearchParams();
+		if (searchParams == myCompiledSearchParams) {
+			return;
+		}
+
+		ourLog.debug("Search parameters have changed, recompiling {} subscription criteria", myIdToCriteria.size());
+		for (Map.Entry<String, CompiledCriteria> next : myIdToCriteria.entrySet()) {
+			next.setValue(compile(next.getValue().mySubscription));
+		}
+		myCompiledSearchParams = searchParams;
+		rebuild();
+	}
+
+	private synchronized void rebuild() {
+		Map<String, ResourceTypeIndex> resourceTypeToIndex = new HashMap<>();
+		for (CompiledCriteria next : myIdToCriteria.values()) {
+			if (next.myResourceType == null) {
+				continue;
+			}
+			resourceTypeToIndex.computeIfAbsent(next.myResourceType, t -> new ResourceTypeIndex()).add(next);
+		}
+		myResourceTypeToIndex = resourceTypeToIndex;
+	}
+
+	private CompiledCriteria compile(CanonicalSubscription theSubscription) {
+		CompiledCriteria retVal = new CompiledCriteria(theSubscription);
+		String criteria = theSubscription.getCriteriaString();
+		if (isBlank(criteria)) {
+			return retVal;
+		}
+
+		int questionMarkIdx = criteria.indexOf('?');
+		retVal.myResourceType = questionMarkIdx == -1 ? criteria : criteria.substring(0, questionMarkIdx);
+
+		SearchParameterMap params;
+		try {
+			RuntimeResourceDefinition resourceDef = mySubscriptionDao.validateCriteriaAndReturnResourceDefinition(criteria);
+			params = BaseHapiFhirDao.translateMatchUrl(mySubscriptionDao, myContext, criteria, resourceDef);
+		} catch (Exception e) {
+			ourLog.debug("Criteria {} can not be evaluated in memory: {}", criteria, e.toString());
+			retVal.myDatabaseOnly = true;
+			return retVal;
+		}
+
+		if (params.getLastUpdated() != null) {
+			retVal.myDatabaseOnly = true;
+			return retVal;
+		}
+
+		for (Map.Entry<String, List<List<? extends IQueryParameterType>>> nextEntry : params.entrySet()) {
+			String paramName = nextEntry.getKey();
+			RuntimeSearchParam searchParam = mySearchParamRegistry.getActiveSearchParam(retVal.myResourceType, paramName);
+			if (paramName.startsWith("_") || searchParam == null || isBlank(searchParam.getPath())) {
+				retVal.myDatabaseOnly = true;
+				return retVal;
+			}
+
+			for (List<? extends IQueryParameterType> nextOrList : nextEntry.getValue()) {
+				ParamCriterion criterion = new ParamCriterion(searchParam);
+				for (IQueryParameterType nextOr : nextOrList) {
+					if (!criterion.addValue(nextOr)) {
+						retVal.myDatabaseOnly = true;
+						return retVal;
+					}
+				}
+				retVal.myCriteria.add(criterion);
+			}
+		}
+
+		return retVal;
+	}
+
+	public enum MatchResultEnum {
+		MATCH,
+		NO_MATCH,
+		/**
+		 * The criteria could not be evaluated in memory
+		 */
+		UNKNOWN
+	}
+
+	public static class SubscriptionMatch {
+		private final CanonicalSubscription mySubscription;
+		private final MatchResultEnum myResult;
+
+		SubscriptionMatch(CanonicalSubscription theSubscription, MatchResultEnum theResult) {
+			mySubscription = theSubscription;
+			myResult = theResult;
+		}
+
+		public MatchResultEnum getResult() {
+			return myResult;
+		}
+
+		public CanonicalSubscription getSubscription() {
+			return mySubscription;
+		}
+	}
+
+	/**
+	 * The criteria for a single subscription
+	 */
+	private static class CompiledCriteria {
+		private final String myCriteriaString;
+		private final List<ParamCriterion> myCriteria = new ArrayList<>();
+		private volatile CanonicalSubscription mySubscription;
+		private String myResourceType;
+		private boolean myDatabaseOnly;
+
+		CompiledCriteria(CanonicalSubscription theSubscription) {
+			mySubscription = theSubscription;
+			myCriteriaString = theSubscription.getCriteriaString();
+		}
+
+		MatchResultEnum evaluate(ResourceValues theValues) {
+			if (myDatabaseOnly) {
+				return MatchResultEnum.UNKNOWN;
+			}
+			MatchResultEnum retVal = MatchResultEnum.MATCH;
+			for (ParamCriterion next : myCriteria) {
+				MatchResultEnum nextResult = next.evaluate(theValues);
+				if (nextResult == MatchResultEnum.NO_MATCH) {
+					return MatchResultEnum.NO_MATCH;
+				}
+				if (nextResult == MatchResultEnum.UNKNOWN) {
+					retVal = MatchResultEnum.UNKNOWN;
+				}
+			}
+			return retVal;
+		}
+
+		/**
+		 * Returns a criterion whose values can be used to index this subscription, or
+		 * <code>null</code> if there isn't one
+		 */
+		ParamCriterion getIndexableCriterion() {
+			if (myDatabaseOnly) {
+				return null;
+			}
+			for (ParamCriterion next : myCriteria) {
+				if (next.isIndexable()) {
+					return next;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * One parameter of a subscription's criteria, with its OR'ed values
+	 */
+	private static class ParamCriterion {
+		private final RuntimeSearchParam mySearchParam;
+		private final List<TokenParam> myTokens = new ArrayList<>();
+		private final List<ReferenceParam> myReferences = new ArrayList<>();
+
+		ParamCriterion(RuntimeSearchParam theSearchParam) {
+			mySearchParam = theSearchParam;
+		}
+
+		/**
+		 * @return Returns <code>false</code> if the value can not be evaluated in memory
+		 */
+		boolean addValue(IQueryParameterType theValue) {
+			if (theValue.getMissing() != null || isNotBlank(theValue.getQueryParameterQualifier())) {
+				return false;
+			}
+			RestSearchParameterTypeEnum paramType = mySearchParam.getParamType();
+			if (paramType == RestSearchParameterTypeEnum.TOKEN && theValue instanceof TokenParam) {
+				TokenParam token = (TokenParam) theValue;
+				if (token.getModifier() != null || token.isText() || (isBlank(token.getValue()) && isBlank(token.getSystem()))) {
+					return false;
+				}
+				myTokens.add(token);
+				return true;
+			}
+			if (paramType == RestSearchParameterTypeEnum.REFERENCE && theValue instanceof ReferenceParam) {
+				ReferenceParam reference = (ReferenceParam) theValue;
+				if (isNotBlank(reference.getChain()) || isBlank(reference.getIdPart())) {
+					return false;
+				}
+				myReferences.add(reference);
+				return true;
+			}
+			return false;
+		}
+
+		String getParamName() {
+			return mySearchParam.getName();
+		}
+
+		/**
+		 * Returns the keys under which this criterion may be indexed
+		 */
+		List<String> getIndexKeys() {
+			List<String> retVal = new ArrayList<>();
+			for (TokenParam next : myTokens) {
+				retVal.add(next.getValue());
+			}
+			for (ReferenceParam next : myReferences) {
+				retVal.add(next.getIdPart());
+			}
+			return retVal;
+		}
+
+		/**
+		 * Criteria can be indexed if every OR'ed value has a code or reference ID
+		 */
+		boolean isIndexable() {
+			for (TokenParam next : myTokens) {
+				if (isBlank(next.getValue())) {
+					return false;
+				}
+			}
+			return myTokens.size() + myReferences.size() > 0;
+		}
+
+		boolean isReference() {
+			return !myReferences.isEmpty();
+		}
+
+		MatchResultEnum evaluate(ResourceValues theValues) {
+			MatchResultEnum retVal = MatchResultEnum.NO_MATCH;
+
+			if (!myTokens.isEmpty()) {
+				for (ResourceIndexedSearchParamToken nextToken : theValues.getTokens(getParamName())) {
+					for (TokenParam nextCriteria : myTokens) {
+						if (tokenMatches(nextCriteria, nextToken)) {
+							return MatchResultEnum.MATCH;
+						}
+					}
+				}
+			}
+
+			if (!myReferences.isEmpty()) {
+				for (IIdType nextReference : theValues.getReferences(mySearchParam)) {
+					if (nextReference == null) {
+						retVal = MatchResultEnum.UNKNOWN;
+						continue;
+					}
+					for (ReferenceParam nextCriteria : myReferences) {
+						if (referenceMatches(nextCriteria, nextReference)) {
+							return MatchResultEnum.MATCH;
+						}
+					}
+				}
+			}
+
+			return retVal;
+		}
+
+		private static boolean referenceMatches(ReferenceParam theCriteria, IIdType theReference) {
+			if (!theCriteria.getIdPart().equals(theReference.getIdPart())) {
+				return false;
+			}
+			return isBlank(theCriteria.getResourceType()) || theCriteria.getResourceType().equals(theReference.getResourceType());
+		}
+
+		private static boolean tokenMatches(TokenParam theCriteria, ResourceIndexedSearchParamToken theToken) {
+			String system = theCriteria.getSystem();
+			String value = theCriteria.getValue();
+			if (system == null) {
+				return value.equals(theToken.getValue());
+			}
+			if (system.isEmpty()) {
+				return isBlank(theToken.getSystem()) && value.equals(theToken.getValue());
+			}
+			if (!system.equals(theToken.getSystem())) {
+				return false;
+			}
+			return isBlank(value) || value.equals(theToken.getValue());
+		}
+	}
+
+	/**
+	 * All of the subscriptions for a single resource type
+	 */
+	private static class ResourceTypeIndex {
+		private final List<CompiledCriteria> myUnindexed = new ArrayList<>();
+		private final Map<String, ListMultimap<String, CompiledCriteria>> myParamNameToKeyToCriteria = new HashMap<>();
+		private final Map<String, RuntimeSearchParam> myIndexedReferenceParams = new HashMap<>();
+
+		void add(CompiledCriteria theCriteria) {
+			ParamCriterion indexable = theCriteria.getIndexableCriterion();
+			if (indexable == null) {
+				myUnindexed.add(theCriteria);
+				return;
+			}
+
+			String paramName = indexable.getParamName();
+			ListMultimap<String, CompiledCriteria> keyToCriteria = myParamNameToKeyToCriteria.computeIfAbsent(paramName, t -> ArrayListMultimap.create());
+			for (String nextKey : indexable.getIndexKeys()) {
+				keyToCriteria.put(nextKey, theCriteria);
+			}
+			if (indexable.isReference()) {
+				myIndexedReferenceParams.put(paramName, indexable.mySearchParam);
+			}
+		}
+
+		Set<CompiledCriteria> findCandidates(ResourceValues theValues) {
+			Set<CompiledCriteria> retVal = Collections.newSetFromMap(new IdentityHashMap<>());
+			retVal.addAll(myUnindexed);
+
+			for (Map.Entry<String, ListMultimap<String, CompiledCriteria>> nextEntry : myParamNameToKeyToCriteria.entrySet()) {
+				String paramName = nextEntry.getKey();
+				ListMultimap<String, CompiledCriteria> keyToCriteria = nextEntry.getValue();
+
+				RuntimeSearchParam referenceParam = myIndexedReferenceParams.get(paramName);
+				if (referenceParam != null) {
+					for (IIdType nextReference : theValues.getReferences(referenceParam)) {
+						if (nextReference == null) {
+							// A reference we can't key on, so every subscription on this parameter is a candidate
+							retVal.addAll(keyToCriteria.values());
+							break;
+						}
+						retVal.addAll(keyToCriteria.get(nextReference.getIdPart()));
+					}
+				}
+
+				for (ResourceIndexedSearchParamToken nextToken : theValues.getTokens(paramName)) {
+					if (nextToken.getValue() != null) {
+						retVal.addAll(keyToCriteria.get(nextToken.getValue()));
+					}
+				}
+			}
+
+			return retVal;
+		}
+	}
+
+	/**
+	 * Lazily extracts the parameter values of the resource being tested
+	 */
+	private class ResourceValues {
+		private final String myResourceType;
+		private final IBaseResource myResource;
+		private final Map<String, List<IIdType>> myParamNameToReferences = new HashMap<>();
+		private ListMultimap<String, ResourceIndexedSearchParamToken> myParamNameToTokens;
+
+		ResourceValues(String theResourceType, IBaseResource theResource) {
+			myResourceType = theResourceType;
+			myResource = theResource;
+		}
+
+		/**
+		 * Returns the IDs of the resources referenced by the given parameter. A <code>null</code>
+		 * entry means that there was a reference which can not be evaluated in memory (e.g. a
+		 * contained resource or an absolute URL)
+		 */
+		List<IIdType> getReferences(RuntimeSearchParam theSearchParam) {
+			return myParamNameToReferences.computeIfAbsent(theSearchParam.getName(), t -> {
+				List<IIdType> retVal = new ArrayList<>();
+				for (PathAndRef next : mySearchParamExtractor.extractResourceLinks(myResource, theSearchParam)) {
+					if (!(next.getRef() instanceof IBaseReference)) {
+						retVal.add(null);
+						continue;
+					}
+					IIdType id = ((IBaseReference) next.getRef()).getReferenceElement();
+					if (id == null || id.isEmpty() || id.isLocal() || id.isAbsolute() || isBlank(id.getResourceType()) || isBlank(id.getIdPart())) {
+						retVal.add(null);
+						continue;
+					}
+					retVal.add(id);
+				}
+				return retVal;
+			});
+		}
+
+		List<ResourceIndexedSearchParamToken> getTokens(String theParamName) {
+			if (myParamNameToTokens == null) {
+				myParamNameToTokens = ArrayListMultimap.create();
+				ResourceTable entity = new ResourceTable();
+				entity.setResourceType(myResourceType);
+				for (BaseResourceIndexedSearchParam next : mySearchParamExtractor.extractSearchParamTokens(entity, myResource)) {
+					if (next instanceof ResourceIndexedSearchParamToken) {
+						myParamNameToTokens.put(next.getParamName(), (ResourceIndexedSearchParamToken) next);
+					}
+				}
+			}
+			return myParamNameToTokens.get(theParamName);
+		}
+	}
+
+}
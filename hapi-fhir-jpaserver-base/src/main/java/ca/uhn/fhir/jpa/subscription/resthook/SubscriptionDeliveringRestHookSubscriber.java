@@ -30,35 +30,356 @@ import ca.uhn.fhir.rest.client.interceptor.SimpleRequestHeaderInterceptor;
 import ca.uhn.fhir.rest.gclient.IClientExecutable;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.messaging.MessagingException;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
-public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDeliverySubscriber {
+public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDeliverySubscriber implements DisposableBean {
+	/**
+	 * The number of times delivery of a batch is attempted before its payloads are discarded
+	 */
+	static final int MAX_BATCH_DELIVERY_ATTEMPTS = 5;
+	/**
+	 * The number of full batches which may be waiting for delivery before new payloads
+	 * are held up until there is room for them
+	 */
+	static final int MAX_PENDING_BATCHES = 10;
+	private static final long MIN_RETRY_DELAY_MILLIS = 100;
+	private static final long MAX_RETRY_DELAY_MILLIS = DateUtils.MILLIS_PER_MINUTE;
 	private Logger ourLog = LoggerFactory.getLogger(SubscriptionDeliveringRestHookSubscriber.class);
+	private final int myBatchSize;
+	private final long myBatchWindowMillis;
+	private final ScheduledExecutorService myBatchDeliveryExecutor;
+	private final Object myDeliveryLock = new Object();
+	private final Deque<PendingPayload> myPendingPayloads = new ArrayDeque<>();
+	private IGenericClient myClient;
+	private String myClientKey;
+	private CanonicalSubscription myPendingSubscription;
+	private ScheduledFuture<?> myScheduledDelivery;
+	private boolean myDeliveryRunning;
+	private int myDrainWaiters;
+	private int myFailedBatchDeliveryAttempts;
+	private boolean myStopped;
 
+	/**
+	 * Constructor
+	 */
 	public SubscriptionDeliveringRestHookSubscriber(IFhirResourceDao<?> theSubscriptionDao, Subscription.SubscriptionChannelType theChannelType, BaseSubscriptionInterceptor theSubscriptionInterceptor) {
+		this(theSubscriptionDao, theChannelType, theSubscriptionInterceptor, 1, 0, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theBatchSize             The maximum number of payloads to send to the endpoint in a single transaction Bundle. If this is 1, each payload is delivered individually.
+	 * @param theBatchWindowMillis     The maximum amount of time that a payload will wait for a batch to fill up before the batch is sent anyhow
+	 * @param theBatchDeliveryExecutor The executor used to send batches. Must not be null if <code>theBatchSize</code> is greater than 1.
+	 */
+	public SubscriptionDeliveringRestHookSubscriber(IFhirResourceDao<?> theSubscriptionDao, Subscription.SubscriptionChannelType theChannelType, BaseSubscriptionInterceptor theSubscriptionInterceptor, int theBatchSize, long theBatchWindowMillis, ScheduledExecutorService theBatchDeliveryExecutor) {
 		super(theSubscriptionDao, theChannelType, theSubscriptionInterceptor);
+		Validate.isTrue(theBatchSize > 0, "theBatchSize must be greater than 0");
+		Validate.isTrue(theBatchSize == 1 || theBatchDeliveryExecutor != null, "theBatchDeliveryExecutor must not be null when batching is enabled");
+		myBatchSize = theBatchSize;
+		myBatchWindowMillis = theBatchWindowMillis;
+		myBatchDeliveryExecutor = theBatchDeliveryExecutor;
 	}
 
 	protected void deliverPayload(ResourceDeliveryMessage theMsg, CanonicalSubscription theSubscription, EncodingEnum thePayloadType, IGenericClient theClient) {
 		IBaseResource payloadResource = getAndMassagePayload(theMsg, theSubscription);
 		if (payloadResource == null) return;
 
+		if (isBatchable(theMsg, thePayloadType, theClient, payloadResource) && addToBatch(theSubscription, thePayloadType, payloadResource)) {
+			return;
+		}
+
+		// Anything already queued must go out first so that the endpoint sees changes in order
+		drainBatch();
 		doDelivery(theMsg, theSubscription, thePayloadType, theClient, payloadResource);
 	}
 
+	private boolean isBatchable(ResourceDeliveryMessage theMsg, EncodingEnum thePayloadType, IGenericClient theClient, IBaseResource thePayloadResource) {
+		if (myBatchSize <= 1 || thePayloadType == null || theClient == null || thePayloadResource.isEmpty()) {
+			return false;
+		}
+		switch (theMsg.getOperationType()) {
+			case CREATE:
+			case UPDATE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Queues a payload for batched delivery. If the endpoint has fallen behind by more than
+	 * {@link #MAX_PENDING_BATCHES} batches, this blocks until there is room for the payload.
+	 *
+	 * @return Returns <code>false</code> if this subscriber has been stopped, in which case the payload must be delivered individually
+	 */
+	private boolean addToBatch(CanonicalSubscription theSubscription, EncodingEnum thePayloadType, IBaseResource thePayloadResource) {
+		synchronized (myDeliveryLock) {
+			while (!myStopped && myPendingPayloads.size() >= myBatchSize * MAX_PENDING_BATCHES) {
+				awaitDeliveryProgress();
+			}
+			if (myStopped) {
+				return false;
+			}
+
+			// Entries in the transaction are sent as PUTs to the versionless resource URL
+			thePayloadResource.setId(thePayloadResource.getIdElement().toUnqualifiedVersionless());
+			myPendingPayloads.add(new PendingPayload(thePayloadResource, thePayloadType));
+			myPendingSubscription = theSubscription;
+
+			if (myPendingPayloads.size() >= myBatchSize) {
+				scheduleDelivery(0);
+			} else {
+				scheduleDelivery(myBatchWindowMillis);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Waits until every pending payload has either been delivered or discarded
+	 */
+	private void drainBatch() {
+		if (myBatchDeliveryExecutor == null) {
+			return;
+		}
+		synchronized (myDeliveryLock) {
+			myDrainWaiters++;
+			try {
+				while (!myStopped && (myDeliveryRunning || !myPendingPayloads.isEmpty())) {
+					scheduleDelivery(0);
+					awaitDeliveryProgress();
+				}
+			} finally {
+				myDrainWaiters--;
+			}
+		}
+	}
+
+	/**
+	 * Must be called while holding {@link #myDeliveryLock}
+	 */
+	private void awaitDeliveryProgress() {
+		try {
+			myDeliveryLock.wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while waiting for rest-hook batch delivery", e);
+		}
+	}
+
+	/**
+	 * Schedules delivery of the pending payloads after the given delay. Nothing is scheduled if
+	 * a delivery is already running (it picks up any new payloads when it finishes), if a failed
+	 * batch is waiting to be retried, or if a delivery is already scheduled to happen sooner.
+	 * Must be called while holding {@link #myDeliveryLock}.
+	 */
+	private void scheduleDelivery(long theDelayMillis) {
+		if (myStopped || myDeliveryRunning || myFailedBatchDeliveryAttempts > 0 || myPendingPayloads.isEmpty()) {
+			return;
+		}
+		if (myScheduledDelivery != null) {
+			if (myScheduledDelivery.getDelay(TimeUnit.MILLISECONDS) <= theDelayMillis) {
+				return;
+			}
+			myScheduledDelivery.cancel(false);
+		}
+		myScheduledDelivery = myBatchDeliveryExecutor.schedule(this::deliverPendingPayloads, theDelayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends pending payloads, as transactions of at most {@link #myBatchSize} entries, on the
+	 * batch delivery executor. The HTTP requests are made without holding {@link #myDeliveryLock},
+	 * and only one delivery runs at a time for a given subscription. Payloads are only removed
+	 * once the transaction containing them has been delivered. If a transaction fails, its
+	 * payloads stay at the head of the queue and another attempt is scheduled with an
+	 * increasing delay, up to {@link #MAX_BATCH_DELIVERY_ATTEMPTS} attempts.
+	 */
+	private void deliverPendingPayloads() {
+		synchronized (myDeliveryLock) {
+			if (myDeliveryRunning || myStopped) {
+				return;
+			}
+			myDeliveryRunning = true;
+			myScheduledDelivery = null;
+		}
+
+		boolean retry = false;
+		try {
+			boolean first = true;
+			while (true) {
+				List<IBaseResource> batch = new ArrayList<>();
+				EncodingEnum encoding;
+				CanonicalSubscription subscription;
+				synchronized (myDeliveryLock) {
+					// Partial batches are only sent once their window has elapsed, or to drain the queue
+					boolean sendPartial = first || myDrainWaiters > 0;
+					if (myStopped || myPendingPayloads.isEmpty() || (!sendPartial && myPendingPayloads.size() < myBatchSize)) {
+						break;
+					}
+					encoding = takeBatch(batch);
+					subscription = getCurrentSubscription(myPendingSubscription);
+				}
+				first = false;
+
+				boolean delivered = sendBatch(subscription, batch, encoding);
+
+				synchronized (myDeliveryLock) {
+					if (delivered) {
+						removeFromHead(batch.size());
+						myFailedBatchDeliveryAttempts = 0;
+					} else {
+						myFailedBatchDeliveryAttempts++;
+						if (myFailedBatchDeliveryAttempts < MAX_BATCH_DELIVERY_ATTEMPTS) {
+							retry = true;
+							break;
+						}
+						ourLog.error("Giving up on delivering batch of {} rest-hook payloads for {} after {} attempts", batch.size(), subscription.getIdElement(getContext()).toUnqualifiedVersionless().getValue(), myFailedBatchDeliveryAttempts);
+						removeFromHead(batch.size());
+						myFailedBatchDeliveryAttempts = 0;
+					}
+					myDeliveryLock.notifyAll();
+				}
+			}
+		} finally {
+			synchronized (myDeliveryLock) {
+				myDeliveryRunning = false;
+				if (retry && !myStopped) {
+					long delay = Math.min(Math.max(myBatchWindowMillis, MIN_RETRY_DELAY_MILLIS) << (myFailedBatchDeliveryAttempts - 1), MAX_RETRY_DELAY_MILLIS);
+					ourLog.info("Retrying rest-hook batch delivery in {}ms", delay);
+					myScheduledDelivery = myBatchDeliveryExecutor.schedule(this::deliverPendingPayloads, delay, TimeUnit.MILLISECONDS);
+				} else {
+					scheduleDelivery(myPendingPayloads.size() >= myBatchSize ? 0 : myBatchWindowMillis);
+				}
+				myDeliveryLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Copies up to {@link #myBatchSize} payloads from the head of the queue into the given list,
+	 * stopping early if the payload type changes. Must be called while holding {@link #myDeliveryLock}.
+	 *
+	 * @return The payload type of the batch
+	 */
+	private EncodingEnum takeBatch(List<IBaseResource> theBatch) {
+		EncodingEnum retVal = myPendingPayloads.peekFirst().myEncoding;
+		for (PendingPayload next : myPendingPayloads) {
+			if (theBatch.size() >= myBatchSize || next.myEncoding != retVal) {
+				break;
+			}
+			theBatch.add(next.myResource);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Must be called while holding {@link #myDeliveryLock}
+	 */
+	private void removeFromHead(int theCount) {
+		for (int i = 0; i < theCount; i++) {
+			myPendingPayloads.pollFirst();
+		}
+	}
+
+	/**
+	 * Sends a single transaction. Must not be called while holding {@link #myDeliveryLock}.
+	 *
+	 * @return Returns <code>true</code> if the transaction was delivered
+	 */
+	private boolean sendBatch(CanonicalSubscription theSubscription, List<IBaseResource> theBatch, EncodingEnum theEncoding) {
+		String subscriptionId = theSubscription.getIdElement(getContext()).toUnqualifiedVersionless().getValue();
+		ourLog.info("Delivering batch of {} rest-hook payloads for {}", theBatch.size(), subscriptionId);
+		try {
+			// The endpoint and headers are looked up now, since they may have changed while the batch was filling
+			IGenericClient client = getClient(theSubscription.getEndpointUrl(), theSubscription.getHeaders());
+			if (client == null) {
+				throw new IllegalStateException("Subscription " + subscriptionId + " no longer has an endpoint");
+			}
+			client.transaction().withResources(theBatch).encoded(theEncoding).execute();
+			return true;
+		} catch (RuntimeException e) {
+			if (e instanceof ResourceNotFoundException) {
+				ourLog.error("Cannot reach " + theSubscription.getEndpointUrl());
+			}
+			ourLog.error("Failure delivering rest-hook batch for subscription " + subscriptionId, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Called when this subscriber is unregistered. Any payloads still waiting for batched
+	 * delivery are sent before this method returns, with a single attempt per batch.
+	 */
+	@Override
+	public void destroy() {
+		if (myBatchDeliveryExecutor == null) {
+			return;
+		}
+
+		synchronized (myDeliveryLock) {
+			myStopped = true;
+			if (myScheduledDelivery != null) {
+				myScheduledDelivery.cancel(false);
+				myScheduledDelivery = null;
+			}
+			myDeliveryLock.notifyAll();
+			while (myDeliveryRunning) {
+				try {
+					myDeliveryLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+
+		while (true) {
+			List<IBaseResource> batch = new ArrayList<>();
+			EncodingEnum encoding;
+			CanonicalSubscription subscription;
+			synchronized (myDeliveryLock) {
+				if (myPendingPayloads.isEmpty()) {
+					break;
+				}
+				encoding = takeBatch(batch);
+				subscription = getCurrentSubscription(myPendingSubscription);
+				removeFromHead(batch.size());
+			}
+			if (!sendBatch(subscription, batch, encoding)) {
+				ourLog.error("Discarding batch of {} rest-hook payloads for {} which could not be delivered before the subscription was unregistered", batch.size(), subscription.getIdElement(getContext()).toUnqualifiedVersionless().getValue());
+			}
+		}
+	}
+
+	/**
+	 * Returns the latest registered version of the given subscription, or the given
+	 * subscription itself if it is no longer registered
+	 */
+	private CanonicalSubscription getCurrentSubscription(CanonicalSubscription theSubscription) {
+		String id = theSubscription.getIdElement(getContext()).getIdPart();
+		CanonicalSubscription retVal = getSubscriptionInterceptor().getIdToSubscription().get(id);
+		return retVal != null ? retVal : theSubscription;
+	}
+
 	protected void doDelivery(ResourceDeliveryMessage theMsg, CanonicalSubscription theSubscription, EncodingEnum thePayloadType, IGenericClient theClient, IBaseResource thePayloadResource) {
 		IClientExecutable<?, ?> operation;
 		switch (theMsg.getOperationType()) {
@@ -158,22 +479,36 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 				payloadType = EncodingEnum.forContentType(payloadString);
 			}
 
-			// Create the client request
+			IGenericClient client = getClient(endpointUrl, subscription.getHeaders());
+
+			deliverPayload(theMessage, subscription, payloadType, client);
+	}
+
+	/**
+	 * Returns a client for the given endpoint, reusing the client created for the previous
+	 * delivery unless the subscription's endpoint or headers have changed since then
+	 */
+	private synchronized IGenericClient getClient(String theEndpointUrl, List<String> theHeaders) {
+		if (isBlank(theEndpointUrl)) {
+			return null;
+		}
+
+		String clientKey = theEndpointUrl + " " + theHeaders;
+		if (myClient == null || !clientKey.equals(myClientKey)) {
 			getContext().getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
-			IGenericClient client = null;
-			if (isNotBlank(endpointUrl)) {
-				client = getContext().newRestfulGenericClient(endpointUrl);
-
-				// Additional headers specified in the subscription
-				List<String> headers = subscription.getHeaders();
-				for (String next : headers) {
-					if (isNotBlank(next)) {
-						client.registerInterceptor(new SimpleRequestHeaderInterceptor(next));
-					}
+			IGenericClient client = getContext().newRestfulGenericClient(theEndpointUrl);
+
+			// Additional headers specified in the subscription
+			for (String next : theHeaders) {
+				if (isNotBlank(next)) {
+					client.registerInterceptor(new SimpleRequestHeaderInterceptor(next));
 				}
 			}
 
-			deliverPayload(theMessage, subscription, payloadType, client);
+			myClient = client;
+			myClientKey = clientKey;
+		}
+		return myClient;
 	}
 
 	/**
@@ -195,4 +530,14 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 			throw new ResourceNotFoundException(e.getMessage());
 		}
 	}
+
+	private static class PendingPayload {
+		private final IBaseResource myResource;
+		private final EncodingEnum myEncoding;
+
+		PendingPayload(IBaseResource theResource, EncodingEnum theEncoding) {
+			myResource = theResource;
+			myEncoding = theEncoding;
+		}
+	}
 }
@@ -22,20 +22,115 @@ package ca.uhn.fhir.jpa.subscription.resthook;
 
 import ca.uhn.fhir.jpa.subscription.BaseSubscriptionInterceptor;
 import ca.uhn.fhir.jpa.subscription.CanonicalSubscription;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.springframework.messaging.MessageHandler;
 
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class SubscriptionRestHookInterceptor extends BaseSubscriptionInterceptor {
 
+	/**
+	 * The number of threads shared by all subscriptions for sending batched deliveries
+	 */
+	static final int BATCH_DELIVERY_THREAD_COUNT = 4;
+	private int myDeliveryBatchSize = 1;
+	private long myDeliveryBatchWindowMillis = 1000;
+	private ScheduledExecutorService myBatchDeliveryExecutor;
+
 	@Override
 	protected Optional<MessageHandler> createDeliveryHandler(CanonicalSubscription theSubscription) {
+		if (myDeliveryBatchSize > 1) {
+			return Optional.of(new SubscriptionDeliveringRestHookSubscriber(getSubscriptionDao(), getChannelType(), this, myDeliveryBatchSize, myDeliveryBatchWindowMillis, getBatchDeliveryExecutor()));
+		}
 		return Optional.of(new SubscriptionDeliveringRestHookSubscriber(getSubscriptionDao(), getChannelType(), this));
 	}
 
+	private synchronized ScheduledExecutorService getBatchDeliveryExecutor() {
+		if (myBatchDeliveryExecutor == null) {
+			BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern("subscription-resthook-batch-%d")
+				.daemon(true)
+				.build();
+			myBatchDeliveryExecutor = Executors.newScheduledThreadPool(BATCH_DELIVERY_THREAD_COUNT, threadFactory);
+		}
+		return myBatchDeliveryExecutor;
+	}
+
 	@Override
 	public org.hl7.fhir.r4.model.Subscription.SubscriptionChannelType getChannelType() {
 		return org.hl7.fhir.r4.model.Subscription.SubscriptionChannelType.RESTHOOK;
 	}
 
+	/**
+	 * The maximum number of resources which will be delivered to a subscription's endpoint
+	 * in a single <code>transaction</code> Bundle. The default is 1, meaning that each
+	 * resource is delivered in its own request. Batching only applies to subscriptions
+	 * which specify a payload type, and only to created and updated resources.
+	 * <p>
+	 * Changes to this setting only apply to subscriptions registered after the change is made.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public int getDeliveryBatchSize() {
+		return myDeliveryBatchSize;
+	}
+
+	/**
+	 * The maximum number of resources which will be delivered to a subscription's endpoint
+	 * in a single <code>transaction</code> Bundle. The default is 1, meaning that each
+	 * resource is delivered in its own request. Batching only applies to subscriptions
+	 * which specify a payload type, and only to created and updated resources.
+	 * <p>
+	 * Changes to this setting only apply to subscriptions registered after the change is made.
+	 * </p>
+	 *
+	 * @since 3.5.0
+	 */
+	public void setDeliveryBatchSize(int theDeliveryBatchSize) {
+		Validate.isTrue(theDeliveryBatchSize > 0, "theDeliveryBatchSize must be greater than 0");
+		myDeliveryBatchSize = theDeliveryBatchSize;
+	}
+
+	/**
+	 * When batched delivery is enabled (see {@link #setDeliveryBatchSize(int)}), this is the
+	 * maximum amount of time in milliseconds that a resource will wait for its batch to fill
+	 * before the batch is delivered anyhow. The default is 1000.
+	 *
+	 * @since 3.5.0
+	 */
+	public long getDeliveryBatchWindowMillis() {
+		return myDeliveryBatchWindowMillis;
+	}
+
+	/**
+	 * When batched delivery is enabled (see {@link #setDeliveryBatchSize(int)}), this is the
+	 * maximum amount of time in milliseconds that a resource will wait for its batch to fill
+	 * before the batch is delivered anyhow. The default is 1000.
+	 *
+	 * @since 3.5.0
+	 */
+	public void setDeliveryBatchWindowMillis(long theDeliveryBatchWindowMillis) {
+		Validate.isTrue(theDeliveryBatchWindowMillis >= 0, "theDeliveryBatchWindowMillis must not be negative");
+		myDeliveryBatchWindowMillis = theDeliveryBatchWindowMillis;
+	}
+
+	/**
+	 * Unregistering the subscriptions sends any batches which are still pending, so the
+	 * batch delivery executor is only shut down afterward
+	 */
+	@Override
+	public void preDestroy() {
+		super.preDestroy();
+		synchronized (this) {
+			if (myBatchDeliveryExecutor != null) {
+				myBatchDeliveryExecutor.shutdown();
+				myBatchDeliveryExecutor = null;
+			}
+		}
+	}
+
 }
@@ -40,6 +40,7 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.time.DateUtils;
@@ -48,6 +49,7 @@ import org.apache.lucene.queries.TermsQuery;
 import org.apache.lucene.search.*;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.search.jpa.FullTextEntityManager;
 import org.hibernate.search.jpa.FullTextQuery;
 import org.hibernate.search.query.dsl.BooleanJunction;
@@ -69,6 +71,8 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
@@ -78,6 +82,7 @@ import javax.persistence.PersistenceContextType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -88,6 +93,11 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc, ApplicationContextAware {
 	public static final int DEFAULT_FETCH_SIZE = 250;
+	/**
+	 * The number of concepts whose closure rows are written in each database transaction
+	 */
+	private static final int CONCEPT_CLOSURE_CONCEPTS_PER_TRANSACTION = 1000;
+	private static final int CONCEPT_CLOSURE_INSERT_BATCH_SIZE = 500;
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseHapiTerminologySvcImpl.class);
 	private static final Object PLACEHOLDER_OBJECT = new Object();
@@ -134,6 +144,16 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 	private Cache<TranslationQuery, List<TermConceptMapGroupElement>> myTranslationWithReverseCache;
 	private int myFetchSize = DEFAULT_FETCH_SIZE;
 	private ApplicationContext myApplicationContext;
+	@Autowired
+	private ITermValueSetExpansionDao myValueSetExpansionDao;
+	@Autowired
+	private ITermValueSetExpansionConceptDao myValueSetExpansionConceptDao;
+	@Autowired
+	private ITermValueSetExpansionDependencyDao myValueSetExpansionDependencyDao;
+	private final Set<String> myValueSetUrlsToPreExpand = ConcurrentHashMap.newKeySet();
+	@Autowired
+	private ITermConceptClosureDao myConceptClosureDao;
+	private final Set<Long> myCodeSystemVersionsRequiringClosure = ConcurrentHashMap.newKeySet();
 
 	/**
 	 * @param theAdd         If true, add the code. If false, remove the code.
@@ -276,6 +296,8 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		myCodeSystemDao.delete(theCodeSystem);
 
 		myEntityManager.flush();
+
+		invalidatePreExpandedValueSetsForCodeSystem(theCodeSystem.getCodeSystemUri());
 	}
 
 	public void deleteCodeSystemVersion(final Long theCodeSystemVersionPid) {
@@ -283,6 +305,14 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 
 		PageRequest page1000 = PageRequest.of(0, 1000);
 
+		// Concept closure
+		{
+			String descriptor = "concept closure rows";
+			Supplier<Slice<TermConceptClosure>> loader = () -> myConceptClosureDao.findByCodeSystemVersion(page1000, theCodeSystemVersionPid);
+			Supplier<Integer> counter = () -> myConceptClosureDao.countByCodeSystemVersion(theCodeSystemVersionPid);
+			doDelete(descriptor, loader, counter, myConceptClosureDao);
+		}
+
 		// Parent/Child links
 		{
 			String descriptor = "parent/child links";
@@ -653,6 +683,92 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		}
 	}
 
+	private void addAncestorPids(ArrayListMultimap<Long, Long> theChildToParentPids, Long theConceptPid, Set<Long> theSetToPopulate) {
+		for (Long nextParentPid : theChildToParentPids.get(theConceptPid)) {
+			if (theSetToPopulate.add(nextParentPid)) {
+				addAncestorPids(theChildToParentPids, nextParentPid, theSetToPopulate);
+			}
+		}
+	}
+
+	/**
+	 * Builds the concept closure for a code system version. The rows are written in a
+	 * series of transactions, each covering a chunk of the concepts, and the version is
+	 * only marked as having a complete closure once the last chunk has committed. A
+	 * build which fails part way through leaves rows behind without the marker, so they
+	 * are ignored by searches and are cleared out when the build is next attempted.
+	 */
+	private void buildConceptClosure(Long theCodeSystemVersionPid) {
+		TransactionTemplate tt = new TransactionTemplate(myTransactionMgr);
+		tt.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+
+		StopWatch sw = new StopWatch();
+
+		ArrayListMultimap<Long, Long> childToParentPids = ArrayListMultimap.create();
+		List<Long> conceptPids = tt.execute(t -> {
+			Optional<TermCodeSystemVersion> codeSystemVersion = myCodeSystemVersionDao.findById(theCodeSystemVersionPid);
+			if (!codeSystemVersion.isPresent() || codeSystemVersion.get().getClosureCompleted() != null) {
+				return null;
+			}
+
+			int deleted = myConceptClosureDao.deleteByCodeSystemVersion(theCodeSystemVersionPid);
+			if (deleted > 0) {
+				ourLog.info("Deleted {} concept closure rows left by an incomplete build for code system version {}", deleted, theCodeSystemVersionPid);
+			}
+
+			for (Object[] next : myConceptParentChildLinkDao.findChildAndParentPidsByCodeSystemVersion(theCodeSystemVersionPid)) {
+				childToParentPids.put((Long) next[0], (Long) next[1]);
+			}
+			return myConceptDao.findPidsByCodeSystemVersion(theCodeSystemVersionPid);
+		});
+		if (conceptPids == null) {
+			return;
+		}
+
+		ourLog.info("Building concept closure for {} concepts in code system version {}", conceptPids.size(), theCodeSystemVersionPid);
+
+		int count = 0;
+		for (List<Long> nextChunk : Lists.partition(conceptPids, CONCEPT_CLOSURE_CONCEPTS_PER_TRANSACTION)) {
+			count += tt.execute(t -> storeConceptClosureChunk(theCodeSystemVersionPid, nextChunk, childToParentPids));
+		}
+
+		tt.execute(t -> myCodeSystemVersionDao.updateClosureCompleted(theCodeSystemVersionPid, new Date()));
+
+		ourLog.info("Stored {} concept closure rows for code system version {} in {}ms", count, theCodeSystemVersionPid, sw.getMillis());
+	}
+
+	private int storeConceptClosureChunk(Long theCodeSystemVersionPid, List<Long> theConceptPids, ArrayListMultimap<Long, Long> theChildToParentPids) {
+		/*
+		 * The rows are written using JDBC batches regardless of the batch
+		 * size configured for the rest of the server
+		 */
+		myEntityManager.unwrap(Session.class).setJdbcBatchSize(CONCEPT_CLOSURE_INSERT_BATCH_SIZE);
+
+		TermCodeSystemVersion codeSystemVersion = myEntityManager.getReference(TermCodeSystemVersion.class, theCodeSystemVersionPid);
+		int count = 0;
+		for (Long nextConceptPid : theConceptPids) {
+			Set<Long> ancestorPids = new HashSet<>();
+			ancestorPids.add(nextConceptPid);
+			addAncestorPids(theChildToParentPids, nextConceptPid, ancestorPids);
+
+			TermConcept descendant = myEntityManager.getReference(TermConcept.class, nextConceptPid);
+			for (Long nextAncestorPid : ancestorPids) {
+				TermConcept ancestor = myEntityManager.getReference(TermConcept.class, nextAncestorPid);
+				myEntityManager.persist(new TermConceptClosure(codeSystemVersion, ancestor, descendant));
+				count++;
+				if (count % CONCEPT_CLOSURE_INSERT_BATCH_SIZE == 0) {
+					myEntityManager.flush();
+					myEntityManager.clear();
+					codeSystemVersion = myEntityManager.getReference(TermCodeSystemVersion.class, theCodeSystemVersionPid);
+					descendant = myEntityManager.getReference(TermConcept.class, nextConceptPid);
+				}
+			}
+		}
+		myEntityManager.flush();
+		myEntityManager.clear();
+		return count;
+	}
+
 	private void fetchChildren(TermConcept theConcept, Set<TermConcept> theSetToPopulate) {
 		for (TermConceptParentChildLink nextChildLink : theConcept.getChildren()) {
 			TermConcept nextChild = nextChildLink.getChild();
@@ -728,6 +844,11 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		}
 		TermCodeSystemVersion csv = cs.getCurrentVersion();
 
+		Long conceptPid = findConceptPidWithClosure(theSystem, theCode);
+		if (conceptPid != null) {
+			return toVersionIndependentConcepts(theSystem, myConceptClosureDao.findAncestorCodes(conceptPid));
+		}
+
 		Set<TermConcept> codes = findCodesAbove(cs.getResource().getId(), csv.getPid(), theCode);
 		return toVersionIndependentConcepts(theSystem, codes);
 	}
@@ -759,10 +880,36 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		}
 		TermCodeSystemVersion csv = cs.getCurrentVersion();
 
+		Long conceptPid = findConceptPidWithClosure(theSystem, theCode);
+		if (conceptPid != null) {
+			return toVersionIndependentConcepts(theSystem, myConceptClosureDao.findDescendantCodes(conceptPid));
+		}
+
 		Set<TermConcept> codes = findCodesBelow(cs.getResource().getId(), csv.getPid(), theCode);
 		return toVersionIndependentConcepts(theSystem, codes);
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED)
+	public Long findConceptPidWithClosure(String theSystem, String theCode) {
+		if (isBlank(theSystem) || isBlank(theCode)) {
+			return null;
+		}
+		TermCodeSystemVersion csv = findCurrentCodeSystemVersionForSystem(theSystem);
+		if (csv == null) {
+			return null;
+		}
+
+		Optional<Long> retVal = myConceptClosureDao.findConceptPidWithClosure(csv.getPid(), theCode);
+		if (retVal.isPresent()) {
+			return retVal.get();
+		}
+
+		// The closure might not have been built yet for this version, e.g. if it was stored by an older version of HAPI
+		myCodeSystemVersionsRequiringClosure.add(csv.getPid());
+		return null;
+	}
+
 	private TermCodeSystemVersion findCurrentCodeSystemVersionForSystem(String theCodeSystem) {
 		TermCodeSystem cs = getCodeSystem(theCodeSystem);
 		if (cs == null || cs.getCurrentVersion() == null) {
@@ -775,8 +922,38 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		return myCodeSystemDao.findByCodeSystemUri(theSystem);
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED)
+	public Long findPreExpandedValueSetPid(String theValueSetUrl) {
+		if (!myDaoConfig.isPreExpandValueSets() || isBlank(theValueSetUrl) || theValueSetUrl.length() > TermValueSetExpansion.MAX_URL_LENGTH) {
+			return null;
+		}
+
+		Optional<Long> retVal = myValueSetExpansionDao.findPidByValueSetUrlAndStatus(theValueSetUrl, TermValueSetExpansionStatusEnum.EXPANDED);
+		if (retVal.isPresent()) {
+			return retVal.get();
+		}
+
+		/*
+		 * Only URLs which resolve to an actual ValueSet are queued, and only the first
+		 * time they are seen. URLs which are already stored are rebuilt by the scheduler.
+		 */
+		if (!myValueSetUrlsToPreExpand.contains(theValueSetUrl) && !myValueSetExpansionDao.findByValueSetUrl(theValueSetUrl).isPresent()) {
+			if (getValueSetFromContext(theValueSetUrl) != null) {
+				myValueSetUrlsToPreExpand.add(theValueSetUrl);
+			}
+		}
+		return null;
+	}
+
 	protected abstract CodeSystem getCodeSystemFromContext(String theSystem);
 
+	/**
+	 * Returns the ValueSet with the given URL, converted to R4 if needed, or <code>null</code>
+	 * if no such ValueSet exists
+	 */
+	protected abstract ValueSet getValueSetFromContext(String theValueSetUrl);
+
 	private void persistChildren(TermConcept theConcept, TermCodeSystemVersion theCodeSystem, IdentityHashMap<TermConcept, Object> theConceptsStack, int theTotalConcepts) {
 		if (theConceptsStack.put(theConcept, PLACEHOLDER_OBJECT) != null) {
 			return;
@@ -820,6 +997,18 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		}
 	}
 
+	private void processConceptClosures() {
+		for (Iterator<Long> iter = myCodeSystemVersionsRequiringClosure.iterator(); iter.hasNext(); ) {
+			Long nextCodeSystemVersionPid = iter.next();
+			iter.remove();
+			try {
+				buildConceptClosure(nextCodeSystemVersionPid);
+			} catch (Exception e) {
+				ourLog.warn("Failed to build concept closure for code system version {}: {}", nextCodeSystemVersionPid, e.toString());
+			}
+		}
+	}
+
 	private void processDeferredConceptMaps() {
 		int count = Math.min(myDeferredConceptMaps.size(), 20);
 		for (ConceptMap nextConceptMap : new ArrayList<>(myDeferredConceptMaps.subList(0, count))) {
@@ -830,15 +1019,182 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		ourLog.info("Saved {} deferred ConceptMap resources, have {} remaining", count, myDeferredConceptMaps.size());
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED)
+	public void invalidatePreExpandedValueSet(String theValueSetUrl) {
+		if (isBlank(theValueSetUrl)) {
+			return;
+		}
+		int count = myValueSetExpansionDao.updateStatusAndIncrementGenerationForValueSetUrl(theValueSetUrl, TermValueSetExpansionStatusEnum.NOT_EXPANDED);
+		count += myValueSetExpansionDao.updateStatusAndIncrementGenerationForDependency(TermValueSetExpansionDependencyTypeEnum.VALUE_SET, toDependencyUrl(theValueSetUrl), TermValueSetExpansionStatusEnum.NOT_EXPANDED);
+		if (count > 0) {
+			ourLog.info("Marked {} stored ValueSet expansions using ValueSet {} as requiring expansion", count, theValueSetUrl);
+		}
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED)
+	public void invalidatePreExpandedValueSetsForCodeSystem(String theSystem) {
+		if (isBlank(theSystem)) {
+			return;
+		}
+		int count = myValueSetExpansionDao.updateStatusAndIncrementGenerationForDependency(TermValueSetExpansionDependencyTypeEnum.CODE_SYSTEM, toDependencyUrl(theSystem), TermValueSetExpansionStatusEnum.NOT_EXPANDED);
+		if (count > 0) {
+			ourLog.info("Marked {} stored ValueSet expansions using CodeSystem {} as requiring expansion", count, theSystem);
+		}
+	}
+
+	/**
+	 * Collects the URLs of every CodeSystem and ValueSet which the given ValueSet
+	 * draws its codes from, following included ValueSets
+	 */
+	private void addExpansionDependencies(ValueSet theValueSet, Set<String> theCodeSystems, Set<String> theValueSets) {
+		List<ValueSet.ConceptSetComponent> conceptSets = new ArrayList<>(theValueSet.getCompose().getInclude());
+		conceptSets.addAll(theValueSet.getCompose().getExclude());
+		for (ValueSet.ConceptSetComponent nextConceptSet : conceptSets) {
+			if (isNotBlank(nextConceptSet.getSystem())) {
+				theCodeSystems.add(nextConceptSet.getSystem());
+			}
+			for (CanonicalType nextValueSet : nextConceptSet.getValueSet()) {
+				String nextUrl = nextValueSet.getValueAsString();
+				if (isNotBlank(nextUrl) && theValueSets.add(nextUrl)) {
+					ValueSet included = getValueSetFromContext(nextUrl);
+					if (included != null) {
+						addExpansionDependencies(included, theCodeSystems, theValueSets);
+					}
+				}
+			}
+		}
+	}
+
+	private static String toDependencyUrl(String theUrl) {
+		return StringUtils.left(theUrl, TermValueSetExpansion.MAX_URL_LENGTH);
+	}
+
+	private void preExpandValueSet(TransactionTemplate theTxTemplate, TermValueSetExpansion theExpansion) {
+		Long expansionPid = theExpansion.getId();
+		String valueSetUrl = theExpansion.getValueSetUrl();
+		long generation = theExpansion.getGeneration();
+		StopWatch sw = new StopWatch();
+
+		Set<String> codeSystems = new HashSet<>();
+		Set<String> valueSets = new HashSet<>();
+		List<VersionIndependentConcept> concepts;
+		try {
+			concepts = theTxTemplate.execute(t -> {
+				ValueSet valueSet = getValueSetFromContext(valueSetUrl);
+				if (valueSet == null) {
+					return null;
+				}
+				addExpansionDependencies(valueSet, codeSystems, valueSets);
+				return expandValueSetAndReturnVersionIndependentConcepts(valueSet);
+			});
+		} catch (Exception e) {
+			ourLog.warn("Failed to pre-expand ValueSet {}: {}", valueSetUrl, e.toString());
+			return;
+		}
+
+		if (concepts == null) {
+			ourLog.info("ValueSet {} no longer exists, removing its stored expansion", valueSetUrl);
+			theTxTemplate.execute(t -> {
+				myValueSetExpansionConceptDao.deleteByExpansionPid(expansionPid);
+				myValueSetExpansionDependencyDao.deleteByExpansionPid(expansionPid);
+				myValueSetExpansionDao.deleteById(expansionPid);
+				return null;
+			});
+			return;
+		}
+
+		theTxTemplate.execute(t -> {
+			myValueSetExpansionConceptDao.deleteByExpansionPid(expansionPid);
+			myValueSetExpansionDependencyDao.deleteByExpansionPid(expansionPid);
+			myEntityManager.flush();
+
+			TermValueSetExpansion expansion = myEntityManager.getReference(TermValueSetExpansion.class, expansionPid);
+			for (String next : codeSystems) {
+				myEntityManager.persist(new TermValueSetExpansionDependency(expansion, TermValueSetExpansionDependencyTypeEnum.CODE_SYSTEM, toDependencyUrl(next)));
+			}
+			for (String next : valueSets) {
+				myEntityManager.persist(new TermValueSetExpansionDependency(expansion, TermValueSetExpansionDependencyTypeEnum.VALUE_SET, toDependencyUrl(next)));
+			}
+
+			int count = 0;
+			for (VersionIndependentConcept next : concepts) {
+				String system = next.getSystem();
+				String code = next.getCode();
+				if (isBlank(system) || isBlank(code) || system.length() > ResourceIndexedSearchParamToken.MAX_LENGTH || code.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+					continue;
+				}
+				myEntityManager.persist(new TermValueSetExpansionConcept(expansion, system, code));
+				count++;
+				if (count % 1000 == 0) {
+					myEntityManager.flush();
+					myEntityManager.clear();
+					expansion = myEntityManager.getReference(TermValueSetExpansion.class, expansionPid);
+				}
+			}
+			myEntityManager.flush();
+
+			/*
+			 * If the expansion was invalidated while we were working on it, what
+			 * we have might be out of date so we'll try again on the next pass
+			 */
+			int updated = myValueSetExpansionDao.updateStatusIfGenerationUnchanged(expansionPid, generation, TermValueSetExpansionStatusEnum.EXPANDED, count);
+			if (updated == 0) {
+				ourLog.info("ValueSet {} changed while it was being pre-expanded, will try again", valueSetUrl);
+				t.setRollbackOnly();
+			} else {
+				ourLog.info("Pre-expanded ValueSet {} with {} concepts in {}ms", valueSetUrl, count, sw.getMillis());
+			}
+			return null;
+		});
+	}
+
+	@Scheduled(fixedDelay = DateUtils.MILLIS_PER_MINUTE)
+	@Transactional(propagation = Propagation.NEVER)
+	@Override
+	public synchronized void preExpandValueSets() {
+		if (!myDaoConfig.isPreExpandValueSets()) {
+			return;
+		}
+
+		TransactionTemplate tt = new TransactionTemplate(myTransactionMgr);
+		tt.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+
+		for (Iterator<String> iter = myValueSetUrlsToPreExpand.iterator(); iter.hasNext(); ) {
+			String nextUrl = iter.next();
+			iter.remove();
+			try {
+				tt.execute(t -> {
+					if (!myValueSetExpansionDao.findByValueSetUrl(nextUrl).isPresent()) {
+						myValueSetExpansionDao.save(new TermValueSetExpansion(nextUrl));
+					}
+					return null;
+				});
+			} catch (Exception e) {
+				// Another server may have added it at the same time
+				ourLog.warn("Failed to store ValueSet {} for pre-expansion: {}", nextUrl, e.toString());
+			}
+		}
+
+		List<TermValueSetExpansion> expansions = tt.execute(t -> myValueSetExpansionDao.findByStatus(PageRequest.of(0, 100), TermValueSetExpansionStatusEnum.NOT_EXPANDED).getContent());
+		for (TermValueSetExpansion next : expansions) {
+			preExpandValueSet(tt, next);
+		}
+	}
+
 	private void processDeferredConcepts() {
 		int codeCount = 0, relCount = 0;
 		StopWatch stopwatch = new StopWatch();
 
+		Set<String> changedCodeSystems = new HashSet<>();
+
 		int count = Math.min(myDaoConfig.getDeferIndexingForCodesystemsOfSize(), myDeferredConcepts.size());
 		ourLog.info("Saving {} deferred concepts...", count);
 		while (codeCount < count && myDeferredConcepts.size() > 0) {
 			TermConcept next = myDeferredConcepts.remove(0);
 			codeCount += saveConcept(next);
+			changedCodeSystems.add(next.getCodeSystemVersion().getCodeSystem().getCodeSystemUri());
 		}
 
 		if (codeCount > 0) {
@@ -858,6 +1214,7 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 				}
 
 				saveConceptLink(next);
+				changedCodeSystems.add(next.getChild().getCodeSystemVersion().getCodeSystem().getCodeSystemUri());
 				relCount++;
 			}
 		}
@@ -870,6 +1227,10 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		if ((myDeferredConcepts.size() + myConceptLinksToSaveLater.size()) == 0) {
 			ourLog.info("All deferred concepts and relationships have now been synchronized to the database");
 		}
+
+		for (String next : changedCodeSystems) {
+			invalidatePreExpandedValueSetsForCodeSystem(next);
+		}
 	}
 
 	private void processDeferredValueSets() {
@@ -1012,6 +1373,7 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 			return;
 		} else if (myDeferredConcepts.isEmpty() && myConceptLinksToSaveLater.isEmpty()) {
 			processReindexing();
+			processConceptClosures();
 		}
 
 		TransactionTemplate tt = new TransactionTemplate(myTransactionMgr);
@@ -1145,6 +1507,24 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		if (myDeferredConcepts.size() > 0 || myConceptLinksToSaveLater.size() > 0) {
 			ourLog.info("Note that some concept saving was deferred - still have {} concepts and {} relationships", myDeferredConcepts.size(), myConceptLinksToSaveLater.size());
 		}
+
+		/*
+		 * The closure is built in the background once the transaction has committed
+		 * and any deferred concepts and relationships have been saved
+		 */
+		Long codeSystemVersionPid = codeSystemVersion.getPid();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					myCodeSystemVersionsRequiringClosure.add(codeSystemVersionPid);
+				}
+			});
+		} else {
+			myCodeSystemVersionsRequiringClosure.add(codeSystemVersionPid);
+		}
+
+		invalidatePreExpandedValueSetsForCodeSystem(theSystemUri);
 	}
 
 	@Override
@@ -1273,6 +1653,14 @@ public abstract class BaseHapiTerminologySvcImpl implements IHapiTerminologySvc,
 		return cs != null;
 	}
 
+	private ArrayList<VersionIndependentConcept> toVersionIndependentConcepts(String theSystem, List<String> theCodes) {
+		ArrayList<VersionIndependentConcept> retVal = new ArrayList<>(theCodes.size());
+		for (String next : theCodes) {
+			retVal.add(new VersionIndependentConcept(theSystem, next));
+		}
+		return retVal;
+	}
+
 	private ArrayList<VersionIndependentConcept> toVersionIndependentConcepts(String theSystem, Set<TermConcept> codes) {
 		ArrayList<VersionIndependentConcept> retVal = new ArrayList<>(codes.size());
 		for (TermConcept next : codes) {
@@ -81,6 +81,11 @@ public class HapiTerminologySvcDstu2 extends BaseHapiTerminologySvcImpl {
 		return null;
 	}
 
+	@Override
+	protected ValueSet getValueSetFromContext(String theValueSetUrl) {
+		return null;
+	}
+
 	@Override
 	public IBaseResource expandValueSet(IBaseResource theValueSetToExpand) {
 		throw new UnsupportedOperationException();
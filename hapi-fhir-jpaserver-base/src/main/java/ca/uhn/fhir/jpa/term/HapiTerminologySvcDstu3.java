@@ -277,6 +277,19 @@ public class HapiTerminologySvcDstu3 extends BaseHapiTerminologySvcImpl implemen
 		}
 	}
 
+	@Override
+	protected org.hl7.fhir.r4.model.ValueSet getValueSetFromContext(String theValueSetUrl) {
+		ValueSet valueSet = myValidationSupport.fetchResource(myContext, ValueSet.class, theValueSetUrl);
+		if (valueSet == null) {
+			return null;
+		}
+		try {
+			return VersionConvertor_30_40.convertValueSet(valueSet);
+		} catch (FHIRException e) {
+			throw new InternalErrorException(e);
+		}
+	}
+
 	@Override
 	public boolean isCodeSystemSupported(FhirContext theContext, String theSystem) {
 		return myTerminologySvc.supportsSystem(theSystem);
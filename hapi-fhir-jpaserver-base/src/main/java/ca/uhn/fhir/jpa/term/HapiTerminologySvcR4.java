@@ -222,6 +222,11 @@ public class HapiTerminologySvcR4 extends BaseHapiTerminologySvcImpl implements
 		return myValidationSupport.fetchCodeSystem(myContext, theSystem);
 	}
 
+	@Override
+	protected ValueSet getValueSetFromContext(String theValueSetUrl) {
+		return myValidationSupport.fetchResource(myContext, ValueSet.class, theValueSetUrl);
+	}
+
 	@Override
 	public boolean isCodeSystemSupported(FhirContext theContext, String theSystem) {
 		return myTerminologySvc.supportsSystem(theSystem);
@@ -59,6 +59,40 @@ public interface IHapiTerminologySvc {
 
 	List<VersionIndependentConcept> findCodesBelowUsingBuiltInSystems(String theSystem, String theCode);
 
+	/**
+	 * Returns the PID of the given concept in the current version of the given code
+	 * system, or <code>null</code> if the concept doesn't exist or the concept closure
+	 * (the table of all ancestor/descendant pairs) has not yet been built for it
+	 */
+	Long findConceptPidWithClosure(String theSystem, String theCode);
+
+	/**
+	 * Returns the ID of the stored expansion for the given ValueSet, or <code>null</code>
+	 * if no up-to-date expansion is available yet (in which case the ValueSet
+	 * is queued for expansion)
+	 *
+	 * @see ca.uhn.fhir.jpa.dao.DaoConfig#setPreExpandValueSets(boolean)
+	 */
+	Long findPreExpandedValueSetPid(String theValueSetUrl);
+
+	/**
+	 * Marks the stored expansion of the given ValueSet, and of any ValueSets which
+	 * include it, as requiring a new expansion
+	 */
+	void invalidatePreExpandedValueSet(String theValueSetUrl);
+
+	/**
+	 * Marks the stored expansions of any ValueSets which draw codes from the given
+	 * CodeSystem as requiring a new expansion
+	 */
+	void invalidatePreExpandedValueSetsForCodeSystem(String theSystem);
+
+	/**
+	 * Builds any stored ValueSet expansions which are not up to date. This is
+	 * normally called by the scheduler.
+	 */
+	void preExpandValueSets();
+
 	void saveDeferred();
 
 	/**
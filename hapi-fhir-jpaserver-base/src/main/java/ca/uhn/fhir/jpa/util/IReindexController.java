@@ -27,8 +27,29 @@ public interface IReindexController {
 	 */
 	void performReindexingPass();
 
+	/**
+	 * Reindexes any outstanding partitions created by {@link #requestPartitionedReindex(String)}
+	 * and blocks until they have been completed. {@link #performReindexingPass()} runs
+	 * this automatically on a separate thread, whether or not status based reindexing
+	 * is disabled.
+	 *
+	 * @return The number of resources reindexed
+	 */
+	int performPartitionedReindexingPass();
+
 	/**
 	 * This method requests that the reindex process happen as soon as possible
 	 */
 	void requestReindex();
+
+	/**
+	 * Creates a partitioned reindexing job covering all resources of the given type
+	 * (or all resources if <code>theResourceType</code> is <code>null</code>), and
+	 * requests that the reindex process happen as soon as possible. If called
+	 * within an existing transaction, the job will only be visible once that
+	 * transaction commits.
+	 *
+	 * @return The number of partitions created
+	 */
+	int requestPartitionedReindex(String theResourceType);
 }
@@ -174,4 +174,20 @@ public class JpaConstants {
 	 * Operation name for the $document operation
 	 */
 	public static final String OPERATION_DOCUMENT = "$document";
+
+	public static final String OPERATION_EXPORT = "$export";
+
+	public static final String OPERATION_EXPORT_POLL_STATUS = "$export-poll-status";
+
+	public static final String OPERATION_EXPORT_DOWNLOAD = "$export-download";
+
+	public static final String PARAM_EXPORT_OUTPUT_FORMAT = "_outputFormat";
+
+	public static final String PARAM_EXPORT_TYPE = "_type";
+
+	public static final String PARAM_EXPORT_SINCE = "_since";
+
+	public static final String PARAM_EXPORT_POLL_STATUS_JOB_ID = "_jobId";
+
+	public static final String PARAM_EXPORT_DOWNLOAD_TYPE = "_type";
 }
@@ -22,25 +22,88 @@ package ca.uhn.fhir.jpa.util;
 
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.IFhirSystemDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceReindexJobDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.concurrent.Semaphore;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 
 public class ReindexController implements IReindexController {
 
+	/**
+	 * The number of resources reindexed (and checkpointed) at a time within a partition
+	 */
+	static final int PARTITION_BATCH_SIZE = 100;
+	/**
+	 * How long a server may hold a partition without saving a checkpoint before
+	 * another server is allowed to take the partition over
+	 */
+	static final long PARTITION_LEASE_MILLIS = 10 * DateUtils.MILLIS_PER_MINUTE;
 	private static final Logger ourLog = LoggerFactory.getLogger(ReindexController.class);
+	private static final long MAX_THROTTLE_MILLIS = 10 * DateUtils.MILLIS_PER_SECOND;
+	private static final long PROGRESS_LOG_INTERVAL_MILLIS = 30 * DateUtils.MILLIS_PER_SECOND;
+	private static final double THROTTLE_SLOWDOWN_FACTOR = 2.0;
 	private final Semaphore myReindexingLock = new Semaphore(1);
+	private final ReentrantLock myPartitionedReindexingLock = new ReentrantLock();
+	private final ThreadFactory myPartitionThreadFactory = new BasicThreadFactory.Builder().namingPattern("ResourceReindexPartition-%d").build();
+	private final AtomicBoolean myPartitionedReindexingPassScheduled = new AtomicBoolean();
+	private ExecutorService myPartitionedReindexingExecutor;
 	@Autowired
 	private DaoConfig myDaoConfig;
 	@Autowired
 	private IFhirSystemDao<?, ?> mySystemDao;
+	@Autowired
+	private IResourceReindexJobDao myResourceReindexJobDao;
+	@Autowired
+	private IResourceTableDao myResourceTableDao;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	private TransactionTemplate myTxTemplate;
 	private Long myDontReindexUntil;
+	private volatile boolean myStopping;
+	/**
+	 * Identifies this server as the owner of the partitions it has claimed
+	 */
+	private final String myLeaseOwner = UUID.randomUUID().toString();
+
+	@PostConstruct
+	public void start() {
+		myTxTemplate = new TransactionTemplate(myTxManager);
+		myTxTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
+
+		BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("ResourceReindexCoordinator-%d").daemon(true).build();
+		myPartitionedReindexingExecutor = Executors.newSingleThreadExecutor(threadFactory);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myStopping = true;
+		myPartitionedReindexingExecutor.shutdown();
+	}
 
 	/**
 	 * This method is called once per minute to perform any required re-indexing.
@@ -52,12 +115,22 @@ public class ReindexController implements IReindexController {
 	 * requiring re-indexing. In that case the method just returns immediately.
 	 * If the search finds that some resources require reindexing, the system will
 	 * do a bunch of reindexing and then return.
+	 * <p>
+	 * Any outstanding partitioned reindexing job is started on a separate thread, so
+	 * that it does not hold up the scheduler, and runs even if status based reindexing
+	 * is disabled.
 	 */
 	@Scheduled(fixedDelay = DateUtils.MILLIS_PER_MINUTE)
 	@Transactional(propagation = Propagation.NEVER)
 	@Override
 	public void performReindexingPass() {
-		if (myDaoConfig.isSchedulingDisabled() || myDaoConfig.isStatusBasedReindexingDisabled()) {
+		if (myDaoConfig.isSchedulingDisabled()) {
+			return;
+		}
+
+		schedulePartitionedReindexingPass();
+
+		if (myDaoConfig.isStatusBasedReindexingDisabled()) {
 			return;
 		}
 
@@ -105,6 +178,138 @@ public class ReindexController implements IReindexController {
 
 	}
 
+	/**
+	 * Starts a partitioned reindexing pass on the coordinator thread, unless one is
+	 * already queued or running
+	 */
+	private void schedulePartitionedReindexingPass() {
+		if (!myPartitionedReindexingPassScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			myPartitionedReindexingExecutor.submit(() -> {
+				try {
+					performPartitionedReindexingPass();
+				} catch (Exception e) {
+					ourLog.error("Failure during partitioned reindexing", e);
+				} finally {
+					myPartitionedReindexingPassScheduled.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// We are shutting down
+			myPartitionedReindexingPassScheduled.set(false);
+		}
+	}
+
+	@Override
+	public int performPartitionedReindexingPass() {
+		if (!myPartitionedReindexingLock.tryLock()) {
+			ourLog.trace("Not going to run partitioned reindexing in parallel threads");
+			return 0;
+		}
+		try {
+			return doPerformPartitionedReindexingPass();
+		} finally {
+			myPartitionedReindexingLock.unlock();
+		}
+	}
+
+	private int doPerformPartitionedReindexingPass() {
+		List<ResourceReindexJobEntity> partitions = claimPartitions();
+		if (partitions.isEmpty()) {
+			return 0;
+		}
+
+		int threadCount = Math.min(myDaoConfig.getReindexThreadCount(), partitions.size());
+		ourLog.info("Starting partitioned reindexing of {} partitions using {} threads", partitions.size(), threadCount);
+
+		StopWatch sw = new StopWatch();
+		AtomicLong pidsCovered = new AtomicLong();
+		long pidsRemaining = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, myPartitionThreadFactory);
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (ResourceReindexJobEntity next : partitions) {
+			PartitionReindexingTask task = new PartitionReindexingTask(next, pidsCovered);
+			pidsRemaining += next.getHighResourceId() - task.myNextLow + 1;
+			futures.add(executor.submit(task));
+		}
+
+		int retVal = 0;
+		try {
+			for (Future<Integer> nextFuture : futures) {
+				while (true) {
+					try {
+						retVal += nextFuture.get(PROGRESS_LOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException e) {
+						logPartitionedReindexingProgress(sw, pidsCovered.get(), pidsRemaining);
+					} catch (ExecutionException e) {
+						// The partition keeps its checkpoint and will be resumed by the next pass
+						ourLog.error("Failure during partitioned reindexing", e.getCause());
+						break;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			ourLog.warn("Interrupted while waiting for partitioned reindexing to complete");
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+		}
+
+		myTxTemplate.execute(t -> {
+			for (ResourceReindexJobEntity next : partitions) {
+				myResourceReindexJobDao.releaseLease(next.getId(), myLeaseOwner);
+			}
+			return myResourceReindexJobDao.deleteComplete();
+		});
+
+		ourLog.info("Partitioned reindexing pass complete, reindexed {} resources in {} ({} resources/sec)", retVal, sw, sw.formatThroughput(retVal, TimeUnit.SECONDS));
+		return retVal;
+	}
+
+	/**
+	 * Takes the lease on every incomplete partition which is not already being worked
+	 * on by another server, and returns the claimed partitions as they are after the
+	 * lease was taken (another server may have advanced the checkpoint before its own
+	 * lease expired)
+	 */
+	private List<ResourceReindexJobEntity> claimPartitions() {
+		List<ResourceReindexJobEntity> candidates = myTxTemplate.execute(t -> myResourceReindexJobDao.findIncomplete());
+
+		List<ResourceReindexJobEntity> retVal = new ArrayList<>();
+		for (ResourceReindexJobEntity next : candidates) {
+			ResourceReindexJobEntity claimed = myTxTemplate.execute(t -> {
+				Date now = new Date();
+				Date expiry = new Date(now.getTime() + PARTITION_LEASE_MILLIS);
+				if (myResourceReindexJobDao.claimLease(next.getId(), myLeaseOwner, now, expiry) == 0) {
+					return null;
+				}
+				return myResourceReindexJobDao.findById(next.getId()).orElse(null);
+			});
+			if (claimed != null) {
+				retVal.add(claimed);
+			}
+		}
+
+		if (retVal.size() < candidates.size()) {
+			ourLog.info("{} of {} incomplete reindexing partitions are leased by another server", candidates.size() - retVal.size(), candidates.size());
+		}
+		return retVal;
+	}
+
+	private void logPartitionedReindexingProgress(StopWatch theStopWatch, long thePidsCovered, long thePidsRemaining) {
+		if (thePidsCovered == 0) {
+			ourLog.info("Partitioned reindexing has been running for {}, no partitions have progressed yet", theStopWatch);
+			return;
+		}
+		String percent = new DecimalFormat("0.0").format(100.0 * thePidsCovered / thePidsRemaining);
+		String remaining = theStopWatch.getEstimatedTimeRemaining(thePidsCovered, thePidsRemaining);
+		ourLog.info("Partitioned reindexing is {}% complete after {}, estimated time remaining: {}", percent, theStopWatch, remaining);
+	}
+
 	/**
 	 * Calling this will cause a reindex loop to be triggered sooner that it would otherwise
 	 */
@@ -115,5 +320,133 @@ public class ReindexController implements IReindexController {
 		}
 	}
 
+	@Override
+	public int requestPartitionedReindex(String theResourceType) {
+		Integer retVal = myTxTemplate.execute(t -> createPartitions(theResourceType));
+		ourLog.info("Created {} reindexing partitions for resource type: {}", retVal, defaultIfBlank(theResourceType, "(all)"));
+		requestReindex();
+		return retVal;
+	}
+
+	private int createPartitions(String theResourceType) {
+		Long low;
+		Long high;
+		if (theResourceType == null) {
+			low = myResourceTableDao.findLowestId();
+			high = myResourceTableDao.findHighestId();
+		} else {
+			low = myResourceTableDao.findLowestIdOfType(theResourceType);
+			high = myResourceTableDao.findHighestIdOfType(theResourceType);
+		}
+		if (low == null || high == null) {
+			return 0;
+		}
+
+		int partitionCount = myDaoConfig.getReindexThreadCount();
+		long partitionSize = Math.max(1, (high - low) / partitionCount + 1);
+
+		int retVal = 0;
+		for (long nextLow = low; nextLow <= high; nextLow += partitionSize) {
+			long nextHigh = Math.min(nextLow + partitionSize - 1, high);
+			myResourceReindexJobDao.save(new ResourceReindexJobEntity(theResourceType, nextLow, nextHigh));
+			retVal++;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Reindexes a single partition, in batches of {@link #PARTITION_BATCH_SIZE} resources,
+	 * saving a checkpoint after every batch
+	 */
+	private class PartitionReindexingTask implements Callable<Integer> {
+		private final Long myPartitionId;
+		private final String myResourceType;
+		private final long myHigh;
+		private final AtomicLong myPidsCovered;
+		private long myNextLow;
+
+		PartitionReindexingTask(ResourceReindexJobEntity thePartition, AtomicLong thePidsCovered) {
+			myPartitionId = thePartition.getId();
+			myResourceType = thePartition.getResourceType();
+			myHigh = thePartition.getHighResourceId();
+			myPidsCovered = thePidsCovered;
+			if (thePartition.getCheckpointResourceId() != null) {
+				myNextLow = thePartition.getCheckpointResourceId() + 1;
+			} else {
+				myNextLow = thePartition.getLowResourceId();
+			}
+		}
+
+		@Override
+		public Integer call() {
+			int retVal = 0;
+			double fastestMillisPerResource = Double.MAX_VALUE;
+
+			while (!myStopping) {
+				StopWatch sw = new StopWatch();
+				List<Long> pids = myTxTemplate.execute(t -> fetchNextBatch());
+				if (!pids.isEmpty()) {
+					mySystemDao.reindex(pids);
+				}
+
+				boolean complete = pids.size() < PARTITION_BATCH_SIZE;
+				Long checkpoint = pids.isEmpty() ? null : pids.get(pids.size() - 1);
+				Boolean leaseHeld = myTxTemplate.execute(t -> {
+					if (checkpoint != null) {
+						Date expiry = new Date(System.currentTimeMillis() + PARTITION_LEASE_MILLIS);
+						if (myResourceReindexJobDao.updateCheckpoint(myPartitionId, myLeaseOwner, checkpoint, pids.size(), expiry) == 0) {
+							return false;
+						}
+					}
+					if (complete) {
+						return myResourceReindexJobDao.markComplete(myPartitionId, myLeaseOwner) > 0;
+					}
+					return true;
+				});
+				retVal += pids.size();
+
+				if (!leaseHeld) {
+					ourLog.warn("Lost the lease on reindexing partition {}, another server will continue it", myPartitionId);
+					break;
+				}
+
+				if (complete) {
+					myPidsCovered.addAndGet(myHigh - myNextLow + 1);
+					break;
+				}
+				myPidsCovered.addAndGet(checkpoint - myNextLow + 1);
+				myNextLow = checkpoint + 1;
+
+				/*
+				 * Back off if the database appears to be under load: when a batch takes
+				 * much longer per resource than the fastest batch seen so far in this
+				 * partition, pause for the extra time it took before continuing
+				 */
+				double millisPerResource = (double) sw.getMillis() / pids.size();
+				fastestMillisPerResource = Math.min(fastestMillisPerResource, millisPerResource);
+				double baseline = Math.max(fastestMillisPerResource, 1.0);
+				if (millisPerResource > baseline * THROTTLE_SLOWDOWN_FACTOR) {
+					long pause = Math.min((long) ((millisPerResource - baseline) * pids.size()), MAX_THROTTLE_MILLIS);
+					ourLog.debug("Reindexing partition {} slowed to {}ms/resource, pausing for {}ms", myPartitionId, millisPerResource, pause);
+					try {
+						Thread.sleep(pause);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+
+			return retVal;
+		}
+
+		private List<Long> fetchNextBatch() {
+			PageRequest page = new PageRequest(0, PARTITION_BATCH_SIZE);
+			if (myResourceType == null) {
+				return myResourceTableDao.findIdsInRange(page, myNextLow, myHigh).getContent();
+			}
+			return myResourceTableDao.findIdsOfTypeInRange(page, myResourceType, myNextLow, myHigh).getContent();
+		}
+	}
 
 }
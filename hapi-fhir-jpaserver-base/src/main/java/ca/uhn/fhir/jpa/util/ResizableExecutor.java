@@ -0,0 +1,126 @@
+package ca.uhn.fhir.jpa.util;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.IntSupplier;
+
+/**
+ * A pool of worker threads whose size follows a thread count setting that can be
+ * changed while the server is running. The setting is read again each time work is
+ * submitted, and idle threads are released after a minute.
+ */
+public class ResizableExecutor {
+
+	private final ThreadPoolExecutor myExecutor;
+	private final IntSupplier myThreadCount;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theThreadNamePrefix The prefix for the names of the worker threads
+	 * @param theThreadCount      Supplies the current number of worker threads
+	 */
+	public ResizableExecutor(String theThreadNamePrefix, IntSupplier theThreadCount) {
+		myThreadCount = theThreadCount;
+		int threadCount = theThreadCount.getAsInt();
+		myExecutor = new ThreadPoolExecutor(
+			threadCount,
+			threadCount,
+			60L,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new CustomizableThreadFactory(theThreadNamePrefix));
+		myExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Runs the given tasks and returns their results in the same order as the tasks
+	 * were supplied. This method blocks until all of the tasks have completed.
+	 *
+	 * @see #getAll(List)
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> theTasks) {
+		List<Future<T>> futures = new ArrayList<>();
+		for (Callable<T> next : theTasks) {
+			futures.add(submit(next));
+		}
+		return getAll(futures);
+	}
+
+	public void shutdown() {
+		myExecutor.shutdown();
+	}
+
+	public <T> Future<T> submit(Callable<T> theTask) {
+		updatePoolSize();
+		return myExecutor.submit(theTask);
+	}
+
+	public Future<?> submit(Runnable theTask) {
+		updatePoolSize();
+		return myExecutor.submit(theTask);
+	}
+
+	private synchronized void updatePoolSize() {
+		int threadCount = myThreadCount.getAsInt();
+		if (myExecutor.getMaximumPoolSize() < threadCount) {
+			myExecutor.setMaximumPoolSize(threadCount);
+			myExecutor.setCorePoolSize(threadCount);
+		} else if (myExecutor.getMaximumPoolSize() > threadCount) {
+			myExecutor.setCorePoolSize(threadCount);
+			myExecutor.setMaximumPoolSize(threadCount);
+		}
+	}
+
+	/**
+	 * Blocks until all of the given futures have completed and returns their results in
+	 * order. If one of them fails, the rest are cancelled and the failure is rethrown
+	 * (wrapped in an {@link InternalErrorException} unless it is a runtime exception).
+	 */
+	public static <T> List<T> getAll(List<? extends Future<? extends T>> theFutures) {
+		List<T> retVal = new ArrayList<>();
+		try {
+			for (Future<? extends T> next : theFutures) {
+				retVal.add(next.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(e.getCause());
+		} finally {
+			for (Future<? extends T> next : theFutures) {
+				next.cancel(true);
+			}
+		}
+		return retVal;
+	}
+
+}
@@ -0,0 +1,254 @@
+package ca.uhn.fhir.jpa.bulk;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.r4.BaseJpaR4Test;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.TestUtil;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.*;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+
+public class BulkDataExportSvcImplR4Test extends BaseJpaR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkDataExportSvcImplR4Test.class);
+	@Autowired
+	private IBulkDataExportSvc myBulkDataExportSvc;
+	private MemorySink mySink;
+
+	@After
+	public void after() {
+		myDaoConfig.setBulkExportThreadCount(new DaoConfig().getBulkExportThreadCount());
+	}
+
+	@Before
+	public void before() {
+		mySink = new MemorySink();
+		((BulkDataExportSvcImpl) myBulkDataExportSvc).setSink(mySink);
+		myDaoConfig.setBulkExportThreadCount(2);
+	}
+
+	private BulkExportJob runJob(BulkDataExportOptions theOptions) throws Exception {
+		BulkExportJob retVal = myBulkDataExportSvc.submitJob(theOptions);
+		waitForSize(1, () -> retVal.getStatus() == BulkExportJob.StatusEnum.COMPLETE || retVal.getStatus() == BulkExportJob.StatusEnum.ERROR ? 1 : 0);
+		assertEquals(retVal.getErrorMessage(), BulkExportJob.StatusEnum.COMPLETE, retVal.getStatus());
+		assertSame(retVal, myBulkDataExportSvc.getJob(retVal.getJobId()));
+		return retVal;
+	}
+
+	private List<String> readIds(BulkExportJob theJob, String theResourceType) throws IOException {
+		if (theJob.getOutput(theResourceType) == null) {
+			return Collections.emptyList();
+		}
+		String output;
+		try (InputStream inputStream = myBulkDataExportSvc.openOutput(theJob.getJobId(), theResourceType)) {
+			output = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+		}
+		List<String> retVal = new ArrayList<>();
+		for (String next : output.split("\n")) {
+			retVal.add(myFhirCtx.newJsonParser().parseResource(next).getIdElement().getIdPart());
+		}
+		return retVal;
+	}
+
+	@Test
+	public void testGroupExport() throws Exception {
+		IIdType p1 = createPatient("P1");
+		IIdType p2 = createPatient("P2");
+		IIdType o1 = createObservation(p1);
+		createObservation(p2);
+
+		Group group = new Group();
+		group.addMember().setEntity(new Reference(p1));
+		IIdType groupId = myGroupDao.create(group).getId().toUnqualifiedVersionless();
+
+		BulkExportJob job = runJob(new BulkDataExportOptions()
+			.setExportStyle(BulkDataExportOptions.ExportStyleEnum.GROUP)
+			.setGroupId(groupId)
+			.setResourceTypes(Sets.newHashSet("Patient", "Observation")));
+
+		assertThat(readIds(job, "Patient"), containsInAnyOrder(p1.getIdPart()));
+		assertThat(readIds(job, "Observation"), containsInAnyOrder(o1.getIdPart()));
+	}
+
+	@Test
+	public void testGroupExportUnknownGroup() {
+		try {
+			myBulkDataExportSvc.submitJob(new BulkDataExportOptions()
+				.setExportStyle(BulkDataExportOptions.ExportStyleEnum.GROUP)
+				.setGroupId(new IdType("Group/FOO")));
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testPatientExport() throws Exception {
+		IIdType p1 = createPatient("P1");
+		IIdType o1 = createObservation(p1);
+		createObservation(null);
+
+		BulkExportJob job = runJob(new BulkDataExportOptions()
+			.setExportStyle(BulkDataExportOptions.ExportStyleEnum.PATIENT)
+			.setResourceTypes(Sets.newHashSet("Patient", "Observation")));
+
+		assertThat(readIds(job, "Patient"), containsInAnyOrder(p1.getIdPart()));
+		assertThat(readIds(job, "Observation"), containsInAnyOrder(o1.getIdPart()));
+	}
+
+	@Test
+	public void testSystemExport() throws Exception {
+		List<String> patientIds = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			patientIds.add(createPatient("P" + i).getIdPart());
+		}
+		IIdType deleted = createPatient("DELETED");
+		myPatientDao.delete(deleted);
+		IIdType o1 = createObservation(null);
+
+		BulkExportJob job = runJob(new BulkDataExportOptions()
+			.setResourceTypes(Sets.newHashSet("Patient", "Observation", "Organization")));
+
+		assertThat(readIds(job, "Patient"), containsInAnyOrder(patientIds.toArray()));
+		assertThat(readIds(job, "Observation"), containsInAnyOrder(o1.getIdPart()));
+
+		// No output is produced for types with no resources
+		assertEquals(2, job.getOutputs().size());
+		for (BulkExportJob.Output next : job.getOutputs()) {
+			ourLog.info("Output {} has {} resources", next.getResourceType(), next.getCount());
+			if (next.getResourceType().equals("Patient")) {
+				assertEquals(25, next.getCount());
+			} else {
+				assertEquals(1, next.getCount());
+			}
+		}
+	}
+
+	@Test
+	public void testOutputDeletedWhenJobDiscarded() throws Exception {
+		createPatient("P1");
+
+		BulkExportJob job = runJob(new BulkDataExportOptions()
+			.setResourceTypes(Sets.newHashSet("Patient")));
+		assertNotNull(mySink.getOutput(job.getJobId(), "Patient"));
+
+		// Jobs are discarded when the service stops, since they can't be polled afterward
+		BulkDataExportSvcImpl svc = (BulkDataExportSvcImpl) myBulkDataExportSvc;
+		svc.stop();
+		svc.start();
+
+		assertNull(mySink.getOutput(job.getJobId(), "Patient"));
+		try {
+			myBulkDataExportSvc.openOutput(job.getJobId(), "Patient");
+			fail();
+		} catch (ResourceNotFoundException e) {
+			assertEquals("Unknown bulk export job: " + job.getJobId(), e.getMessage());
+		}
+	}
+
+	@Test
+	public void testOpenOutputForTypeWithNoOutput() throws Exception {
+		createPatient("P1");
+
+		BulkExportJob job = runJob(new BulkDataExportOptions()
+			.setResourceTypes(Sets.newHashSet("Patient", "Observation")));
+
+		try {
+			myBulkDataExportSvc.openOutput(job.getJobId(), "Observation");
+			fail();
+		} catch (ResourceNotFoundException e) {
+			assertEquals("Bulk export job " + job.getJobId() + " has no output for resource type: Observation", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSystemExportSince() throws Exception {
+		createPatient("OLD");
+		Thread.sleep(50);
+		Date since = new Date();
+		Thread.sleep(50);
+		IIdType p2 = createPatient("NEW");
+
+		BulkExportJob job = runJob(new BulkDataExportOptions()
+			.setSince(since)
+			.setResourceTypes(Sets.newHashSet("Patient")));
+
+		assertThat(readIds(job, "Patient"), containsInAnyOrder(p2.getIdPart()));
+	}
+
+	@Test
+	public void testSystemExportUnknownType() {
+		try {
+			myBulkDataExportSvc.submitJob(new BulkDataExportOptions()
+				.setResourceTypes(Sets.newHashSet("FooBar")));
+			fail();
+		} catch (InvalidRequestException e) {
+			assertEquals("Unknown or unsupported resource type for export: FooBar", e.getMessage());
+		}
+	}
+
+	private IIdType createObservation(IIdType thePatientId) {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		if (thePatientId != null) {
+			obs.setSubject(new Reference(thePatientId));
+		}
+		return myObservationDao.create(obs).getId().toUnqualifiedVersionless();
+	}
+
+	private IIdType createPatient(String theFamily) {
+		Patient patient = new Patient();
+		patient.addName().setFamily(theFamily);
+		return myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	private static class MemorySink implements IBulkDataExportSink {
+		private final Map<String, StringWriter> myOutputs = Collections.synchronizedMap(new HashMap<>());
+
+		@Override
+		public Writer createWriter(String theJobId, String theResourceType) {
+			StringWriter retVal = new StringWriter();
+			myOutputs.put(theJobId + "/" + theResourceType, retVal);
+			return retVal;
+		}
+
+		@Override
+		public void deleteOutput(String theJobId) {
+			myOutputs.keySet().removeIf(t -> t.startsWith(theJobId + "/"));
+		}
+
+		String getOutput(String theJobId, String theResourceType) {
+			StringWriter writer = myOutputs.get(theJobId + "/" + theResourceType);
+			return writer != null ? writer.toString() : null;
+		}
+
+		@Override
+		public InputStream openInputStream(String theJobId, String theResourceType) throws IOException {
+			String output = getOutput(theJobId, theResourceType);
+			if (output == null) {
+				throw new FileNotFoundException(theJobId + "/" + theResourceType);
+			}
+			return new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+}
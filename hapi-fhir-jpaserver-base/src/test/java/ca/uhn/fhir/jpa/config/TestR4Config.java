@@ -31,6 +31,7 @@ public class TestR4Config extends BaseJavaConfigR4 {
 
 	static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(TestR4Config.class);
 	private static int ourMaxThreads;
+	private static BasicDataSource ourDataSource;
 
 	static {
 		/*
@@ -102,6 +103,7 @@ public class TestR4Config extends BaseJavaConfigR4 {
 		retVal.setPassword("");
 
 		retVal.setMaxTotal(ourMaxThreads);
+		ourDataSource = retVal;
 
 		DataSource dataSource = ProxyDataSourceBuilder
 			.create(retVal)
@@ -170,4 +172,13 @@ public class TestR4Config extends BaseJavaConfigR4 {
 		return ourMaxThreads;
 	}
 
+	/**
+	 * Changes the size of the connection pool, for tests which need a
+	 * minimum number of connections to be available at the same time
+	 */
+	public static void setMaxThreads(int theMaxThreads) {
+		ourMaxThreads = theMaxThreads;
+		ourDataSource.setMaxTotal(theMaxThreads);
+	}
+
 }
@@ -0,0 +1,110 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
+import ca.uhn.fhir.jpa.entity.ForcedId;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ForcedIdSvcImplTest {
+
+	@Mock
+	private IForcedIdDao myForcedIdDao;
+	private ForcedIdSvcImpl mySvc;
+
+	@Before
+	public void before() {
+		mySvc = new ForcedIdSvcImpl();
+		mySvc.setDaoConfigForUnitTest(new DaoConfig());
+		mySvc.setForcedIdDaoForUnitTest(myForcedIdDao);
+		mySvc.start();
+	}
+
+	@Test
+	public void testTranslateIsCached() {
+		when(myForcedIdDao.findByTypeAndForcedId(eq("Patient"), eq("A"))).thenReturn(Collections.singletonList(newForcedId("Patient", "A", 123L)));
+
+		assertEquals(123L, mySvc.translateForcedIdToPid("Patient", "A").longValue());
+		assertEquals(123L, mySvc.translateForcedIdToPid("Patient", "A").longValue());
+		verify(myForcedIdDao, times(1)).findByTypeAndForcedId(eq("Patient"), eq("A"));
+
+		mySvc.invalidate("Patient", "A");
+		assertEquals(123L, mySvc.translateForcedIdToPid("Patient", "A").longValue());
+		verify(myForcedIdDao, times(2)).findByTypeAndForcedId(eq("Patient"), eq("A"));
+	}
+
+	@Test
+	public void testTranslateNumericIdDoesNotQuery() {
+		assertEquals(Collections.singletonList(123L), mySvc.translateForcedIdToPids(new IdDt("Patient/123")));
+		verifyZeroInteractions(myForcedIdDao);
+	}
+
+	@Test
+	public void testTranslateNotFoundIsNotCached() {
+		when(myForcedIdDao.findByTypeAndForcedId(eq("Patient"), eq("A"))).thenReturn(Collections.emptyList());
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				mySvc.translateForcedIdToPid("Patient", "A");
+				fail();
+			} catch (ResourceNotFoundException e) {
+				// good
+			}
+		}
+		verify(myForcedIdDao, times(2)).findByTypeAndForcedId(eq("Patient"), eq("A"));
+	}
+
+	@Test
+	public void testTranslateMultiple() {
+		when(myForcedIdDao.findByTypeAndForcedIds(eq("Patient"), anyCollection())).thenReturn(Arrays.asList(
+			newForcedId("Patient", "A", 1L),
+			newForcedId("Patient", "B", 2L)
+		));
+
+		Map<String, Long> outcome = mySvc.translateForcedIdsToPids("Patient", Arrays.asList("A", "B", "C", "99"));
+		assertEquals(3, outcome.size());
+		assertEquals(1L, outcome.get("A").longValue());
+		assertEquals(2L, outcome.get("B").longValue());
+		assertEquals(99L, outcome.get("99").longValue());
+		assertFalse(outcome.containsKey("C"));
+
+		// Subsequent single lookups come from the cache
+		assertEquals(2L, mySvc.translateForcedIdToPid("Patient", "B").longValue());
+		verify(myForcedIdDao, never()).findByTypeAndForcedId(any(), any());
+		verify(myForcedIdDao, times(1)).findByTypeAndForcedIds(eq("Patient"), anyCollection());
+	}
+
+	@Test
+	public void testClearCache() {
+		when(myForcedIdDao.findByTypeAndForcedId(eq("Patient"), eq("A"))).thenReturn(Collections.singletonList(newForcedId("Patient", "A", 123L)));
+
+		mySvc.translateForcedIdToPid("Patient", "A");
+		mySvc.clearCache();
+		mySvc.translateForcedIdToPid("Patient", "A");
+		verify(myForcedIdDao, times(2)).findByTypeAndForcedId(eq("Patient"), eq("A"));
+	}
+
+	private static ForcedId newForcedId(String theResourceType, String theForcedId, Long thePid) {
+		ForcedId retVal = new ForcedId();
+		retVal.setResourceType(theResourceType);
+		retVal.setForcedId(theForcedId);
+		retVal.setResourcePid(thePid);
+		return retVal;
+	}
+
+}
@@ -14,6 +14,7 @@ import ca.uhn.fhir.jpa.search.IStaleSearchDeletingSvc;
 import ca.uhn.fhir.jpa.sp.ISearchParamPresenceSvc;
 import ca.uhn.fhir.jpa.term.BaseHapiTerminologySvcImpl;
 import ca.uhn.fhir.jpa.term.IHapiTerminologySvc;
+import ca.uhn.fhir.jpa.util.IReindexController;
 import ca.uhn.fhir.jpa.util.ResourceCountCache;
 import ca.uhn.fhir.jpa.validation.JpaValidationSupportChainR4;
 import ca.uhn.fhir.parser.IParser;
@@ -175,6 +176,10 @@ public abstract class BaseJpaR4Test extends BaseJpaTest {
 	@Autowired
 	protected IResourceTableDao myResourceTableDao;
 	@Autowired
+	protected IResourceReindexJobDao myResourceReindexJobDao;
+	@Autowired
+	protected IReindexController myReindexController;
+	@Autowired
 	protected IResourceHistoryTableDao myResourceHistoryTableDao;
 	@Autowired
 	protected IForcedIdDao myForcedIdDao;
@@ -1,16 +1,29 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.IDecodedResourceCacheSvc;
+import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.util.TestUtil;
+import com.google.common.collect.Sets;
 import net.ttddyy.dsproxy.QueryCountHolder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 @TestPropertySource(properties = {
@@ -18,9 +31,12 @@ import static org.junit.Assert.*;
 })
 public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4QueryCountTest.class);
+	@Autowired
+	private IDecodedResourceCacheSvc myDecodedResourceCacheSvc;
 
 	@After
 	public void afterResetDao() {
+		myDaoConfig.setDecodedResourceCacheResourceTypes(new DaoConfig().getDecodedResourceCacheResourceTypes());
 		myDaoConfig.setResourceMetaCountHardLimit(new DaoConfig().getResourceMetaCountHardLimit());
 		myDaoConfig.setIndexMissingFields(new DaoConfig().getIndexMissingFields());
 	}
@@ -100,6 +116,116 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testConditionalCreatesInTransactionAreResolvedInBulk() {
+		myDaoConfig.setIndexMissingFields(DaoConfig.IndexEnabledEnum.DISABLED);
+
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue("0");
+		IIdType existingId = myPatientDao.create(p).getId().toUnqualifiedVersionless();
+
+		Bundle request = new Bundle();
+		request.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < 20; i++) {
+			p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(Integer.toString(i));
+			request
+				.addEntry()
+				.setResource(p)
+				.getRequest()
+				.setMethod(Bundle.HTTPVerb.POST)
+				.setUrl("Patient")
+				.setIfNoneExist("Patient?identifier=urn:system|" + i);
+		}
+
+		QueryCountHolder.clear();
+		Bundle response = mySystemDao.transaction(mySrd, request);
+		ourLog.info("Selects: {}", QueryCountHolder.getGrandTotal().getSelect());
+		assertTrue(QueryCountHolder.getGrandTotal().getSelect() < 20);
+
+		assertEquals(20, response.getEntry().size());
+		assertEquals("200 OK", response.getEntry().get(0).getResponse().getStatus());
+		assertEquals(existingId.getValue(), new IdType(response.getEntry().get(0).getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+		for (int i = 1; i < 20; i++) {
+			assertEquals("201 Created", response.getEntry().get(i).getResponse().getStatus());
+		}
+
+		// Running the same transaction again should match everything
+		response = mySystemDao.transaction(mySrd, request);
+		for (int i = 0; i < 20; i++) {
+			assertEquals("200 OK", response.getEntry().get(i).getResponse().getStatus());
+		}
+		assertEquals(20, myPatientDao.search(new SearchParameterMap().setLoadSynchronous(true)).size().intValue());
+	}
+
+	@Test
+	public void testLoadResourcesWithTagsUsesSingleQuery() {
+		Patient p = new Patient();
+		p.getMeta().addTag("http://tags", "tag1", null);
+		p.getMeta().addTag("http://tags", "tag2", null);
+		final Long pid0 = myPatientDao.create(p).getId().getIdPartAsLong();
+
+		p = new Patient();
+		p.setActive(true);
+		final Long pid1 = myPatientDao.create(p).getId().getIdPartAsLong();
+
+		p = new Patient();
+		p.getMeta().addTag("http://tags", "tag3", null);
+		final Long pid2 = myPatientDao.create(p).getId().getIdPartAsLong();
+
+		runInTransaction(() -> {
+			QueryCountHolder.clear();
+
+			List<IBaseResource> resources = new ArrayList<>();
+			myPatientDao.newSearchBuilder().loadResourcesByPid(Arrays.asList(pid2, pid0, pid1), resources, new HashSet<>(), false, myEntityManager, myFhirCtx, myPatientDao);
+
+			assertEquals(1, QueryCountHolder.getGrandTotal().getSelect());
+			assertEquals(3, resources.size());
+			assertEquals(pid2, resources.get(0).getIdElement().getIdPartAsLong());
+			assertEquals(1, ((Patient) resources.get(0)).getMeta().getTag().size());
+			assertEquals(pid0, resources.get(1).getIdElement().getIdPartAsLong());
+			assertEquals(2, ((Patient) resources.get(1)).getMeta().getTag().size());
+			assertEquals(pid1, resources.get(2).getIdElement().getIdPartAsLong());
+			assertEquals(0, ((Patient) resources.get(2)).getMeta().getTag().size());
+		});
+	}
+
+	@Test
+	public void testReadUsesDecodedResourceCache() {
+		myDaoConfig.setDecodedResourceCacheResourceTypes(Sets.newHashSet("Organization"));
+
+		Organization org = new Organization();
+		org.setName("ORG");
+		IIdType id = myOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		long hits = myDecodedResourceCacheSvc.getHitCount();
+
+		QueryCountHolder.clear();
+		Organization read1 = myOrganizationDao.read(id);
+		long firstReadSelects = QueryCountHolder.getGrandTotal().getSelect();
+		assertEquals("ORG", read1.getName());
+		assertEquals(hits, myDecodedResourceCacheSvc.getHitCount());
+
+		// Modifying the returned resource must not affect the cached copy
+		read1.setName("MODIFIED");
+
+		QueryCountHolder.clear();
+		Organization read2 = myOrganizationDao.read(id);
+		assertEquals(hits + 1, myDecodedResourceCacheSvc.getHitCount());
+		assertEquals(firstReadSelects - 1, QueryCountHolder.getGrandTotal().getSelect());
+		assertNotSame(read1, read2);
+		assertEquals("ORG", read2.getName());
+		assertEquals(id.withVersion("1").getValue(), read2.getIdElement().toUnqualified().getValue());
+		assertEquals("1", read2.getMeta().getVersionId());
+
+		// Other resource types are not cached
+		Patient p = new Patient();
+		p.setActive(true);
+		IIdType patientId = myPatientDao.create(p).getId().toUnqualifiedVersionless();
+		myPatientDao.read(patientId);
+		myPatientDao.read(patientId);
+		assertEquals(hits + 1, myDecodedResourceCacheSvc.getHitCount());
+	}
 
 	@AfterClass
 	public static void afterClassClearContext() {
@@ -3,6 +3,7 @@ package ca.uhn.fhir.jpa.dao.r4;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.*;
@@ -10,6 +11,7 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.*;
 import org.hl7.fhir.r4.model.Appointment.AppointmentStatus;
@@ -24,6 +26,7 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Date;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
@@ -35,6 +38,10 @@ public class FhirResourceDaoR4SearchCustomSearchParamTest extends BaseJpaR4Test
 	@After
 	public void after() {
 		myDaoConfig.setValidateSearchParameterExpressionsOnSave(new DaoConfig().isValidateSearchParameterExpressionsOnSave());
+		myDaoConfig.setReindexUsingPartitionedJob(new DaoConfig().isReindexUsingPartitionedJob());
+		myDaoConfig.setReindexThreadCount(new DaoConfig().getReindexThreadCount());
+		myDaoConfig.setStatusBasedReindexingDisabled(new DaoConfig().isStatusBasedReindexingDisabled());
+		myDaoConfig.setSchedulingDisabled(true);
 	}
 
 	@Before
@@ -620,6 +627,97 @@ public class FhirResourceDaoR4SearchCustomSearchParamTest extends BaseJpaR4Test
 
 	}
 
+	@Test
+	public void testSearchForExtensionTokenUsingPartitionedReindex() {
+		myDaoConfig.setReindexUsingPartitionedJob(true);
+		myDaoConfig.setReindexThreadCount(2);
+
+		for (int i = 0; i < 150; i++) {
+			Patient p = new Patient();
+			p.setActive(true);
+			p.addExtension().setUrl("http://acme.org/eyecolour").setValue(new CodeType(i % 2 == 0 ? "blue" : "green"));
+			myPatientDao.create(p);
+		}
+		Organization organization = new Organization();
+		organization.setName("ORG");
+		myOrganizationDao.create(organization);
+
+		SearchParameter eyeColourSp = new SearchParameter();
+		eyeColourSp.addBase("Patient");
+		eyeColourSp.setCode("eyecolour");
+		eyeColourSp.setType(org.hl7.fhir.r4.model.Enumerations.SearchParamType.TOKEN);
+		eyeColourSp.setTitle("Eye Colour");
+		eyeColourSp.setExpression("Patient.extension('http://acme.org/eyecolour')");
+		eyeColourSp.setXpathUsage(org.hl7.fhir.r4.model.SearchParameter.XPathUsageType.NORMAL);
+		eyeColourSp.setStatus(org.hl7.fhir.r4.model.Enumerations.PublicationStatus.ACTIVE);
+		mySearchParameterDao.create(eyeColourSp, mySrd);
+
+		mySearchParamRegsitry.forceRefresh();
+
+		List<ResourceReindexJobEntity> partitions = myResourceReindexJobDao.findIncomplete();
+		assertEquals(2, partitions.size());
+
+		// A partition leased by another server is left alone
+		Long leasedId = partitions.get(0).getId();
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		txTemplate.execute(t -> myResourceReindexJobDao.claimLease(leasedId, "other-server", new Date(), new Date(System.currentTimeMillis() + DateUtils.MILLIS_PER_HOUR)));
+		int firstPass = myReindexController.performPartitionedReindexingPass();
+		assertThat(firstPass, lessThan(150));
+		assertEquals(1, myResourceReindexJobDao.count());
+		assertEquals(leasedId, myResourceReindexJobDao.findIncomplete().get(0).getId());
+
+		// Once that lease is released, this server picks it up
+		txTemplate.execute(t -> myResourceReindexJobDao.releaseLease(leasedId, "other-server"));
+		assertEquals(150 - firstPass, myReindexController.performPartitionedReindexingPass());
+		assertEquals(0, myResourceReindexJobDao.count());
+		assertEquals(0, myReindexController.performPartitionedReindexingPass());
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add("eyecolour", new TokenParam(null, "blue"));
+		assertEquals(75, myPatientDao.search(map).size().intValue());
+	}
+
+	/**
+	 * Partitioned jobs are started by the scheduled pass even when status based
+	 * reindexing is disabled, and run without blocking it
+	 */
+	@Test
+	public void testSearchForExtensionTokenUsingPartitionedReindexWithStatusBasedReindexingDisabled() throws Exception {
+		myDaoConfig.setReindexUsingPartitionedJob(true);
+		myDaoConfig.setReindexThreadCount(2);
+		myDaoConfig.setStatusBasedReindexingDisabled(true);
+
+		for (int i = 0; i < 20; i++) {
+			Patient p = new Patient();
+			p.setActive(true);
+			p.addExtension().setUrl("http://acme.org/eyecolour").setValue(new CodeType(i % 2 == 0 ? "blue" : "green"));
+			myPatientDao.create(p);
+		}
+
+		SearchParameter eyeColourSp = new SearchParameter();
+		eyeColourSp.addBase("Patient");
+		eyeColourSp.setCode("eyecolour");
+		eyeColourSp.setType(org.hl7.fhir.r4.model.Enumerations.SearchParamType.TOKEN);
+		eyeColourSp.setTitle("Eye Colour");
+		eyeColourSp.setExpression("Patient.extension('http://acme.org/eyecolour')");
+		eyeColourSp.setXpathUsage(org.hl7.fhir.r4.model.SearchParameter.XPathUsageType.NORMAL);
+		eyeColourSp.setStatus(org.hl7.fhir.r4.model.Enumerations.PublicationStatus.ACTIVE);
+		mySearchParameterDao.create(eyeColourSp, mySrd);
+
+		mySearchParamRegsitry.forceRefresh();
+		assertEquals(2, myResourceReindexJobDao.findIncomplete().size());
+
+		myDaoConfig.setSchedulingDisabled(false);
+		myReindexController.performReindexingPass();
+		waitForSize(0, () -> myResourceReindexJobDao.count());
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add("eyecolour", new TokenParam(null, "blue"));
+		assertEquals(10, myPatientDao.search(map).size().intValue());
+	}
+
 	@Test
 	public void testSearchForExtensionTwoDeepCodeableConcept() {
 		SearchParameter siblingSp = new SearchParameter();
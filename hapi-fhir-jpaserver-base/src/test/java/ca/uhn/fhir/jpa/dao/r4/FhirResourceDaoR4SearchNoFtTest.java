@@ -1,13 +1,17 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
+import ca.uhn.fhir.jpa.config.TestR4Config;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap.EverythingModeEnum;
 import ca.uhn.fhir.jpa.entity.*;
+import ca.uhn.fhir.jpa.search.SearchIncludeLoaderSvc;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
 import ca.uhn.fhir.parser.StrictErrorHandler;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.*;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -29,6 +33,7 @@ import org.hl7.fhir.r4.model.Observation.ObservationStatus;
 import org.hl7.fhir.r4.model.Subscription.SubscriptionChannelType;
 import org.hl7.fhir.r4.model.Subscription.SubscriptionStatus;
 import org.junit.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
@@ -50,12 +55,16 @@ import static org.mockito.Mockito.mock;
 @SuppressWarnings({"unchecked", "Duplicates"})
 public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4SearchNoFtTest.class);
+	@Autowired
+	private SearchIncludeLoaderSvc mySearchIncludeLoaderSvc;
 
 	@After
 	public void afterResetSearchSize() {
 		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
 		myDaoConfig.setFetchSizeDefaultMaximum(new DaoConfig().getFetchSizeDefaultMaximum());
 		myDaoConfig.setAllowContainsSearches(new DaoConfig().isAllowContainsSearches());
+		myDaoConfig.setIncludeLoadingThreadCount(new DaoConfig().getIncludeLoadingThreadCount());
+		myDaoConfig.setResourceDecodingThreadCount(new DaoConfig().getResourceDecodingThreadCount());
 	}
 
 	@Before
@@ -2627,6 +2636,62 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 		}
 	}
 
+	@Test
+	public void testSearchWithIncludesLoadedInParallel() {
+		myDaoConfig.setIncludeLoadingThreadCount(4);
+
+		String methodName = "testSearchWithIncludesLoadedInParallel";
+		IIdType orgId;
+		{
+			Organization org = new Organization();
+			org.getNameElement().setValue(methodName + "_O1");
+			orgId = myOrganizationDao.create(org, mySrd).getId().toUnqualifiedVersionless();
+		}
+		IIdType practitionerId;
+		{
+			Practitioner practitioner = new Practitioner();
+			practitioner.addName().setFamily(methodName + "_PR1");
+			practitionerId = myPractitionerDao.create(practitioner, mySrd).getId().toUnqualifiedVersionless();
+		}
+		IIdType patientId;
+		{
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue(methodName);
+			patient.getManagingOrganization().setReferenceElement(orgId);
+			patient.addGeneralPractitioner().setReferenceElement(practitionerId);
+			patientId = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+		}
+		IIdType obsId;
+		{
+			Observation obs = new Observation();
+			obs.getSubject().setReferenceElement(patientId);
+			obsId = myObservationDao.create(obs, mySrd).getId().toUnqualifiedVersionless();
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.addInclude(Patient.INCLUDE_ORGANIZATION);
+		params.addInclude(Patient.INCLUDE_GENERAL_PRACTITIONER);
+		params.addRevInclude(Observation.INCLUDE_SUBJECT);
+
+		// The include queries need connections beyond the one held by the search
+		int maxThreads = TestR4Config.getMaxThreads();
+		TestR4Config.setMaxThreads(Math.max(maxThreads, 2));
+		long queryCount = mySearchIncludeLoaderSvc.getQueryCount();
+		List<IIdType> resources;
+		try {
+			resources = toUnqualifiedVersionlessIds(myPatientDao.search(params));
+		} finally {
+			TestR4Config.setMaxThreads(maxThreads);
+		}
+		ourLog.info(resources.toString());
+		assertThat(resources, containsInAnyOrder(patientId, orgId, practitionerId, obsId));
+
+		// One query for each include and revinclude
+		assertThat(mySearchIncludeLoaderSvc.getQueryCount() - queryCount, greaterThanOrEqualTo(3L));
+	}
+
 	@SuppressWarnings("unused")
 	@Test
 	public void testSearchWithIncludesParameterNoRecurse() {
@@ -2860,6 +2925,34 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testSearchWithParallelResourceDecoding() {
+		myDaoConfig.setResourceDecodingThreadCount(4);
+
+		String methodName = "testSearchWithParallelResourceDecoding";
+		for (int i = 0; i < 50; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue(methodName);
+			patient.addName().setFamily(methodName + "_" + String.format("%02d", i));
+			patient.getMeta().addTag("http://tags", "tag" + (i % 3), null);
+			myPatientDao.create(patient, mySrd);
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.setSort(new SortSpec(Patient.SP_FAMILY, SortOrderEnum.DESC));
+		List<IBaseResource> resources = toList(myPatientDao.search(params));
+
+		assertEquals(50, resources.size());
+		for (int i = 0; i < 50; i++) {
+			Patient patient = (Patient) resources.get(i);
+			int expected = 49 - i;
+			assertEquals(methodName + "_" + String.format("%02d", expected), patient.getNameFirstRep().getFamily());
+			assertEquals("tag" + (expected % 3), patient.getMeta().getTagFirstRep().getCode());
+		}
+	}
+
 	@Test
 	public void testSearchWithRevIncludes() {
 		final String methodName = "testSearchWithRevIncludes";
@@ -3,6 +3,8 @@ package ca.uhn.fhir.jpa.dao.r4;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDaoCodeSystem.LookupCodeResult;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
+import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
@@ -42,10 +44,15 @@ public class FhirResourceDaoR4TerminologyTest extends BaseJpaR4Test {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4TerminologyTest.class);
 	@Autowired
 	private IHapiTerminologySvc myHapiTerminologySvc;
+	@Autowired
+	private ITermCodeSystemVersionDao myTermCodeSystemVersionDao;
+	@Autowired
+	private ITermConceptClosureDao myTermConceptClosureDao;
 
 	@After
 	public void after() {
 		myDaoConfig.setDeferIndexingForCodesystemsOfSize(new DaoConfig().getDeferIndexingForCodesystemsOfSize());
+		myDaoConfig.setPreExpandValueSets(new DaoConfig().isPreExpandValueSets());
 
 		BaseHapiTerminologySvcImpl.setForceSaveDeferredAlwaysForUnitTest(false);
 	}
@@ -1141,6 +1148,129 @@ public class FhirResourceDaoR4TerminologyTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testSearchCodeInPreExpandedValueSet() {
+		myDaoConfig.setPreExpandValueSets(true);
+
+		CodeSystem codeSystem = createExternalCs();
+		ValueSet valueSet = new ValueSet();
+		valueSet.setUrl(URL_MY_VALUE_SET);
+		valueSet.getCompose().addInclude().setSystem(codeSystem.getUrl());
+		IIdType vsId = myValueSetDao.create(valueSet, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obsPA = new Observation();
+		obsPA.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("ParentA");
+		IIdType idPA = myObservationDao.create(obsPA, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obsAAA = new Observation();
+		obsAAA.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("childAAA");
+		IIdType idAAA = myObservationDao.create(obsAAA, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obsCA = new Observation();
+		obsCA.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("CA");
+		myObservationDao.create(obsCA, mySrd);
+
+		// Not expanded yet, so this expands inline and queues the ValueSet
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(null, URL_MY_VALUE_SET).setModifier(TokenParamModifier.IN));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idPA.getValue(), idAAA.getValue()));
+		assertNull(myTermSvc.findPreExpandedValueSetPid(URL_MY_VALUE_SET));
+
+		myTermSvc.preExpandValueSets();
+		assertNotNull(myTermSvc.findPreExpandedValueSetPid(URL_MY_VALUE_SET));
+
+		// Now the search joins against the stored expansion
+		params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(null, URL_MY_VALUE_SET).setModifier(TokenParamModifier.IN));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idPA.getValue(), idAAA.getValue()));
+
+		// Changing an unrelated ValueSet leaves the stored expansion alone
+		ValueSet otherValueSet = new ValueSet();
+		otherValueSet.setUrl("http://example.com/my_other_value_set");
+		otherValueSet.getCompose().addInclude().setSystem("http://example.com/other_code_system");
+		myValueSetDao.create(otherValueSet, mySrd);
+		assertNotNull(myTermSvc.findPreExpandedValueSetPid(URL_MY_VALUE_SET));
+
+		// A URL which isn't a ValueSet is never stored
+		params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(null, "http://example.com/no_such_value_set").setModifier(TokenParamModifier.IN));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), empty());
+		myTermSvc.preExpandValueSets();
+		assertNull(myTermSvc.findPreExpandedValueSetPid("http://example.com/no_such_value_set"));
+
+		// Changing the ValueSet invalidates the stored expansion
+		valueSet.setId(vsId);
+		valueSet.getCompose().getIncludeFirstRep().addConcept().setCode("ParentA");
+		myValueSetDao.update(valueSet, mySrd);
+		assertNull(myTermSvc.findPreExpandedValueSetPid(URL_MY_VALUE_SET));
+
+		params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(null, URL_MY_VALUE_SET).setModifier(TokenParamModifier.IN));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idPA.getValue()));
+
+		myTermSvc.preExpandValueSets();
+		assertNotNull(myTermSvc.findPreExpandedValueSetPid(URL_MY_VALUE_SET));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idPA.getValue()));
+	}
+
+	@Test
+	public void testSearchCodeBelowAndAboveUsingConceptClosure() {
+		createExternalCsAndLocalVs();
+
+		Observation obsPA = new Observation();
+		obsPA.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("ParentA");
+		IIdType idPA = myObservationDao.create(obsPA, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obsAAA = new Observation();
+		obsAAA.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("childAAA");
+		IIdType idAAA = myObservationDao.create(obsAAA, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obsAAB = new Observation();
+		obsAAB.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("childAAB");
+		IIdType idAAB = myObservationDao.create(obsAAB, mySrd).getId().toUnqualifiedVersionless();
+
+		Observation obsBA = new Observation();
+		obsBA.getCode().addCoding().setSystem(URL_MY_CODE_SYSTEM).setCode("childBA");
+		IIdType idBA = myObservationDao.create(obsBA, mySrd).getId().toUnqualifiedVersionless();
+
+		myTermSvc.saveDeferred();
+		assertNotNull(myTermSvc.findConceptPidWithClosure(URL_MY_CODE_SYSTEM, "childAA"));
+		assertNull(myTermSvc.findConceptPidWithClosure(URL_MY_CODE_SYSTEM, "FOO"));
+
+		// Rows from a build which didn't complete are ignored, then replaced by the next build
+		long closureRowCount = myTermConceptClosureDao.count();
+		runInTransaction(() -> myTermCodeSystemVersionDao.findAll().forEach(t -> myTermCodeSystemVersionDao.updateClosureCompleted(t.getPid(), null)));
+		assertNull(myTermSvc.findConceptPidWithClosure(URL_MY_CODE_SYSTEM, "childAA"));
+		myTermSvc.saveDeferred();
+		assertNotNull(myTermSvc.findConceptPidWithClosure(URL_MY_CODE_SYSTEM, "childAA"));
+		assertEquals(closureRowCount, myTermConceptClosureDao.count());
+
+		Set<String> codes = toCodes(myTermSvc.findCodesBelow(URL_MY_CODE_SYSTEM, "ParentB"));
+		assertThat(codes, containsInAnyOrder("ParentB", "childBA", "childAAB"));
+
+		codes = toCodes(myTermSvc.findCodesAbove(URL_MY_CODE_SYSTEM, "childAAB"));
+		assertThat(codes, containsInAnyOrder("childAAB", "childAA", "ParentA", "childBA", "ParentB"));
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(URL_MY_CODE_SYSTEM, "childAA").setModifier(TokenParamModifier.BELOW));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idAAA.getValue(), idAAB.getValue()));
+
+		params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(URL_MY_CODE_SYSTEM, "ParentB").setModifier(TokenParamModifier.BELOW));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idAAB.getValue(), idBA.getValue()));
+
+		params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Observation.SP_CODE, new TokenParam(URL_MY_CODE_SYSTEM, "childAAB").setModifier(TokenParamModifier.ABOVE));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(params)), containsInAnyOrder(idPA.getValue(), idAAB.getValue(), idBA.getValue()));
+	}
+
 	@Test
 	public void testSearchCodeInFhirCodesystem() {
 		createLocalCsAndVs();
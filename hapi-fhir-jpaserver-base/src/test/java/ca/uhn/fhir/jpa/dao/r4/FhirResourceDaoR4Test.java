@@ -15,6 +15,7 @@ import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor.ActionRequestDetai
 import ca.uhn.fhir.util.TestUtil;
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -65,6 +66,7 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		myDaoConfig.setAllowExternalReferences(new DaoConfig().isAllowExternalReferences());
 		myDaoConfig.setTreatReferencesAsLogical(new DaoConfig().getTreatReferencesAsLogical());
 		myDaoConfig.setEnforceReferentialIntegrityOnDelete(new DaoConfig().isEnforceReferentialIntegrityOnDelete());
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
 	}
 
 	private void assertGone(IIdType theId) {
@@ -930,6 +932,78 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		}
 	}
 
+	@Test
+	public void testCreateWithLz4EncodingThenChangeEncoding() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.LZ4);
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY1");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+
+		p = new Patient();
+		p.setId(id);
+		p.addName().setFamily("FAMILY2");
+		myPatientDao.update(p, mySrd);
+
+		runInTransaction(() -> {
+			assertEquals(ResourceEncodingEnum.LZ4, myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 1L).getEncoding());
+			assertEquals(ResourceEncodingEnum.JSONC, myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 2L).getEncoding());
+		});
+
+		assertEquals("FAMILY1", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("FAMILY2", myPatientDao.read(id.withVersion("2"), mySrd).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testUpdateWithNoChangesAfterChangingEncoding() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.LZ4);
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY1");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+
+		// The hash covers the uncompressed encoding, so the same content isn't seen as a change
+		p = new Patient();
+		p.setId(id);
+		p.addName().setFamily("FAMILY1");
+		assertEquals("1", myPatientDao.update(p, mySrd).getId().getVersionIdPart());
+	}
+
+	/**
+	 * Rows written before the hash covered the uncompressed encoding hold a hash
+	 * of the compressed bytes
+	 */
+	@Test
+	public void testUpdateWithNoChangesAfterUpgradeFromCompressedBytesHash() {
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY1");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		runInTransaction(() -> {
+			ResourceTable table = myResourceTableDao.findById(id.getIdPartAsLong()).orElseThrow(IllegalStateException::new);
+			ResourceHistoryTable history = myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 1);
+			assertEquals(ResourceEncodingEnum.JSONC, history.getEncoding());
+			table.setHashSha256(Hashing.sha256().hashBytes(history.getResource()).toString());
+			myResourceTableDao.save(table);
+		});
+
+		p = new Patient();
+		p.setId(id);
+		p.addName().setFamily("FAMILY1");
+		assertEquals("1", myPatientDao.update(p, mySrd).getId().getVersionIdPart());
+
+		p = new Patient();
+		p.setId(id);
+		p.addName().setFamily("FAMILY2");
+		assertEquals("2", myPatientDao.update(p, mySrd).getId().getVersionIdPart());
+	}
+
 	@Test
 	public void testCreateWithReferenceBadType() {
 		Patient p = new Patient();
@@ -3,6 +3,7 @@ package ca.uhn.fhir.jpa.dao.r4;
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
+import ca.uhn.fhir.jpa.dao.TransactionProcessor;
 import ca.uhn.fhir.jpa.entity.*;
 import ca.uhn.fhir.jpa.provider.SystemProviderDstu2Test;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
@@ -25,6 +26,7 @@ import org.hl7.fhir.r4.model.Observation.ObservationStatus;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity;
 import org.junit.*;
 import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
@@ -50,6 +52,8 @@ import static org.mockito.Mockito.verify;
 public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirSystemDaoR4Test.class);
+	@Autowired
+	private TransactionProcessor<Bundle, BundleEntryComponent> myTransactionProcessor;
 
 	@AfterClass
 	public static void afterClassClearContext() {
@@ -60,6 +64,11 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 	public void after() {
 		myDaoConfig.setAllowInlineMatchUrlReferences(false);
 		myDaoConfig.setAllowMultipleDelete(new DaoConfig().isAllowMultipleDelete());
+		if (myDaoConfig.getBatchEntryThreadCount() != new DaoConfig().getBatchEntryThreadCount()) {
+			myDaoConfig.setBatchEntryThreadCount(new DaoConfig().getBatchEntryThreadCount());
+			myTransactionProcessor.stop();
+			myTransactionProcessor.start();
+		}
 	}
 
 	@Before
@@ -261,6 +270,51 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		assertThat(oo.getIssue().get(0).getDiagnostics(), containsString("Unknown search parameter"));
 	}
 
+	@Test
+	public void testBatchWithParallelEntries() {
+		myDaoConfig.setBatchEntryThreadCount(4);
+		myTransactionProcessor.stop();
+		myTransactionProcessor.start();
+
+		Bundle request = new Bundle();
+		request.setType(BundleType.BATCH);
+		for (int i = 0; i < 10; i++) {
+			if (i == 5) {
+				request
+					.addEntry()
+					.getRequest()
+					.setMethod(HTTPVerb.GET)
+					.setUrl("Patient/BABABABA");
+				continue;
+			}
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue("FOO" + i);
+			request
+				.addEntry()
+				.setResource(p)
+				.getRequest()
+				.setMethod(HTTPVerb.POST)
+				.setUrl("Patient");
+		}
+
+		Bundle response = mySystemDao.transaction(mySrd, request);
+		assertEquals(10, response.getEntry().size());
+
+		for (int i = 0; i < 10; i++) {
+			BundleEntryResponseComponent nextResponse = response.getEntry().get(i).getResponse();
+			if (i == 5) {
+				assertEquals("404 Not Found", nextResponse.getStatus());
+				OperationOutcome oo = (OperationOutcome) nextResponse.getOutcome();
+				assertEquals(IssueSeverity.ERROR, oo.getIssue().get(0).getSeverity());
+				assertEquals("Resource Patient/BABABABA is not known", oo.getIssue().get(0).getDiagnostics());
+				continue;
+			}
+			assertEquals("201 Created", nextResponse.getStatus());
+			Patient patient = myPatientDao.read(new IdType(nextResponse.getLocation()).toUnqualifiedVersionless(), mySrd);
+			assertEquals("FOO" + i, patient.getIdentifierFirstRep().getValue());
+		}
+	}
+
 	@Test
 	public void testCircularCreateAndDelete() {
 		Encounter enc = new Encounter();
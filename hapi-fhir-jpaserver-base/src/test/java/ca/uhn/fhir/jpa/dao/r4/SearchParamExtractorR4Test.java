@@ -34,7 +34,35 @@ public class SearchParamExtractorR4Test {
 		Observation obs = new Observation();
 		obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE");
 
-		ISearchParamRegistry searchParamRegistry = new ISearchParamRegistry() {
+		ISearchParamRegistry searchParamRegistry = newSearchParamRegistry();
+
+		SearchParamExtractorR4 extractor = new SearchParamExtractorR4(new DaoConfig(), ourCtx, ourValidationSupport, searchParamRegistry);
+		Set<BaseResourceIndexedSearchParam> tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
+		assertEquals(1, tokens.size());
+		ResourceIndexedSearchParamToken token = (ResourceIndexedSearchParamToken) tokens.iterator().next();
+		assertEquals("category", token.getParamName());
+		assertEquals("SYSTEM", token.getSystem());
+		assertEquals("CODE", token.getValue());
+	}
+
+	@Test
+	public void testCompiledPathsReusedAcrossResources() {
+		SearchParamExtractorR4 extractor = new SearchParamExtractorR4(new DaoConfig(), ourCtx, ourValidationSupport, newSearchParamRegistry());
+
+		for (int i = 0; i < 3; i++) {
+			Observation obs = new Observation();
+			obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE" + i);
+
+			Set<BaseResourceIndexedSearchParam> tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
+			assertEquals(1, tokens.size());
+			ResourceIndexedSearchParamToken token = (ResourceIndexedSearchParamToken) tokens.iterator().next();
+			assertEquals("category", token.getParamName());
+			assertEquals("CODE" + i, token.getValue());
+		}
+	}
+
+	private static ISearchParamRegistry newSearchParamRegistry() {
+		return new ISearchParamRegistry() {
 			@Override
 			public void forceRefresh() {
 				// nothing
@@ -80,14 +108,6 @@ public class SearchParamExtractorR4Test {
 				// nothing
 			}
 		};
-
-		SearchParamExtractorR4 extractor = new SearchParamExtractorR4(new DaoConfig(), ourCtx, ourValidationSupport, searchParamRegistry);
-		Set<BaseResourceIndexedSearchParam> tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
-		assertEquals(1, tokens.size());
-		ResourceIndexedSearchParamToken token = (ResourceIndexedSearchParamToken) tokens.iterator().next();
-		assertEquals("category", token.getParamName());
-		assertEquals("SYSTEM", token.getSystem());
-		assertEquals("CODE", token.getValue());
 	}
 
 	@AfterClass
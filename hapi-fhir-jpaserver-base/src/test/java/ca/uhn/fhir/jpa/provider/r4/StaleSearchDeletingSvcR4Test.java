@@ -16,6 +16,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.test.util.AopTestUtils;
 
+import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.search.StaleSearchDeletingSvcImpl;
 import ca.uhn.fhir.rest.gclient.IClientExecutable;
 import ca.uhn.fhir.rest.gclient.IQuery;
@@ -37,6 +38,8 @@ public class StaleSearchDeletingSvcR4Test extends BaseResourceProviderR4Test {
 		super.after();
 		StaleSearchDeletingSvcImpl staleSearchDeletingSvc = AopTestUtils.getTargetObject(myStaleSearchDeletingSvc);
 		staleSearchDeletingSvc.setCutoffSlackForUnitTest(StaleSearchDeletingSvcImpl.DEFAULT_CUTOFF_SLACK);
+		myDaoConfig.setDeleteStaleSearchesInBulk(new DaoConfig().isDeleteStaleSearchesInBulk());
+		myDaoConfig.setStaleSearchDeleteBatchSize(new DaoConfig().getStaleSearchDeleteBatchSize());
 	}
 
 	@Before
@@ -48,6 +51,17 @@ public class StaleSearchDeletingSvcR4Test extends BaseResourceProviderR4Test {
 
 	@Test
 	public void testEverythingInstanceWithContentFilter() throws Exception {
+		createSearchesThenExpireThem();
+	}
+
+	@Test
+	public void testEverythingInstanceWithContentFilterDeletingInBulk() throws Exception {
+		myDaoConfig.setDeleteStaleSearchesInBulk(true);
+		myDaoConfig.setStaleSearchDeleteBatchSize(7);
+		createSearchesThenExpireThem();
+	}
+
+	private void createSearchesThenExpireThem() throws Exception {
 
 		for (int i = 0; i < 20; i++) {
 			Patient pt1 = new Patient();
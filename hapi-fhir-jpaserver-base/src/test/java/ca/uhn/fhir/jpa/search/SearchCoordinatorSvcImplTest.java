@@ -18,6 +18,7 @@ import ca.uhn.fhir.rest.api.CacheControlDirective;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
 import ca.uhn.fhir.util.TestUtil;
 import com.google.common.collect.Lists;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -40,7 +41,12 @@ import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -52,6 +58,7 @@ import static org.mockito.Mockito.*;
 @RunWith(MockitoJUnitRunner.class)
 public class SearchCoordinatorSvcImplTest {
 
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchCoordinatorSvcImplTest.class);
 	private static FhirContext ourCtx = FhirContext.forDstu3();
 	@Captor
 	ArgumentCaptor<Iterable<SearchResult>> mySearchResultIterCaptor;
@@ -77,6 +84,7 @@ public class SearchCoordinatorSvcImplTest {
 	@After
 	public void after() {
 		verify(myCallingDao, atMost(myExpectedNumberOfSearchBuildersCreated)).newSearchBuilder();
+		mySvc.stop();
 	}
 
 	@Before
@@ -92,6 +100,7 @@ public class SearchCoordinatorSvcImplTest {
 
 		myDaoConfig = new DaoConfig();
 		mySvc.setDaoConfigForUnitTest(myDaoConfig);
+		mySvc.start();
 
 		when(myCallingDao.newSearchBuilder()).thenReturn(mySearchBuider);
 
@@ -269,6 +278,117 @@ public class SearchCoordinatorSvcImplTest {
 		myExpectedNumberOfSearchBuildersCreated = 4;
 	}
 
+	@Test
+	public void testAsyncSearchRejectedWhenResourceTypeLimitReached() {
+		myDaoConfig.setSearchCoordinatorMaxConcurrentSearchesPerResourceType(1);
+		mySvc.stop();
+		mySvc.start();
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add("name", new StringParam("ANAME"));
+
+		List<Long> pids = createPidSequence(10, 800);
+		SlowIterator<Long> iter = new SlowIterator<Long>(pids.iterator(), 2);
+		when(mySearchBuider.createQuery(Mockito.same(params), any(String.class))).thenReturn(iter);
+
+		IBundleProvider result = mySvc.registerSearch(myCallingDao, params, "Patient", new CacheControlDirective());
+		assertNotNull(result.getUuid());
+
+		SearchParameterMap params2 = new SearchParameterMap();
+		params2.add("name", new StringParam("ANOTHERNAME"));
+		try {
+			mySvc.registerSearch(myCallingDao, params2, "Patient", new CacheControlDirective());
+			fail();
+		} catch (UnclassifiedServerFailureException e) {
+			assertEquals(429, e.getStatusCode());
+		}
+		assertEquals(1, mySvc.getRejectedSearchCount());
+
+		mySvc.cancelAllActiveSearches();
+
+		myExpectedNumberOfSearchBuildersCreated = 3;
+	}
+
+	@Test
+	public void testAsyncSearchIdenticalSearchesAreCoalesced() {
+		SearchParameterMap params = new SearchParameterMap();
+		params.add("name", new StringParam("ANAME"));
+
+		List<Long> pids = createPidSequence(10, 800);
+		SlowIterator<Long> iter = new SlowIterator<Long>(pids.iterator(), 2);
+		SlowIterator<Long> iter2 = new SlowIterator<Long>(createPidSequence(10, 800).iterator(), 2);
+		when(mySearchBuider.createQuery(any(SearchParameterMap.class), any(String.class))).thenReturn(iter, iter2);
+
+		doAnswer(loadPids()).when(mySearchBuider).loadResourcesByPid(any(List.class), any(List.class), any(Set.class), anyBoolean(), any(EntityManager.class), any(FhirContext.class), same(myCallingDao));
+
+		IBundleProvider result = mySvc.registerSearch(myCallingDao, params, "Patient", new CacheControlDirective());
+		assertNotNull(result.getUuid());
+
+		SearchParameterMap params2 = new SearchParameterMap();
+		params2.add("name", new StringParam("ANAME"));
+		IBundleProvider result2 = mySvc.registerSearch(myCallingDao, params2, "Patient", new CacheControlDirective());
+		assertEquals(result.getUuid(), result2.getUuid());
+		assertEquals(1, mySvc.getCoalescedSearchCount());
+
+		List<IBaseResource> resources = result2.getResources(0, 30);
+		assertEquals(30, resources.size());
+		assertEquals("10", resources.get(0).getIdElement().getValueAsString());
+		assertEquals("39", resources.get(29).getIdElement().getValueAsString());
+
+		// A Cache-Control: no-cache request always gets its own search
+		IBundleProvider result3 = mySvc.registerSearch(myCallingDao, params2, "Patient", new CacheControlDirective().setNoCache(true));
+		assertNotEquals(result.getUuid(), result3.getUuid());
+		assertEquals(1, mySvc.getCoalescedSearchCount());
+
+		mySvc.cancelAllActiveSearches();
+
+		verify(mySearchBuider, times(2)).createQuery(any(SearchParameterMap.class), any(String.class));
+		myExpectedNumberOfSearchBuildersCreated = 5;
+	}
+
+	@Test
+	public void testAsyncSearchPageRequestWokenUpWhenResultsAreSynced() throws Exception {
+		mySvc.setSyncSizeForUnitTests(10);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add("name", new StringParam("ANAME"));
+
+		List<Long> pids = createPidSequence(10, 100);
+		BlockingIterator<Long> iter = new BlockingIterator<Long>(pids.iterator(), 20);
+		when(mySearchBuider.createQuery(Mockito.same(params), any(String.class))).thenReturn(iter);
+
+		doAnswer(loadPids()).when(mySearchBuider).loadResourcesByPid(any(List.class), any(List.class), any(Set.class), anyBoolean(), any(EntityManager.class), any(FhirContext.class), same(myCallingDao));
+
+		IBundleProvider result = mySvc.registerSearch(myCallingDao, params, "Patient", new CacheControlDirective());
+		assertNotNull(result.getUuid());
+
+		// Only the first 20 results have been synced, so the page request has to wait
+		iter.awaitBlocked();
+		final AtomicLong releasedAt = new AtomicLong();
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				releasedAt.set(System.currentTimeMillis());
+				iter.release();
+			}
+		}.start();
+
+		List<IBaseResource> resources = result.getResources(0, 30);
+		long millisAfterRelease = System.currentTimeMillis() - releasedAt.get();
+		assertEquals(30, resources.size());
+		assertEquals("10", resources.get(0).getIdElement().getValueAsString());
+		assertEquals("39", resources.get(29).getIdElement().getValueAsString());
+
+		// A request which is only woken up by the timed wait would take the better part of a second
+		ourLog.info("Page returned {}ms after the results were released", millisAfterRelease);
+		assertThat(millisAfterRelease, lessThan(250L));
+	}
+
 	@Test
 	public void testAsyncSearchSmallResultSetSameCoordinator() {
 		SearchParameterMap params = new SearchParameterMap();
@@ -358,6 +478,80 @@ public class SearchCoordinatorSvcImplTest {
 		myExpectedNumberOfSearchBuildersCreated = 3;
 	}
 
+	/**
+	 * A search which is not running locally when a page is requested is polled
+	 * for in the database with an increasing delay. If it starts running locally
+	 * in the meantime, its results are taken from the local task instead.
+	 */
+	@Test
+	public void testLoadSearchResultsFromDifferentCoordinatorThenLocalTask() throws Exception {
+		mySvc.setSyncSizeForUnitTests(10);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add("name", new StringParam("ANAME"));
+
+		List<Long> pids = createPidSequence(10, 100);
+		BlockingIterator<Long> iter = new BlockingIterator<Long>(pids.iterator(), 20);
+		when(mySearchBuider.createQuery(Mockito.same(params), any(String.class))).thenReturn(iter);
+
+		IBundleProvider result = mySvc.registerSearch(myCallingDao, params, "Patient", new CacheControlDirective());
+		final String uuid = result.getUuid();
+		iter.awaitBlocked();
+
+		try {
+			// Make the search look like it is running on another server
+			final Map<String, SearchCoordinatorSvcImpl.SearchTask> tasks = mySvc.getIdToSearchTaskForUnitTest();
+			final SearchCoordinatorSvcImpl.SearchTask task = tasks.remove(uuid);
+			assertNotNull(task);
+
+			Search search = new Search();
+			search.setUuid(uuid);
+			search.setSearchType(SearchTypeEnum.SEARCH);
+			search.setResourceType("Patient");
+			search.setStatus(SearchStatusEnum.LOADING);
+			search.setNumFound(0);
+
+			final List<Long> pollTimes = Collections.synchronizedList(new ArrayList<Long>());
+			when(mySearchDao.findByUuid(eq(uuid))).thenAnswer(new Answer<Search>() {
+				@Override
+				public Search answer(InvocationOnMock theInvocation) {
+					pollTimes.add(System.currentTimeMillis());
+					return search;
+				}
+			});
+
+			new Thread() {
+				@Override
+				public void run() {
+					while (pollTimes.size() < 4) {
+						try {
+							Thread.sleep(10);
+						} catch (InterruptedException e) {
+							// ignore
+						}
+					}
+					tasks.put(uuid, task);
+				}
+			}.start();
+
+			List<Long> resultPids = mySvc.getResources(uuid, 0, 20);
+			assertEquals(20, resultPids.size());
+			assertEquals(10L, resultPids.get(0).longValue());
+			assertEquals(29L, resultPids.get(19).longValue());
+
+			// The results came from the local task, not the database
+			verify(mySearchResultDao, never()).findWithSearchUuid(any(Search.class), any(Pageable.class));
+
+			// Polling starts well below the old fixed delay of 500ms, and then backs off
+			ourLog.info("Polled at {}", pollTimes);
+			assertThat(pollTimes.size(), greaterThanOrEqualTo(4));
+			assertThat(pollTimes.get(1) - pollTimes.get(0), lessThan(400L));
+			assertThat(pollTimes.get(3) - pollTimes.get(2), greaterThanOrEqualTo(80L));
+		} finally {
+			iter.release();
+		}
+	}
+
 	@Test
 	public void testSynchronousSearch() {
 		SearchParameterMap params = new SearchParameterMap();
@@ -406,6 +600,49 @@ public class SearchCoordinatorSvcImplTest {
 		TestUtil.clearAllStaticFieldsForUnitTest();
 	}
 
+	/**
+	 * Returns the given number of items, and then blocks until {@link #release()} is called
+	 */
+	public static class BlockingIterator<T> extends BaseIterator<T> implements Iterator<T> {
+
+		private final CountDownLatch myBlockedLatch = new CountDownLatch(1);
+		private final CountDownLatch myReleaseLatch = new CountDownLatch(1);
+		private int myCount;
+		private Iterator<T> myWrap;
+
+		public BlockingIterator(Iterator<T> theWrap, int theCount) {
+			myWrap = theWrap;
+			myCount = theCount;
+		}
+
+		public void awaitBlocked() throws InterruptedException {
+			assertTrue(myBlockedLatch.await(10, TimeUnit.SECONDS));
+		}
+
+		@Override
+		public boolean hasNext() {
+			return myWrap.hasNext();
+		}
+
+		@Override
+		public T next() {
+			if (myCount-- == 0) {
+				myBlockedLatch.countDown();
+				try {
+					myReleaseLatch.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+			return myWrap.next();
+		}
+
+		public void release() {
+			myReleaseLatch.countDown();
+		}
+
+	}
+
 	public static class FailAfterNIterator<T> extends BaseIterator<T> implements Iterator<T> {
 
 		private int myCount;
@@ -0,0 +1,148 @@
+package ca.uhn.fhir.jpa.subscription.matcher;
+
+import ca.uhn.fhir.jpa.dao.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.dao.r4.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.subscription.CanonicalSubscription;
+import ca.uhn.fhir.jpa.subscription.matcher.SubscriptionMatcherIndex.MatchResultEnum;
+import ca.uhn.fhir.jpa.subscription.matcher.SubscriptionMatcherIndex.SubscriptionMatch;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.SearchParameter;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class SubscriptionMatcherIndexR4Test extends BaseJpaR4Test {
+
+	@Autowired
+	private ISearchParamExtractor mySearchParamExtractor;
+	private SubscriptionMatcherIndex mySvc;
+
+	@Before
+	public void before() {
+		mySvc = new SubscriptionMatcherIndex(myFhirCtx, mySubscriptionDao, mySearchParamExtractor, mySearchParamRegsitry);
+	}
+
+	@Test
+	public void testMatchToken() {
+		mySvc.register("1", newSubscription("Observation?code=SNOMED-CT|1000000050"));
+		mySvc.register("2", newSubscription("Observation?code=SNOMED-CT|1000000051"));
+		mySvc.register("3", newSubscription("Observation?code=1000000050,1000000052"));
+		mySvc.register("4", newSubscription("Patient?identifier=1000000050"));
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("SNOMED-CT").setCode("1000000050");
+
+		Map<String, MatchResultEnum> results = match("Observation", obs);
+		assertEquals(2, results.size());
+		assertEquals(MatchResultEnum.MATCH, results.get("Observation?code=SNOMED-CT|1000000050"));
+		assertEquals(MatchResultEnum.MATCH, results.get("Observation?code=1000000050,1000000052"));
+
+		mySvc.unregister("3");
+		results = match("Observation", obs);
+		assertEquals(1, results.size());
+		assertEquals(MatchResultEnum.MATCH, results.get("Observation?code=SNOMED-CT|1000000050"));
+	}
+
+	@Test
+	public void testMatchTokenAndReference() {
+		mySvc.register("1", newSubscription("Observation?code=1000000050&subject=Patient/123"));
+		mySvc.register("2", newSubscription("Observation?subject=Patient/456"));
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("SNOMED-CT").setCode("1000000050");
+		obs.setSubject(new Reference("Patient/123"));
+
+		Map<String, MatchResultEnum> results = match("Observation", obs);
+		assertEquals(1, results.size());
+		assertEquals(MatchResultEnum.MATCH, results.get("Observation?code=1000000050&subject=Patient/123"));
+
+		obs.setSubject(new Reference("Patient/456"));
+		results = match("Observation", obs);
+		assertEquals(1, results.size());
+		assertEquals(MatchResultEnum.MATCH, results.get("Observation?subject=Patient/456"));
+	}
+
+	@Test
+	public void testUnsupportedCriteriaFallBackToDatabase() {
+		mySvc.register("1", newSubscription("Observation?value-quantity=100"));
+		mySvc.register("2", newSubscription("Observation?_lastUpdated=gt2011-01-01"));
+		mySvc.register("3", newSubscription("Observation?code:text=foo"));
+		mySvc.register("4", newSubscription("Observation?subject.name=foo"));
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("SNOMED-CT").setCode("1000000050");
+
+		Map<String, MatchResultEnum> results = match("Observation", obs);
+		assertEquals(4, results.size());
+		for (MatchResultEnum next : results.values()) {
+			assertEquals(MatchResultEnum.UNKNOWN, next);
+		}
+	}
+
+	@Test
+	public void testReRegisterWithNewCriteria() {
+		mySvc.register("1", newSubscription("Observation?code=1000000050"));
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("SNOMED-CT").setCode("1000000050");
+		assertEquals(1, match("Observation", obs).size());
+
+		mySvc.register("1", newSubscription("Observation?code=1000000051"));
+		assertEquals(0, match("Observation", obs).size());
+	}
+
+	@Test
+	public void testRecompiledWhenSearchParametersChange() {
+		mySvc.register("1", newSubscription("Observation?foo=1000000050"));
+
+		Observation obs = new Observation();
+		obs.getCode().addCoding().setSystem("SNOMED-CT").setCode("1000000050");
+		assertEquals(MatchResultEnum.UNKNOWN, match("Observation", obs).get("Observation?foo=1000000050"));
+
+		SearchParameter fooSp = new SearchParameter();
+		fooSp.addBase("Observation");
+		fooSp.setCode("foo");
+		fooSp.setType(Enumerations.SearchParamType.TOKEN);
+		fooSp.setExpression("Observation.code");
+		fooSp.setXpathUsage(SearchParameter.XPathUsageType.NORMAL);
+		fooSp.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		mySearchParameterDao.create(fooSp, mySrd);
+		mySearchParamRegsitry.forceRefresh();
+
+		assertEquals(MatchResultEnum.MATCH, match("Observation", obs).get("Observation?foo=1000000050"));
+
+		obs.getCode().getCodingFirstRep().setCode("1000000051");
+		assertEquals(0, match("Observation", obs).size());
+	}
+
+	private Map<String, MatchResultEnum> match(String theResourceType, Observation theResource) {
+		List<SubscriptionMatch> matches = mySvc.match(theResourceType, theResource);
+		Map<String, MatchResultEnum> retVal = new HashMap<>();
+		for (SubscriptionMatch next : matches) {
+			retVal.put(next.getSubscription().getCriteriaString(), next.getResult());
+		}
+		return retVal;
+	}
+
+	private static CanonicalSubscription newSubscription(String theCriteria) {
+		CanonicalSubscription retVal = new CanonicalSubscription();
+		retVal.setCriteriaString(theCriteria);
+		return retVal;
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -4,18 +4,23 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.provider.r4.BaseResourceProviderR4Test;
 import ca.uhn.fhir.jpa.subscription.RestHookTestDstu2Test;
+import ca.uhn.fhir.jpa.subscription.resthook.SubscriptionRestHookInterceptor;
 import ca.uhn.fhir.jpa.util.JpaConstants;
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
+import ca.uhn.fhir.rest.annotation.Transaction;
+import ca.uhn.fhir.rest.annotation.TransactionParam;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.util.BundleUtil;
 import ca.uhn.fhir.util.PortUtil;
 import com.google.common.collect.Lists;
+import org.apache.commons.lang3.time.DateUtils;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -29,6 +34,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItem;
@@ -49,6 +55,8 @@ public class RestHookTestR4Test extends BaseResourceProviderR4Test {
 	private static List<Observation> ourUpdatedObservations = Lists.newArrayList();
 	private static List<String> ourContentTypes = new ArrayList<>();
 	private static List<String> ourHeaders = new ArrayList<>();
+	private static List<Bundle> ourTransactions = Lists.newArrayList();
+	private static AtomicInteger ourTransactionFailuresRemaining = new AtomicInteger();
 	private List<IIdType> mySubscriptionIds = new ArrayList<>();
 	private CountingInterceptor myCountingInterceptor;
 
@@ -69,6 +77,8 @@ public class RestHookTestR4Test extends BaseResourceProviderR4Test {
 		myDaoConfig.setAllowMultipleDelete(new DaoConfig().isAllowMultipleDelete());
 
 		ourRestServer.unregisterInterceptor(getRestHookSubscriptionInterceptor());
+		getRestHookSubscriptionInterceptor().setDeliveryBatchSize(new SubscriptionRestHookInterceptor().getDeliveryBatchSize());
+		getRestHookSubscriptionInterceptor().setDeliveryBatchWindowMillis(new SubscriptionRestHookInterceptor().getDeliveryBatchWindowMillis());
 	}
 
 	@Before
@@ -82,6 +92,8 @@ public class RestHookTestR4Test extends BaseResourceProviderR4Test {
 		ourUpdatedObservations.clear();
 		ourContentTypes.clear();
 		ourHeaders.clear();
+		ourTransactions.clear();
+		ourTransactionFailuresRemaining.set(0);
 
 		// Delete all Subscriptions
 		Bundle allSubscriptions = ourClient.search().forResource(Subscription.class).returnBundle(Bundle.class).execute();
@@ -234,6 +246,91 @@ public class RestHookTestR4Test extends BaseResourceProviderR4Test {
 		assertEquals(null, ourUpdatedObservations.get(0).getIdElement().getVersionIdPart());
 	}
 
+	@Test
+	public void testRestHookSubscriptionApplicationJsonBatched() throws Exception {
+		getRestHookSubscriptionInterceptor().setDeliveryBatchSize(5);
+		getRestHookSubscriptionInterceptor().setDeliveryBatchWindowMillis(60000);
+
+		String payload = "application/json";
+
+		String code = "1000000050";
+		String criteria1 = "Observation?code=SNOMED-CT|" + code;
+
+		createSubscription(criteria1, payload, ourListenerServerBase);
+		waitForRegisteredSubscriptionCount(1);
+
+		for (int i = 0; i < 5; i++) {
+			sendObservation(code, "SNOMED-CT");
+		}
+
+		// All five notifications should arrive in a single transaction
+		waitForQueueToDrain();
+		waitForSize(5, ourUpdatedObservations);
+		waitForSize(0, ourCreatedObservations);
+		assertEquals(1, ourTransactions.size());
+		assertEquals(Bundle.BundleType.TRANSACTION, ourTransactions.get(0).getType());
+		assertEquals(Constants.CT_FHIR_JSON_NEW, ourContentTypes.get(0));
+		for (Bundle.BundleEntryComponent next : ourTransactions.get(0).getEntry()) {
+			assertEquals(Bundle.HTTPVerb.PUT, next.getRequest().getMethod());
+		}
+	}
+
+	@Test
+	public void testRestHookSubscriptionApplicationJsonBatchedRetriedAfterFailure() throws Exception {
+		getRestHookSubscriptionInterceptor().setDeliveryBatchSize(5);
+		getRestHookSubscriptionInterceptor().setDeliveryBatchWindowMillis(500);
+		ourTransactionFailuresRemaining.set(1);
+
+		String payload = "application/json";
+
+		String code = "1000000050";
+		String criteria1 = "Observation?code=SNOMED-CT|" + code;
+
+		createSubscription(criteria1, payload, ourListenerServerBase);
+		waitForRegisteredSubscriptionCount(1);
+
+		for (int i = 0; i < 5; i++) {
+			sendObservation(code, "SNOMED-CT");
+		}
+
+		// The first attempt fails, and its payloads are delivered again after the window
+		waitForQueueToDrain();
+		waitForSize(5, ourUpdatedObservations);
+		int deliveredEntries = 0;
+		for (Bundle next : ourTransactions) {
+			deliveredEntries += next.getEntry().size();
+		}
+		assertEquals(5, deliveredEntries);
+		assertEquals(5, ourUpdatedObservations.size());
+	}
+
+	@Test
+	public void testRestHookSubscriptionApplicationJsonBatchedFlushedOnUnregister() throws Exception {
+		getRestHookSubscriptionInterceptor().setDeliveryBatchSize(5);
+		getRestHookSubscriptionInterceptor().setDeliveryBatchWindowMillis(DateUtils.MILLIS_PER_MINUTE);
+
+		String payload = "application/json";
+
+		String code = "1000000050";
+		String criteria1 = "Observation?code=SNOMED-CT|" + code;
+
+		Subscription subscription = createSubscription(criteria1, payload, ourListenerServerBase);
+		waitForRegisteredSubscriptionCount(1);
+
+		sendObservation(code, "SNOMED-CT");
+		sendObservation(code, "SNOMED-CT");
+		waitForQueueToDrain();
+		assertEquals(0, ourTransactions.size());
+
+		// The batch is neither full nor past its window, so it is only sent because the subscription goes away
+		ourClient.delete().resourceById(new IdType("Subscription/" + subscription.getIdElement().getIdPart())).execute();
+		waitForRegisteredSubscriptionCount(0);
+
+		waitForSize(2, ourUpdatedObservations);
+		assertEquals(1, ourTransactions.size());
+		assertEquals(2, ourTransactions.get(0).getEntry().size());
+	}
+
 	@Test
 	public void testRestHookSubscriptionApplicationJson() throws Exception {
 		String payload = "application/json";
@@ -571,6 +668,28 @@ public class RestHookTestR4Test extends BaseResourceProviderR4Test {
 
 	}
 
+	public static class TransactionListener {
+
+		@Transaction
+		public Bundle transaction(@TransactionParam Bundle theBundle, HttpServletRequest theRequest) {
+			ourLog.info("Received Listener Transaction");
+			if (ourTransactionFailuresRemaining.getAndDecrement() > 0) {
+				throw new InternalErrorException("Simulated transaction failure");
+			}
+			ourTransactions.add(theBundle);
+			ourContentTypes.add(theRequest.getHeader(Constants.HEADER_CONTENT_TYPE).replaceAll(";.*", ""));
+
+			Bundle retVal = new Bundle();
+			retVal.setType(Bundle.BundleType.TRANSACTIONRESPONSE);
+			for (Bundle.BundleEntryComponent next : theBundle.getEntry()) {
+				ourUpdatedObservations.add((Observation) next.getResource());
+				retVal.addEntry().getResponse().setStatus("200 OK");
+			}
+			return retVal;
+		}
+
+	}
+
 	@BeforeClass
 	public static void startListenerServer() throws Exception {
 		ourListenerPort = PortUtil.findFreePort();
@@ -579,6 +698,7 @@ public class RestHookTestR4Test extends BaseResourceProviderR4Test {
 
 		ObservationListener obsListener = new ObservationListener();
 		ourListenerRestServer.setResourceProviders(obsListener);
+		ourListenerRestServer.setPlainProviders(new TransactionListener());
 
 		ourListenerServer = new Server(ourListenerPort);
 
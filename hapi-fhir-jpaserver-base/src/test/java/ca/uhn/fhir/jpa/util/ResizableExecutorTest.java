@@ -0,0 +1,102 @@
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResizableExecutorTest {
+
+	private ResizableExecutor myExecutor;
+
+	@After
+	public void after() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testInvokeAllReturnsResultsInOrder() {
+		myExecutor = new ResizableExecutor("test_", () -> 3);
+
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			int value = i;
+			tasks.add(() -> value);
+		}
+
+		List<Integer> results = myExecutor.invokeAll(tasks);
+		assertEquals(10, results.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, results.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testInvokeAllRethrowsFailures() {
+		myExecutor = new ResizableExecutor("test_", () -> 2);
+
+		try {
+			myExecutor.invokeAll(Collections.<Callable<Integer>>singletonList(() -> {
+				throw new IllegalStateException("FAILED");
+			}));
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("FAILED", e.getMessage());
+		}
+
+		try {
+			myExecutor.invokeAll(Collections.<Callable<Integer>>singletonList(() -> {
+				throw new IOException("FAILED");
+			}));
+			fail();
+		} catch (InternalErrorException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	public void testThreadCountFollowsSetting() throws Exception {
+		AtomicInteger threadCount = new AtomicInteger(1);
+		myExecutor = new ResizableExecutor("test_", threadCount::get);
+
+		assertEquals(1, countConcurrentThreads(4));
+
+		threadCount.set(4);
+		assertEquals(4, countConcurrentThreads(4));
+	}
+
+	/**
+	 * Submits tasks which each wait (briefly) for all of the others to start, and
+	 * returns the number of distinct threads they ran on
+	 */
+	private int countConcurrentThreads(int theTaskCount) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(theTaskCount);
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < theTaskCount; i++) {
+			tasks.add(() -> {
+				threadNames.add(Thread.currentThread().getName());
+				started.countDown();
+				started.await(200, TimeUnit.MILLISECONDS);
+				return null;
+			});
+		}
+		myExecutor.invokeAll(tasks);
+		return threadNames.size();
+	}
+
+}
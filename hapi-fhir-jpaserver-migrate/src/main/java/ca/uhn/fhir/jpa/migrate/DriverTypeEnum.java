@@ -107,6 +107,15 @@ public enum DriverTypeEnum {
 			return myTxTemplate;
 		}
 
+		/**
+		 * Opens a second, independent connection to the same database, e.g. for
+		 * use by a worker thread. The caller is responsible for closing it.
+		 */
+		@Nonnull
+		public ConnectionProperties newConnectionProperties() {
+			return myDriverType.newConnectionProperties(myDataSource.getUrl(), myDataSource.getUsername(), myDataSource.getPassword());
+		}
+
 		public void close() {
 			myDataSource.destroy();
 		}
@@ -1,29 +1,53 @@
 package ca.uhn.fhir.jpa.migrate.taskdef;
 
+import ca.uhn.fhir.jpa.migrate.DriverTypeEnum;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.collect.ForwardingMap;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.checkerframework.checker.nullness.compatqual.NullableDecl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+/**
+ * Populates hash columns for every row where {@link #getColumnName() the column} is still
+ * <code>null</code>. The table is walked by <code>SP_ID</code> in ranges of
+ * {@link #setBatchSize(int) batch size} IDs, and each range is updated using a single JDBC
+ * batch. Ranges are handed out to {@link #setThreadCount(int) several worker threads},
+ * each of which uses its own connection.
+ */
 public class CalculateHashesTask extends BaseTableColumnTask<CalculateHashesTask> {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(CalculateHashesTask.class);
+	private static final long PROGRESS_LOG_INTERVAL_MILLIS = 30 * 1000L;
 	private int myBatchSize = 10000;
-	private Map<String, Function<MandatoryKeyMap<String, Object>, Long>> myCalculators = new HashMap<>();
+	private int myThreadCount = 1;
+	private Map<String, Function<MandatoryKeyMap<String, Object>, Long>> myCalculators = new LinkedHashMap<>();
 
 	public void setBatchSize(int theBatchSize) {
+		Validate.isTrue(theBatchSize > 0, "theBatchSize must be positive");
 		myBatchSize = theBatchSize;
 	}
 
+	/**
+	 * Sets the number of worker threads (and therefore database connections) used to
+	 * calculate hashes. Default is 1.
+	 */
+	public CalculateHashesTask setThreadCount(int theThreadCount) {
+		Validate.isTrue(theThreadCount > 0, "theThreadCount must be positive");
+		myThreadCount = theThreadCount;
+		return this;
+	}
 
 	@Override
 	public void execute() {
@@ -31,63 +55,75 @@ public class CalculateHashesTask extends BaseTableColumnTask<CalculateHashesTask
 			return;
 		}
 
-		List<Map<String, Object>> rows;
-		do {
-			rows = getTxTemplate().execute(t -> {
-				JdbcTemplate jdbcTemplate = newJdbcTemnplate();
-				jdbcTemplate.setMaxRows(myBatchSize);
-				String sql = "SELECT * FROM " + getTableName() + " WHERE " + getColumnName() + " IS NULL";
-				ourLog.info("Finding up to {} rows in {} that requires hashes", myBatchSize, getTableName());
-				return jdbcTemplate.queryForList(sql);
-			});
-
-			updateRows(rows);
-		} while (rows.size() > 0);
-	}
-
-	private void updateRows(List<Map<String, Object>> theRows) {
-		StopWatch sw = new StopWatch();
-		getTxTemplate().execute(t -> {
-
-			// Loop through rows
-			assert theRows != null;
-			for (Map<String, Object> nextRow : theRows) {
-
-				Map<String, Long> newValues = new HashMap<>();
-				MandatoryKeyMap<String, Object> nextRowMandatoryKeyMap = new MandatoryKeyMap<>(nextRow);
-
-				// Apply calculators
-				for (Map.Entry<String, Function<MandatoryKeyMap<String, Object>, Long>> nextCalculatorEntry : myCalculators.entrySet()) {
-					String nextColumn = nextCalculatorEntry.getKey();
-					Function<MandatoryKeyMap<String, Object>, Long> nextCalculator = nextCalculatorEntry.getValue();
-					Long value = nextCalculator.apply(nextRowMandatoryKeyMap);
-					newValues.put(nextColumn, value);
-				}
+		JdbcTemplate jdbcTemplate = newJdbcTemnplate();
+		Long lowestId = getTxTemplate().execute(t -> jdbcTemplate.queryForObject("SELECT MIN(SP_ID) FROM " + getTableName(), Long.class));
+		Long highestId = getTxTemplate().execute(t -> jdbcTemplate.queryForObject("SELECT MAX(SP_ID) FROM " + getTableName(), Long.class));
+		if (lowestId == null || highestId == null) {
+			ourLog.info("No rows in {} require hashes", getTableName());
+			return;
+		}
 
-				// Generate update SQL
-				StringBuilder sqlBuilder = new StringBuilder();
-				List<Long> arguments = new ArrayList<>();
-				sqlBuilder.append("UPDATE ");
-				sqlBuilder.append(getTableName());
-				sqlBuilder.append(" SET ");
-				for (Map.Entry<String, Long> nextNewValueEntry : newValues.entrySet()) {
-					if (arguments.size() > 0) {
-						sqlBuilder.append(", ");
+		ourLog.info("Calculating hashes for {} in SP_ID range {} - {} using {} threads", getTableName(), lowestId, highestId, myThreadCount);
+		RangeCursor cursor = new RangeCursor(lowestId, highestId);
+
+		if (myThreadCount == 1) {
+			new RangeWorker(cursor, getConnectionProperties()).run();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(myThreadCount, new BasicThreadFactory.Builder().namingPattern("CalculateHashes-%d").build());
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < myThreadCount; i++) {
+				futures.add(executor.submit(() -> {
+					DriverTypeEnum.ConnectionProperties connectionProperties = getConnectionProperties().newConnectionProperties();
+					try {
+						new RangeWorker(cursor, connectionProperties).run();
+					} finally {
+						connectionProperties.close();
 					}
-					sqlBuilder.append(nextNewValueEntry.getKey()).append(" = ?");
-					arguments.add(nextNewValueEntry.getValue());
+				}));
+			}
+			try {
+				for (Future<?> next : futures) {
+					next.get();
 				}
-				sqlBuilder.append(" WHERE SP_ID = ?");
-				arguments.add((Long) nextRow.get("SP_ID"));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while calculating hashes for " + getTableName(), e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to calculate hashes for " + getTableName(), e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
 
-				// Apply update SQL
-				newJdbcTemnplate().update(sqlBuilder.toString(), arguments.toArray());
+		ourLog.info("Updated {} rows on {} in {} ({} rows/sec)", cursor.myRowsUpdated.get(), getTableName(), cursor.myStopWatch, cursor.myStopWatch.formatThroughput((int) cursor.myRowsUpdated.get(), TimeUnit.SECONDS));
+	}
 
+	private String createUpdateSql() {
+		StringBuilder sqlBuilder = new StringBuilder();
+		sqlBuilder.append("UPDATE ");
+		sqlBuilder.append(getTableName());
+		sqlBuilder.append(" SET ");
+		boolean first = true;
+		for (String nextColumn : myCalculators.keySet()) {
+			if (!first) {
+				sqlBuilder.append(", ");
 			}
+			first = false;
+			sqlBuilder.append(nextColumn).append(" = ?");
+		}
+		sqlBuilder.append(" WHERE SP_ID = ?");
+		return sqlBuilder.toString();
+	}
 
-			return theRows.size();
-		});
-		ourLog.info("Updated {} rows on {} in {}", theRows.size(), getTableName(), sw.toString());
+	private Object[] calculateArguments(Map<String, Object> theRow) {
+		Object[] retVal = new Object[myCalculators.size() + 1];
+		MandatoryKeyMap<String, Object> rowMandatoryKeyMap = new MandatoryKeyMap<>(theRow);
+		int index = 0;
+		for (Function<MandatoryKeyMap<String, Object>, Long> nextCalculator : myCalculators.values()) {
+			retVal[index++] = nextCalculator.apply(rowMandatoryKeyMap);
+		}
+		retVal[index] = theRow.get("SP_ID");
+		return retVal;
 	}
 
 	public CalculateHashesTask addCalculator(String theColumnName, Function<MandatoryKeyMap<String, Object>, Long> theConsumer) {
@@ -97,6 +133,88 @@ public class CalculateHashesTask extends BaseTableColumnTask<CalculateHashesTask
 	}
 
 
+	/**
+	 * Hands out consecutive <code>SP_ID</code> ranges to workers, and tracks overall progress
+	 */
+	private class RangeCursor {
+		private final long myLowestId;
+		private final long myHighestId;
+		private final AtomicLong myNextLow;
+		private final AtomicLong myRowsUpdated = new AtomicLong();
+		private final AtomicLong myNextProgressLog;
+		private final StopWatch myStopWatch = new StopWatch();
+
+		RangeCursor(long theLowestId, long theHighestId) {
+			myLowestId = theLowestId;
+			myHighestId = theHighestId;
+			myNextLow = new AtomicLong(theLowestId);
+			myNextProgressLog = new AtomicLong(System.currentTimeMillis() + PROGRESS_LOG_INTERVAL_MILLIS);
+		}
+
+		/**
+		 * @return The low end (inclusive) of the next range to process, or <code>null</code> if none remain
+		 */
+		Long nextLow() {
+			long retVal = myNextLow.getAndAdd(myBatchSize);
+			if (retVal > myHighestId) {
+				return null;
+			}
+			return retVal;
+		}
+
+		void rangeComplete(long theHigh, int theRowsUpdated) {
+			myRowsUpdated.addAndGet(theRowsUpdated);
+
+			long nextProgressLog = myNextProgressLog.get();
+			long now = System.currentTimeMillis();
+			if (now >= nextProgressLog && myNextProgressLog.compareAndSet(nextProgressLog, now + PROGRESS_LOG_INTERVAL_MILLIS)) {
+				double complete = Math.min(theHigh, myHighestId) - myLowestId + 1;
+				double total = myHighestId - myLowestId + 1;
+				String percent = new DecimalFormat("0.0").format(100.0 * complete / total);
+				ourLog.info("Calculating hashes for {} is {}% complete, {} rows updated in {}, estimated time remaining: {}", getTableName(), percent, myRowsUpdated.get(), myStopWatch, myStopWatch.getEstimatedTimeRemaining(complete, total));
+			}
+		}
+	}
+
+	private class RangeWorker implements Runnable {
+		private final RangeCursor myCursor;
+		private final DriverTypeEnum.ConnectionProperties myConnectionProperties;
+		private final String myUpdateSql = createUpdateSql();
+
+		RangeWorker(RangeCursor theCursor, DriverTypeEnum.ConnectionProperties theConnectionProperties) {
+			myCursor = theCursor;
+			myConnectionProperties = theConnectionProperties;
+		}
+
+		@Override
+		public void run() {
+			String selectSql = "SELECT * FROM " + getTableName() + " WHERE SP_ID >= ? AND SP_ID < ? AND " + getColumnName() + " IS NULL";
+
+			while (true) {
+				Long low = myCursor.nextLow();
+				if (low == null) {
+					break;
+				}
+				long high = low + myBatchSize;
+				Integer updated = myConnectionProperties.getTxTemplate().execute(t -> {
+					JdbcTemplate jdbcTemplate = myConnectionProperties.newJdbcTemplate();
+					List<Map<String, Object>> rows = jdbcTemplate.queryForList(selectSql, low, high);
+					if (rows.isEmpty()) {
+						return 0;
+					}
+
+					List<Object[]> arguments = new ArrayList<>(rows.size());
+					for (Map<String, Object> nextRow : rows) {
+						arguments.add(calculateArguments(nextRow));
+					}
+					jdbcTemplate.batchUpdate(myUpdateSql, arguments);
+					return rows.size();
+				});
+				myCursor.rangeComplete(high - 1, updated);
+			}
+		}
+	}
+
 	public static class MandatoryKeyMap<K, V> extends ForwardingMap<K, V> {
 
 		private final Map<K, V> myWrap;
@@ -400,6 +400,141 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks {
 			.addSql(DriverTypeEnum.MSSQL_2012, "create table TRM_CONCEPT_MAP_GRP_ELM_TGT (PID bigint not null, TARGET_CODE varchar(500) not null, myConceptMapUrl varchar(255), TARGET_DISPLAY varchar(400), TARGET_EQUIVALENCE varchar(50), mySystem varchar(255), mySystemVersion varchar(255), myValueSet varchar(255), CONCEPT_MAP_GRP_ELM_PID bigint not null, primary key (PID))")
 			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_CNCPT_MP_GRP_ELM_TGT_CD on TRM_CONCEPT_MAP_GRP_ELM_TGT (TARGET_CODE)")
 			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_CONCEPT_MAP_GRP_ELM_TGT add constraint FK_TCMGETARGET_ELEMENT foreign key (CONCEPT_MAP_GRP_ELM_PID) references TRM_CONCEPT_MAP_GRP_ELEMENT");
+
+		// Resource Reindexing Partitions
+		version.startSectionWithMessage("Starting work on table: HFJ_RES_REINDEX_JOB");
+		version
+			.addTable("HFJ_RES_REINDEX_JOB")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table HFJ_RES_REINDEX_JOB (PID bigint not null, CHECKPOINT_RES_ID bigint, HIGH_RES_ID bigint not null, JOB_COMPLETE boolean not null, LEASE_EXPIRY timestamp, LEASE_OWNER varchar(100), LOW_RES_ID bigint not null, REINDEX_COUNT integer not null, RES_TYPE varchar(30), primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table HFJ_RES_REINDEX_JOB (PID bigint not null, CHECKPOINT_RES_ID bigint, HIGH_RES_ID bigint not null, JOB_COMPLETE bit not null, LEASE_EXPIRY datetime(6), LEASE_OWNER varchar(100), LOW_RES_ID bigint not null, REINDEX_COUNT integer not null, RES_TYPE varchar(30), primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table HFJ_RES_REINDEX_JOB (PID bigint not null, CHECKPOINT_RES_ID bigint, HIGH_RES_ID bigint not null, JOB_COMPLETE bit not null, LEASE_EXPIRY datetime(6), LEASE_OWNER varchar(100), LOW_RES_ID bigint not null, REINDEX_COUNT integer not null, RES_TYPE varchar(30), primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table HFJ_RES_REINDEX_JOB (PID number(19,0) not null, CHECKPOINT_RES_ID number(19,0), HIGH_RES_ID number(19,0) not null, JOB_COMPLETE number(1,0) not null, LEASE_EXPIRY timestamp, LEASE_OWNER varchar2(100 char), LOW_RES_ID number(19,0) not null, REINDEX_COUNT number(10,0) not null, RES_TYPE varchar2(30 char), primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table HFJ_RES_REINDEX_JOB (PID int8 not null, CHECKPOINT_RES_ID int8, HIGH_RES_ID int8 not null, JOB_COMPLETE boolean not null, LEASE_EXPIRY timestamp, LEASE_OWNER varchar(100), LOW_RES_ID int8 not null, REINDEX_COUNT int4 not null, RES_TYPE varchar(30), primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table HFJ_RES_REINDEX_JOB (PID bigint not null, CHECKPOINT_RES_ID bigint, HIGH_RES_ID bigint not null, JOB_COMPLETE bit not null, LEASE_EXPIRY datetime2, LEASE_OWNER varchar(100), LOW_RES_ID bigint not null, REINDEX_COUNT int not null, RES_TYPE varchar(30), primary key (PID))");
+
+		// ValueSet Expansions
+		version.startSectionWithMessage("Starting work on table: TRM_VALUESET_EXP");
+		version
+			.addTable("TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table TRM_VALUESET_EXP (PID bigint not null, CONCEPT_COUNT integer, EXPANDED_TIME timestamp, EXPANSION_GENERATION bigint not null, EXPANSION_STATUS varchar(20) not null, VALUESET_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table TRM_VALUESET_EXP add constraint IDX_VALUESET_EXP_URL unique (VALUESET_URL)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_VALUESET_EXP_STATUS on TRM_VALUESET_EXP (EXPANSION_STATUS)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table TRM_VALUESET_EXP (PID bigint not null, CONCEPT_COUNT integer, EXPANDED_TIME datetime(6), EXPANSION_GENERATION bigint not null, EXPANSION_STATUS varchar(20) not null, VALUESET_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table TRM_VALUESET_EXP add constraint IDX_VALUESET_EXP_URL unique (VALUESET_URL)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_VALUESET_EXP_STATUS on TRM_VALUESET_EXP (EXPANSION_STATUS)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table TRM_VALUESET_EXP (PID bigint not null, CONCEPT_COUNT integer, EXPANDED_TIME datetime(6), EXPANSION_GENERATION bigint not null, EXPANSION_STATUS varchar(20) not null, VALUESET_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table TRM_VALUESET_EXP add constraint IDX_VALUESET_EXP_URL unique (VALUESET_URL)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_VALUESET_EXP_STATUS on TRM_VALUESET_EXP (EXPANSION_STATUS)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table TRM_VALUESET_EXP (PID number(19,0) not null, CONCEPT_COUNT number(10,0), EXPANDED_TIME timestamp, EXPANSION_GENERATION number(19,0) not null, EXPANSION_STATUS varchar2(20 char) not null, VALUESET_URL varchar2(200 char) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table TRM_VALUESET_EXP add constraint IDX_VALUESET_EXP_URL unique (VALUESET_URL)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_VALUESET_EXP_STATUS on TRM_VALUESET_EXP (EXPANSION_STATUS)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table TRM_VALUESET_EXP (PID int8 not null, CONCEPT_COUNT int4, EXPANDED_TIME timestamp, EXPANSION_GENERATION int8 not null, EXPANSION_STATUS varchar(20) not null, VALUESET_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table TRM_VALUESET_EXP add constraint IDX_VALUESET_EXP_URL unique (VALUESET_URL)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_VALUESET_EXP_STATUS on TRM_VALUESET_EXP (EXPANSION_STATUS)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table TRM_VALUESET_EXP (PID bigint not null, CONCEPT_COUNT int, EXPANDED_TIME datetime2, EXPANSION_GENERATION bigint not null, EXPANSION_STATUS varchar(20) not null, VALUESET_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_VALUESET_EXP add constraint IDX_VALUESET_EXP_URL unique (VALUESET_URL)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_VALUESET_EXP_STATUS on TRM_VALUESET_EXP (EXPANSION_STATUS)");
+
+		// ValueSet Expansions - Concepts
+		version.startSectionWithMessage("Starting work on table: TRM_VALUESET_EXP_CONCEPT");
+		version
+			.addTable("TRM_VALUESET_EXP_CONCEPT")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table TRM_VALUESET_EXP_CONCEPT (PID bigint not null, CODE varchar(200) not null, EXPANSION_PID bigint not null, SYSTEM_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_VSEXPCONCEPT_EXP_SYS_CD on TRM_VALUESET_EXP_CONCEPT (EXPANSION_PID, SYSTEM_URL, CODE)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table TRM_VALUESET_EXP_CONCEPT add constraint FK_VSEXPCONCEPT_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table TRM_VALUESET_EXP_CONCEPT (PID bigint not null, CODE varchar(200) not null, EXPANSION_PID bigint not null, SYSTEM_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_VSEXPCONCEPT_EXP_SYS_CD on TRM_VALUESET_EXP_CONCEPT (EXPANSION_PID, SYSTEM_URL, CODE)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table TRM_VALUESET_EXP_CONCEPT add constraint FK_VSEXPCONCEPT_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP (PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table TRM_VALUESET_EXP_CONCEPT (PID bigint not null, CODE varchar(200) not null, EXPANSION_PID bigint not null, SYSTEM_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_VSEXPCONCEPT_EXP_SYS_CD on TRM_VALUESET_EXP_CONCEPT (EXPANSION_PID, SYSTEM_URL, CODE)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table TRM_VALUESET_EXP_CONCEPT add constraint FK_VSEXPCONCEPT_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP (PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table TRM_VALUESET_EXP_CONCEPT (PID number(19,0) not null, CODE varchar2(200 char) not null, EXPANSION_PID number(19,0) not null, SYSTEM_URL varchar2(200 char) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_VSEXPCONCEPT_EXP_SYS_CD on TRM_VALUESET_EXP_CONCEPT (EXPANSION_PID, SYSTEM_URL, CODE)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table TRM_VALUESET_EXP_CONCEPT add constraint FK_VSEXPCONCEPT_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table TRM_VALUESET_EXP_CONCEPT (PID int8 not null, CODE varchar(200) not null, EXPANSION_PID int8 not null, SYSTEM_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_VSEXPCONCEPT_EXP_SYS_CD on TRM_VALUESET_EXP_CONCEPT (EXPANSION_PID, SYSTEM_URL, CODE)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table TRM_VALUESET_EXP_CONCEPT add constraint FK_VSEXPCONCEPT_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table TRM_VALUESET_EXP_CONCEPT (PID bigint not null, CODE varchar(200) not null, EXPANSION_PID bigint not null, SYSTEM_URL varchar(200) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_VSEXPCONCEPT_EXP_SYS_CD on TRM_VALUESET_EXP_CONCEPT (EXPANSION_PID, SYSTEM_URL, CODE)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_VALUESET_EXP_CONCEPT add constraint FK_VSEXPCONCEPT_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP");
+
+		// ValueSet Expansions - Dependencies
+		version.startSectionWithMessage("Starting work on table: TRM_VALUESET_EXP_DEP");
+		version
+			.addTable("TRM_VALUESET_EXP_DEP")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table TRM_VALUESET_EXP_DEP (PID bigint not null, DEPENDENCY_TYPE varchar(20) not null, DEPENDENCY_URL varchar(200) not null, EXPANSION_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_VSEXPDEP_TYPE_URL on TRM_VALUESET_EXP_DEP (DEPENDENCY_TYPE, DEPENDENCY_URL)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table TRM_VALUESET_EXP_DEP add constraint FK_VSEXPDEP_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table TRM_VALUESET_EXP_DEP (PID bigint not null, DEPENDENCY_TYPE varchar(20) not null, DEPENDENCY_URL varchar(200) not null, EXPANSION_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_VSEXPDEP_TYPE_URL on TRM_VALUESET_EXP_DEP (DEPENDENCY_TYPE, DEPENDENCY_URL)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table TRM_VALUESET_EXP_DEP add constraint FK_VSEXPDEP_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP (PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table TRM_VALUESET_EXP_DEP (PID bigint not null, DEPENDENCY_TYPE varchar(20) not null, DEPENDENCY_URL varchar(200) not null, EXPANSION_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_VSEXPDEP_TYPE_URL on TRM_VALUESET_EXP_DEP (DEPENDENCY_TYPE, DEPENDENCY_URL)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table TRM_VALUESET_EXP_DEP add constraint FK_VSEXPDEP_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP (PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table TRM_VALUESET_EXP_DEP (PID number(19,0) not null, DEPENDENCY_TYPE varchar2(20 char) not null, DEPENDENCY_URL varchar2(200 char) not null, EXPANSION_PID number(19,0) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_VSEXPDEP_TYPE_URL on TRM_VALUESET_EXP_DEP (DEPENDENCY_TYPE, DEPENDENCY_URL)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table TRM_VALUESET_EXP_DEP add constraint FK_VSEXPDEP_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table TRM_VALUESET_EXP_DEP (PID int8 not null, DEPENDENCY_TYPE varchar(20) not null, DEPENDENCY_URL varchar(200) not null, EXPANSION_PID int8 not null, primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_VSEXPDEP_TYPE_URL on TRM_VALUESET_EXP_DEP (DEPENDENCY_TYPE, DEPENDENCY_URL)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table TRM_VALUESET_EXP_DEP add constraint FK_VSEXPDEP_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table TRM_VALUESET_EXP_DEP (PID bigint not null, DEPENDENCY_TYPE varchar(20) not null, DEPENDENCY_URL varchar(200) not null, EXPANSION_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_VSEXPDEP_TYPE_URL on TRM_VALUESET_EXP_DEP (DEPENDENCY_TYPE, DEPENDENCY_URL)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_VALUESET_EXP_DEP add constraint FK_VSEXPDEP_EXP foreign key (EXPANSION_PID) references TRM_VALUESET_EXP");
+
+		// Concept Closure
+		version.startSectionWithMessage("Starting work on table: TRM_CONCEPT_CLOSURE");
+		version
+			.addTable("TRM_CONCEPT_CLOSURE")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table TRM_CONCEPT_CLOSURE (PID bigint not null, ANCESTOR_PID bigint not null, CODESYSTEM_PID bigint not null, DESCENDANT_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_CNCPT_CLOSURE_ANC on TRM_CONCEPT_CLOSURE (ANCESTOR_PID, DESCENDANT_PID)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_CNCPT_CLOSURE_DESC on TRM_CONCEPT_CLOSURE (DESCENDANT_PID, ANCESTOR_PID)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_CNCPT_CLOSURE_CS on TRM_CONCEPT_CLOSURE (CODESYSTEM_PID)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_ANC foreign key (ANCESTOR_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_CS foreign key (CODESYSTEM_PID) references TRM_CODESYSTEM_VER")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_DESC foreign key (DESCENDANT_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table TRM_CONCEPT_CLOSURE (PID bigint not null, ANCESTOR_PID bigint not null, CODESYSTEM_PID bigint not null, DESCENDANT_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_CNCPT_CLOSURE_ANC on TRM_CONCEPT_CLOSURE (ANCESTOR_PID, DESCENDANT_PID)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_CNCPT_CLOSURE_DESC on TRM_CONCEPT_CLOSURE (DESCENDANT_PID, ANCESTOR_PID)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_CNCPT_CLOSURE_CS on TRM_CONCEPT_CLOSURE (CODESYSTEM_PID)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_ANC foreign key (ANCESTOR_PID) references TRM_CONCEPT (PID)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_CS foreign key (CODESYSTEM_PID) references TRM_CODESYSTEM_VER (PID)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_DESC foreign key (DESCENDANT_PID) references TRM_CONCEPT (PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table TRM_CONCEPT_CLOSURE (PID bigint not null, ANCESTOR_PID bigint not null, CODESYSTEM_PID bigint not null, DESCENDANT_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_CNCPT_CLOSURE_ANC on TRM_CONCEPT_CLOSURE (ANCESTOR_PID, DESCENDANT_PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_CNCPT_CLOSURE_DESC on TRM_CONCEPT_CLOSURE (DESCENDANT_PID, ANCESTOR_PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_CNCPT_CLOSURE_CS on TRM_CONCEPT_CLOSURE (CODESYSTEM_PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_ANC foreign key (ANCESTOR_PID) references TRM_CONCEPT (PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_CS foreign key (CODESYSTEM_PID) references TRM_CODESYSTEM_VER (PID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_DESC foreign key (DESCENDANT_PID) references TRM_CONCEPT (PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table TRM_CONCEPT_CLOSURE (PID number(19,0) not null, ANCESTOR_PID number(19,0) not null, CODESYSTEM_PID number(19,0) not null, DESCENDANT_PID number(19,0) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_CNCPT_CLOSURE_ANC on TRM_CONCEPT_CLOSURE (ANCESTOR_PID, DESCENDANT_PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_CNCPT_CLOSURE_DESC on TRM_CONCEPT_CLOSURE (DESCENDANT_PID, ANCESTOR_PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_CNCPT_CLOSURE_CS on TRM_CONCEPT_CLOSURE (CODESYSTEM_PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_ANC foreign key (ANCESTOR_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_CS foreign key (CODESYSTEM_PID) references TRM_CODESYSTEM_VER")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_DESC foreign key (DESCENDANT_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table TRM_CONCEPT_CLOSURE (PID int8 not null, ANCESTOR_PID int8 not null, CODESYSTEM_PID int8 not null, DESCENDANT_PID int8 not null, primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_CNCPT_CLOSURE_ANC on TRM_CONCEPT_CLOSURE (ANCESTOR_PID, DESCENDANT_PID)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_CNCPT_CLOSURE_DESC on TRM_CONCEPT_CLOSURE (DESCENDANT_PID, ANCESTOR_PID)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_CNCPT_CLOSURE_CS on TRM_CONCEPT_CLOSURE (CODESYSTEM_PID)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_ANC foreign key (ANCESTOR_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_CS foreign key (CODESYSTEM_PID) references TRM_CODESYSTEM_VER")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_DESC foreign key (DESCENDANT_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table TRM_CONCEPT_CLOSURE (PID bigint not null, ANCESTOR_PID bigint not null, CODESYSTEM_PID bigint not null, DESCENDANT_PID bigint not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_CNCPT_CLOSURE_ANC on TRM_CONCEPT_CLOSURE (ANCESTOR_PID, DESCENDANT_PID)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_CNCPT_CLOSURE_DESC on TRM_CONCEPT_CLOSURE (DESCENDANT_PID, ANCESTOR_PID)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_CNCPT_CLOSURE_CS on TRM_CONCEPT_CLOSURE (CODESYSTEM_PID)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_ANC foreign key (ANCESTOR_PID) references TRM_CONCEPT")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_CS foreign key (CODESYSTEM_PID) references TRM_CODESYSTEM_VER")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table TRM_CONCEPT_CLOSURE add constraint FK_CNCPT_CLOSURE_DESC foreign key (DESCENDANT_PID) references TRM_CONCEPT");
+
+		// Code System Version
+		Builder.BuilderWithTableName trmCodeSystemVer = version.onTable("TRM_CODESYSTEM_VER");
+		version.startSectionWithMessage("Starting work on table: " + trmCodeSystemVer.getTableName());
+		trmCodeSystemVer
+			.addColumn("CLOSURE_COMPLETED")
+			.nullable()
+			.type(BaseTableColumnTypeTask.ColumnTypeEnum.DATE_TIMESTAMPT);
 	}
 
 
@@ -5,6 +5,7 @@ import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
 import org.junit.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -50,4 +51,34 @@ public class CreateHashesTest extends BaseTest {
 		});
 	}
 
+	@Test
+	public void testCreateHashesInParallel() {
+		executeSql("create table HFJ_SPIDX_TOKEN (SP_ID bigint not null, SP_MISSING boolean, SP_NAME varchar(100) not null, RES_ID bigint, RES_TYPE varchar(255) not null, SP_UPDATED timestamp, HASH_IDENTITY bigint, HASH_SYS bigint, HASH_SYS_AND_VALUE bigint, HASH_VALUE bigint, SP_SYSTEM varchar(200), SP_VALUE varchar(200), primary key (SP_ID))");
+		for (int i = 0; i < 50; i++) {
+			// Leave gaps in the ID sequence so that some ranges are empty
+			long id = 3 + (i * 3);
+			executeSql("insert into HFJ_SPIDX_TOKEN (SP_MISSING, SP_NAME, RES_ID, RES_TYPE, SP_UPDATED, SP_SYSTEM, SP_VALUE, SP_ID) values (false, 'identifier', 999, 'Patient', '2018-09-03 07:44:49.196', 'urn:oid:1.2.410.100110.10.41308301', '88888888', ?)", id);
+		}
+		executeSql("update HFJ_SPIDX_TOKEN set HASH_IDENTITY = 123 where SP_ID = 3");
+
+		CalculateHashesTask task = new CalculateHashesTask();
+		task.setTableName("HFJ_SPIDX_TOKEN");
+		task.setColumnName("HASH_IDENTITY");
+		task.addCalculator("HASH_IDENTITY", t -> BaseResourceIndexedSearchParam.calculateHashIdentity(t.getResourceType(), t.getString("SP_NAME")));
+		task.addCalculator("HASH_SYS_AND_VALUE", t -> ResourceIndexedSearchParamToken.calculateHashSystemAndValue(t.getResourceType(), t.getParamName(), t.getString("SP_SYSTEM"), t.getString("SP_VALUE")));
+		task.setBatchSize(2);
+		task.setThreadCount(3);
+		getMigrator().addTask(task);
+
+		getMigrator().migrate();
+
+		List<Map<String, Object>> rows = executeQuery("select * from HFJ_SPIDX_TOKEN order by SP_ID");
+		assertEquals(50, rows.size());
+		assertEquals(123L, rows.get(0).get("HASH_IDENTITY"));
+		for (Map<String, Object> next : rows.subList(1, rows.size())) {
+			assertEquals(7001889285610424179L, next.get("HASH_IDENTITY"));
+			assertEquals(-3943098850992523411L, next.get("HASH_SYS_AND_VALUE"));
+		}
+	}
+
 }
@@ -111,6 +111,7 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 	private IPagingProvider myPagingProvider;
 	private Lock myProviderRegistrationMutex = new ReentrantLock();
 	private Map<String, ResourceBinding> myResourceNameToBinding = new HashMap<>();
+	private Integer myResponseBufferSize;
 	private IServerAddressStrategy myServerAddressStrategy = new IncomingRequestAddressStrategy();
 	private ResourceBinding myServerBinding = new ResourceBinding();
 	private ResourceBinding myGlobalBinding = new ResourceBinding();
@@ -1204,6 +1205,26 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		myIgnoreServerParsedRequestParameters = theIgnoreServerParsedRequestParameters;
 	}
 
+	/**
+	 * Returns the size in bytes of the servlet response buffer used when writing response bodies,
+	 * or <code>null</code> (which is the default) if the buffer size configured in the servlet
+	 * container is used.
+	 */
+	public Integer getResponseBufferSize() {
+		return myResponseBufferSize;
+	}
+
+	/**
+	 * Sets the size in bytes of the servlet response buffer used when writing response bodies.
+	 * Encoded content is sent to the client each time this buffer fills. If set to
+	 * <code>null</code> (which is the default), the buffer size configured in the servlet
+	 * container is left unchanged.
+	 */
+	public void setResponseBufferSize(Integer theResponseBufferSize) {
+		Validate.isTrue(theResponseBufferSize == null || theResponseBufferSize > 0, "theResponseBufferSize must be greater than 0");
+		myResponseBufferSize = theResponseBufferSize;
+	}
+
 	/**
 	 * Should the server attempt to decompress incoming request contents (default is <code>true</code>). Typically this
 	 * should be set to <code>true</code> unless the server has other configuration to
@@ -20,7 +20,10 @@ package ca.uhn.fhir.rest.server.servlet;
  * #L%
  */
 
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
+
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
@@ -65,11 +68,25 @@ public class ServletRestfulResponse extends RestfulResponse<ServletRequestDetail
 		theHttpResponse.setCharacterEncoding(theCharset);
 		theHttpResponse.setStatus(theStatusCode);
 		theHttpResponse.setContentType(theContentType);
+
+		/*
+		 * Encode directly onto the servlet output stream. The container's buffer size is
+		 * only overridden if one has been explicitly configured on the server.
+		 */
+		Integer bufferSize = getRequestDetails().getServer().getResponseBufferSize();
+		if (bufferSize != null && !theHttpResponse.isCommitted()) {
+			theHttpResponse.setBufferSize(bufferSize);
+		}
+		OutputStream outputStream = theHttpResponse.getOutputStream();
 		if (theRespondGzip) {
 			theHttpResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
-			return new OutputStreamWriter(new GZIPOutputStream(theHttpResponse.getOutputStream()), Constants.CHARSET_NAME_UTF8);
+			if (bufferSize != null) {
+				outputStream = new GZIPOutputStream(outputStream, bufferSize);
+			} else {
+				outputStream = new GZIPOutputStream(outputStream);
+			}
 		}
-		return theHttpResponse.getWriter();
+		return new OutputStreamWriter(outputStream, defaultIfBlank(theCharset, Constants.CHARSET_NAME_UTF8));
 	}
 
 	private void addHeaders() {
@@ -39,6 +39,8 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander, ValueSetExpanderFactory {
   private final FhirContext myCtx;
   private final Cache<String, Resource> myFetchedResourceCache;
+  private final Cache<String, ValidationResult> myValidateCodeCache;
+  private final Cache<String, ValueSetExpansionOutcome> myExpandedValueSetCache;
   private IValidationSupport myValidationSupport;
   private ExpansionProfile myExpansionProfile;
 
@@ -54,6 +56,8 @@ public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander
     }
 
     myFetchedResourceCache = Caffeine.newBuilder().expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS).build();
+    myValidateCodeCache = Caffeine.newBuilder().expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS).maximumSize(10000).build();
+    myExpandedValueSetCache = Caffeine.newBuilder().expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS).maximumSize(1000).build();
   }
 
   @Override
@@ -170,11 +174,14 @@ public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander
 
   @Override
   public ValidationResult validateCode(String theSystem, String theCode, String theDisplay) {
-    CodeValidationResult result = myValidationSupport.validateCode(myCtx, theSystem, theCode, theDisplay);
-    if (result == null) {
-      return null;
-    }
-    return new ValidationResult(result.getSeverity(), result.getMessage(), result.asConceptDefinition());
+    String key = theSystem + "|" + theCode + "|" + theDisplay;
+    return myValidateCodeCache.get(key, t -> {
+      CodeValidationResult result = myValidationSupport.validateCode(myCtx, theSystem, theCode, theDisplay);
+      if (result == null) {
+        return null;
+      }
+      return new ValidationResult(result.getSeverity(), result.getMessage(), result.asConceptDefinition());
+    });
   }
 
   @Override
@@ -231,7 +238,12 @@ public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander
     }
 
     if (expandedValueSet == null) {
-      expandedValueSet = expand(theVs, null);
+      if (theVs != null && theVs.hasUrl()) {
+        String key = theVs.getUrl() + "|" + theVs.getVersion();
+        expandedValueSet = myExpandedValueSetCache.get(key, t -> expand(theVs, null));
+      } else {
+        expandedValueSet = expand(theVs, null);
+      }
     }
 
     for (ValueSetExpansionContainsComponent next : expandedValueSet.getValueset().getExpansion().getContains()) {
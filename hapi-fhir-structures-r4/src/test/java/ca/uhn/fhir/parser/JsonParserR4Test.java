@@ -372,6 +372,26 @@ public class JsonParserR4Test {
 
 	}
 
+	@Test
+	public void testParseUsingTokenStream() throws IOException {
+		String input = IOUtils.toString(JsonParserR4Test.class.getResourceAsStream("/extension-on-line.txt"));
+		Patient expected = ourCtx.newJsonParser().parseResource(Patient.class, input);
+
+		FhirContext ctx = FhirContext.forR4();
+		ctx.getParserOptions().setParseJsonUsingTokenStream(true);
+		Patient actual = ctx.newJsonParser().parseResource(Patient.class, input);
+
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(expected), ourCtx.newJsonParser().encodeResourceToString(actual));
+
+		Observation obs = new Observation();
+		obs.setValue(new Quantity().setValue(new java.math.BigDecimal("1.50")));
+		obs.addComponent().setValue(new BooleanType(false));
+		String encoded = ourCtx.newJsonParser().encodeResourceToString(obs);
+		Observation parsed = ctx.newJsonParser().parseResource(Observation.class, encoded);
+		assertEquals("1.50", parsed.getValueQuantity().getValueElement().getValueAsString());
+		assertEquals(false, ((BooleanType) parsed.getComponentFirstRep().getValue()).booleanValue());
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
@@ -11,7 +11,10 @@ import ca.uhn.fhir.parser.CustomTypeR4Test.MyCustomPatient;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.*;
+import ca.uhn.fhir.rest.client.api.IClientInterceptor;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
 import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
 import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
 import ca.uhn.fhir.rest.client.exceptions.NonFhirResponseException;
@@ -58,6 +61,9 @@ import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.startsWith;
@@ -1256,6 +1262,159 @@ public class GenericClientR4Test {
 		assertEquals(encoded, requestString);
 	}
 
+	@Test
+	public void testReadAsync() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("123");
+		patient.addName().setFamily("FAM");
+		final String respString = ourCtx.newJsonParser().encodeResourceToString(patient);
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(new Answer<InputStream>() {
+			@Override
+			public InputStream answer(InvocationOnMock theInvocation) {
+				return new ReaderInputStream(new StringReader(respString), Charset.forName("UTF-8"));
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		CompletableFuture<Patient> future1 = client.read().resource(Patient.class).withId("123").executeAsync();
+		CompletableFuture<Patient> future2 = client.read().resource(Patient.class).withId("123").executeAsync();
+
+		assertEquals("FAM", future1.get(10, TimeUnit.SECONDS).getNameFirstRep().getFamily());
+		assertEquals("FAM", future2.get(10, TimeUnit.SECONDS).getNameFirstRep().getFamily());
+		assertEquals(2, capt.getAllValues().size());
+		assertEquals("http://example.com/fhir/Patient/123", capt.getAllValues().get(0).getURI().toASCIIString());
+	}
+
+	@Test
+	public void testReadAsyncFailure() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 501, "Not Implemented"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_XML + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(new Answer<InputStream>() {
+			@Override
+			public StringInputStream answer(InvocationOnMock theInvocation) {
+				return new StringInputStream("not implemented", Charsets.UTF_8);
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		CompletableFuture<Patient> future = client.read().resource(Patient.class).withId("1").executeAsync();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(NotImplementedOperationException.class, e.getCause().getClass());
+			assertEquals("HTTP 501 Not Implemented", e.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * The follow-up read made when the server does not return the resource is chained onto
+	 * the first request rather than being made on the thread which handles its response
+	 */
+	@Test
+	public void testCreatePreferRepresentationAsync() throws Exception {
+		final IParser p = ourCtx.newXmlParser();
+
+		final OperationOutcome resp0 = new OperationOutcome();
+		resp0.getText().setDivAsString("OK!");
+
+		final Patient resp1 = new Patient();
+		resp1.getText().setDivAsString("FINAL VALUE");
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getAllHeaders()).thenAnswer(new Answer<Header[]>() {
+			@Override
+			public Header[] answer(InvocationOnMock theInvocation) {
+				return new Header[] {new BasicHeader(Constants.HEADER_LOCATION, "http://foo.com/base/Patient/222/_history/3")};
+			}
+		});
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_XML + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(new Answer<ReaderInputStream>() {
+			@Override
+			public ReaderInputStream answer(InvocationOnMock theInvocation) {
+				if (myAnswerCount++ == 0) {
+					return new ReaderInputStream(new StringReader(p.encodeResourceToString(resp0)), Charset.forName("UTF-8"));
+				} else {
+					return new ReaderInputStream(new StringReader(p.encodeResourceToString(resp1)), Charset.forName("UTF-8"));
+				}
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		Patient pt = new Patient();
+		pt.getText().setDivAsString("A PATIENT");
+
+		MethodOutcome outcome = client.create().resource(pt).prefer(PreferReturnEnum.REPRESENTATION).executeAsync().get(10, TimeUnit.SECONDS);
+
+		assertEquals(2, myAnswerCount);
+		assertEquals("<div xmlns=\"http://www.w3.org/1999/xhtml\">OK!</div>", ((OperationOutcome) outcome.getOperationOutcome()).getText().getDivAsString());
+		assertEquals("<div xmlns=\"http://www.w3.org/1999/xhtml\">FINAL VALUE</div>", ((Patient) outcome.getResource()).getText().getDivAsString());
+
+		assertEquals(2, capt.getAllValues().size());
+		assertEquals("http://example.com/fhir/Patient", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("http://foo.com/base/Patient/222/_history/3", capt.getAllValues().get(1).getURI().toASCIIString());
+	}
+
+	/**
+	 * An interceptor which makes a request of its own while an async request is being
+	 * built must get a normal blocking request, and must not affect the async one
+	 */
+	@Test
+	public void testReadAsyncWithInterceptorMakingRequest() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("123");
+		patient.addName().setFamily("FAM");
+		final String respString = ourCtx.newJsonParser().encodeResourceToString(patient);
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(new Answer<InputStream>() {
+			@Override
+			public InputStream answer(InvocationOnMock theInvocation) {
+				return new ReaderInputStream(new StringReader(respString), Charset.forName("UTF-8"));
+			}
+		});
+
+		final IGenericClient otherClient = ourCtx.newRestfulGenericClient("http://example.com/other");
+		final List<Patient> interceptorResults = new ArrayList<>();
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+		client.registerInterceptor(new IClientInterceptor() {
+			@Override
+			public void interceptRequest(IHttpRequest theRequest) {
+				interceptorResults.add(otherClient.read().resource(Patient.class).withId("456").execute());
+			}
+
+			@Override
+			public void interceptResponse(IHttpResponse theResponse) {
+				// nothing
+			}
+		});
+
+		Patient resp = client.read().resource(Patient.class).withId("123").executeAsync().get(10, TimeUnit.SECONDS);
+		assertEquals("FAM", resp.getNameFirstRep().getFamily());
+
+		assertEquals(1, interceptorResults.size());
+		assertEquals("FAM", interceptorResults.get(0).getNameFirstRep().getFamily());
+		assertEquals(2, capt.getAllValues().size());
+		assertEquals("http://example.com/other/Patient/456", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("http://example.com/fhir/Patient/123", capt.getAllValues().get(1).getURI().toASCIIString());
+	}
+
 	@Test
 	public void testReadWithUnparseableResponse() throws Exception {
 		String msg = "{\"resourceTypeeeee\":\"Patient\"}";
@@ -0,0 +1,125 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.PortUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResponseBufferSizeR4Test {
+
+	private static final int NUM_PATIENTS = 500;
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static int ourPort;
+	private static Server ourServer;
+
+	private void assertLargeBundle(String theResponseContent) {
+		Bundle bundle = ourCtx.newJsonParser().parseResource(Bundle.class, theResponseContent);
+		assertEquals(NUM_PATIENTS, bundle.getEntry().size());
+		assertEquals("Patient/0", bundle.getEntry().get(0).getResource().getIdElement().toUnqualifiedVersionless().getValue());
+		Patient lastPatient = (Patient) bundle.getEntry().get(NUM_PATIENTS - 1).getResource();
+		assertEquals("FAMILY" + (NUM_PATIENTS - 1), lastPatient.getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testSearchLargerThanBuffer() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?_format=json");
+		CloseableHttpResponse status = ourClient.execute(httpGet);
+		try {
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals("chunked", status.getFirstHeader("Transfer-Encoding").getValue());
+			assertLargeBundle(responseContent);
+		} finally {
+			IOUtils.closeQuietly(status.getEntity().getContent());
+		}
+	}
+
+	@Test
+	public void testSearchLargerThanBufferGzip() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?_format=json");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, "gzip");
+		CloseableHttpResponse status = ourClient.execute(httpGet);
+		try {
+			// The client transparently decompresses the response
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertLargeBundle(responseContent);
+		} finally {
+			IOUtils.closeQuietly(status.getEntity().getContent());
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		ourServer.stop();
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		DummyPatientResourceProvider patientProvider = new DummyPatientResourceProvider();
+
+		ServletHandler proxyHandler = new ServletHandler();
+		RestfulServer servlet = new RestfulServer(ourCtx);
+		servlet.setResourceProviders(patientProvider);
+		servlet.setResponseBufferSize(1024);
+		ServletHolder servletHolder = new ServletHolder(servlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<Patient> getResourceType() {
+			return Patient.class;
+		}
+
+		@Search()
+		public List<Patient> searchAll() {
+			List<Patient> retVal = new ArrayList<>();
+			for (int i = 0; i < NUM_PATIENTS; i++) {
+				Patient patient = new Patient();
+				patient.setId("Patient/" + i);
+				patient.addName().setFamily("FAMILY" + i);
+				retVal.add(patient);
+			}
+			return retVal;
+		}
+
+	}
+
+}
@@ -46,6 +46,7 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	private StructureDefinition myStructureDefintion;
 
 	private IValidationSupport myValidationSupport;
+	private volatile HapiWorkerContext myWorkerContext;
 
 	/**
 	 * Constructor
@@ -111,6 +112,14 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		return profile;
 	}
 
+	/**
+	 * Discards the worker context shared between validations, along with the
+	 * profiles, code validation results and ValueSet expansions it has cached
+	 */
+	public void flushCaches() {
+		myWorkerContext = null;
+	}
+
 	/**
 	 * Returns the "best practice" warning level (default is {@link BestPracticeWarningLevel#Hint}).
 	 * <p>
@@ -157,6 +166,7 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	 */
 	public void setValidationSupport(IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
+		myWorkerContext = null;
 	}
 
 	/**
@@ -196,7 +206,11 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	}
 
 	protected List<ValidationMessage> validate(final FhirContext theCtx, String theInput, EncodingEnum theEncoding) {
-		HapiWorkerContext workerContext = new HapiWorkerContext(theCtx, myValidationSupport);
+		HapiWorkerContext workerContext = myWorkerContext;
+		if (workerContext == null) {
+			workerContext = new HapiWorkerContext(theCtx, myValidationSupport);
+			myWorkerContext = workerContext;
+		}
 
 		InstanceValidator v;
 		IEvaluationContext evaluationCtx = new NullEvaluationContext();
@@ -11,8 +11,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ca.uhn.fhir.context.FhirContext;
@@ -1139,6 +1142,25 @@ public class FhirInstanceValidatorR4Test {
 		assertEquals(0, all.size());
 	}
 
+	@Test
+	public void testValidateReusesCachedProfilesBetweenCalls() {
+		Patient patient = new Patient();
+		patient.addIdentifier().setSystem("http://system").setValue("12345");
+
+		ValidationResult output = myVal.validateWithResult(patient);
+		assertEquals(0, logResultsAndReturnNonInformationalOnes(output).size());
+
+		output = myVal.validateWithResult(patient);
+		assertEquals(0, logResultsAndReturnNonInformationalOnes(output).size());
+
+		verify(myMockSupport, times(1)).fetchResource(nullable(FhirContext.class), eq(StructureDefinition.class), eq("http://hl7.org/fhir/StructureDefinition/Patient"));
+
+		myInstanceVal.flushCaches();
+		myVal.validateWithResult(patient);
+
+		verify(myMockSupport, times(2)).fetchResource(nullable(FhirContext.class), eq(StructureDefinition.class), eq("http://hl7.org/fhir/StructureDefinition/Patient"));
+	}
+
 	@Test
 	@Ignore
 	public void testValidateStructureDefinition() throws IOException {
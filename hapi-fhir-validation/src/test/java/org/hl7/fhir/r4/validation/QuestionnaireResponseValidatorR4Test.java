@@ -151,6 +151,7 @@ public class QuestionnaireResponseValidatorR4Test {
 
 			when(myValSupport.fetchResource(any(FhirContext.class), eq(Questionnaire.class),
 				eq(qa.getQuestionnaire()))).thenReturn(q);
+			myInstanceVal.flushCaches();
 
 			ValidationResult errors = myVal.validateWithResult(qa);
 